@@ -32,10 +32,12 @@ public interface AccessManager {
      * @param resource The resource.
      * @param roleIds The role ids to be assigned.  These will replace any existing assigned role ids for the
      *                specified subject and resource pair.
+     * @return true if the assignment changed, or false if the specified roles were already assigned, in which case
+     * nothing is written and no event is dispatched.
      */
-    void setAssignedRoles(@Nonnull Subject subject,
-                          @Nonnull Resource resource,
-                          @Nonnull Collection<RoleId> roleIds);
+    boolean setAssignedRoles(@Nonnull Subject subject,
+                             @Nonnull Resource resource,
+                             @Nonnull Collection<RoleId> roleIds);
 
     void setProjectRoleAssignments(ProjectId projectId, ProjectRoleAssignments projectRoleAssignments);
 
@@ -74,6 +76,7 @@ public interface AccessManager {
                           @Nonnull Capability capability,
                           @Nullable String jwt);
 
+
     Collection<Subject> getSubjectsWithAccessToResource(Resource resource);
 
     Collection<Subject> getSubjectsWithAccessToResource(Resource resource, Capability capability);
@@ -88,5 +91,14 @@ public interface AccessManager {
 
     void rebuild(ProjectId projectId);
 
+    /**
+     * Rebuilds the role and capability closures of the role assignments in the specified project that are affected
+     * by a change to the definitions of the specified roles.  These are the assignments that assign one of the roles,
+     * or that have one of the roles in their role closure.
+     * @param projectId The project.
+     * @param roleIds The roles whose closures may have changed.  If this is empty then nothing is rebuilt.
+     */
+    void rebuild(ProjectId projectId, Collection<RoleId> roleIds);
+
     List<RoleAssignment> getRoleAssignments(ProjectId projectId);
 }
\ No newline at end of file
@@ -1,25 +1,33 @@
 package edu.stanford.protege.webprotege.authorization;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import edu.stanford.protege.webprotege.common.EventId;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import edu.stanford.protege.webprotege.authorization.AssignmentClosureCalculator.AssignmentClosure;
 import edu.stanford.protege.webprotege.common.ProjectId;
-import edu.stanford.protege.webprotege.ipc.EventDispatcher;
 import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.CAPABILITY_CLOSURE;
 import static edu.stanford.protege.webprotege.authorization.RoleAssignment.PROJECT_ID;
 import static edu.stanford.protege.webprotege.authorization.RoleAssignment.USER_NAME;
 import static java.util.stream.Collectors.toList;
@@ -42,18 +50,35 @@ public class AccessManagerImpl implements AccessManager {
 
     private final MongoTemplate mongoTemplate;
 
-    private final ProjectRoleDefinitionsManager projectRoleDefinitionsManager;
+    private final RoleAssignmentLocks locks;
 
-    private final RoleDefinitionsManager roleDefinitionsManager;
-
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-
-    private final EventDispatcher eventDispatcher;
+    private final PermissionsChangedEventCoalescer permissionsChangedEventCoalescer;
 
     private final JwtRolesExtractor jwtRolesExtractor;
 
     private final BuiltInRoleOracle builtInRoleOracle;
 
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    private final CapabilityDictionary capabilityDictionary;
+
+    private final AssignmentClosureCalculator assignmentClosureCalculator;
+
+    private final PermissionRebuildEngine permissionRebuildEngine;
+
+    private final PermissionCheckMode permissionCheckMode;
+
+    private final RoleAssignmentIndex roleAssignmentIndex;
+
+    private final MongoOperationMetrics mongoOperationMetrics;
+
+    private final DecisionAuditLog decisionAuditLog;
+
+    /**
+     * Coalesces concurrent loads of the same merged capability closure
+     */
+    private final SingleFlight<ClosureKey, CapabilityBitSet> closureLoads = new SingleFlight<>();
+
     /**
      * Constructs an {@link AccessManager} that is backed by MongoDb.
      *
@@ -61,18 +86,32 @@ public class AccessManagerImpl implements AccessManager {
      */
     public AccessManagerImpl(ObjectMapper objectMapper,
                              MongoTemplate mongoTemplate,
-                             ProjectRoleDefinitionsManager projectRoleDefinitionsManager,
-                             RoleDefinitionsManager roleDefinitionsManager,
-                             EventDispatcher eventDispatcher,
+                             PermissionsChangedEventCoalescer permissionsChangedEventCoalescer,
                              JwtRolesExtractor jwtRolesExtractor,
-                             BuiltInRoleOracle builtInRoleOracle) {
+                             BuiltInRoleOracle builtInRoleOracle,
+                             CapabilityClosureCache capabilityClosureCache,
+                             CapabilityDictionary capabilityDictionary,
+                             RoleAssignmentLocks locks,
+                             AssignmentClosureCalculator assignmentClosureCalculator,
+                             PermissionRebuildEngine permissionRebuildEngine,
+                             RoleAssignmentIndex roleAssignmentIndex,
+                             MongoOperationMetrics mongoOperationMetrics,
+                             DecisionAuditLog decisionAuditLog,
+                             @Value("${webprotege.authorization.permission-check-mode:closure}") PermissionCheckMode permissionCheckMode) {
         this.objectMapper = objectMapper;
         this.mongoTemplate = mongoTemplate;
-        this.projectRoleDefinitionsManager = projectRoleDefinitionsManager;
-        this.roleDefinitionsManager = roleDefinitionsManager;
-        this.eventDispatcher = eventDispatcher;
+        this.permissionsChangedEventCoalescer = permissionsChangedEventCoalescer;
         this.jwtRolesExtractor = jwtRolesExtractor;
         this.builtInRoleOracle = builtInRoleOracle;
+        this.capabilityClosureCache = capabilityClosureCache;
+        this.capabilityDictionary = capabilityDictionary;
+        this.locks = locks;
+        this.assignmentClosureCalculator = assignmentClosureCalculator;
+        this.permissionRebuildEngine = permissionRebuildEngine;
+        this.permissionCheckMode = permissionCheckMode;
+        this.roleAssignmentIndex = roleAssignmentIndex;
+        this.mongoOperationMetrics = mongoOperationMetrics;
+        this.decisionAuditLog = decisionAuditLog;
     }
 
     /**
@@ -93,85 +132,122 @@ public class AccessManagerImpl implements AccessManager {
     }
 
     @Override
-    public void setAssignedRoles(@Nonnull Subject subject,
-                                 @Nonnull Resource resource,
-                                 @Nonnull Collection<RoleId> roleIds) {
-        lock.writeLock().lock();
-        try {
+    public boolean setAssignedRoles(@Nonnull Subject subject,
+                                    @Nonnull Resource resource,
+                                    @Nonnull Collection<RoleId> roleIds) {
+        try(var ignored = locks.lockForWrite(toProjectIdString(resource))) {
             var userName = toUserName(subject);
             var projectId = resource.getProjectId();
-
-            var roleDefinitionsClosure = new HashSet<RoleDefinition>();
-
-            // For each assigned role, we get its closure
-            for (var roleId : roleIds) {
-                var defs = roleDefinitionsManager.getRoleDefinitionClosure(roleId, projectId.orElse(null));
-                roleDefinitionsClosure.addAll(defs);
+            var closure = assignmentClosureCalculator.getAssignmentClosure(projectId.orElse(null), roleIds);
+            var assignedRoles = roleIds.stream().map(RoleId::id).distinct().toList();
+            var current = timed("findAssignment",
+                    () -> getRoleAssignmentCollection().find(withUserAndTarget(subject, resource).getQueryObject()).first());
+            if(isUnchanged(current, assignedRoles, closure)) {
+                logger.debug("Assigned roles for {} on {} are unchanged.  Skipping write.", subject, resource);
+                return false;
             }
-
-            // Next we get the capabilities of the closure
-            var roleCapabilitiesClosure = roleDefinitionsClosure.stream()
-                    .map(RoleDefinition::roleCapabilities)
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toSet());
-
-            var assignedRoles = roleIds.stream().map(RoleId::id).toList();
-            var roleIdClosure = roleDefinitionsClosure.stream().map(RoleDefinition::roleId).map(RoleId::id).toList();
             var assignment = new RoleAssignment(userName,
                     projectId.map(ProjectId::id).orElse(null),
                     assignedRoles,
-                    roleIdClosure,
-                    List.copyOf(roleCapabilitiesClosure));
-            mongoTemplate.remove(withUserAndTarget(subject, resource), RoleAssignment.class);
+                    closure.roleClosure(),
+                    closure.capabilityClosure());
             var doc = objectMapper.convertValue(assignment, Document.class);
-            mongoTemplate.getCollection(COLLECTION_NAME).insertOne(doc);
-        } finally {
-            lock.writeLock().unlock();
+            timed("replaceAssignment", () -> mongoTemplate.getCollection(COLLECTION_NAME)
+                    .replaceOne(withUserAndTarget(subject, resource).getQueryObject(), doc, new ReplaceOptions().upsert(true)));
+            capabilityClosureCache.invalidate(userName, toProjectIdString(resource));
         }
-        resource.getProjectId()
-                .ifPresent(projectId -> {
-                    eventDispatcher.dispatchEvent(new PermissionsChangedEvent(EventId.generate(), projectId));
-                });
+        resource.getProjectId().ifPresent(permissionsChangedEventCoalescer::projectPermissionsChanged);
+        return true;
     }
 
+    /**
+     * Determines whether storing the specified roles and closures would leave the current assignment unchanged.
+     * Roles and closures are compared as sets, since their stored order is not significant.  Assigning no roles
+     * to a subject that has no assignment is also unchanged.
+     */
+    private static boolean isUnchanged(@Nullable RoleAssignment current,
+                                       @Nonnull List<String> assignedRoles,
+                                       @Nonnull AssignmentClosure closure) {
+        if(current == null) {
+            return assignedRoles.isEmpty();
+        }
+        return Set.copyOf(current.getAssignedRoles()).equals(Set.copyOf(assignedRoles))
+                && Set.copyOf(current.getRoleClosure()).equals(Set.copyOf(closure.roleClosure()))
+                && Set.copyOf(current.getCapabilityClosure()).equals(Set.copyOf(closure.capabilityClosure()));
+    }
+
+    /**
+     * Replaces the role assignments of a project with the specified assignments.  The current assignments are
+     * compared with the specified assignments, and only the differences are written, as one unordered bulk write.
+     * Assignments of subjects that are not in the specified assignments, including any assignment for any signed
+     * in user, are deleted.  Closures are computed once for each distinct set of assigned roles.
+     */
     @Override
     public void setProjectRoleAssignments(ProjectId projectId, ProjectRoleAssignments projectRoleAssignments) {
-        lock.writeLock().lock();
-        try {
-            // Remove existing assignments
-            var projectResource = ProjectResource.forProject(projectId);
-            getSubjectsWithAccessToResource(projectResource)
-                    .forEach(subject -> setAssignedRoles(subject, projectResource, Collections.emptySet()));
-
-            List<UserRoleAssignment> userRoleAssignments = projectRoleAssignments.userAssignments();
-            var byUserId = userRoleAssignments
-                    .stream()
-                    .collect(Collectors.groupingBy(UserRoleAssignment::userId));
-            byUserId.forEach((userId, assignments) -> {
-                var roleIds = assignments.stream().map(UserRoleAssignment::roleId).collect(Collectors.toSet());
-                setAssignedRoles(
-                        Subject.forUser(userId),
-                        projectResource,
-                        roleIds);
+        // The bulk write is a batch, so its event is dispatched as soon as it completes, rather than after the
+        // coalescing window
+        try(var batch = permissionsChangedEventCoalescer.beginBatch()) {
+            if(applyProjectRoleAssignments(projectId, projectRoleAssignments)) {
+                permissionsChangedEventCoalescer.projectPermissionsChanged(projectId);
+            }
+        }
+    }
 
+    private boolean applyProjectRoleAssignments(ProjectId projectId, ProjectRoleAssignments projectRoleAssignments) {
+        try(var ignored = locks.lockForWrite(projectId.value())) {
+            var desiredRoles = new LinkedHashMap<String, Set<RoleId>>();
+            for(var userRoleAssignment : projectRoleAssignments.userAssignments()) {
+                var userName = toUserName(Subject.forUser(userRoleAssignment.userId()));
+                desiredRoles.computeIfAbsent(userName, u -> new LinkedHashSet<>()).add(userRoleAssignment.roleId());
+            }
+
+            var writes = new ArrayList<WriteModel<Document>>();
+            var closures = new HashMap<Set<RoleId>, AssignmentClosure>();
+            var currentUserNames = new HashSet<String>();
+            var currentAssignments = timed("findProjectAssignments",
+                    () -> findRoleAssignments(query(where(PROJECT_ID).is(projectId.value()))).toList());
+            currentAssignments.forEach(current -> {
+                var userName = current.getUserName().orElse(null);
+                currentUserNames.add(userName);
+                var desired = desiredRoles.get(userName);
+                if(desired == null) {
+                    writes.add(new DeleteOneModel<>(new Document("_id", current.getObjectId().orElseThrow())));
+                    return;
+                }
+                var currentRoles = current.getAssignedRoles().stream().map(RoleId::new).collect(Collectors.toSet());
+                if(!desired.equals(currentRoles)) {
+                    writes.add(toUpsert(projectId, userName, desired, closures));
+                }
+            });
+            desiredRoles.forEach((userName, roleIds) -> {
+                if(!currentUserNames.contains(userName)) {
+                    writes.add(toUpsert(projectId, userName, roleIds, closures));
+                }
             });
-        } finally {
-            lock.writeLock().unlock();
+            if(writes.isEmpty()) {
+                return false;
+            }
+            timed("bulkWriteProjectAssignments",
+                    () -> mongoTemplate.getCollection(COLLECTION_NAME).bulkWrite(writes, new BulkWriteOptions().ordered(false)));
+            capabilityClosureCache.invalidateProject(projectId);
+            return true;
         }
-
     }
 
-    private List<Capability> getCapabilityClosure(@Nullable ProjectId projectId,
-                                                  @Nonnull Collection<RoleId> roleIds) {
-        lock.readLock().lock();
-        try {
-            return roleIds.stream()
-                    .flatMap(id -> projectRoleDefinitionsManager.getProjectRoleClosure(projectId, id).stream())
-                    .flatMap(r -> r.roleCapabilities().stream())
-                    .collect(toList());
-        } finally {
-            lock.readLock().unlock();
-        }
+    private ReplaceOneModel<Document> toUpsert(ProjectId projectId,
+                                               String userName,
+                                               Set<RoleId> roleIds,
+                                               Map<Set<RoleId>, AssignmentClosure> closures) {
+        var closure = closures.computeIfAbsent(roleIds,
+                r -> assignmentClosureCalculator.getAssignmentClosure(projectId, r));
+        var assignment = new RoleAssignment(userName,
+                projectId.value(),
+                roleIds.stream().map(RoleId::id).toList(),
+                closure.roleClosure(),
+                closure.capabilityClosure());
+        var doc = objectMapper.convertValue(assignment, Document.class);
+        var filter = new Document(USER_NAME, userName).append(PROJECT_ID, projectId.value());
+        return new ReplaceOneModel<>(filter, doc, new ReplaceOptions().upsert(true));
     }
 
     private Query withUserAndTarget(Subject subject, Resource resource) {
@@ -184,26 +260,36 @@ public class AccessManagerImpl implements AccessManager {
     @Nonnull
     @Override
     public Collection<RoleId> getAssignedRoles(@Nonnull Subject subject, @Nonnull Resource resource) {
-        lock.readLock().lock();
-        try {
+        try(var ignored = locks.lockForRead(toProjectIdString(resource))) {
             var query = withUserAndTarget(subject, resource);
-            var stream = find(query);
-            return stream
-                    .map(f -> objectMapper.convertValue(f, RoleAssignment.class))
+            return timed("getAssignedRoles", () -> findRoleAssignments(query)
                     .flatMap(ra -> ra.getAssignedRoles().stream())
                     .map(RoleId::new)
                     .distinct()
-                    .collect(toList());
-        } finally {
-            lock.readLock().unlock();
+                    .collect(toList()));
         }
     }
 
-    private Stream<Document> find(Query query) {
-        var found = mongoTemplate.getCollection(COLLECTION_NAME)
+    /**
+     * Runs and times a MongoDb operation.  Results that are streamed must be collected within the operation.
+     */
+    private <T> T timed(String operation, Supplier<T> body) {
+        return mongoOperationMetrics.record(COLLECTION_NAME, operation, body);
+    }
+
+    private Stream<RoleAssignment> findRoleAssignments(Query query) {
+        var found = getRoleAssignmentCollection()
                 .find(query.getQueryObject());
-        var stream = StreamSupport.stream(found.spliterator(), false);
-        return stream;
+        return StreamSupport.stream(found.spliterator(), false);
+    }
+
+    /**
+     * Gets the role assignments collection with documents decoded by the {@link RoleAssignmentCodec}
+     */
+    private MongoCollection<RoleAssignment> getRoleAssignmentCollection() {
+        return mongoTemplate.getCollection(COLLECTION_NAME)
+                .withCodecRegistry(RoleAssignmentCodec.CODEC_REGISTRY)
+                .withDocumentClass(RoleAssignment.class);
     }
 
     private Query withUserOrAnyUserAndTarget(Subject subject, Resource resource) {
@@ -222,53 +308,126 @@ public class AccessManagerImpl implements AccessManager {
     @Nonnull
     @Override
     public Collection<RoleId> getRoleClosure(@Nonnull Subject subject, @Nonnull Resource resource) {
-        lock.readLock().lock();
-        try {
+        try(var ignored = locks.lockForRead(toProjectIdString(resource))) {
             var query = withUserOrAnyUserAndTarget(subject, resource);
-            return find(query)
-                    .map(f -> objectMapper.convertValue(f, RoleAssignment.class))
+            return timed("getRoleClosure", () -> findRoleAssignments(query)
                     .flatMap(ra -> ra.getRoleClosure().stream())
                     .distinct()
                     .map(RoleId::new)
-                    .collect(toList());
-        } finally {
-            lock.readLock().unlock();
+                    .collect(toList()));
         }
     }
 
     @Nonnull
     @Override
     public Set<Capability> getCapabilityClosure(@Nonnull Subject subject, @Nonnull Resource resource) {
-        lock.readLock().lock();
-        try {
+        return capabilityDictionary.toCapabilities(getMergedCapabilityClosure(subject, resource));
+    }
+
+    /**
+     * Gets the union of the capability closures of the role assignments that apply to the specified subject and
+     * resource, including the assignment for any signed in user.  The union is served from the
+     * {@link RoleAssignmentIndex}, if it is in use and loaded, or from the {@link CapabilityClosureCache} if possible,
+     * in which case no query is made.  Otherwise, concurrent callers for the same subject and resource share one
+     * query.  Callers only share a query if nothing has been invalidated since it started, so a caller never sees a
+     * closure that was loaded before a write that it followed.
+     */
+    private CapabilityBitSet getMergedCapabilityClosure(@Nonnull Subject subject, @Nonnull Resource resource) {
+        var userName = toUserName(subject);
+        var projectId = toProjectIdString(resource);
+        if(roleAssignmentIndex.isReady()) {
+            return roleAssignmentIndex.getCapabilityClosure(userName, projectId, !subject.isGuest());
+        }
+        var cached = capabilityClosureCache.getIfPresent(userName, projectId);
+        if(cached != null) {
+            return cached;
+        }
+        // The generation must be read before the query is made
+        var generation = capabilityClosureCache.getGeneration();
+        var key = new ClosureKey(userName, projectId, subject.isGuest(), generation);
+        return closureLoads.execute(key, () -> loadMergedCapabilityClosure(subject, resource, generation));
+    }
+
+    private CapabilityBitSet loadMergedCapabilityClosure(@Nonnull Subject subject,
+                                                         @Nonnull Resource resource,
+                                                         long generation) {
+        var userName = toUserName(subject);
+        var projectId = toProjectIdString(resource);
+        // The read lock only orders the load with writes made by this instance.  Invalidations for writes made by
+        // other instances arrive without the lock, so the closure is put with the generation that was read before
+        // the query, and is discarded if anything was invalidated while it was being loaded.
+        try(var ignored = locks.lockForRead(projectId)) {
             var query = withUserOrAnyUserAndTarget(subject, resource);
-            return find(query)
-                    .map(f -> objectMapper.convertValue(f, RoleAssignment.class))
-                    .flatMap(ra -> ra.getCapabilityClosure().stream())
-                    .collect(Collectors.toCollection(LinkedHashSet::new));
-        } finally {
-            lock.readLock().unlock();
+            var result = timed("loadCapabilityClosure", () -> {
+                var capabilityClosure = CapabilityBitSet.builder();
+                findRoleAssignments(query)
+                        .forEach(ra -> capabilityClosure.addAll(capabilityDictionary.toBitSet(ra.getCapabilityClosure())));
+                return capabilityClosure.build();
+            });
+            capabilityClosureCache.putIfUnchanged(userName, projectId, result, generation);
+            return result;
         }
     }
 
     @Override
     public boolean hasPermission(@Nonnull Subject subject, @Nonnull Resource resource, @Nonnull Capability capability, @Nullable String jwt) {
-        logger.info("Checking permission for subject {} and resource {} with capability: {}", subject, resource, capability);
+        var authorized = checkPermission(subject, resource, capability, jwt);
+        decisionAuditLog.record(subject, resource, capability, authorized);
+        return authorized;
+    }
 
-        lock.readLock().lock();
-        try {
-            List<Capability> capabilities = new ArrayList<>(find(withUserOrAnyUserAndTarget(subject, resource))
-                    .map(d -> objectMapper.convertValue(d, RoleAssignment.class))
-                    .flatMap(roleAssignment -> roleAssignment.getCapabilityClosure().stream())
-                    .toList());
+    private boolean checkPermission(@Nonnull Subject subject, @Nonnull Resource resource, @Nonnull Capability capability, @Nullable String jwt) {
+        if(permissionCheckMode == PermissionCheckMode.QUERY
+                && !roleAssignmentIndex.isReady()
+                && capabilityClosureCache.getIfPresent(toUserName(subject), toProjectIdString(resource)) == null) {
+            return hasAssignedCapability(subject, resource, capability)
+                    || builtInRoleOracle.getCapabilitiesAssociatedToRoles(jwtRolesExtractor.safeExtractRoleIdsWithoutVerification(jwt))
+                                        .contains(capability);
+        }
 
-            List<RoleId> roleIds = jwtRolesExtractor.safeExtractRolesWithoutVerification(jwt).stream()
-                            .map(RoleId::new)
-                            .toList();
-            capabilities.addAll(builtInRoleOracle.getCapabilitiesAssociatedToRoles(roleIds));
-            return capabilities.contains(capability);
-        } finally {
-            lock.readLock().unlock();
+        var capabilityClosure = getMergedCapabilityClosure(subject, resource);
+        // Look up the id after the closure has been loaded, since loading registers any capabilities that
+        // have not been seen before
+        var capabilityId = capabilityDictionary.findId(capability);
+        if(capabilityClosure.contains(capabilityId)) {
+            return true;
+        }
+        var roleIds = jwtRolesExtractor.safeExtractRoleIdsWithoutVerification(jwt);
+        return builtInRoleOracle.getCapabilityBitSetAssociatedToRoles(roleIds).contains(capabilityId);
+    }
+
+    /**
+     * Determines whether a role assignment that applies to the specified subject and resource has the specified
+     * capability in its capability closure.  Only the existence of a matching document is tested.  The query
+     * projects just the _id, is limited to one document, and is served by the
+     * (projectId, userName, capabilityClosure.id) index.
+     */
+    private boolean hasAssignedCapability(@Nonnull Subject subject, @Nonnull Resource resource, @Nonnull Capability capability) {
+        try(var ignored = locks.lockForRead(toProjectIdString(resource))) {
+            var filter = withUserOrAnyUserAndTarget(subject, resource).getQueryObject();
+            filter.append(CAPABILITY_CLOSURE, new Document("$elemMatch", toCapabilityFilter(objectMapper, capability)));
+            var found = timed("findAssignedCapability", () -> mongoTemplate.getCollection(COLLECTION_NAME)
+                    .find(filter)
+                    .projection(new Document("_id", 1))
+                    .limit(1)
+                    .first());
+            return found != null;
+        }
+    }
+
+    /**
+     * Gets the filter that matches the specified capability in a capability closure.  Filters are built for each
+     * query, rather than cached, because capabilities come from requests and can be parameterized, so a cache keyed
+     * by capability would grow without bound.
+     */
+    static Document toCapabilityFilter(ObjectMapper objectMapper, Capability capability) {
+        try {
+            // Serialize as the Capability base type so that the type discriminator is included,
+            // exactly as it is in stored capability closures
+            var json = objectMapper.writerFor(Capability.class).writeValueAsString(capability);
+            return Document.parse(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -283,120 +442,92 @@ public class AccessManagerImpl implements AccessManager {
     }
 
     private Collection<Subject> getSubjectsWithAccessToResource(Resource resource, Optional<Capability> capability) {
-        lock.readLock().lock();
-        try {
-            var projectId = toProjectIdString(resource);
+        var projectId = toProjectIdString(resource);
+        if(roleAssignmentIndex.isReady()) {
+            return roleAssignmentIndex.getUserNames(projectId, capability).stream()
+                    .map(userName -> userName != null ? Subject.forUser(userName) : Subject.forAnySignedInUser())
+                    .collect(toList());
+        }
+        try(var ignored = locks.lockForRead(projectId)) {
             var query = query(where(PROJECT_ID).is(projectId));
-            return find(query)
-                    .map(f -> objectMapper.convertValue(f, RoleAssignment.class))
+            return timed("getSubjectsWithAccessToResource", () -> findRoleAssignments(query)
                     .filter(ra -> capability.map(cap -> ra.getCapabilityClosure().contains(cap)).orElse(true))
                     .map(ra -> {
                         var userName = ra.getUserName();
                         return userName.map(Subject::forUser).orElseGet(Subject::forAnySignedInUser);
                     })
-                    .collect(toList());
-        } finally {
-            lock.readLock().unlock();
+                    .collect(toList()));
         }
     }
 
     @Override
     public Collection<Resource> getResourcesAccessibleToSubject(Subject subject, Capability capability) {
-        lock.readLock().lock();
-        try {
-            var userName = toUserName(subject);
-            var query = query(where(USER_NAME).is(userName));
-            return find(query)
-                    .map(f -> objectMapper.convertValue(f, RoleAssignment.class))
-                    .filter(ra -> ra.getCapabilityClosure().contains(capability))
-                    .map(ra -> {
-                        var projectId = ra.getProjectId();
-                        if (projectId.isPresent()) {
-                            return new ProjectResource(new ProjectId(projectId.get()));
-                        } else {
-                            return ApplicationResource.get();
-                        }
-                    })
+        // This spans all projects, so no project lock is taken.  Each assignment is replaced atomically, so
+        // the result is consistent for each project, if not across projects.
+        var userName = toUserName(subject);
+        if(roleAssignmentIndex.isReady()) {
+            return roleAssignmentIndex.getProjectIds(userName, capability).stream()
+                    .map(projectId -> projectId != null ? new ProjectResource(new ProjectId(projectId)) : ApplicationResource.get())
                     .collect(toList());
-        } finally {
-            lock.readLock().unlock();
         }
+        var query = query(where(USER_NAME).is(userName));
+        return timed("getResourcesAccessibleToSubject", () -> findRoleAssignments(query)
+                .filter(ra -> ra.getCapabilityClosure().contains(capability))
+                .map(ra -> {
+                    var projectId = ra.getProjectId();
+                    if (projectId.isPresent()) {
+                        return new ProjectResource(new ProjectId(projectId.get()));
+                    } else {
+                        return ApplicationResource.get();
+                    }
+                })
+                .collect(toList()));
     }
 
     @Override
     public List<RoleAssignment> getRoleAssignments(ProjectId projectId) {
-        lock.readLock().lock();
-        try {
+        try(var ignored = locks.lockForRead(projectId.value())) {
             var query = query(where(PROJECT_ID).is(projectId.value()));
-            return find(query)
-                    .map(f -> objectMapper.convertValue(f, RoleAssignment.class))
-                    .toList();
-        } finally {
-            lock.readLock().unlock();
+            return timed("getRoleAssignments", () -> findRoleAssignments(query)
+                    .toList());
         }
     }
 
+    /**
+     * Gets the number of callers whose merged capability closure was loaded by a query that another caller started
+     */
+    public long getSharedClosureLoadCount() {
+        return closureLoads.getSharedCount();
+    }
+
     @Override
     public void rebuild() {
-        lock.writeLock().lock();
-        try {
-            logger.info("Rebuilding permissions" );
-            var queryObject = new Query().getQueryObject();
-            rebuildMatchingRoleAssignments(queryObject);
-        } finally {
-            lock.writeLock().unlock();
-        }
+        logger.info("Rebuilding permissions");
+        permissionRebuildEngine.rebuildAll();
     }
 
     @Override
     public void rebuild(ProjectId projectId) {
-        lock.writeLock().lock();
-        try {
-            logger.info("Rebuilding permissions for project: {}", projectId);
-            var criteria = where(PROJECT_ID).is(projectId.value());
-            var queryObject = new Query(criteria).getQueryObject();
-            rebuildMatchingRoleAssignments(queryObject);
-        } finally {
-            lock.writeLock().unlock();
+        logger.info("Rebuilding permissions for project: {}", projectId);
+        permissionRebuildEngine.rebuildProject(projectId);
+        permissionsChangedEventCoalescer.projectPermissionsChanged(projectId);
+    }
+
+    @Override
+    public void rebuild(ProjectId projectId, Collection<RoleId> roleIds) {
+        if(roleIds.isEmpty()) {
+            return;
         }
-        eventDispatcher.dispatchEvent(new PermissionsChangedEvent(EventId.generate(), projectId));
-    }
-
-    private void rebuildMatchingRoleAssignments(Document queryObject) {
-        var collection = mongoTemplate.getCollection(COLLECTION_NAME);
-        collection.find(queryObject)
-                .forEach(roleAssignmentDoc -> {
-                    final var roleAssignmentId = roleAssignmentDoc.get("_id");
-                    var roleAssignment = objectMapper.convertValue(roleAssignmentDoc, RoleAssignment.class);
-
-                    // For each role assignment we compute the role closure and then
-                    // compute the capability closure
-                    var projectId = roleAssignment.getProjectId().map(ProjectId::valueOf).orElse(null);
-                    var assignedRoles = roleAssignment.getAssignedRoles().stream()
-                            .map(RoleId::new)
-                            .collect(Collectors.toList());
-
-                    var capabilityClosure = new LinkedHashSet<Capability>();
-                    var roleClosure = new LinkedHashSet<RoleDefinition>();
-                    assignedRoles.forEach(assignedRole -> {
-                        var assignedRoleClosure = projectRoleDefinitionsManager.getProjectRoleClosure(projectId, assignedRole);
-                        roleClosure.addAll(assignedRoleClosure);
-                        var roleCapabilitiesClosure = getCapabilityClosure(projectId, assignedRoles);
-                        capabilityClosure.addAll(roleCapabilitiesClosure);
-                    });
-
-                    var sortedCapabilityClosure = capabilityClosure.stream()
-                            .sorted(Comparator.comparing(Capability::id)).toList();
-                    var updatedRoleAssignment = new RoleAssignment(roleAssignment.getUserName().orElse(null),
-                            roleAssignment.getProjectId().orElse(null),
-                            roleAssignment.getAssignedRoles(),
-                            roleClosure.stream().map(RoleDefinition::roleId).map(RoleId::id).toList(),
-                            sortedCapabilityClosure);
-
-                    var updatedRoleAssignmentDoc = objectMapper.convertValue(updatedRoleAssignment, Document.class);
-                    updatedRoleAssignmentDoc.put("_id", roleAssignmentId);
-                    collection.replaceOne(new Document("_id", roleAssignmentId), updatedRoleAssignmentDoc);
-                });
+        logger.info("Rebuilding permissions for project {} affected by changes to roles {}", projectId, roleIds);
+        permissionRebuildEngine.rebuildProject(projectId, roleIds);
+        permissionsChangedEventCoalescer.projectPermissionsChanged(projectId);
     }
 
+    /**
+     * Identifies a load of a merged capability closure.  The generation is the generation of the
+     * {@link CapabilityClosureCache} when the load was requested.
+     */
+    record ClosureKey(@Nullable String userName, @Nullable String projectId, boolean guest, long generation) {
+
+    }
 }
@@ -0,0 +1,26 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import edu.stanford.protege.webprotege.common.Event;
+import edu.stanford.protege.webprotege.common.EventId;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An event that is fired when the application level permissions change.  These are the permissions granted by role
+ * assignments that do not belong to any project, which {@link PermissionsChangedEvent} cannot describe.
+ */
+@JsonTypeName(ApplicationPermissionsChangedEvent.CHANNEL)
+public record ApplicationPermissionsChangedEvent(EventId eventId) implements Event {
+
+    public static final String CHANNEL = "webprotege.events.authorization.ApplicationPermissionsChanged";
+
+    @Override
+    public String getChannel() {
+        return CHANNEL;
+    }
+
+    public ApplicationPermissionsChangedEvent(EventId eventId) {
+        this.eventId = checkNotNull(eventId);
+    }
+}
@@ -0,0 +1,46 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.ipc.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Evicts cached application level capability closures when the application level permissions change.  Like
+ * {@link PermissionsChangedEventHandler}, this listens to the queue of this instance, which is set up by
+ * {@link PermissionsChangedEventsConfiguration}.
+ */
+public class ApplicationPermissionsChangedEventHandler implements EventHandler<ApplicationPermissionsChangedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApplicationPermissionsChangedEventHandler.class);
+
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    public ApplicationPermissionsChangedEventHandler(CapabilityClosureCache capabilityClosureCache) {
+        this.capabilityClosureCache = capabilityClosureCache;
+    }
+
+    @Nonnull
+    @Override
+    public String getChannelName() {
+        return ApplicationPermissionsChangedEvent.CHANNEL;
+    }
+
+    @Nonnull
+    @Override
+    public String getHandlerName() {
+        return ApplicationPermissionsChangedEventHandler.class.getName();
+    }
+
+    @Override
+    public Class<ApplicationPermissionsChangedEvent> getEventClass() {
+        return ApplicationPermissionsChangedEvent.class;
+    }
+
+    @Override
+    public void handleEvent(ApplicationPermissionsChangedEvent event) {
+        logger.debug("Application permissions changed.  Evicting cached application capability closures.");
+        capabilityClosureCache.invalidateProject((String) null);
+    }
+}
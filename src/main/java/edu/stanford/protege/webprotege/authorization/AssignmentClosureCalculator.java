@@ -0,0 +1,57 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Computes the role closure and capability closure that are stored in a {@link RoleAssignment} for a set of
+ * assigned roles.  Closures are sorted by id, so that the same assigned roles always produce the same
+ * stored closures.
+ */
+@Component
+public class AssignmentClosureCalculator {
+
+    private final RoleDefinitionsManager roleDefinitionsManager;
+
+    public AssignmentClosureCalculator(RoleDefinitionsManager roleDefinitionsManager) {
+        this.roleDefinitionsManager = roleDefinitionsManager;
+    }
+
+    /**
+     * Gets the closures for the specified assigned roles.
+     * @param projectId The project in which the roles are assigned.  May be null for application level
+     *                  assignments.
+     * @param assignedRoles The assigned roles.
+     */
+    @Nonnull
+    public AssignmentClosure getAssignmentClosure(@Nullable ProjectId projectId,
+                                                  @Nonnull Collection<RoleId> assignedRoles) {
+        var roleClosure = new LinkedHashSet<RoleDefinition>();
+        for(var roleId : assignedRoles) {
+            roleClosure.addAll(roleDefinitionsManager.getRoleDefinitionClosure(roleId, projectId));
+        }
+        var capabilityClosure = new LinkedHashSet<Capability>();
+        for(var roleDefinition : roleClosure) {
+            capabilityClosure.addAll(roleDefinition.roleCapabilities());
+        }
+        return new AssignmentClosure(
+                roleClosure.stream().map(RoleDefinition::roleId).map(RoleId::id).distinct().sorted().toList(),
+                capabilityClosure.stream().sorted(Comparator.comparing(Capability::id)).toList());
+    }
+
+    /**
+     * The closures of a set of assigned roles
+     * @param roleClosure The ids of the assigned roles and their ancestors
+     * @param capabilityClosure The capabilities of the roles in the role closure
+     */
+    public record AssignmentClosure(@Nonnull List<String> roleClosure, @Nonnull List<Capability> capabilityClosure) {
+
+    }
+}
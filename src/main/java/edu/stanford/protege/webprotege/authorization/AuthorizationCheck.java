@@ -0,0 +1,29 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A single (subject, resource, capability) check in a {@link GetAuthorizationStatusesRequest}.
+ */
+public record AuthorizationCheck(@JsonProperty("resource") Resource resource,
+                                 @JsonProperty("subject") Subject subject,
+                                 @JsonProperty("capability") Capability capability) {
+
+    public AuthorizationCheck(Resource resource, Subject subject, Capability capability) {
+        this.resource = checkNotNull(resource);
+        this.subject = checkNotNull(subject);
+        this.capability = checkNotNull(capability);
+    }
+
+    @JsonCreator
+    public static AuthorizationCheck get(@JsonProperty("resource") @Nonnull Resource resource,
+                                         @JsonProperty("subject") @Nonnull Subject subject,
+                                         @JsonProperty("capability") @Nonnull Capability capability) {
+        return new AuthorizationCheck(resource, subject, capability);
+    }
+}
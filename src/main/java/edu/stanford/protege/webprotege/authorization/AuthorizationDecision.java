@@ -0,0 +1,19 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The outcome of an {@link AuthorizationCheck}.
+ */
+public record AuthorizationDecision(@JsonProperty("resource") Resource resource,
+                                    @JsonProperty("subject") Subject subject,
+                                    @JsonProperty("capability") Capability capability,
+                                    @JsonProperty("authorizationStatus") AuthorizationStatus authorizationStatus) {
+
+    public static AuthorizationDecision get(AuthorizationCheck check, boolean authorized) {
+        return new AuthorizationDecision(check.resource(),
+                                         check.subject(),
+                                         check.capability(),
+                                         authorized ? AuthorizationStatus.AUTHORIZED : AuthorizationStatus.UNAUTHORIZED);
+    }
+}
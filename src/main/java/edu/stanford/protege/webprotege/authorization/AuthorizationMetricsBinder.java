@@ -0,0 +1,148 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the counters that the components of this service keep, as meters.  The counters are read when the
+ * meters are scraped, so they add nothing to the cost of a permission check.  Lock wait times are published as
+ * function timers named {@code webprotege.authorization.lock.wait}, tagged with the {@link RoleAssignmentLocks.LockMode}.
+ */
+@Component
+public class AuthorizationMetricsBinder implements MeterBinder {
+
+    private static final String PREFIX = "webprotege.authorization.";
+
+    private final RoleAssignmentLocks locks;
+
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    private final JwtRolesExtractor jwtRolesExtractor;
+
+    private final PermissionsChangedEventCoalescer permissionsChangedEventCoalescer;
+
+    private final PermissionRebuildEngine permissionRebuildEngine;
+
+    private final ChangeStreamCacheInvalidator changeStreamCacheInvalidator;
+
+    private final RoleAssignmentIndex roleAssignmentIndex;
+
+    private final AccessManagerImpl accessManager;
+
+    private final ReactiveAccessManagerImpl reactiveAccessManager;
+
+    private final VirtualThreadCommandHandlerPostProcessor virtualThreadCommandHandlerPostProcessor;
+
+    private final DecisionAuditLog decisionAuditLog;
+
+    public AuthorizationMetricsBinder(RoleAssignmentLocks locks,
+                                      CapabilityClosureCache capabilityClosureCache,
+                                      JwtRolesExtractor jwtRolesExtractor,
+                                      PermissionsChangedEventCoalescer permissionsChangedEventCoalescer,
+                                      PermissionRebuildEngine permissionRebuildEngine,
+                                      ChangeStreamCacheInvalidator changeStreamCacheInvalidator,
+                                      RoleAssignmentIndex roleAssignmentIndex,
+                                      AccessManagerImpl accessManager,
+                                      ReactiveAccessManagerImpl reactiveAccessManager,
+                                      VirtualThreadCommandHandlerPostProcessor virtualThreadCommandHandlerPostProcessor,
+                                      DecisionAuditLog decisionAuditLog) {
+        this.locks = locks;
+        this.capabilityClosureCache = capabilityClosureCache;
+        this.jwtRolesExtractor = jwtRolesExtractor;
+        this.permissionsChangedEventCoalescer = permissionsChangedEventCoalescer;
+        this.permissionRebuildEngine = permissionRebuildEngine;
+        this.changeStreamCacheInvalidator = changeStreamCacheInvalidator;
+        this.roleAssignmentIndex = roleAssignmentIndex;
+        this.accessManager = accessManager;
+        this.reactiveAccessManager = reactiveAccessManager;
+        this.virtualThreadCommandHandlerPostProcessor = virtualThreadCommandHandlerPostProcessor;
+        this.decisionAuditLog = decisionAuditLog;
+    }
+
+    @Override
+    public void bindTo(@Nonnull MeterRegistry registry) {
+        for(var mode : RoleAssignmentLocks.LockMode.values()) {
+            var stats = locks.getWaitStats(mode);
+            var modeTag = mode.name().toLowerCase(Locale.ROOT).replace('_', '-');
+            FunctionTimer.builder(PREFIX + "lock.wait",
+                                  stats,
+                                  RoleAssignmentLocks.WaitStats::getContendedCount,
+                                  s -> s.getWaitTime(TimeUnit.NANOSECONDS),
+                                  TimeUnit.NANOSECONDS)
+                         .description("The time spent waiting for role assignment locks that were not free")
+                         .tag("mode", modeTag)
+                         .register(registry);
+            FunctionCounter.builder(PREFIX + "lock.acquisitions", stats, RoleAssignmentLocks.WaitStats::getAcquisitionCount)
+                           .description("The number of role assignment locks acquired")
+                           .tag("mode", modeTag)
+                           .register(registry);
+            Gauge.builder(PREFIX + "lock.waiting", stats, RoleAssignmentLocks.WaitStats::getWaitingCount)
+                 .description("The number of threads waiting for role assignment locks")
+                 .tag("mode", modeTag)
+                 .register(registry);
+        }
+
+        counter(registry, "closure.cache.requests", "The number of capability closure cache lookups",
+                capabilityClosureCache, CapabilityClosureCache::getHitCount, "result", "hit");
+        counter(registry, "closure.cache.requests", "The number of capability closure cache lookups",
+                capabilityClosureCache, CapabilityClosureCache::getMissCount, "result", "miss");
+        counter(registry, "closure.loads.shared", "The number of callers served by a closure load that another started",
+                accessManager, AccessManagerImpl::getSharedClosureLoadCount, "api", "blocking");
+        counter(registry, "closure.loads.shared", "The number of callers served by a closure load that another started",
+                reactiveAccessManager, ReactiveAccessManagerImpl::getSharedClosureLoadCount, "api", "reactive");
+        counter(registry, "jwt.cache.requests", "The number of JWT role cache lookups",
+                jwtRolesExtractor, JwtRolesExtractor::getCacheHitCount, "result", "hit");
+        counter(registry, "jwt.cache.requests", "The number of JWT role cache lookups",
+                jwtRolesExtractor, JwtRolesExtractor::getCacheMissCount, "result", "miss");
+        counter(registry, "permissions.changed.events", "The number of permissions changed events",
+                permissionsChangedEventCoalescer, PermissionsChangedEventCoalescer::getMergedEventCount, "result", "merged");
+        counter(registry, "permissions.changed.events", "The number of permissions changed events",
+                permissionsChangedEventCoalescer, PermissionsChangedEventCoalescer::getSentEventCount, "result", "sent");
+        counter(registry, "rebuild.assignments", "The number of role assignments processed by rebuilds",
+                permissionRebuildEngine, PermissionRebuildEngine::getTotalRebuiltAssignments, "result", "rebuilt");
+        counter(registry, "rebuild.assignments", "The number of role assignments processed by rebuilds",
+                permissionRebuildEngine, PermissionRebuildEngine::getTotalRewrittenAssignments, "result", "rewritten");
+        counter(registry, "change.stream.changes", "The number of role assignment changes read from the change stream",
+                changeStreamCacheInvalidator, ChangeStreamCacheInvalidator::getChangeCount);
+        counter(registry, "change.stream.flushes", "The number of full cache flushes caused by the change stream",
+                changeStreamCacheInvalidator, ChangeStreamCacheInvalidator::getFlushCount);
+        counter(registry, "audit.decisions", "The number of authorization decisions in the audit log",
+                decisionAuditLog, DecisionAuditLog::getRecordedCount, "result", "recorded");
+        counter(registry, "audit.decisions", "The number of authorization decisions in the audit log",
+                decisionAuditLog, DecisionAuditLog::getDroppedCount, "result", "dropped");
+        counter(registry, "audit.decisions", "The number of authorization decisions in the audit log",
+                decisionAuditLog, DecisionAuditLog::getWrittenCount, "result", "written");
+        counter(registry, "audit.decisions", "The number of authorization decisions in the audit log",
+                decisionAuditLog, DecisionAuditLog::getFailedCount, "result", "failed");
+
+        Gauge.builder(PREFIX + "index.ready", roleAssignmentIndex, index -> index.isReady() ? 1 : 0)
+             .description("Whether checks are answered from the in-memory role assignment index")
+             .register(registry);
+        Gauge.builder(PREFIX + "commands.active",
+                      virtualThreadCommandHandlerPostProcessor,
+                      VirtualThreadCommandHandlerPostProcessor::getConcurrentCommandCount)
+             .description("The number of commands in progress on virtual threads")
+             .register(registry);
+    }
+
+    private static <T> void counter(MeterRegistry registry,
+                                    String name,
+                                    String description,
+                                    T obj,
+                                    ToDoubleFunction<T> count,
+                                    String... tags) {
+        FunctionCounter.builder(PREFIX + name, obj, count)
+                       .description(description)
+                       .tags(tags)
+                       .register(registry);
+    }
+}
@@ -17,5 +17,12 @@ public interface BuiltInRoleOracle {
 
     Collection<Capability> getCapabilitiesAssociatedToRoles(Collection<RoleId> roleIds);
 
+    /**
+     * Gets the union of the capability closures of the specified roles as a {@link CapabilityBitSet}.
+     * @param roleIds The role ids.  Ids that do not identify built-in roles are ignored.
+     */
+    @Nonnull
+    CapabilityBitSet getCapabilityBitSetAssociatedToRoles(@Nonnull Collection<RoleId> roleIds);
+
 }
 
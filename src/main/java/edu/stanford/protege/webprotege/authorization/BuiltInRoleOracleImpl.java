@@ -2,6 +2,7 @@ package edu.stanford.protege.webprotege.authorization;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.stream.Collectors.toList;
 
@@ -9,17 +10,40 @@ import static java.util.stream.Collectors.toList;
  * Matthew Horridge
  * Stanford Center for Biomedical Informatics Research
  * 5 Jan 2017
+ *
+ * The built-in role hierarchy is fixed, so the role closure and capability closure of every built-in role is
+ * computed once, at construction.  Unions of capability closures are memoized for each distinct set of roles
+ * (typically the roles carried by a JWT).
  */
 public class BuiltInRoleOracleImpl implements BuiltInRoleOracle {
 
-    private Map<RoleId, RoleDefinition> closure = new LinkedHashMap<>();
+    /**
+     * The maximum number of distinct role sets whose capability closures are memoized.  Tokens only
+     * carry a handful of role combinations, so this is a guard against unbounded growth rather than a
+     * working set size.
+     */
+    private static final int MAXIMUM_MEMOIZED_ROLE_SETS = 1024;
 
-    private BuiltInRoleOracleImpl() {
+    private final Map<RoleId, RoleDefinition> roles = new LinkedHashMap<>();
 
+    private final Map<RoleId, Set<RoleDefinition>> roleClosures = new HashMap<>();
+
+    private final Map<RoleId, CapabilityBitSet> capabilityClosures = new HashMap<>();
+
+    private final Map<Set<RoleId>, RoleSetCapabilities> memoizedRoleSetCapabilities = new ConcurrentHashMap<>();
+
+    private final CapabilityDictionary capabilityDictionary;
+
+    private BuiltInRoleOracleImpl(CapabilityDictionary capabilityDictionary) {
+        this.capabilityDictionary = capabilityDictionary;
     }
 
     public static BuiltInRoleOracleImpl get() {
-        BuiltInRoleOracleImpl impl = new BuiltInRoleOracleImpl();
+        return get(new CapabilityDictionary());
+    }
+
+    public static BuiltInRoleOracleImpl get(@Nonnull CapabilityDictionary capabilityDictionary) {
+        BuiltInRoleOracleImpl impl = new BuiltInRoleOracleImpl(capabilityDictionary);
         for(BuiltInRole builtInRole : BuiltInRole.values()) {
             List<RoleId> parentRoles = builtInRole.getParents().stream()
                                                   .map(BuiltInRole::getRoleId)
@@ -31,27 +55,64 @@ public class BuiltInRoleOracleImpl implements BuiltInRoleOracle {
                     Set.copyOf(capabilities)
                     , builtInRole.getLabel(), ""));
         }
+        impl.compileClosures();
         return impl;
     }
 
     @Nonnull
     @Override
     public Collection<RoleDefinition> getRoleClosure(@Nonnull RoleId roleId) {
-        Set<RoleDefinition> result = new HashSet<>();
-        add(roleId, result);
-        return result;
+        return roleClosures.getOrDefault(roleId, Set.of());
     }
 
     @Override
     public Collection<Capability> getCapabilitiesAssociatedToRoles(Collection<RoleId> roleIds) {
-        return roleIds.stream()
-                .flatMap(id -> getRoleClosure(id).stream())
-                .flatMap(r -> r.roleCapabilities().stream())
-                .collect(toList());
+        return getRoleSetCapabilities(roleIds).capabilities();
+    }
+
+    @Nonnull
+    @Override
+    public CapabilityBitSet getCapabilityBitSetAssociatedToRoles(@Nonnull Collection<RoleId> roleIds) {
+        return getRoleSetCapabilities(roleIds).capabilityBitSet();
+    }
+
+    private RoleSetCapabilities getRoleSetCapabilities(Collection<RoleId> roleIds) {
+        if(roleIds.isEmpty()) {
+            return RoleSetCapabilities.EMPTY;
+        }
+        // Sets are used directly as the key, so that looking up the roles of a memoized token does not allocate
+        var key = roleIds instanceof Set<RoleId> roleIdSet ? roleIdSet : Set.copyOf(roleIds);
+        var memoized = memoizedRoleSetCapabilities.get(key);
+        if(memoized != null) {
+            return memoized;
+        }
+        var capabilityBitSet = CapabilityBitSet.builder();
+        for(var roleId : key) {
+            capabilityBitSet.addAll(capabilityClosures.getOrDefault(roleId, CapabilityBitSet.empty()));
+        }
+        var bitSet = capabilityBitSet.build();
+        var roleSetCapabilities = new RoleSetCapabilities(Collections.unmodifiableSet(capabilityDictionary.toCapabilities(bitSet)),
+                                                          bitSet);
+        if(memoizedRoleSetCapabilities.size() < MAXIMUM_MEMOIZED_ROLE_SETS) {
+            memoizedRoleSetCapabilities.put(Set.copyOf(key), roleSetCapabilities);
+        }
+        return roleSetCapabilities;
+    }
+
+    private void compileClosures() {
+        for(var roleId : roles.keySet()) {
+            var closure = new HashSet<RoleDefinition>();
+            add(roleId, closure);
+            roleClosures.put(roleId, Set.copyOf(closure));
+            var capabilities = closure.stream()
+                    .flatMap(r -> r.roleCapabilities().stream())
+                    .toList();
+            capabilityClosures.put(roleId, capabilityDictionary.toBitSet(capabilities));
+        }
     }
 
     private void add(RoleId roleId, Set<RoleDefinition> result) {
-        RoleDefinition role = closure.get(roleId);
+        RoleDefinition role = roles.get(roleId);
         if(role == null) {
             return;
         }
@@ -61,6 +122,11 @@ public class BuiltInRoleOracleImpl implements BuiltInRoleOracle {
     }
 
     private void addRole(RoleDefinition role) {
-        closure.put(role.roleId(), role);
+        roles.put(role.roleId(), role);
+    }
+
+    private record RoleSetCapabilities(Set<Capability> capabilities, CapabilityBitSet capabilityBitSet) {
+
+        private static final RoleSetCapabilities EMPTY = new RoleSetCapabilities(Set.of(), CapabilityBitSet.empty());
     }
 }
@@ -0,0 +1,35 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.ipc.CommandHandler;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import edu.stanford.protege.webprotege.ipc.WebProtegeHandler;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+
+@WebProtegeHandler
+public class CancelPermissionsRebuildHandler implements CommandHandler<CancelPermissionsRebuildRequest, CancelPermissionsRebuildResponse> {
+
+    private final RebuildJobScheduler rebuildJobScheduler;
+
+    public CancelPermissionsRebuildHandler(RebuildJobScheduler rebuildJobScheduler) {
+        this.rebuildJobScheduler = rebuildJobScheduler;
+    }
+
+    @Nonnull
+    @Override
+    public String getChannelName() {
+        return CancelPermissionsRebuildRequest.CHANNEL;
+    }
+
+    @Override
+    public Class<CancelPermissionsRebuildRequest> getRequestClass() {
+        return CancelPermissionsRebuildRequest.class;
+    }
+
+    @Override
+    public Mono<CancelPermissionsRebuildResponse> handleRequest(CancelPermissionsRebuildRequest request, ExecutionContext executionContext) {
+        var job = rebuildJobScheduler.cancel(request.jobId());
+        return Mono.just(new CancelPermissionsRebuildResponse(job.orElse(null)));
+    }
+}
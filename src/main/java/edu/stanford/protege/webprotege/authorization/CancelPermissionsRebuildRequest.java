@@ -0,0 +1,25 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import edu.stanford.protege.webprotege.common.Request;
+
+/**
+ * Requests the cancellation of a permissions rebuild job.  A running job stops at its next checkpoint.
+ */
+@JsonTypeName(CancelPermissionsRebuildRequest.CHANNEL)
+public record CancelPermissionsRebuildRequest(@JsonProperty("jobId") String jobId) implements Request<CancelPermissionsRebuildResponse> {
+
+    public static final String CHANNEL = "webprotege.permissions.CancelPermissionsRebuild";
+
+    @JsonCreator
+    public static CancelPermissionsRebuildRequest get(@JsonProperty("jobId") String jobId) {
+        return new CancelPermissionsRebuildRequest(jobId);
+    }
+
+    @Override
+    public String getChannel() {
+        return CHANNEL;
+    }
+}
@@ -0,0 +1,153 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable set of capabilities held as a dense bitset.  Bit n is set if the capability whose
+ * {@link CapabilityDictionary} id is n is a member of the set.  Membership tests are a single word lookup and
+ * unions are a bitwise OR of the words.
+ */
+public final class CapabilityBitSet {
+
+    private static final CapabilityBitSet EMPTY = new CapabilityBitSet(new long[0]);
+
+    private final long[] words;
+
+    private CapabilityBitSet(long[] words) {
+        this.words = words;
+    }
+
+    @Nonnull
+    public static CapabilityBitSet empty() {
+        return EMPTY;
+    }
+
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Determines whether the capability with the specified id is a member of this set.
+     * @param capabilityId The capability id.  Negative ids, which denote unknown capabilities, are never members.
+     */
+    public boolean contains(int capabilityId) {
+        if(capabilityId < 0) {
+            return false;
+        }
+        var wordIndex = capabilityId >>> 6;
+        return wordIndex < words.length && (words[wordIndex] & (1L << capabilityId)) != 0;
+    }
+
+    /**
+     * Gets the union of this set and the specified set.
+     */
+    @Nonnull
+    public CapabilityBitSet union(@Nonnull CapabilityBitSet other) {
+        if(other.words.length == 0) {
+            return this;
+        }
+        if(words.length == 0) {
+            return other;
+        }
+        var longer = words.length >= other.words.length ? words : other.words;
+        var shorter = longer == words ? other.words : words;
+        var result = longer.clone();
+        for(int i = 0; i < shorter.length; i++) {
+            result[i] |= shorter[i];
+        }
+        return new CapabilityBitSet(result);
+    }
+
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    public int size() {
+        var size = 0;
+        for(var word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    /**
+     * Gets the ids of the members of this set in ascending order.
+     */
+    @Nonnull
+    public IntStream stream() {
+        return IntStream.range(0, words.length << 6).filter(this::contains);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj == this) {
+            return true;
+        }
+        if(!(obj instanceof CapabilityBitSet other)) {
+            return false;
+        }
+        return Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return "CapabilityBitSet" + Arrays.toString(stream().toArray());
+    }
+
+    public static final class Builder {
+
+        private long[] words = new long[2];
+
+        private Builder() {
+        }
+
+        @Nonnull
+        public Builder add(int capabilityId) {
+            if(capabilityId < 0) {
+                throw new IllegalArgumentException("Invalid capability id: " + capabilityId);
+            }
+            var wordIndex = capabilityId >>> 6;
+            ensureCapacity(wordIndex + 1);
+            words[wordIndex] |= 1L << capabilityId;
+            return this;
+        }
+
+        @Nonnull
+        public Builder addAll(@Nonnull CapabilityBitSet bitSet) {
+            ensureCapacity(bitSet.words.length);
+            for(int i = 0; i < bitSet.words.length; i++) {
+                words[i] |= bitSet.words[i];
+            }
+            return this;
+        }
+
+        private void ensureCapacity(int wordCount) {
+            if(words.length < wordCount) {
+                words = Arrays.copyOf(words, Math.max(wordCount, words.length * 2));
+            }
+        }
+
+        /**
+         * Builds the set.  Trailing empty words are trimmed so that equal sets have equal word arrays.
+         */
+        @Nonnull
+        public CapabilityBitSet build() {
+            var length = words.length;
+            while(length > 0 && words[length - 1] == 0) {
+                length--;
+            }
+            if(length == 0) {
+                return EMPTY;
+            }
+            return new CapabilityBitSet(Arrays.copyOf(words, length));
+        }
+    }
+}
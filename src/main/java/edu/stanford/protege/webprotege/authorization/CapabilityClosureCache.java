@@ -0,0 +1,168 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, in-process cache of merged capability closures.  Each entry holds the union of the capability
+ * closures of every {@link RoleAssignment} that applies to a (user name, project id) pair.  This is the
+ * assignment for the user itself plus the assignment for "any signed in user" (the null user name).  Closures
+ * are held as {@link CapabilityBitSet}s.
+ * <p>
+ * Entries are not refreshed.  They must be invalidated by whoever changes the underlying role assignments.  Entries
+ * also expire a fixed time after they are written.  This is a safety net that bounds how long an entry can outlive a
+ * lost invalidation, such as a {@link PermissionsChangedEvent} that was not delivered.
+ * Because the "any signed in user" assignment contributes to the entry of every user in a project, a change
+ * to that assignment must invalidate the whole project.
+ * <p>
+ * Invalidations are the signal that role assignments have changed, whether by a local write or by a write that is
+ * reported by the change stream.  {@link InvalidationListener}s receive the same signal.
+ * <p>
+ * Every invalidation advances a generation stamp.  Loaded closures must be put with {@link #putIfUnchanged}, which
+ * discards a closure if anything was invalidated while it was being loaded.  Holding the project's read lock while
+ * loading is not enough, since invalidations for writes made by other instances, which arrive as events or from the
+ * change stream, do not take the project's lock.
+ */
+@Component
+public class CapabilityClosureCache {
+
+    private final Cache<Key, CapabilityBitSet> cache;
+
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public CapabilityClosureCache(@Value("${webprotege.authorization.closure-cache.maximum-size:10000}") long maximumSize,
+                                  @Value("${webprotege.authorization.closure-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets the cached capability closure for the specified user name and project id.
+     * @param userName The user name.  May be null, to denote the closure for any signed in user.
+     * @param projectId The project id.  May be null, to denote the application.
+     * @return The cached closure, or null if there is no entry for the specified pair.
+     */
+    @Nullable
+    public CapabilityBitSet getIfPresent(@Nullable String userName, @Nullable String projectId) {
+        return cache.getIfPresent(new Key(userName, projectId));
+    }
+
+    public void put(@Nullable String userName, @Nullable String projectId, @Nonnull CapabilityBitSet capabilityClosure) {
+        cache.put(new Key(userName, projectId), Objects.requireNonNull(capabilityClosure));
+    }
+
+    /**
+     * Gets the current generation stamp.  This should be read before the role assignments for a closure are loaded.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Puts the specified closure, unless there has been an invalidation since the specified generation stamp was
+     * read, in which case the closure may be stale and is discarded.
+     * @param generation The generation stamp that was read before the closure was loaded.
+     */
+    public void putIfUnchanged(@Nullable String userName,
+                               @Nullable String projectId,
+                               @Nonnull CapabilityBitSet capabilityClosure,
+                               long generation) {
+        var key = new Key(userName, projectId);
+        cache.put(key, Objects.requireNonNull(capabilityClosure));
+        // Invalidations advance the generation before removing entries, so an invalidation that misses this entry
+        // is always seen here
+        if(this.generation.get() != generation) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Invalidates the entry for the specified user name and project id.  If the user name is null then
+     * all entries for the project are invalidated.
+     */
+    public void invalidate(@Nullable String userName, @Nullable String projectId) {
+        if(userName == null) {
+            invalidateProject(projectId);
+        }
+        else {
+            generation.incrementAndGet();
+            cache.invalidate(new Key(userName, projectId));
+            listeners.forEach(listener -> listener.entryInvalidated(userName, projectId));
+        }
+    }
+
+    public void invalidateProject(@Nonnull ProjectId projectId) {
+        invalidateProject(projectId.value());
+    }
+
+    /**
+     * Invalidates all entries for the specified project.
+     * @param projectId The project id.  May be null, to denote the application.
+     */
+    public void invalidateProject(@Nullable String projectId) {
+        generation.incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.projectId(), projectId));
+        listeners.forEach(listener -> listener.projectInvalidated(projectId));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+        listeners.forEach(InvalidationListener::allInvalidated);
+    }
+
+    /**
+     * Adds a listener that is called, on the invalidating thread, after entries have been invalidated
+     */
+    public void addInvalidationListener(@Nonnull InvalidationListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Receives the invalidations of a {@link CapabilityClosureCache}
+     */
+    public interface InvalidationListener {
+
+        /**
+         * Called when the entry for a specific user name and project id has been invalidated
+         * @param projectId The project id.  May be null, to denote the application.
+         */
+        void entryInvalidated(@Nonnull String userName, @Nullable String projectId);
+
+        /**
+         * Called when all entries for a project have been invalidated
+         * @param projectId The project id.  May be null, to denote the application.
+         */
+        void projectInvalidated(@Nullable String projectId);
+
+        void allInvalidated();
+    }
+
+    private record Key(@Nullable String userName, @Nullable String projectId) {
+
+    }
+}
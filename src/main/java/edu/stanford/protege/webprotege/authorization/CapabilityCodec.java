@@ -0,0 +1,140 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.BsonTypeCodecMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A MongoDb {@link Codec} for {@link Capability} values.  Capabilities are stored in the same form that Jackson
+ * produces: a document with an "@type" field, an "id" field and, for parameterized capabilities, any number
+ * of other fields.  {@link BasicCapability}s, which make up almost all stored capabilities, are decoded
+ * directly.  Any other type is decoded as a {@link GenericParameterizedCapability}, in the same way as
+ * Jackson does for types that it does not recognise.
+ */
+public class CapabilityCodec implements Codec<Capability> {
+
+    public static final String TYPE = "@type";
+
+    public static final String ID = "id";
+
+    private final CodecRegistry valueCodecRegistry = MongoClientSettings.getDefaultCodecRegistry();
+
+    private final BsonTypeCodecMap valueCodecs = new BsonTypeCodecMap(new BsonTypeClassMap(), valueCodecRegistry);
+
+    @Override
+    public Capability decode(BsonReader reader, DecoderContext decoderContext) {
+        String type = null;
+        String id = null;
+        Map<String, Object> otherFields = null;
+        reader.readStartDocument();
+        while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            var name = reader.readName();
+            switch(name) {
+                case TYPE -> type = readNullableString(reader);
+                case ID -> id = readNullableString(reader);
+                default -> {
+                    if(otherFields == null) {
+                        otherFields = new LinkedHashMap<>();
+                    }
+                    otherFields.put(name, readValue(reader, decoderContext));
+                }
+            }
+        }
+        reader.readEndDocument();
+        if(BasicCapability.BASIC_CAPABILITY.equals(type)) {
+            return new BasicCapability(id);
+        }
+        return new GenericParameterizedCapability(type, id, otherFields != null ? otherFields : Map.of());
+    }
+
+    @Nullable
+    static String readNullableString(BsonReader reader) {
+        if(reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+        return reader.readString();
+    }
+
+    /**
+     * Reads the value of a parameter of a parameterized capability.  Embedded documents and arrays are read as
+     * maps and lists, which is what Jackson produces when it deserializes untyped values.
+     */
+    @Nullable
+    private Object readValue(BsonReader reader, DecoderContext decoderContext) {
+        switch(reader.getCurrentBsonType()) {
+            case NULL -> {
+                reader.readNull();
+                return null;
+            }
+            case DOCUMENT -> {
+                var map = new LinkedHashMap<String, Object>();
+                reader.readStartDocument();
+                while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    var name = reader.readName();
+                    map.put(name, readValue(reader, decoderContext));
+                }
+                reader.readEndDocument();
+                return map;
+            }
+            case ARRAY -> {
+                var list = new ArrayList<>();
+                reader.readStartArray();
+                while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    list.add(readValue(reader, decoderContext));
+                }
+                reader.readEndArray();
+                return list;
+            }
+            default -> {
+                return valueCodecs.get(reader.getCurrentBsonType()).decode(reader, decoderContext);
+            }
+        }
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Capability value, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if(value instanceof BasicCapability) {
+            writer.writeString(TYPE, BasicCapability.BASIC_CAPABILITY);
+            writer.writeString(ID, value.id());
+        }
+        else {
+            var genericCapability = value.asGenericCapability();
+            writer.writeString(TYPE, genericCapability.type());
+            writer.writeString(ID, genericCapability.id());
+            genericCapability.otherFields().forEach((name, fieldValue) -> {
+                writer.writeName(name);
+                writeValue(writer, fieldValue, encoderContext);
+            });
+        }
+        writer.writeEndDocument();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(BsonWriter writer, @Nullable Object value, EncoderContext encoderContext) {
+        if(value == null) {
+            writer.writeNull();
+            return;
+        }
+        var codec = (Codec<Object>) valueCodecRegistry.get(value.getClass());
+        encoderContext.encodeWithChildContext(codec, writer, value);
+    }
+
+    @Override
+    public Class<Capability> getEncoderClass() {
+        return Capability.class;
+    }
+}
@@ -0,0 +1,87 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns a dense integer id to each capability so that sets of capabilities can be held as
+ * {@link CapabilityBitSet}s.  All {@link BuiltInCapability}s are registered up front, so they have the lowest
+ * ids.  Other capabilities, such as the custom {@link BasicCapability}s used in project role definitions, are
+ * registered the first time they are seen.  Ids are never reused or reassigned.
+ */
+@Component
+public class CapabilityDictionary {
+
+    private final Map<Capability, Integer> ids = new ConcurrentHashMap<>();
+
+    private volatile Capability[] capabilities = new Capability[0];
+
+    public CapabilityDictionary() {
+        for(var builtInCapability : BuiltInCapability.values()) {
+            getId(builtInCapability.getCapability());
+        }
+    }
+
+    /**
+     * Gets the id of the specified capability, registering the capability if it has not been seen before.
+     */
+    public int getId(@Nonnull Capability capability) {
+        var id = ids.get(capability);
+        if(id != null) {
+            return id;
+        }
+        return register(capability);
+    }
+
+    /**
+     * Gets the id of the specified capability without registering it.
+     * @return The id, or -1 if the capability has not been registered.  An unregistered capability
+     * is not a member of any {@link CapabilityBitSet}.
+     */
+    public int findId(@Nonnull Capability capability) {
+        var id = ids.get(capability);
+        return id != null ? id : -1;
+    }
+
+    @Nonnull
+    public Capability getCapability(int id) {
+        return capabilities[id];
+    }
+
+    @Nonnull
+    public CapabilityBitSet toBitSet(@Nonnull Collection<? extends Capability> capabilities) {
+        var builder = CapabilityBitSet.builder();
+        for(var capability : capabilities) {
+            builder.add(getId(capability));
+        }
+        return builder.build();
+    }
+
+    @Nonnull
+    public Set<Capability> toCapabilities(@Nonnull CapabilityBitSet bitSet) {
+        var result = new LinkedHashSet<Capability>(bitSet.size());
+        bitSet.stream().forEach(id -> result.add(getCapability(id)));
+        return result;
+    }
+
+    public int size() {
+        return capabilities.length;
+    }
+
+    private synchronized int register(Capability capability) {
+        var existingId = ids.get(capability);
+        if(existingId != null) {
+            return existingId;
+        }
+        var id = capabilities.length;
+        var grown = Arrays.copyOf(capabilities, id + 1);
+        grown[id] = capability;
+        // Publish the capability before its id so that anyone holding the id can resolve it
+        capabilities = grown;
+        ids.put(capability, id);
+        return id;
+    }
+}
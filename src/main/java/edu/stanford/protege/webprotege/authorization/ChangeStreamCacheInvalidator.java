@@ -0,0 +1,383 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.PROJECT_ID;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.USER_NAME;
+
+/**
+ * Listens to a MongoDb change stream on the role assignments and project role definitions, and evicts the entries of
+ * the {@link CapabilityClosureCache} and the project role graphs that a change affects.  Other instances of this
+ * service write to the same collections, so this keeps the caches of every instance up to date within the latency of
+ * the change stream.  Change streams require MongoDb to run as a replica set, so they are disabled unless
+ * {@code webprotege.authorization.change-streams.enabled} is set.
+ * <p>
+ * Evictions are made without the project's lock.  A closure that was being loaded when its entry was evicted is not
+ * cached, since closures are put with {@link CapabilityClosureCache#putIfUnchanged}.
+ * <p>
+ * A change to a role assignment evicts the (user name, project id) entry of the assignment.  The user name and project
+ * id of a deleted assignment are only known if MongoDb records pre-images for the collection.  If they are not known
+ * then the whole closure cache is flushed.  Dropping or renaming either collection, as a shadow rebuild does, also
+ * flushes all caches.
+ * <p>
+ * The resume token of the stream is stored, per node, so that the stream resumes where it left off after a restart
+ * or a lost connection.  If the token is no longer in the oplog then changes may have been missed, so all caches are
+ * flushed and the stream is restarted from the current time.
+ */
+@Component
+public class ChangeStreamCacheInvalidator {
+
+    static final String RESUME_TOKENS_COLLECTION_NAME = "ChangeStreamResumeTokens";
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeStreamCacheInvalidator.class);
+
+    private static final Set<String> WATCHED_COLLECTIONS = Set.of(AccessManagerImpl.COLLECTION_NAME,
+                                                                  ProjectRoleDefinitionsRepository.COLLECTION_NAME);
+
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private static final int INVALID_RESUME_TOKEN = 260;
+
+    private static final int CHANGE_STREAMS_NOT_SUPPORTED = 40573;
+
+    private static final String RESUMABLE_ERROR_LABEL = "ResumableChangeStreamError";
+
+    private static final long RESUME_TOKEN_SAVE_INTERVAL_MILLIS = 1000;
+
+    private static final Duration MAX_AWAIT_TIME = Duration.ofMillis(500);
+
+    private static final Duration INITIAL_RETRY_DELAY = Duration.ofSeconds(1);
+
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    private final ProjectRoleDefinitionsManager projectRoleDefinitionsManager;
+
+    private final boolean enabled;
+
+    private final boolean preImages;
+
+    private final String nodeId;
+
+    private final LongAdder changeCount = new LongAdder();
+
+    private final LongAdder flushCount = new LongAdder();
+
+    private volatile boolean running = false;
+
+    /**
+     * Whether MongoDb accepted the request to record pre-images.  Servers that do not support pre-images reject
+     * change streams that ask for them.
+     */
+    private volatile boolean preImagesEnabled = false;
+
+    /**
+     * The resume token of the last change that was processed.  Only accessed by the listener thread.
+     */
+    @Nullable
+    private BsonDocument resumeToken;
+
+    @Nullable
+    private volatile Thread listenerThread;
+
+    public ChangeStreamCacheInvalidator(MongoTemplate mongoTemplate,
+                                        CapabilityClosureCache capabilityClosureCache,
+                                        ProjectRoleDefinitionsManager projectRoleDefinitionsManager,
+                                        @Value("${webprotege.authorization.change-streams.enabled:false}") boolean enabled,
+                                        @Value("${webprotege.authorization.change-streams.pre-images:true}") boolean preImages,
+                                        @Value("${webprotege.authorization.change-streams.node-id:}") String nodeId) {
+        this.mongoTemplate = mongoTemplate;
+        this.capabilityClosureCache = capabilityClosureCache;
+        this.projectRoleDefinitionsManager = projectRoleDefinitionsManager;
+        this.enabled = enabled;
+        this.preImages = preImages;
+        this.nodeId = nodeId.isBlank() ? getHostName() : nodeId;
+    }
+
+    @PostConstruct
+    public void start() {
+        if(!enabled) {
+            logger.info("Change stream cache invalidation is disabled");
+            return;
+        }
+        running = true;
+        var thread = new Thread(this::listen, "role-assignment-change-stream");
+        thread.setDaemon(true);
+        listenerThread = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        var thread = listenerThread;
+        if(thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(MAX_AWAIT_TIME.toMillis() * 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of changes that have been received
+     */
+    public long getChangeCount() {
+        return changeCount.sum();
+    }
+
+    /**
+     * Gets the number of times that all caches have been flushed because a change could not be attributed to
+     * particular entries, or because changes may have been missed
+     */
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    private void listen() {
+        enablePreImages();
+        resumeToken = loadResumeToken();
+        var retryDelay = INITIAL_RETRY_DELAY;
+        while(running) {
+            var watchStartMillis = System.currentTimeMillis();
+            try {
+                watch();
+            } catch (MongoServerException e) {
+                if(System.currentTimeMillis() - watchStartMillis > MAX_RETRY_DELAY.toMillis()) {
+                    // The stream had been running, so this is a new failure rather than a repeated one
+                    retryDelay = INITIAL_RETRY_DELAY;
+                }
+                if(e.getCode() == CHANGE_STREAMS_NOT_SUPPORTED) {
+                    logger.error("Change streams are enabled but MongoDb does not support them.  MongoDb must run as a replica set.  Caches will only be invalidated by events.  {}", e.getMessage());
+                    return;
+                }
+                if(isUnresumable(e, resumeToken)) {
+                    logger.warn("Cannot resume the change stream.  Changes may have been missed, so all caches will be flushed.  {}", e.getMessage());
+                    flushAll();
+                    resumeToken = null;
+                    saveResumeToken(null);
+                    continue;
+                }
+                retryDelay = waitToRetry(e, retryDelay);
+            } catch (MongoException | IllegalStateException e) {
+                if(!running) {
+                    return;
+                }
+                if(System.currentTimeMillis() - watchStartMillis > MAX_RETRY_DELAY.toMillis()) {
+                    retryDelay = INITIAL_RETRY_DELAY;
+                }
+                retryDelay = waitToRetry(e, retryDelay);
+            }
+        }
+    }
+
+    /**
+     * Watches the change stream, from the current resume token, until this listener is stopped
+     */
+    private void watch() {
+        var pipeline = List.of(Aggregates.match(Filters.or(Filters.in("ns.coll", WATCHED_COLLECTIONS),
+                                                           Filters.in("to.coll", WATCHED_COLLECTIONS))));
+        var stream = mongoTemplate.getDb().watch(pipeline)
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .fullDocumentBeforeChange(preImagesEnabled ? FullDocumentBeforeChange.WHEN_AVAILABLE : FullDocumentBeforeChange.OFF)
+                .maxAwaitTime(MAX_AWAIT_TIME.toMillis(), TimeUnit.MILLISECONDS);
+        if(resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        try(var cursor = stream.cursor()) {
+            logger.info("Watching {} for changes{}", WATCHED_COLLECTIONS, resumeToken != null ? " from the stored resume token" : "");
+            var lastSaveMillis = System.currentTimeMillis();
+            while(running) {
+                var change = cursor.tryNext();
+                if(change != null) {
+                    handleChange(change);
+                }
+                var token = cursor.getResumeToken();
+                if(token != null) {
+                    resumeToken = token;
+                }
+                var now = System.currentTimeMillis();
+                if(now - lastSaveMillis >= RESUME_TOKEN_SAVE_INTERVAL_MILLIS) {
+                    saveResumeToken(resumeToken);
+                    lastSaveMillis = now;
+                }
+            }
+            saveResumeToken(resumeToken);
+        }
+    }
+
+    void handleChange(@Nonnull ChangeStreamDocument<Document> change) {
+        changeCount.increment();
+        switch(change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE, DELETE -> handleDocumentChange(change);
+            default -> {
+                // Drops and renames, for example by a shadow rebuild, replace the whole collection
+                logger.info("{} of {}.  Flushing all caches.", change.getOperationType(), change.getNamespace());
+                flushAll();
+                enablePreImages();
+            }
+        }
+    }
+
+    private void handleDocumentChange(ChangeStreamDocument<Document> change) {
+        var namespace = change.getNamespace();
+        if(namespace == null) {
+            return;
+        }
+        var collectionName = namespace.getCollectionName();
+        if(AccessManagerImpl.COLLECTION_NAME.equals(collectionName)) {
+            var evicted = evictRoleAssignment(change.getFullDocument());
+            evicted |= evictRoleAssignment(change.getFullDocumentBeforeChange());
+            if(!evicted) {
+                // A deleted assignment without a pre-image.  Its user and project are unknown.
+                flushCount.increment();
+                capabilityClosureCache.invalidateAll();
+            }
+        }
+        else if(ProjectRoleDefinitionsRepository.COLLECTION_NAME.equals(collectionName)) {
+            var documentKey = change.getDocumentKey();
+            var id = documentKey != null ? documentKey.get("_id") : null;
+            if(id != null && id.isString()) {
+                projectRoleDefinitionsManager.invalidateProjectRoleGraph(ProjectId.valueOf(id.asString().getValue()));
+            }
+            else {
+                flushCount.increment();
+                projectRoleDefinitionsManager.invalidateAllProjectRoleGraphs();
+            }
+        }
+    }
+
+    private boolean evictRoleAssignment(@Nullable Document roleAssignment) {
+        if(roleAssignment == null) {
+            return false;
+        }
+        capabilityClosureCache.invalidate(roleAssignment.getString(USER_NAME), roleAssignment.getString(PROJECT_ID));
+        return true;
+    }
+
+    private void flushAll() {
+        flushCount.increment();
+        capabilityClosureCache.invalidateAll();
+        projectRoleDefinitionsManager.invalidateAllProjectRoleGraphs();
+    }
+
+    /**
+     * Asks MongoDb to record pre-images for the role assignments, so that deletes can be attributed to a (user name,
+     * project id) pair.  Pre-images need MongoDb 6.0 or later.
+     */
+    private void enablePreImages() {
+        if(!preImages) {
+            return;
+        }
+        try {
+            if(!mongoTemplate.collectionExists(AccessManagerImpl.COLLECTION_NAME)) {
+                return;
+            }
+            mongoTemplate.getDb().runCommand(new Document("collMod", AccessManagerImpl.COLLECTION_NAME)
+                                                     .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+            preImagesEnabled = true;
+        } catch (MongoException e) {
+            preImagesEnabled = false;
+            logger.info("Pre-images are not available for {}.  Deleted assignments will flush the closure cache.  {}",
+                        AccessManagerImpl.COLLECTION_NAME, e.getMessage());
+        }
+    }
+
+    @Nullable
+    private BsonDocument loadResumeToken() {
+        try {
+            var document = mongoTemplate.getCollection(RESUME_TOKENS_COLLECTION_NAME)
+                    .withDocumentClass(BsonDocument.class)
+                    .find(new Document("_id", nodeId))
+                    .first();
+            if(document == null || !document.isDocument("token")) {
+                return null;
+            }
+            return document.getDocument("token");
+        } catch (MongoException e) {
+            logger.warn("Could not load the change stream resume token for node {}", nodeId, e);
+            return null;
+        }
+    }
+
+    private void saveResumeToken(@Nullable BsonDocument resumeToken) {
+        try {
+            var document = new Document("_id", nodeId)
+                    .append("token", resumeToken)
+                    .append("updatedAt", new Date());
+            mongoTemplate.getCollection(RESUME_TOKENS_COLLECTION_NAME)
+                    .replaceOne(new Document("_id", nodeId), document, new ReplaceOptions().upsert(true));
+        } catch (MongoException e) {
+            logger.warn("Could not save the change stream resume token for node {}", nodeId, e);
+        }
+    }
+
+    /**
+     * Determines whether a failure means that the stream cannot be resumed from the specified token.  Besides lost
+     * history, a server error that is not labelled as resumable, for a stream that was opened from a token, is taken to
+     * be a rejection of the token.
+     */
+    private static boolean isUnresumable(MongoServerException e, @Nullable BsonDocument resumeToken) {
+        if(e.getCode() == CHANGE_STREAM_HISTORY_LOST || e.getCode() == INVALID_RESUME_TOKEN) {
+            return true;
+        }
+        return resumeToken != null && !e.hasErrorLabel(RESUMABLE_ERROR_LABEL);
+    }
+
+    private Duration waitToRetry(Exception e, Duration retryDelay) {
+        logger.warn("Change stream failed.  Retrying in {} ms.  {}", retryDelay.toMillis(), e.getMessage());
+        try {
+            Thread.sleep(retryDelay.toMillis());
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        var nextDelay = retryDelay.multipliedBy(2);
+        return nextDelay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : nextDelay;
+    }
+
+    static String getHostName() {
+        var hostName = System.getenv("HOSTNAME");
+        if(hostName != null && !hostName.isBlank()) {
+            return hostName;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.ipc.CommandHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the commands handled by every {@link CommandHandler} bean.  Each command is timed from the subscription to the
+ * response publisher to its termination, so the time includes any time spent waiting for a virtual thread or for a
+ * lock.  Commands are recorded by a timer named {@value #TIMER_NAME}, tagged with the channel, the outcome
+ * (success, error or cancelled) and the exception class, which publishes the p50, p99 and p999 latencies.
+ * <p>
+ * The meter registry is looked up when a handler is post processed, rather than injected, so that the registry is not
+ * created before the post processors that configure it.
+ */
+@Component
+public class CommandHandlerMetricsPostProcessor implements BeanPostProcessor {
+
+    static final String TIMER_NAME = "webprotege.authorization.commands";
+
+    private static final String HANDLE_REQUEST_METHOD_NAME = "handleRequest";
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    public CommandHandlerMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@Nonnull Object bean, @Nonnull String beanName) {
+        if(!(bean instanceof CommandHandler<?, ?> handler)) {
+            return bean;
+        }
+        var meterRegistry = meterRegistryProvider.getIfAvailable();
+        if(meterRegistry == null) {
+            return bean;
+        }
+        return CommandHandlerProxies.addAdvice(bean,
+                                               new HandleRequestInterceptor(meterRegistry, handler.getChannelName()),
+                                               true);
+    }
+
+    private static class HandleRequestInterceptor implements MethodInterceptor {
+
+        private final MeterRegistry meterRegistry;
+
+        private final String channel;
+
+        private HandleRequestInterceptor(MeterRegistry meterRegistry, String channel) {
+            this.meterRegistry = meterRegistry;
+            this.channel = channel;
+        }
+
+        @Nullable
+        @Override
+        public Object invoke(@Nonnull MethodInvocation invocation) {
+            if(!invocation.getMethod().getName().equals(HANDLE_REQUEST_METHOD_NAME)) {
+                return proceed(invocation);
+            }
+            return Mono.defer(() -> {
+                var start = System.nanoTime();
+                return handleRequest(invocation)
+                        .doOnSuccess(response -> record(start, "success", NO_EXCEPTION))
+                        .doOnError(e -> record(start, "error", e.getClass().getSimpleName()))
+                        .doOnCancel(() -> record(start, "cancelled", NO_EXCEPTION));
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private Mono<Object> handleRequest(MethodInvocation invocation) {
+            try {
+                return (Mono<Object>) invocation.proceed();
+            } catch (Throwable t) {
+                return Mono.error(t);
+            }
+        }
+
+        private void record(long start, String outcome, String exception) {
+            Timer.builder(TIMER_NAME)
+                 .description("The time taken to handle commands")
+                 .tag("channel", channel)
+                 .tag("outcome", outcome)
+                 .tag("exception", exception)
+                 .publishPercentiles(0.5, 0.99, 0.999)
+                 .register(meterRegistry)
+                 .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        @Nullable
+        private static Object proceed(MethodInvocation invocation) {
+            try {
+                return invocation.proceed();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+}
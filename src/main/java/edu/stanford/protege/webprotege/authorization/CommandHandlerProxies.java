@@ -0,0 +1,42 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.aopalliance.aop.Advice;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Adds advice to {@link edu.stanford.protege.webprotege.ipc.CommandHandler} beans.  A handler that has already been
+ * proxied by another post processor has the advice added to its existing proxy, rather than being proxied again.
+ */
+final class CommandHandlerProxies {
+
+    private CommandHandlerProxies() {
+    }
+
+    /**
+     * Adds the specified advice to the handler.
+     * @param handler The handler bean, which may already be a proxy.
+     * @param advice The advice.
+     * @param outermost true if the advice should run before any advice that the handler already has, or false if it
+     *                  should run after it.
+     * @return The advised handler.
+     */
+    static Object addAdvice(@Nonnull Object handler, @Nonnull Advice advice, boolean outermost) {
+        if(handler instanceof Advised advised && !advised.isFrozen()) {
+            if(outermost) {
+                advised.addAdvice(0, advice);
+            }
+            else {
+                advised.addAdvice(advice);
+            }
+            return handler;
+        }
+        var proxyFactory = new ProxyFactory(handler);
+        // Proxy the class, so that the handler can still be injected by its own type
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(advice);
+        return proxyFactory.getProxy();
+    }
+}
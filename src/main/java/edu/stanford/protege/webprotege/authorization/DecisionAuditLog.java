@@ -0,0 +1,302 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.mongodb.client.model.InsertManyOptions;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Records authorization decisions for auditing.  Recording a decision only adds it to a lock-free ring buffer, so it
+ * costs a permission check neither formatting nor I/O.  A background thread drains the buffer and writes the
+ * decisions in batches to the configured {@link DecisionAuditSink}.
+ * <p>
+ * Denials are always recorded.  Grants are sampled at {@code webprotege.authorization.audit.grant-sample-rate}, which
+ * is the fraction of grants that are recorded.  A decision that arrives while the buffer is full is dropped, rather
+ * than waited for, and is counted by {@link #getDroppedCount()}.
+ */
+@Component
+public class DecisionAuditLog {
+
+    static final String COLLECTION_NAME = "AuthorizationDecisions";
+
+    static final String AUDIT_LOGGER_NAME = "edu.stanford.protege.webprotege.authorization.audit";
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionAuditLog.class);
+
+    private final boolean enabled;
+
+    private final double grantSampleRate;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final DecisionRingBuffer<Decision> buffer;
+
+    private final Consumer<List<Document>> writer;
+
+    private final LongAdder recordedCount = new LongAdder();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final LongAdder writtenCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    private volatile boolean running = false;
+
+    @Nullable
+    private volatile Thread writerThread;
+
+    public DecisionAuditLog(MongoTemplate mongoTemplate,
+                            MongoOperationMetrics mongoOperationMetrics,
+                            @Value("${webprotege.authorization.audit.enabled:true}") boolean enabled,
+                            @Value("${webprotege.authorization.audit.sink:mongo}") DecisionAuditSink sink,
+                            @Value("${webprotege.authorization.audit.grant-sample-rate:0.01}") double grantSampleRate,
+                            @Value("${webprotege.authorization.audit.buffer-size:8192}") int bufferSize,
+                            @Value("${webprotege.authorization.audit.batch-size:500}") int batchSize,
+                            @Value("${webprotege.authorization.audit.flush-interval:1s}") Duration flushInterval,
+                            @Value("${webprotege.authorization.audit.mongo.capped-size:100MB}") DataSize cappedSize) {
+        this(enabled,
+             grantSampleRate,
+             bufferSize,
+             batchSize,
+             flushInterval,
+             sink == DecisionAuditSink.MONGO ? new MongoWriter(mongoTemplate, mongoOperationMetrics, cappedSize) : new LogWriter());
+    }
+
+    /**
+     * Constructs an audit log that passes each batch of decisions to the specified writer
+     */
+    DecisionAuditLog(boolean enabled,
+                     double grantSampleRate,
+                     int bufferSize,
+                     int batchSize,
+                     Duration flushInterval,
+                     Consumer<List<Document>> writer) {
+        if(grantSampleRate < 0 || grantSampleRate > 1) {
+            throw new IllegalArgumentException("grant-sample-rate must be between 0 and 1: " + grantSampleRate);
+        }
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("batch-size must be at least 1: " + batchSize);
+        }
+        this.enabled = enabled;
+        this.grantSampleRate = grantSampleRate;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.buffer = new DecisionRingBuffer<>(bufferSize);
+        this.writer = writer;
+    }
+
+    @PostConstruct
+    public void start() {
+        if(!enabled) {
+            logger.info("Decision audit log is disabled");
+            return;
+        }
+        running = true;
+        var thread = new Thread(this::writeLoop, "decision-audit-log");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread, once it has written the decisions that are in the buffer
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        var thread = writerThread;
+        if(thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(Duration.ofSeconds(10).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Records a decision.  Denials are always recorded, and grants are sampled.  This does not block.
+     */
+    public void record(@Nonnull Subject subject,
+                       @Nonnull Resource resource,
+                       @Nonnull Capability capability,
+                       boolean authorized) {
+        if(!enabled) {
+            return;
+        }
+        if(authorized && !isGrantSampled()) {
+            return;
+        }
+        if(buffer.offer(new Decision(System.currentTimeMillis(), subject, resource, capability, authorized))) {
+            recordedCount.increment();
+        }
+        else {
+            droppedCount.increment();
+        }
+    }
+
+    private boolean isGrantSampled() {
+        if(grantSampleRate >= 1) {
+            return true;
+        }
+        return grantSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < grantSampleRate;
+    }
+
+    private void writeLoop() {
+        var batch = new ArrayList<Decision>(batchSize);
+        while(true) {
+            var drained = buffer.drain(batch::add, batchSize);
+            if(!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+            if(drained < batchSize) {
+                if(!running) {
+                    // Decisions whose slots were claimed before the writer was stopped may still be published
+                    if(buffer.size() == 0) {
+                        return;
+                    }
+                    Thread.onSpinWait();
+                }
+                else {
+                    // Waits for a batch to accumulate, rather than writing every decision as it arrives
+                    LockSupport.parkNanos(flushIntervalNanos);
+                }
+            }
+        }
+    }
+
+    private void write(List<Decision> decisions) {
+        try {
+            writer.accept(decisions.stream().map(Decision::toDocument).toList());
+            writtenCount.add(decisions.size());
+        } catch (RuntimeException e) {
+            failedCount.add(decisions.size());
+            logger.warn("Could not write {} authorization decisions to the audit log: {}", decisions.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of decisions that have been added to the buffer
+     */
+    public long getRecordedCount() {
+        return recordedCount.sum();
+    }
+
+    /**
+     * Gets the number of decisions that were dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Gets the number of decisions that have been written to the sink
+     */
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /**
+     * Gets the number of decisions that could not be written to the sink
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    private record Decision(long timestamp,
+                            Subject subject,
+                            Resource resource,
+                            Capability capability,
+                            boolean authorized) {
+
+        private Document toDocument() {
+            return new Document("timestamp", new Date(timestamp))
+                    .append("userName", subject.getUserName().orElse(null))
+                    .append("projectId", resource.getProjectId().map(ProjectId::id).orElse(null))
+                    .append("capability", capability.id())
+                    .append("authorized", authorized);
+        }
+    }
+
+    /**
+     * Inserts decisions into a capped collection, which is created if it does not exist
+     */
+    private static class MongoWriter implements Consumer<List<Document>> {
+
+        private final MongoTemplate mongoTemplate;
+
+        private final MongoOperationMetrics mongoOperationMetrics;
+
+        private final DataSize cappedSize;
+
+        private boolean collectionCreated = false;
+
+        private MongoWriter(MongoTemplate mongoTemplate, MongoOperationMetrics mongoOperationMetrics, DataSize cappedSize) {
+            this.mongoTemplate = mongoTemplate;
+            this.mongoOperationMetrics = mongoOperationMetrics;
+            this.cappedSize = cappedSize;
+        }
+
+        @Override
+        public void accept(List<Document> documents) {
+            if(!collectionCreated) {
+                createCollection();
+                collectionCreated = true;
+            }
+            mongoOperationMetrics.record(COLLECTION_NAME, "insertMany",
+                    () -> mongoTemplate.getCollection(COLLECTION_NAME).insertMany(documents, new InsertManyOptions().ordered(false)));
+        }
+
+        private void createCollection() {
+            if(mongoTemplate.collectionExists(COLLECTION_NAME)) {
+                return;
+            }
+            try {
+                mongoTemplate.createCollection(COLLECTION_NAME, CollectionOptions.empty().capped().size(cappedSize.toBytes()));
+                logger.info("Created capped collection {} of {} for the decision audit log", COLLECTION_NAME, cappedSize);
+            } catch (RuntimeException e) {
+                // Created concurrently by another node
+                if(!mongoTemplate.collectionExists(COLLECTION_NAME)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes decisions to the audit logger, one JSON document per line
+     */
+    private static class LogWriter implements Consumer<List<Document>> {
+
+        private static final Logger auditLogger = LoggerFactory.getLogger(AUDIT_LOGGER_NAME);
+
+        @Override
+        public void accept(List<Document> documents) {
+            documents.forEach(document -> auditLogger.info(document.toJson()));
+        }
+    }
+}
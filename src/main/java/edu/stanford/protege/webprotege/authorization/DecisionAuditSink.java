@@ -0,0 +1,18 @@
+package edu.stanford.protege.webprotege.authorization;
+
+/**
+ * Determines where the {@link DecisionAuditLog} writes authorization decisions.
+ */
+public enum DecisionAuditSink {
+
+    /**
+     * Insert decisions into a capped MongoDb collection, which keeps the most recent decisions
+     */
+    MONGO,
+
+    /**
+     * Write decisions, as one JSON document per line, to the audit logger.  The logging configuration routes the
+     * audit logger to a rolling file.
+     */
+    LOG
+}
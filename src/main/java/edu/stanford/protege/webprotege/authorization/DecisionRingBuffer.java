@@ -0,0 +1,104 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free ring buffer with any number of producers and a single consumer.  Producers claim a slot by
+ * advancing the tail, and publish their element into it.  An element that does not fit is rejected rather than
+ * waited for, so a producer never blocks.  The consumer drains published elements in order, and frees their slots.
+ */
+final class DecisionRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    private final int capacity;
+
+    private final int mask;
+
+    /**
+     * The sequence number of the next slot to be claimed by a producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The sequence number of the next slot to be drained.  Only written by the consumer.
+     */
+    private volatile long head = 0;
+
+    /**
+     * Creates a ring buffer.
+     * @param capacity The capacity, which is rounded up to a power of two.
+     */
+    DecisionRingBuffer(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.capacity = roundUpToPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    private static int roundUpToPowerOfTwo(int capacity) {
+        var highestOneBit = Integer.highestOneBit(capacity);
+        return highestOneBit == capacity ? capacity : highestOneBit << 1;
+    }
+
+    /**
+     * Adds an element, if there is room for it.
+     * @return true if the element was added, or false if the buffer is full.
+     */
+    boolean offer(@Nonnull T element) {
+        while(true) {
+            var sequence = tail.get();
+            if(sequence - head >= capacity) {
+                return false;
+            }
+            if(tail.compareAndSet(sequence, sequence + 1)) {
+                slots.lazySet((int) (sequence & mask), element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes published elements, in the order in which their slots were claimed, and passes them to the specified
+     * consumer.  Draining stops at a slot that has been claimed but not yet published.  This must only be called by
+     * one thread at a time.
+     * @param consumer The consumer of the elements.
+     * @param maxElements The maximum number of elements to drain.
+     * @return The number of elements that were drained.
+     */
+    int drain(@Nonnull Consumer<T> consumer, int maxElements) {
+        var sequence = head;
+        var drained = 0;
+        while(drained < maxElements) {
+            var index = (int) (sequence & mask);
+            var element = slots.get(index);
+            if(element == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            sequence++;
+            drained++;
+            consumer.accept(element);
+        }
+        // Frees the drained slots for producers
+        head = sequence;
+        return drained;
+    }
+
+    /**
+     * Gets the number of elements in the buffer, including elements whose slots have been claimed but not yet
+     * published
+     */
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
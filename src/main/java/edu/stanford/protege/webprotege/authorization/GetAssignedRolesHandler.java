@@ -18,9 +18,9 @@ import static java.util.Objects.requireNonNull;
 @WebProtegeHandler
 public class GetAssignedRolesHandler implements CommandHandler<GetAssignedRolesRequest, GetAssignedRolesResponse> {
 
-    private final AccessManager accessManager;
+    private final ReactiveAccessManager accessManager;
 
-    public GetAssignedRolesHandler(AccessManager accessManager) {
+    public GetAssignedRolesHandler(ReactiveAccessManager accessManager) {
         this.accessManager = requireNonNull(accessManager);
     }
 
@@ -39,8 +39,8 @@ public class GetAssignedRolesHandler implements CommandHandler<GetAssignedRolesR
     public Mono<GetAssignedRolesResponse> handleRequest(GetAssignedRolesRequest request, ExecutionContext executionContext) {
         var subject = request.subject();
         var resource = request.resource();
-        var assignedRoles = accessManager.getAssignedRoles(subject, resource);
-        var response = new GetAssignedRolesResponse(subject, resource, Set.copyOf(assignedRoles));
-        return Mono.just(response);
+        return accessManager.getAssignedRoles(subject, resource)
+                .collectList()
+                .map(assignedRoles -> new GetAssignedRolesResponse(subject, resource, Set.copyOf(assignedRoles)));
     }
 }
@@ -22,13 +22,13 @@ import java.util.Set;
 public class GetAuthorizationStatusHandler implements CommandHandler<GetAuthorizationStatusRequest, GetAuthorizationStatusResponse> {
     private final static Logger logger = LoggerFactory.getLogger(GetAuthorizationStatusHandler.class);
 
-    private final AccessManager accessManager;
+    private final ReactiveAccessManager accessManager;
 
     private final TokenValidator tokenValidator;
 
     private final BuiltInRoleOracle builtInRoleOracle;
 
-    public GetAuthorizationStatusHandler(AccessManager accessManager, TokenValidator tokenValidator, BuiltInRoleOracle builtInRoleOracle) {
+    public GetAuthorizationStatusHandler(ReactiveAccessManager accessManager, TokenValidator tokenValidator, BuiltInRoleOracle builtInRoleOracle) {
         this.accessManager = accessManager;
         this.tokenValidator = tokenValidator;
         this.builtInRoleOracle = builtInRoleOracle;
@@ -47,20 +47,12 @@ public class GetAuthorizationStatusHandler implements CommandHandler<GetAuthoriz
 
     @Override
     public Mono<GetAuthorizationStatusResponse> handleRequest(GetAuthorizationStatusRequest request, ExecutionContext executionContext) {
-        var hasPermission = accessManager.hasPermission(request.subject(),
-                request.resource(),
-                request.capability(),
-                executionContext.jwt());
-
-        if(hasPermission) {
-            return Mono.just(new GetAuthorizationStatusResponse(request.resource(),
-                    request.subject(),
-                    AuthorizationStatus.AUTHORIZED));
-        }
-        else {
-            return Mono.just(new GetAuthorizationStatusResponse(request.resource(),
-                    request.subject(),
-                    AuthorizationStatus.UNAUTHORIZED));
-        }
+        return accessManager.hasPermission(request.subject(),
+                        request.resource(),
+                        request.capability(),
+                        executionContext.jwt())
+                .map(hasPermission -> new GetAuthorizationStatusResponse(request.resource(),
+                        request.subject(),
+                        hasPermission ? AuthorizationStatus.AUTHORIZED : AuthorizationStatus.UNAUTHORIZED));
     }
 }
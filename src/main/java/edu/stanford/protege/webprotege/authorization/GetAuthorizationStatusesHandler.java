@@ -0,0 +1,42 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.ipc.CommandHandler;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import edu.stanford.protege.webprotege.ipc.WebProtegeHandler;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+
+@WebProtegeHandler
+public class GetAuthorizationStatusesHandler implements CommandHandler<GetAuthorizationStatusesRequest, GetAuthorizationStatusesResponse> {
+
+    private final ReactiveAccessManager accessManager;
+
+    public GetAuthorizationStatusesHandler(ReactiveAccessManager accessManager) {
+        this.accessManager = accessManager;
+    }
+
+    @Nonnull
+    @Override
+    public String getChannelName() {
+        return GetAuthorizationStatusesRequest.CHANNEL;
+    }
+
+    @Override
+    public Class<GetAuthorizationStatusesRequest> getRequestClass() {
+        return GetAuthorizationStatusesRequest.class;
+    }
+
+    @Override
+    public Mono<GetAuthorizationStatusesResponse> handleRequest(GetAuthorizationStatusesRequest request, ExecutionContext executionContext) {
+        var checks = request.checks();
+        return accessManager.hasPermissions(checks, executionContext.jwt()).map(permissions -> {
+            var decisions = new ArrayList<AuthorizationDecision>(checks.size());
+            for(int i = 0; i < checks.size(); i++) {
+                decisions.add(AuthorizationDecision.get(checks.get(i), permissions.get(i)));
+            }
+            return new GetAuthorizationStatusesResponse(decisions);
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import edu.stanford.protege.webprotege.common.Request;
+
+import java.util.List;
+
+/**
+ * Requests the authorization status of several (subject, resource, capability) checks in one message.  The
+ * decisions in the response are in the same order as the checks.
+ */
+@JsonTypeName(GetAuthorizationStatusesRequest.CHANNEL)
+public record GetAuthorizationStatusesRequest(@JsonProperty("checks") List<AuthorizationCheck> checks) implements Request<GetAuthorizationStatusesResponse> {
+
+    public static final String CHANNEL = "webprotege.authorization.GetAuthorizationStatuses";
+
+    public GetAuthorizationStatusesRequest(List<AuthorizationCheck> checks) {
+        this.checks = List.copyOf(checks);
+    }
+
+    @JsonCreator
+    public static GetAuthorizationStatusesRequest get(@JsonProperty("checks") List<AuthorizationCheck> checks) {
+        return new GetAuthorizationStatusesRequest(checks);
+    }
+
+    @Override
+    public String getChannel() {
+        return CHANNEL;
+    }
+}
@@ -0,0 +1,12 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import edu.stanford.protege.webprotege.common.Response;
+
+import java.util.List;
+
+@JsonTypeName(GetAuthorizationStatusesRequest.CHANNEL)
+public record GetAuthorizationStatusesResponse(@JsonProperty("decisions") List<AuthorizationDecision> decisions) implements Response {
+
+}
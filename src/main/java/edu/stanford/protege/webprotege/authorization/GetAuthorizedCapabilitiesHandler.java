@@ -19,13 +19,13 @@ import java.util.HashSet;
 public class GetAuthorizedCapabilitiesHandler implements CommandHandler<GetAuthorizedCapabilitiesRequest, GetAuthorizedCapabilitiesResponse> {
     private final static Logger logger = LoggerFactory.getLogger(GetAuthorizedCapabilitiesHandler.class);
 
-    private final AccessManager accessManager;
+    private final ReactiveAccessManager accessManager;
 
     private final JwtRolesExtractor jwtRolesExtractor;
 
     private final BuiltInRoleOracle builtInRoleOracle;
 
-    public GetAuthorizedCapabilitiesHandler(AccessManager accessManager, JwtRolesExtractor jwtRolesExtractor, BuiltInRoleOracle builtInRoleOracle) {
+    public GetAuthorizedCapabilitiesHandler(ReactiveAccessManager accessManager, JwtRolesExtractor jwtRolesExtractor, BuiltInRoleOracle builtInRoleOracle) {
         this.accessManager = accessManager;
         this.jwtRolesExtractor = jwtRolesExtractor;
         this.builtInRoleOracle = builtInRoleOracle;
@@ -44,21 +44,20 @@ public class GetAuthorizedCapabilitiesHandler implements CommandHandler<GetAutho
 
     @Override
     public Mono<GetAuthorizedCapabilitiesResponse> handleRequest(GetAuthorizedCapabilitiesRequest request, ExecutionContext executionContext) {
-        var capabilities = new HashSet<Capability>();
+        return accessManager.getCapabilityClosure(request.subject(), request.resource()).map(capabilityClosure -> {
+            var capabilities = new HashSet<Capability>();
 
-        // We should be able to change this to check if the resource is the application.
-        // extract any SUPER admin capabilities from token
-        var roleIds = jwtRolesExtractor.safeExtractRolesWithoutVerification(executionContext.jwt()).stream()
-                .map(RoleId::new)
-                .toList();
-        capabilities.addAll(new HashSet<>(builtInRoleOracle.getCapabilitiesAssociatedToRoles(roleIds)));
+            // We should be able to change this to check if the resource is the application.
+            // extract any SUPER admin capabilities from token
+            var roleIds = jwtRolesExtractor.safeExtractRoleIdsWithoutVerification(executionContext.jwt());
+            capabilities.addAll(builtInRoleOracle.getCapabilitiesAssociatedToRoles(roleIds));
 
-        capabilities.addAll(accessManager.getCapabilityClosure(request.subject(),
-                request.resource()));
+            capabilities.addAll(capabilityClosure);
 
-        return Mono.just(new GetAuthorizedCapabilitiesResponse(request.resource(),
-                request.subject(),
-                capabilities));
+            return new GetAuthorizedCapabilitiesResponse(request.resource(),
+                    request.subject(),
+                    capabilities);
+        });
 
     }
 }
@@ -16,9 +16,9 @@ import java.util.Set;
 @WebProtegeHandler
 public class GetAuthorizedResourcesHandler implements CommandHandler<GetAuthorizedResourcesRequest, GetAuthorizedResourcesResponse> {
 
-    private final AccessManager accessManager;
+    private final ReactiveAccessManager accessManager;
 
-    public GetAuthorizedResourcesHandler(AccessManager accessManager) {
+    public GetAuthorizedResourcesHandler(ReactiveAccessManager accessManager) {
         this.accessManager = accessManager;
     }
 
@@ -35,11 +35,11 @@ public class GetAuthorizedResourcesHandler implements CommandHandler<GetAuthoriz
 
     @Override
     public Mono<GetAuthorizedResourcesResponse> handleRequest(GetAuthorizedResourcesRequest request, ExecutionContext executionContext) {
-        var resources = accessManager.getResourcesAccessibleToSubject(request.subject(),
-                                                      request.capability());
-
-        return Mono.just(new GetAuthorizedResourcesResponse(request.subject(),
-                                                            request.capability(),
-                                                            Set.copyOf(resources)));
+        return accessManager.getResourcesAccessibleToSubject(request.subject(),
+                                                      request.capability())
+                .collectList()
+                .map(resources -> new GetAuthorizedResourcesResponse(request.subject(),
+                                                                     request.capability(),
+                                                                     Set.copyOf(resources)));
     }
 }
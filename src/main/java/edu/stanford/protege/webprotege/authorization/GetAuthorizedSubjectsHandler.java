@@ -16,9 +16,9 @@ import java.util.Set;
 @WebProtegeHandler
 public class GetAuthorizedSubjectsHandler implements CommandHandler<GetAuthorizedSubjectsRequest, GetAuthorizedSubjectsResponse> {
 
-    private final AccessManager accessManager;
+    private final ReactiveAccessManager accessManager;
 
-    public GetAuthorizedSubjectsHandler(AccessManager accessManager) {
+    public GetAuthorizedSubjectsHandler(ReactiveAccessManager accessManager) {
         this.accessManager = accessManager;
     }
 
@@ -35,11 +35,11 @@ public class GetAuthorizedSubjectsHandler implements CommandHandler<GetAuthorize
 
     @Override
     public Mono<GetAuthorizedSubjectsResponse> handleRequest(GetAuthorizedSubjectsRequest request, ExecutionContext executionContext) {
-        var subjects = accessManager.getSubjectsWithAccessToResource(request.resource(),
-                                                      request.capability());
-
-        return Mono.just(new GetAuthorizedSubjectsResponse(request.resource(),
-                                                           request.capability(),
-                                                           Set.copyOf(subjects)));
+        return accessManager.getSubjectsWithAccessToResource(request.resource(),
+                                                      request.capability())
+                .collectList()
+                .map(subjects -> new GetAuthorizedSubjectsResponse(request.resource(),
+                                                                   request.capability(),
+                                                                   Set.copyOf(subjects)));
     }
 }
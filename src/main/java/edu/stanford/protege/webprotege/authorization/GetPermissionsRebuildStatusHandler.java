@@ -0,0 +1,35 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.ipc.CommandHandler;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import edu.stanford.protege.webprotege.ipc.WebProtegeHandler;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+
+@WebProtegeHandler
+public class GetPermissionsRebuildStatusHandler implements CommandHandler<GetPermissionsRebuildStatusRequest, GetPermissionsRebuildStatusResponse> {
+
+    private final RebuildJobScheduler rebuildJobScheduler;
+
+    public GetPermissionsRebuildStatusHandler(RebuildJobScheduler rebuildJobScheduler) {
+        this.rebuildJobScheduler = rebuildJobScheduler;
+    }
+
+    @Nonnull
+    @Override
+    public String getChannelName() {
+        return GetPermissionsRebuildStatusRequest.CHANNEL;
+    }
+
+    @Override
+    public Class<GetPermissionsRebuildStatusRequest> getRequestClass() {
+        return GetPermissionsRebuildStatusRequest.class;
+    }
+
+    @Override
+    public Mono<GetPermissionsRebuildStatusResponse> handleRequest(GetPermissionsRebuildStatusRequest request, ExecutionContext executionContext) {
+        var job = rebuildJobScheduler.getJob(request.jobId());
+        return Mono.just(new GetPermissionsRebuildStatusResponse(job.orElse(null)));
+    }
+}
@@ -0,0 +1,25 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import edu.stanford.protege.webprotege.common.Request;
+
+/**
+ * Requests the status and progress of a permissions rebuild job
+ */
+@JsonTypeName(GetPermissionsRebuildStatusRequest.CHANNEL)
+public record GetPermissionsRebuildStatusRequest(@JsonProperty("jobId") String jobId) implements Request<GetPermissionsRebuildStatusResponse> {
+
+    public static final String CHANNEL = "webprotege.permissions.GetPermissionsRebuildStatus";
+
+    @JsonCreator
+    public static GetPermissionsRebuildStatusRequest get(@JsonProperty("jobId") String jobId) {
+        return new GetPermissionsRebuildStatusRequest(jobId);
+    }
+
+    @Override
+    public String getChannel() {
+        return CHANNEL;
+    }
+}
@@ -0,0 +1,15 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import edu.stanford.protege.webprotege.common.Response;
+
+import javax.annotation.Nullable;
+
+/**
+ * @param job The job, or null if there is no job with the requested id.
+ */
+@JsonTypeName(GetPermissionsRebuildStatusRequest.CHANNEL)
+public record GetPermissionsRebuildStatusResponse(@JsonProperty("job") @Nullable RebuildJob job) implements Response {
+
+}
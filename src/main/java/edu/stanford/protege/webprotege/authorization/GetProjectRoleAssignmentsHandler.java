@@ -12,9 +12,9 @@ import javax.annotation.Nonnull;
 @WebProtegeHandler
 public class GetProjectRoleAssignmentsHandler implements CommandHandler<GetProjectRoleAssignmentsRequest, GetProjectRoleAssignmentsResponse> {
 
-    private final AccessManager accessManager;
+    private final ReactiveAccessManager accessManager;
 
-    public GetProjectRoleAssignmentsHandler(AccessManager accessManager) {
+    public GetProjectRoleAssignmentsHandler(ReactiveAccessManager accessManager) {
         this.accessManager = accessManager;
     }
 
@@ -31,18 +31,17 @@ public class GetProjectRoleAssignmentsHandler implements CommandHandler<GetProje
 
     @Override
     public Mono<GetProjectRoleAssignmentsResponse> handleRequest(GetProjectRoleAssignmentsRequest request, ExecutionContext executionContext) {
-        var roleAssignments = accessManager.getRoleAssignments(request.projectId());
-        var userRoleAssignments = roleAssignments.stream()
+        return accessManager.getRoleAssignments(request.projectId())
                 .filter(ra -> ra.getUserName().isPresent())
-                .flatMap(ra -> {
+                .flatMapIterable(ra -> {
                     var userId = UserId.valueOf(ra.getUserName().get());
                     var assignedRoles = ra.getAssignedRoles();
                     return assignedRoles.stream()
                             .map(RoleId::new)
-                            .map(r -> new UserRoleAssignment(userId, r));
+                            .map(r -> new UserRoleAssignment(userId, r))
+                            .toList();
                 })
-                .toList();
-        var assignments = new ProjectRoleAssignments(userRoleAssignments);
-        return Mono.just(new GetProjectRoleAssignmentsResponse(assignments));
+                .collectList()
+                .map(userRoleAssignments -> new GetProjectRoleAssignmentsResponse(new ProjectRoleAssignments(userRoleAssignments)));
     }
 }
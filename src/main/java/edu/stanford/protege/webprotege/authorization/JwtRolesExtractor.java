@@ -1,5 +1,7 @@
 package edu.stanford.protege.webprotege.authorization;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.keycloak.TokenVerifier;
 import org.keycloak.common.VerificationException;
 import org.keycloak.representations.AccessToken;
@@ -7,14 +9,46 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtRolesExtractor {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtRolesExtractor.class);
 
+    private static final int MAXIMUM_CACHE_SIZE = 10_000;
+
+    /**
+     * A backstop for tokens with an unusually distant expiry.  Entries normally expire at the token's exp claim.
+     */
+    private static final Duration MAXIMUM_CACHE_ENTRY_LIFETIME = Duration.ofHours(1);
+
+    private final Cache<String, CachedRoles> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHE_SIZE)
+            .expireAfterWrite(MAXIMUM_CACHE_ENTRY_LIFETIME)
+            .build();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final Clock clock;
+
+    public JwtRolesExtractor() {
+        this(Clock.systemUTC());
+    }
+
+    JwtRolesExtractor(Clock clock) {
+        this.clock = clock;
+    }
+
     /**
      * Extracts the roles from a JWT token without verification.
      * Note: This method should only be used when token verification is not critical.
@@ -25,6 +59,13 @@ public class JwtRolesExtractor {
      * @throws VerificationException if the token is malformed
      */
     public Set<String> extractRolesWithoutVerification(String jwt) throws VerificationException {
+        return parse(jwt).roles();
+    }
+
+    /**
+     * Parses the specified token, without verification, for its roles and its exp claim
+     */
+    private static ParsedToken parse(String jwt) throws VerificationException {
         TokenVerifier<AccessToken> verifier = TokenVerifier.create(jwt, AccessToken.class);
         AccessToken token = verifier.getToken();
         var resourceAccess = token.getResourceAccess();
@@ -32,11 +73,13 @@ public class JwtRolesExtractor {
         // A user with no "webprotege" client roles - the normal case for an ordinary
         // collaborator, since only admins/project-creators are assigned any - has no
         // entry here at all. That is not a malformed token, just an absence of roles.
-        return webprotegeAccess == null ? Collections.emptySet() : webprotegeAccess.getRoles();
+        var roles = webprotegeAccess == null ? Collections.<String>emptySet() : webprotegeAccess.getRoles();
+        return new ParsedToken(roles, Optional.ofNullable(token.getExp()).map(Instant::ofEpochSecond));
     }
 
     /**
-     * Extracts the roles from the specified JWT, which can be null.
+     * Extracts the roles from the specified JWT, which can be null.  The roles of well-formed tokens are
+     * memoized until the token's exp claim, so repeated calls with the same token do not parse it again.
      * @param jwt The JWT. This may be null and may be blank/empty
      * @return The roles extracted from the JWT. If there was a problem extracting the
      * roles then the empty set will be returned and no exception will be thrown.
@@ -50,8 +93,20 @@ public class JwtRolesExtractor {
             logger.debug("JWT is empty. Returning empty set of roles.");
             return Collections.emptySet();
         }
+        var now = clock.instant();
+        var cached = cache.getIfPresent(jwt);
+        if(cached != null && cached.expiresAt().isAfter(now)) {
+            cacheHits.increment();
+            return cached.roles();
+        }
+        cacheMisses.increment();
         try {
-            return extractRolesWithoutVerification(jwt);
+            // The roles and the expiry are read from a single parse of the token
+            var parsed = parse(jwt);
+            var roles = Set.copyOf(parsed.roles());
+            parsed.expiresAt().filter(expiresAt -> expiresAt.isAfter(now))
+                              .ifPresent(expiresAt -> cache.put(jwt, new CachedRoles(roles, toRoleIds(roles), expiresAt)));
+            return roles;
         } catch(VerificationException | RuntimeException e) {
             // RuntimeException is caught alongside VerificationException so this method
             // keeps the "no exception will be thrown" contract its own javadoc promises,
@@ -60,4 +115,59 @@ public class JwtRolesExtractor {
             return Collections.emptySet();
         }
     }
+
+    /**
+     * Extracts the roles from the specified JWT, which can be null, as role ids.  This behaves in the same way as
+     * {@link #safeExtractRolesWithoutVerification(String)}.  For a memoized token the same set instance is
+     * returned on each call.
+     * @param jwt The JWT. This may be null and may be blank/empty
+     * @return The role ids extracted from the JWT.
+     */
+    public Set<RoleId> safeExtractRoleIdsWithoutVerification(String jwt) {
+        if(jwt == null || jwt.isBlank()) {
+            return Collections.emptySet();
+        }
+        var cached = cache.getIfPresent(jwt);
+        if(cached != null && cached.expiresAt().isAfter(clock.instant())) {
+            cacheHits.increment();
+            return cached.roleIds();
+        }
+        var roles = safeExtractRolesWithoutVerification(jwt);
+        var memoized = cache.getIfPresent(jwt);
+        if(memoized != null) {
+            return memoized.roleIds();
+        }
+        return toRoleIds(roles);
+    }
+
+    private static Set<RoleId> toRoleIds(Set<String> roles) {
+        return roles.stream().map(RoleId::new).collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Gets the number of calls to {@link #safeExtractRolesWithoutVerification(String)} and
+     * {@link #safeExtractRoleIdsWithoutVerification(String)} that were answered from memoized roles.
+     */
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Gets the number of calls to {@link #safeExtractRolesWithoutVerification(String)} and
+     * {@link #safeExtractRoleIdsWithoutVerification(String)} with a non-blank token that had to parse the token.
+     */
+    public long getCacheMissCount() {
+        return cacheMisses.sum();
+    }
+
+    private record CachedRoles(Set<String> roles, Set<RoleId> roleIds, Instant expiresAt) {
+
+    }
+
+    /**
+     * The roles of a token and its expiry, if it has an exp claim.  Tokens without an exp claim are not memoized.
+     */
+    private record ParsedToken(Set<String> roles, Optional<Instant> expiresAt) {
+
+    }
 }
@@ -0,0 +1,20 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
+
+/**
+ * Leaves the health, metrics and prometheus actuator endpoints open, so that they can be scraped without a token.
+ * The endpoints are excluded from Spring Security, rather than given a filter chain of their own, so that the
+ * default filter chain still secures every other request.
+ */
+@Configuration
+public class MetricsEndpointsConfiguration {
+
+    @Bean
+    public WebSecurityCustomizer metricsEndpointsWebSecurityCustomizer() {
+        return web -> web.ignoring().requestMatchers(EndpointRequest.to("health", "metrics", "prometheus"));
+    }
+}
@@ -0,0 +1,130 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times the MongoDb operations of the repositories in this service.  Each operation has a timer named
+ * {@value #TIMER_NAME}, tagged with the repository, the operation and the outcome.  A lazily evaluated result, such as
+ * a stream of documents, must be consumed inside the timed operation for the timer to include the reads.  Reactive
+ * operations are timed for each subscription, from subscribe to termination or cancellation.
+ * <p>
+ * This times an operation as the repository sees it, which may be several MongoDb commands, and includes decoding.  The
+ * MongoDb commands themselves are timed separately, by the driver listener that Spring Boot registers, as
+ * {@code mongodb.driver.commands}.
+ */
+@Component
+public class MongoOperationMetrics {
+
+    static final String TIMER_NAME = "webprotege.authorization.mongo.operations";
+
+    private static final String SUCCESS = "success";
+
+    private static final String ERROR = "error";
+
+    private static final String CANCELLED = "cancelled";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+
+    public MongoOperationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs and times the specified operation.
+     * @param repository The name of the repository.
+     * @param operation The name of the operation.
+     * @param body The operation.
+     * @return The result of the operation.
+     */
+    public <T> T record(@Nonnull String repository, @Nonnull String operation, @Nonnull Supplier<T> body) {
+        var start = System.nanoTime();
+        var outcome = ERROR;
+        try {
+            var result = body.get();
+            outcome = SUCCESS;
+            return result;
+        } finally {
+            getTimer(repository, operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Runs and times the specified operation.
+     * @param repository The name of the repository.
+     * @param operation The name of the operation.
+     * @param body The operation.
+     */
+    public void record(@Nonnull String repository, @Nonnull String operation, @Nonnull Runnable body) {
+        record(repository, operation, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Times each subscription to the specified reactive operation.
+     * @param repository The name of the repository.
+     * @param operation The name of the operation.
+     * @param body The operation.
+     * @return The operation, timed from subscribe until it completes, fails or is cancelled.
+     */
+    public <T> Flux<T> record(@Nonnull String repository, @Nonnull String operation, @Nonnull Flux<T> body) {
+        return Flux.defer(() -> {
+            var sample = new Timer.Sample[1];
+            return body.doOnSubscribe(subscription -> sample[0] = Timer.start(meterRegistry))
+                       .doFinally(signal -> stop(sample[0], repository, operation, signal));
+        });
+    }
+
+    /**
+     * Times each subscription to the specified reactive operation.
+     * @param repository The name of the repository.
+     * @param operation The name of the operation.
+     * @param body The operation.
+     * @return The operation, timed from subscribe until it completes, fails or is cancelled.
+     */
+    public <T> Mono<T> record(@Nonnull String repository, @Nonnull String operation, @Nonnull Mono<T> body) {
+        return Mono.defer(() -> {
+            var sample = new Timer.Sample[1];
+            return body.doOnSubscribe(subscription -> sample[0] = Timer.start(meterRegistry))
+                       .doFinally(signal -> stop(sample[0], repository, operation, signal));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String repository, String operation, SignalType signal) {
+        if(sample == null) {
+            return;
+        }
+        var outcome = switch (signal) {
+            case ON_ERROR -> ERROR;
+            case CANCEL -> CANCELLED;
+            default -> SUCCESS;
+        };
+        sample.stop(getTimer(repository, operation, outcome));
+    }
+
+    private Timer getTimer(String repository, String operation, String outcome) {
+        return timers.computeIfAbsent(List.of(repository, operation, outcome),
+                                      key -> Timer.builder(TIMER_NAME)
+                                                  .description("The time taken by MongoDb operations")
+                                                  .tag("repository", repository)
+                                                  .tag("operation", operation)
+                                                  .tag("outcome", outcome)
+                                                  .publishPercentiles(0.5, 0.99, 0.999)
+                                                  .register(meterRegistry));
+    }
+}
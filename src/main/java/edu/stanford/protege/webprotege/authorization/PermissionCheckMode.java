@@ -0,0 +1,22 @@
+package edu.stanford.protege.webprotege.authorization;
+
+/**
+ * Determines how {@link AccessManagerImpl#hasPermission} and {@link ReactiveAccessManagerImpl#hasPermission} answer
+ * a check for a (user, project) pair whose capability closure is not cached.  Batches of checks, made with
+ * {@link ReactiveAccessManager#hasPermissions}, are always answered from merged capability closures.
+ */
+public enum PermissionCheckMode {
+
+    /**
+     * Load the role assignments, merge their capability closures and cache the merged closure.  Later checks
+     * for the same pair, for any capability, are answered from the cache.
+     */
+    CLOSURE,
+
+    /**
+     * Ask MongoDb whether a role assignment with the required capability exists, without transferring
+     * the role assignments.  The answer is not cached.  This suits workloads where checks are spread over
+     * many more (user, project) pairs than the cache can hold.
+     */
+    QUERY
+}
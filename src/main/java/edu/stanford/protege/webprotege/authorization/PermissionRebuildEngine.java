@@ -0,0 +1,603 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import edu.stanford.protege.webprotege.authorization.AssignmentClosureCalculator.AssignmentClosure;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static edu.stanford.protege.webprotege.authorization.AccessManagerImpl.COLLECTION_NAME;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.ASSIGNED_ROLES;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.PROJECT_ID;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.ROLE_CLOSURE;
+
+/**
+ * Recomputes the role closures and capability closures that are stored in {@link RoleAssignment}s, for example,
+ * after role definitions have changed.
+ * <p>
+ * A full rebuild either rewrites the role assignments in place or, see {@link ShadowCollectionRebuilder}, writes
+ * them into a shadow collection that is swapped for the live collection.  This is set by the rebuild mode.  The
+ * shadow mode can only be used when a single instance of the service writes the role assignments, and this must be
+ * confirmed with {@code webprotege.authorization.rebuild.single-instance}.
+ * <p>
+ * Work is partitioned by project.  An in place full rebuild rebuilds projects in parallel on a pool of workers.  Each project
+ * is rebuilt under its own write lock, so permission checks for other projects continue to be served.  Within a
+ * project, the closures for each distinct set of assigned roles are computed once.  Only assignments whose
+ * closures have changed are written, in unordered bulk writes of a bounded size.
+ * <p>
+ * When only some role definitions in a project change, an incremental rebuild examines just the assignments that
+ * assign a changed role or have one in their stored role closure.
+ * <p>
+ * Background rebuild jobs, see {@link RebuildJobScheduler}, rebuild assignments in batches in _id order, so that
+ * a job can checkpoint after each batch and be resumed from the checkpoint.
+ */
+@Component
+public class PermissionRebuildEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionRebuildEngine.class);
+
+    private static final long PROGRESS_LOG_INTERVAL_MILLIS = 10_000;
+
+    /**
+     * The checkpoint of the application level assignments, which sorts before every project id
+     */
+    public static final String APPLICATION_CHECKPOINT = "";
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final AssignmentClosureCalculator assignmentClosureCalculator;
+
+    private final RoleAssignmentLocks locks;
+
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    private final ShadowCollectionRebuilder shadowCollectionRebuilder;
+
+    private final RebuildMode rebuildMode;
+
+    private final int workerCount;
+
+    private final int batchSize;
+
+    private final AtomicReference<RebuildProgress> currentProgress = new AtomicReference<>();
+
+    private final AtomicLong totalRebuiltAssignments = new AtomicLong();
+
+    private final AtomicLong totalRewrittenAssignments = new AtomicLong();
+
+    public PermissionRebuildEngine(MongoTemplate mongoTemplate,
+                                   ObjectMapper objectMapper,
+                                   AssignmentClosureCalculator assignmentClosureCalculator,
+                                   RoleAssignmentLocks locks,
+                                   CapabilityClosureCache capabilityClosureCache,
+                                   ShadowCollectionRebuilder shadowCollectionRebuilder,
+                                   @Value("${webprotege.authorization.rebuild.mode:in-place}") RebuildMode rebuildMode,
+                                   @Value("${webprotege.authorization.rebuild.single-instance:false}") boolean singleInstance,
+                                   @Value("${webprotege.authorization.rebuild.workers:0}") int workerCount,
+                                   @Value("${webprotege.authorization.rebuild.batch-size:500}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.assignmentClosureCalculator = assignmentClosureCalculator;
+        this.locks = locks;
+        this.capabilityClosureCache = capabilityClosureCache;
+        this.shadowCollectionRebuilder = shadowCollectionRebuilder;
+        if(rebuildMode == RebuildMode.SHADOW && !singleInstance) {
+            throw new IllegalStateException("The shadow rebuild mode can lose role assignments that are written by other " +
+                                                    "instances during the swap.  It requires a single instance deployment, " +
+                                                    "which must be confirmed by setting webprotege.authorization.rebuild.single-instance=true");
+        }
+        this.rebuildMode = rebuildMode;
+        this.workerCount = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Nonnull
+    public RebuildMode getRebuildMode() {
+        return rebuildMode;
+    }
+
+    /**
+     * Rebuilds the role assignments of all projects, and the application level role assignments.  Only one full
+     * rebuild runs at a time.
+     * @throws IllegalStateException if the rebuild of any project failed.  For an in place rebuild, the other projects
+     * are still rebuilt.  For a shadow rebuild, the live role assignments are left unchanged.
+     */
+    public void rebuildAll() {
+        try(var ignored = locks.lockForFullRebuild()) {
+            if(rebuildMode == RebuildMode.SHADOW) {
+                rebuildAllInShadowCollection();
+            }
+            else {
+                rebuildAllInPlace();
+            }
+        }
+    }
+
+    private void rebuildAllInShadowCollection() {
+        var progress = new RebuildProgress(1);
+        currentProgress.set(progress);
+        logger.info("Rebuilding permissions in a shadow collection");
+        try {
+            shadowCollectionRebuilder.rebuild(progress);
+            progress.projectCompleted();
+        } finally {
+            progress.finish();
+            totalRebuiltAssignments.addAndGet(progress.getRebuiltAssignments());
+            totalRewrittenAssignments.addAndGet(progress.getRewrittenAssignments());
+        }
+        logger.info("Rebuilt permissions: {}", progress);
+    }
+
+    private void rebuildAllInPlace() {
+        var projectIds = getProjectIds();
+        var progress = new RebuildProgress(projectIds.size());
+        currentProgress.set(progress);
+        logger.info("Rebuilding permissions for {} projects using {} workers", projectIds.size(), workerCount);
+        var executor = Executors.newFixedThreadPool(workerCount, new ThreadFactoryBuilder()
+                .setNameFormat("permission-rebuild-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            var futures = new ArrayList<Future<?>>(projectIds.size());
+            for(var projectId : projectIds) {
+                futures.add(executor.submit(() -> {
+                    rebuildProject(projectId, progress);
+                    progress.projectCompleted();
+                    logProgressIfDue(progress);
+                }));
+            }
+            var failures = new ArrayList<Throwable>();
+            for(var future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+            progress.finish();
+            logger.info("Rebuilt permissions: {}", progress);
+            if(!failures.isEmpty()) {
+                var exception = new IllegalStateException(failures.size() + " of " + projectIds.size() + " projects could not be rebuilt");
+                failures.forEach(exception::addSuppressed);
+                throw exception;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding permissions", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Rebuilds in place, in parallel on the pool of workers, the application level role assignments and the role
+     * assignments of each project, in project id order.  The application level assignments come first.  This is used
+     * by jobs, which checkpoint the last project that has been rebuilt so that they can be resumed.
+     * <p>
+     * The listener is called on the calling thread, in project id order, as projects are rebuilt.  When the listener
+     * is called for a project, that project and every project before it have been rebuilt, so the project can be used
+     * as a checkpoint.  Projects after it may already be being rebuilt.  Only one full rebuild runs at a time.
+     * @param after The project that was last reported to the listener by a previous run, or null to start with the
+     *              application level assignments.  {@link #APPLICATION_CHECKPOINT} stands for the application level
+     *              assignments.
+     * @param listener The listener.  It may return false to stop the rebuild, in which case projects that are
+     *                 being rebuilt are interrupted and are not reported.
+     * @throws IllegalStateException if a project could not be rebuilt.  Projects after it are not reported.
+     */
+    public void rebuildProjectsInPlace(@Nullable String after, @Nonnull ProjectRebuildListener listener) {
+        try(var ignored = locks.lockForFullRebuild()) {
+            var checkpoints = new TreeSet<String>();
+            getProjectIds().forEach(projectId -> checkpoints.add(projectId != null ? projectId : APPLICATION_CHECKPOINT));
+            var remaining = after != null ? List.copyOf(checkpoints.tailSet(after, false)) : List.copyOf(checkpoints);
+            var progress = new RebuildProgress(remaining.size());
+            currentProgress.set(progress);
+            logger.info("Rebuilding permissions for {} projects using {} workers", remaining.size(), workerCount);
+            var executor = Executors.newFixedThreadPool(workerCount, new ThreadFactoryBuilder()
+                    .setNameFormat("permission-rebuild-%d")
+                    .setDaemon(true)
+                    .build());
+            try {
+                // Projects are submitted a bounded distance ahead of the oldest unreported project, so that stopping
+                // does not leave a long queue of projects behind
+                var inFlight = new ArrayDeque<Future<ProjectRebuild>>();
+                var next = remaining.iterator();
+                while(next.hasNext() || !inFlight.isEmpty()) {
+                    while(next.hasNext() && inFlight.size() < workerCount * 4) {
+                        var checkpoint = next.next();
+                        var projectId = checkpoint.equals(APPLICATION_CHECKPOINT) ? null : checkpoint;
+                        inFlight.add(executor.submit(() -> {
+                            var projectProgress = new RebuildProgress(1);
+                            var rewritten = rebuildProject(projectId, projectProgress);
+                            progress.assignmentsRebuilt(projectProgress.getRebuiltAssignments(), rewritten);
+                            progress.projectCompleted();
+                            logProgressIfDue(progress);
+                            return new ProjectRebuild(projectId != null ? ProjectId.valueOf(projectId) : null,
+                                                      checkpoint,
+                                                      projectProgress.getRebuiltAssignments(),
+                                                      rewritten);
+                        }));
+                    }
+                    ProjectRebuild rebuilt;
+                    try {
+                        rebuilt = inFlight.remove().get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Could not rebuild permissions", e.getCause());
+                    }
+                    if(!listener.projectRebuilt(rebuilt)) {
+                        progress.finish();
+                        logger.info("Stopped rebuilding permissions: {}", progress);
+                        return;
+                    }
+                }
+                progress.finish();
+                logger.info("Rebuilt permissions: {}", progress);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rebuilding permissions", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the role assignments of the specified project on the calling thread.
+     */
+    public void rebuildProject(@Nonnull ProjectId projectId) {
+        var progress = new RebuildProgress(1);
+        rebuildProject(projectId.value(), progress);
+        progress.projectCompleted();
+        progress.finish();
+        logger.info("Rebuilt permissions for project {}: {}", projectId, progress);
+    }
+
+    /**
+     * Rebuilds, on the calling thread, the role assignments of the specified project that assign one of the specified
+     * roles or that have one of them in their stored role closure.
+     * @param projectId The project.
+     * @param roleIds The roles whose closures may have changed.
+     */
+    public void rebuildProject(@Nonnull ProjectId projectId, @Nonnull Collection<RoleId> roleIds) {
+        var roleIdValues = roleIds.stream().map(RoleId::id).toList();
+        // Each branch of the $or is served by its own (projectId, ...) index
+        var filter = new Document(PROJECT_ID, projectId.value())
+                .append("$or", List.of(new Document(ROLE_CLOSURE, new Document("$in", roleIdValues)),
+                                       new Document(ASSIGNED_ROLES, new Document("$in", roleIdValues))));
+        var progress = new RebuildProgress(1);
+        rebuildProject(projectId.value(), filter, progress);
+        progress.projectCompleted();
+        progress.finish();
+        logger.info("Incrementally rebuilt permissions for project {}: {}", projectId, progress);
+    }
+
+    /**
+     * Counts the role assignments of the specified project
+     * @param projectId The project, or null to count all role assignments.
+     */
+    public long countAssignments(@Nullable ProjectId projectId) {
+        var filter = projectId != null ? new Document(PROJECT_ID, projectId.value()) : new Document();
+        return mongoTemplate.getCollection(COLLECTION_NAME).countDocuments(filter);
+    }
+
+    /**
+     * Rebuilds, on the calling thread, the next batch of role assignments of the specified project in _id order.
+     * The batch is rebuilt under the write lock for the project.
+     * @param projectId The project whose assignments are rebuilt.
+     * @param after The _id of the last assignment of the previous batch, or null to start with the first assignment.
+     * @param limit The maximum number of assignments in the batch.
+     * @return The result of rebuilding the batch.  The batch is empty if there are no assignments after the specified
+     * _id.
+     */
+    @Nonnull
+    public RebuildBatch rebuildBatch(@Nonnull ProjectId projectId, @Nullable ObjectId after, int limit) {
+        var filter = new Document(PROJECT_ID, projectId.value());
+        if(after != null) {
+            filter.append("_id", new Document("$gt", after));
+        }
+        var roleAssignments = getRoleAssignmentCollection().find(filter)
+                .sort(new Document("_id", 1))
+                .limit(limit)
+                .into(new ArrayList<>(limit));
+        if(roleAssignments.isEmpty()) {
+            return new RebuildBatch(after, 0, 0, Set.of());
+        }
+        var rewritten = 0L;
+        try(var ignored = locks.lockForWrite(projectId.value())) {
+            var closures = new HashMap<Set<RoleId>, AssignmentClosure>();
+            var writes = new ArrayList<WriteModel<Document>>(roleAssignments.size());
+            for(var roleAssignment : roleAssignments) {
+                var assignedRoles = roleAssignment.getAssignedRoles().stream()
+                        .map(RoleId::new)
+                        .collect(Collectors.toUnmodifiableSet());
+                var closure = closures.computeIfAbsent(assignedRoles,
+                        roleIds -> assignmentClosureCalculator.getAssignmentClosure(projectId, roleIds));
+                if(!isUpToDate(roleAssignment, closure)) {
+                    writes.add(toReplacement(roleAssignment, closure));
+                }
+            }
+            if(!writes.isEmpty()) {
+                flush(writes);
+                capabilityClosureCache.invalidateProject(projectId);
+                rewritten += writes.size();
+                shadowCollectionRebuilder.projectRebuilt(projectId.value());
+            }
+        }
+        totalRebuiltAssignments.addAndGet(roleAssignments.size());
+        totalRewrittenAssignments.addAndGet(rewritten);
+        var lastProcessedId = roleAssignments.get(roleAssignments.size() - 1).getObjectId().orElseThrow();
+        return new RebuildBatch(lastProcessedId, roleAssignments.size(), rewritten, rewritten > 0 ? Set.of(projectId) : Set.of());
+    }
+
+    private static boolean isUpToDate(RoleAssignment roleAssignment, AssignmentClosure closure) {
+        return closure.roleClosure().equals(roleAssignment.getRoleClosure())
+                && closure.capabilityClosure().equals(roleAssignment.getCapabilityClosure());
+    }
+
+    /**
+     * @return The number of assignments that were rewritten
+     */
+    private long rebuildProject(@Nullable String projectId, RebuildProgress progress) {
+        return rebuildProject(projectId, new Document(PROJECT_ID, projectId), progress);
+    }
+
+    private long rebuildProject(@Nullable String projectId, Document filter, RebuildProgress progress) {
+        try(var ignored = locks.lockForWrite(projectId)) {
+            var project = projectId != null ? ProjectId.valueOf(projectId) : null;
+            // Closures depend only on the project and the assigned roles
+            var closures = new HashMap<Set<RoleId>, AssignmentClosure>();
+            var writes = new ArrayList<WriteModel<Document>>(batchSize);
+            var rebuilt = 0L;
+            var rewritten = 0L;
+            for(var roleAssignment : getRoleAssignmentCollection().find(filter)) {
+                var assignedRoles = roleAssignment.getAssignedRoles().stream()
+                        .map(RoleId::new)
+                        .collect(Collectors.toUnmodifiableSet());
+                var closure = closures.computeIfAbsent(assignedRoles,
+                        roleIds -> assignmentClosureCalculator.getAssignmentClosure(project, roleIds));
+                rebuilt++;
+                if(isUpToDate(roleAssignment, closure)) {
+                    continue;
+                }
+                writes.add(toReplacement(roleAssignment, closure));
+                rewritten++;
+                if(writes.size() >= batchSize) {
+                    flush(writes);
+                }
+            }
+            flush(writes);
+            capabilityClosureCache.invalidateProject(projectId);
+            if(rewritten > 0) {
+                shadowCollectionRebuilder.projectRebuilt(projectId);
+            }
+            progress.assignmentsRebuilt(rebuilt, rewritten);
+            totalRebuiltAssignments.addAndGet(rebuilt);
+            totalRewrittenAssignments.addAndGet(rewritten);
+            return rewritten;
+        }
+    }
+
+    private WriteModel<Document> toReplacement(RoleAssignment roleAssignment, AssignmentClosure closure) {
+        var id = roleAssignment.getObjectId().orElseThrow();
+        var updatedRoleAssignment = new RoleAssignment(roleAssignment.getUserName().orElse(null),
+                                                       roleAssignment.getProjectId().orElse(null),
+                                                       roleAssignment.getAssignedRoles(),
+                                                       closure.roleClosure(),
+                                                       closure.capabilityClosure());
+        var document = objectMapper.convertValue(updatedRoleAssignment, Document.class);
+        document.put("_id", id);
+        // Batches are read before the project lock is taken, so an assignment may have been changed in the meantime.
+        // A changed assignment was written with up-to-date closures, so it is left alone.
+        var filter = new Document("_id", id).append(ASSIGNED_ROLES, roleAssignment.getAssignedRoles());
+        return new ReplaceOneModel<>(filter, document);
+    }
+
+    private void flush(List<WriteModel<Document>> writes) {
+        if(writes.isEmpty()) {
+            return;
+        }
+        mongoTemplate.getCollection(COLLECTION_NAME).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        writes.clear();
+    }
+
+    private Set<String> getProjectIds() {
+        var projectIds = new LinkedHashSet<String>();
+        mongoTemplate.getCollection(COLLECTION_NAME)
+                .distinct(PROJECT_ID, BsonValue.class)
+                .forEach(projectId -> projectIds.add(projectId.isString() ? projectId.asString().getValue() : null));
+        // Application level assignments may have no projectId field at all, which distinct does not report
+        projectIds.add(null);
+        return projectIds;
+    }
+
+    private MongoCollection<RoleAssignment> getRoleAssignmentCollection() {
+        return mongoTemplate.getCollection(COLLECTION_NAME)
+                .withCodecRegistry(RoleAssignmentCodec.CODEC_REGISTRY)
+                .withDocumentClass(RoleAssignment.class);
+    }
+
+    private void logProgressIfDue(RebuildProgress progress) {
+        if(progress.shouldLog(PROGRESS_LOG_INTERVAL_MILLIS)) {
+            logger.info("Rebuilding permissions: {}", progress);
+        }
+    }
+
+    /**
+     * Gets the progress of the current full rebuild, or of the last full rebuild if none is running
+     */
+    @Nonnull
+    public Optional<RebuildProgress> getProgress() {
+        return Optional.ofNullable(currentProgress.get());
+    }
+
+    /**
+     * Gets the number of role assignments that have been examined by rebuilds since startup
+     */
+    public long getTotalRebuiltAssignments() {
+        return totalRebuiltAssignments.get();
+    }
+
+    /**
+     * Gets the number of role assignments whose closures had changed and that were rewritten by rebuilds since
+     * startup
+     */
+    public long getTotalRewrittenAssignments() {
+        return totalRewrittenAssignments.get();
+    }
+
+    /**
+     * Receives the projects rebuilt by {@link #rebuildProjectsInPlace(String, ProjectRebuildListener)}
+     */
+    public interface ProjectRebuildListener {
+
+        /**
+         * Called when a project, and every project before it, has been rebuilt
+         * @return true to continue the rebuild, or false to stop it.
+         */
+        boolean projectRebuilt(@Nonnull ProjectRebuild projectRebuild);
+    }
+
+    /**
+     * The result of rebuilding the role assignments of a project
+     * @param projectId The project, or null for the application level assignments.
+     * @param checkpoint The checkpoint to resume a rebuild after this project from.
+     * @param rebuiltAssignments The number of assignments of the project.
+     * @param rewrittenAssignments The number of assignments whose closures had changed and that were rewritten.
+     */
+    public record ProjectRebuild(@Nullable ProjectId projectId,
+                                 @Nonnull String checkpoint,
+                                 long rebuiltAssignments,
+                                 long rewrittenAssignments) {
+
+    }
+
+    /**
+     * The result of rebuilding a batch of role assignments
+     * @param lastProcessedId The _id of the last assignment in the batch.  If the batch is empty then this is the
+     *                        _id that the batch started after.
+     * @param rebuiltAssignments The number of assignments in the batch.
+     * @param rewrittenAssignments The number of assignments whose closures had changed and that were rewritten.
+     * @param changedProjects The projects that had rewritten assignments.
+     */
+    public record RebuildBatch(@Nullable ObjectId lastProcessedId,
+                               int rebuiltAssignments,
+                               long rewrittenAssignments,
+                               @Nonnull Set<ProjectId> changedProjects) {
+
+        public boolean isEmpty() {
+            return rebuiltAssignments == 0;
+        }
+    }
+
+    /**
+     * The progress of a rebuild
+     */
+    public static class RebuildProgress {
+
+        private final int totalProjects;
+
+        private final AtomicInteger completedProjects = new AtomicInteger();
+
+        private final AtomicLong rebuiltAssignments = new AtomicLong();
+
+        private final AtomicLong rewrittenAssignments = new AtomicLong();
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicLong lastLogMillis = new AtomicLong(System.currentTimeMillis());
+
+        private volatile long finishNanos = 0;
+
+        RebuildProgress(int totalProjects) {
+            this.totalProjects = totalProjects;
+        }
+
+        void projectCompleted() {
+            completedProjects.incrementAndGet();
+        }
+
+        void assignmentsRebuilt(long rebuilt, long rewritten) {
+            rebuiltAssignments.addAndGet(rebuilt);
+            rewrittenAssignments.addAndGet(rewritten);
+        }
+
+        void finish() {
+            finishNanos = System.nanoTime();
+        }
+
+        private boolean shouldLog(long intervalMillis) {
+            var now = System.currentTimeMillis();
+            var last = lastLogMillis.get();
+            return now - last >= intervalMillis && lastLogMillis.compareAndSet(last, now);
+        }
+
+        public int getTotalProjects() {
+            return totalProjects;
+        }
+
+        public int getCompletedProjects() {
+            return completedProjects.get();
+        }
+
+        public long getRebuiltAssignments() {
+            return rebuiltAssignments.get();
+        }
+
+        public long getRewrittenAssignments() {
+            return rewrittenAssignments.get();
+        }
+
+        public boolean isFinished() {
+            return finishNanos != 0;
+        }
+
+        @Nonnull
+        public Duration getElapsed() {
+            var end = finishNanos != 0 ? finishNanos : System.nanoTime();
+            return Duration.ofNanos(end - startNanos);
+        }
+
+        /**
+         * Gets the number of role assignments examined per second
+         */
+        public double getAssignmentsPerSecond() {
+            var seconds = getElapsed().toNanos() / 1e9;
+            return seconds > 0 ? getRebuiltAssignments() / seconds : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d projects, %d assignments (%d rewritten) in %d ms, %.0f assignments/s",
+                                 getCompletedProjects(),
+                                 totalProjects,
+                                 getRebuiltAssignments(),
+                                 getRewrittenAssignments(),
+                                 getElapsed().toMillis(),
+                                 getAssignmentsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.stanford.protege.webprotege.common.EventId;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.ipc.EventDispatcher;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sits in front of the {@link EventDispatcher} and merges {@link PermissionsChangedEvent}s for the same project.
+ * A change to the permissions of a project is dispatched once the coalescing window has elapsed.  Further changes
+ * to the same project within the window are merged into that one event.  A window of zero dispatches every change
+ * immediately.
+ * <p>
+ * Changes that are made inside a batch, see {@link #beginBatch()}, are held until the outermost batch on the
+ * current thread is closed.  They are then dispatched immediately, once per project.
+ */
+@Component
+public class PermissionsChangedEventCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionsChangedEventCoalescer.class);
+
+    private final EventDispatcher eventDispatcher;
+
+    private final long windowMillis;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Projects whose changes are waiting for the window to elapse
+     */
+    private final Set<ProjectId> pendingProjects = ConcurrentHashMap.newKeySet();
+
+    private final ThreadLocal<BatchScope> batchScope = new ThreadLocal<>();
+
+    private final LongAdder mergedEventCount = new LongAdder();
+
+    private final LongAdder sentEventCount = new LongAdder();
+
+    public PermissionsChangedEventCoalescer(EventDispatcher eventDispatcher,
+                                            @Value("${webprotege.authorization.permissions-changed-events.coalescing-window:250ms}") Duration window) {
+        this.eventDispatcher = eventDispatcher;
+        this.windowMillis = window.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                            .setNameFormat("permissions-changed-events-%d")
+                                                                            .setDaemon(true)
+                                                                            .build());
+    }
+
+    /**
+     * Records that the permissions for the specified project have changed.  A {@link PermissionsChangedEvent} for
+     * the project will be dispatched, possibly merged with events for other changes to the same project.
+     */
+    public void projectPermissionsChanged(@Nonnull ProjectId projectId) {
+        var batch = batchScope.get();
+        if(batch != null) {
+            if(!batch.projectIds.add(projectId)) {
+                mergedEventCount.increment();
+            }
+            return;
+        }
+        if(windowMillis <= 0) {
+            dispatch(projectId);
+            return;
+        }
+        if(pendingProjects.add(projectId)) {
+            scheduler.schedule(() -> dispatchPending(projectId), windowMillis, TimeUnit.MILLISECONDS);
+        }
+        else {
+            mergedEventCount.increment();
+        }
+    }
+
+    /**
+     * Records that the application level permissions have changed.  These changes are rare, so an
+     * {@link ApplicationPermissionsChangedEvent} is dispatched immediately, without coalescing.
+     */
+    public void applicationPermissionsChanged() {
+        try {
+            eventDispatcher.dispatchEvent(new ApplicationPermissionsChangedEvent(EventId.generate()));
+            sentEventCount.increment();
+        } catch (RuntimeException e) {
+            logger.error("Could not dispatch ApplicationPermissionsChangedEvent", e);
+        }
+    }
+
+    /**
+     * Begins a batch of writes on the current thread.  Events for changes made before the batch is closed are held,
+     * and are dispatched, once per project, when the outermost batch is closed.  Batches are used with
+     * try-with-resources.
+     */
+    @Nonnull
+    public Batch beginBatch() {
+        var batch = batchScope.get();
+        if(batch == null) {
+            batch = new BatchScope();
+            batchScope.set(batch);
+        }
+        batch.depth++;
+        return this::endBatch;
+    }
+
+    private void endBatch() {
+        var batch = batchScope.get();
+        if(batch == null) {
+            return;
+        }
+        batch.depth--;
+        if(batch.depth > 0) {
+            return;
+        }
+        batchScope.remove();
+        for(var projectId : batch.projectIds) {
+            // Changes to the same project that are waiting for the window are covered by this event
+            if(pendingProjects.remove(projectId)) {
+                mergedEventCount.increment();
+            }
+            dispatch(projectId);
+        }
+    }
+
+    private void dispatchPending(ProjectId projectId) {
+        if(pendingProjects.remove(projectId)) {
+            dispatch(projectId);
+        }
+    }
+
+    private void dispatch(ProjectId projectId) {
+        try {
+            eventDispatcher.dispatchEvent(new PermissionsChangedEvent(EventId.generate(), projectId));
+            sentEventCount.increment();
+        } catch (RuntimeException e) {
+            logger.error("Could not dispatch PermissionsChangedEvent for project {}", projectId, e);
+        }
+    }
+
+    /**
+     * Dispatches the events that are waiting for their window to elapse
+     */
+    @PreDestroy
+    public void flush() {
+        scheduler.shutdownNow();
+        for(var projectId : Set.copyOf(pendingProjects)) {
+            dispatchPending(projectId);
+        }
+    }
+
+    /**
+     * Gets the number of changes that were merged into an event for an earlier change to the same project
+     */
+    public long getMergedEventCount() {
+        return mergedEventCount.sum();
+    }
+
+    /**
+     * Gets the number of events that have been dispatched
+     */
+    public long getSentEventCount() {
+        return sentEventCount.sum();
+    }
+
+    /**
+     * A batch of writes.  Closing the batch ends it.
+     */
+    public interface Batch extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private static class BatchScope {
+
+        private final Set<ProjectId> projectIds = new LinkedHashSet<>();
+
+        private int depth = 0;
+    }
+}
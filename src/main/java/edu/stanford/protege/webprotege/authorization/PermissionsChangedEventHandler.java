@@ -0,0 +1,54 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.ipc.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Evicts cached capability closures and the cached role graph for a project when the permissions for that
+ * project change.  Permissions
+ * may be changed by another instance of this service, so the local caches cannot rely on local writes alone.
+ * <p>
+ * Every instance must receive every event, so this handler listens to a queue of its own, which is set up by
+ * {@link PermissionsChangedEventsConfiguration}, rather than to the shared events queue.
+ */
+public class PermissionsChangedEventHandler implements EventHandler<PermissionsChangedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionsChangedEventHandler.class);
+
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    private final ProjectRoleDefinitionsManager projectRoleDefinitionsManager;
+
+    public PermissionsChangedEventHandler(CapabilityClosureCache capabilityClosureCache,
+                                          ProjectRoleDefinitionsManager projectRoleDefinitionsManager) {
+        this.capabilityClosureCache = capabilityClosureCache;
+        this.projectRoleDefinitionsManager = projectRoleDefinitionsManager;
+    }
+
+    @Nonnull
+    @Override
+    public String getChannelName() {
+        return PermissionsChangedEvent.CHANNEL;
+    }
+
+    @Nonnull
+    @Override
+    public String getHandlerName() {
+        return PermissionsChangedEventHandler.class.getName();
+    }
+
+    @Override
+    public Class<PermissionsChangedEvent> getEventClass() {
+        return PermissionsChangedEvent.class;
+    }
+
+    @Override
+    public void handleEvent(PermissionsChangedEvent event) {
+        logger.debug("Permissions changed for project {}.  Evicting cached capability closures and role graph.", event.projectId());
+        capabilityClosureCache.invalidateProject(event.projectId());
+        projectRoleDefinitionsManager.invalidateProjectRoleGraph(event.projectId());
+    }
+}
@@ -0,0 +1,74 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.stanford.protege.webprotege.common.Event;
+import edu.stanford.protege.webprotege.ipc.EventHandler;
+import edu.stanford.protege.webprotege.ipc.impl.RabbitMQEventHandlerWrapper;
+import edu.stanford.protege.webprotege.ipc.impl.RabbitMQEventsConfiguration;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delivers {@link PermissionsChangedEvent}s and {@link ApplicationPermissionsChangedEvent}s to every instance of this
+ * service.  The events queue of
+ * {@link RabbitMQEventsConfiguration} is shared by all instances, so each event on it is consumed by only one of
+ * them.  Every instance caches capability closures and role graphs, so each instance binds a queue of its own to the
+ * event exchange.  The queue is exclusive and auto-delete, so it is deleted when the instance's connection closes,
+ * whether the instance stops or dies.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "webprotege.rabbitmq", name = "event-subscribe", havingValue = "true")
+public class PermissionsChangedEventsConfiguration {
+
+    public static final String QUEUE_NAME_PREFIX = "webprotege-authorization-permissions-changed-";
+
+    private final String queueName;
+
+    public PermissionsChangedEventsConfiguration(@Value("${webprotege.authorization.permissions-changed-events.instance-id:}") String instanceId) {
+        // A random suffix keeps the name unique when an instance restarts before the broker has noticed that the
+        // connection of its previous run has gone, since the old exclusive queue is not deleted until then
+        this.queueName = QUEUE_NAME_PREFIX + (instanceId.isBlank() ? ChangeStreamCacheInvalidator.getHostName() + "-" + UUID.randomUUID() : instanceId);
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    @Bean
+    public Declarables permissionsChangedEventsDeclarables() {
+        var queue = new Queue(queueName, false, true, true);
+        var binding = new Binding(queueName,
+                                  Binding.DestinationType.QUEUE,
+                                  RabbitMQEventsConfiguration.EVENT_EXCHANGE,
+                                  "",
+                                  null);
+        return new Declarables(queue, binding);
+    }
+
+    /**
+     * The handlers are not beans, so that they are not also registered with the listener of the shared events queue
+     */
+    @Bean
+    public SimpleMessageListenerContainer permissionsChangedEventsListenerContainer(ConnectionFactory connectionFactory,
+                                                                                    ObjectMapper objectMapper,
+                                                                                    CapabilityClosureCache capabilityClosureCache,
+                                                                                    ProjectRoleDefinitionsManager projectRoleDefinitionsManager) {
+        var handlers = List.<EventHandler<? extends Event>>of(
+                new PermissionsChangedEventHandler(capabilityClosureCache, projectRoleDefinitionsManager),
+                new ApplicationPermissionsChangedEventHandler(capabilityClosureCache));
+        var container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueueNames(queueName);
+        container.setMessageListener(new RabbitMQEventHandlerWrapper<>(handlers, objectMapper));
+        return container;
+    }
+}
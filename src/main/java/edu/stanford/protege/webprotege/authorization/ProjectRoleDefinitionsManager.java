@@ -1,8 +1,9 @@
 package edu.stanford.protege.webprotege.authorization;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import edu.stanford.protege.webprotege.common.ProjectId;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
@@ -15,14 +16,21 @@ import java.util.stream.Collectors;
 @Component
 public class ProjectRoleDefinitionsManager {
 
-    private static final Logger logger = LoggerFactory.getLogger(ProjectRoleDefinitionsManager.class);
-
     private final ProjectRoleDefinitionsRepository repository;
 
+    private static final ProjectRoleGraph BUILT_IN_ROLE_GRAPH = ProjectRoleGraph.compile(getBuiltInProjectRoleDefinitions());
+
+    private static final long MAXIMUM_CACHED_ROLE_GRAPHS = 10_000;
+
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
+    private final LoadingCache<ProjectId, ProjectRoleGraph> roleGraphs;
+
     public ProjectRoleDefinitionsManager(ProjectRoleDefinitionsRepository repository) {
         this.repository = repository;
+        this.roleGraphs = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_CACHED_ROLE_GRAPHS)
+                .build(CacheLoader.from(this::loadProjectRoleGraph));
     }
 
     /**
@@ -30,9 +38,12 @@ public class ProjectRoleDefinitionsManager {
      * role definitions.
      * @param projectId The project id that identifies the project to which the specified roles will pertain.
      * @param roleDefinitions The role definitions.  This should be a complete collection of project roles.
+     * @return The ids of the roles whose closures may have changed.  Role assignments that assign these roles, or
+     * that have them in their stored role closures, need to be rebuilt.
      */
-    public void setProjectRoleDefinitions(@Nonnull ProjectId projectId,
-                                          @Nonnull Collection<RoleDefinition> roleDefinitions) {
+    @Nonnull
+    public Set<RoleId> setProjectRoleDefinitions(@Nonnull ProjectId projectId,
+                                                 @Nonnull Collection<RoleDefinition> roleDefinitions) {
         for(var roleDefinition : roleDefinitions) {
             if(!roleDefinition.roleType().equals(RoleType.PROJECT_ROLE)) {
                 throw new IllegalArgumentException("Role definition is not a project role: " + roleDefinition);
@@ -40,8 +51,12 @@ public class ProjectRoleDefinitionsManager {
         }
         lock.writeLock().lock();
         try {
+            // Compared with the record that the save replaced, since another instance may have saved definitions
+            // since they were last read here
             var record = ProjectRoleDefinitionsRecord.get(projectId, roleDefinitions);
-            repository.saveProjectRoleDefinitions(record);
+            var previous = toRoleGraph(repository.saveProjectRoleDefinitions(record));
+            roleGraphs.invalidate(projectId);
+            return getAffectedRoleIds(previous, ProjectRoleGraph.compile(roleDefinitions));
         } finally {
             lock.writeLock().unlock();
         }
@@ -51,11 +66,16 @@ public class ProjectRoleDefinitionsManager {
      * Clears the role definitions for the specified project.  This removes any customization of project roles
      * for the specified project.
      * @param projectId The project.
+     * @return The ids of the roles whose closures may have changed.  Role assignments that assign these roles, or
+     * that have them in their stored role closures, need to be rebuilt.
      */
-    public void clearProjectRoleDefinitions(@Nonnull ProjectId projectId) {
+    @Nonnull
+    public Set<RoleId> clearProjectRoleDefinitions(@Nonnull ProjectId projectId) {
         lock.writeLock().lock();
         try {
-            repository.clearProjectRoleDefinitions(projectId);
+            var previous = toRoleGraph(repository.clearProjectRoleDefinitions(projectId));
+            roleGraphs.invalidate(projectId);
+            return getAffectedRoleIds(previous, BUILT_IN_ROLE_GRAPH);
         } finally {
             lock.writeLock().unlock();
         }
@@ -70,21 +90,7 @@ public class ProjectRoleDefinitionsManager {
      * @return A list of role definitions that apply to the specified project.
      */
     public List<RoleDefinition> getEffectiveProjectRoleDefinitions(@Nullable ProjectId projectId) {
-        if(projectId == null) {
-            return getBuiltInProjectRoleDefinitions();
-        }
-        lock.readLock().lock();
-        try {
-            var record = repository.getProjectRoleDefinitions(projectId);
-            if(record.isEmpty()) {
-                return getBuiltInProjectRoleDefinitions();
-            }
-            else {
-                return List.copyOf(record.get().roleDefinitions());
-            }
-        } finally {
-            lock.readLock().unlock();
-        }
+        return getProjectRoleGraph(projectId).getRoleDefinitions();
     }
 
 
@@ -94,18 +100,13 @@ public class ProjectRoleDefinitionsManager {
      * @param projectId The project ID. If null, uses application-wide role definitions.
      * @param roleIds The set of role IDs to compute the closure for.
      * @return A set of role definitions that includes the specified set of roles and all the ancestor roles.
-     * @throws IllegalStateException if a cycle is detected in the role hierarchy.
      */
     public Set<RoleDefinition> getProjectRoleClosure(@Nullable ProjectId projectId, Collection<RoleId> roleIds) {
-        lock.readLock().lock();
-        try {
-            return roleIds.stream()
-                    .map(roleId -> getProjectRoleClosure(projectId, roleId))
-                    .flatMap(Set::stream)
-                    .collect(Collectors.toSet());
-        } finally {
-            lock.readLock().unlock();
-        }
+        var roleGraph = getProjectRoleGraph(projectId);
+        return roleIds.stream()
+                .map(roleGraph::getRoleClosure)
+                .flatMap(Set::stream)
+                .collect(Collectors.toSet());
     }
 
     /**
@@ -114,64 +115,83 @@ public class ProjectRoleDefinitionsManager {
      * @param projectId The project ID. If null, uses application-wide role definitions.
      * @param roleId The role ID to compute the closure for.
      * @return A set of role definitions that includes the specified role and all its parent roles.
-     * @throws IllegalStateException if a cycle is detected in the role hierarchy.
      */
     @Nonnull
     public Set<RoleDefinition> getProjectRoleClosure(@Nullable ProjectId projectId, @Nonnull RoleId roleId) {
+        return getProjectRoleGraph(projectId).getRoleClosure(roleId);
+    }
+
+    /**
+     * Gets the compiled role graph for the specified project.  Graphs are cached by project id.  Projects that do
+     * not customize their role definitions share the built-in graph.
+     * @param projectId The project id.  If this is null then the built-in graph is returned.
+     */
+    @Nonnull
+    public ProjectRoleGraph getProjectRoleGraph(@Nullable ProjectId projectId) {
+        if(projectId == null) {
+            return BUILT_IN_ROLE_GRAPH;
+        }
+        var cached = roleGraphs.getIfPresent(projectId);
+        if(cached != null) {
+            return cached;
+        }
+        // Graphs are loaded under the read lock so that a concurrent change, which invalidates the
+        // graph under the write lock, cannot be overtaken by the caching of a stale graph
         lock.readLock().lock();
         try {
-            var projectRoleDefinitions = getEffectiveProjectRoleDefinitions(projectId);
-            var roleDefinitionsMap = new HashMap<RoleId, RoleDefinition>();
-            for(var roleDefinition : projectRoleDefinitions) {
-                roleDefinitionsMap.put(roleDefinition.roleId(), roleDefinition);
-            }
-
-            var result = new HashSet<RoleDefinition>();
-            var toProcess = new ArrayDeque<RoleId>();
-            var processing = new HashSet<RoleId>();
-            toProcess.add(roleId);
-
-            while (!toProcess.isEmpty()) {
-                var currentRoleId = toProcess.removeFirst();
-                if (!processing.add(currentRoleId)) {
-                    // We've seen this role before while processing - we have a cycle.  This is allowed but it's probably
-                    // a mistake.  Log the cycle.
-                    logRoleHierarchyCycle(currentRoleId, toProcess, roleDefinitionsMap);
-                }
-                var currentRole = roleDefinitionsMap.get(currentRoleId);
-                if (currentRole != null && result.add(currentRole)) {
-                    toProcess.addAll(currentRole.parentRoles());
-                }
-            }
-            return result;
+            return roleGraphs.getUnchecked(projectId);
         } finally {
             lock.readLock().unlock();
         }
     }
 
-    private static void logRoleHierarchyCycle(RoleId currentRoleId, ArrayDeque<RoleId> toProcess, HashMap<RoleId, RoleDefinition> roleDefinitionsMap) {
-        var cyclePath = new ArrayList<RoleId>();
-        cyclePath.add(currentRoleId);
-        var current = currentRoleId;
-        // Best-effort reconstruction of the cycle for this log message only - it must
-        // never throw, since a crash here would turn a merely-logged, tolerated data
-        // anomaly into a hard failure of whatever capability check triggered it. A
-        // dangling parent reference (a role id with no entry in roleDefinitionsMap) or
-        // a role with no parents left to follow both just end the reconstruction early
-        // instead of crashing; the size-bounded guard is a backstop against any other
-        // unanticipated non-termination.
-        var guard = roleDefinitionsMap.size() + 1;
-        while (guard-- > 0 && toProcess.contains(current)) {
-            var role = roleDefinitionsMap.get(current);
-            var parent = role == null ? null : role.parentRoles().stream().findFirst().orElse(null);
-            if (parent == null) {
-                break;
-            }
-            current = parent;
-            cyclePath.add(current);
+    /**
+     * Discards the cached role graph for the specified project, so that the role definitions are reloaded
+     * the next time that they are needed.  This is used when the definitions may have been changed elsewhere.
+     */
+    public void invalidateProjectRoleGraph(@Nonnull ProjectId projectId) {
+        // Taken so that a load that read the definitions before they were changed cannot cache them afterwards
+        lock.writeLock().lock();
+        try {
+            roleGraphs.invalidate(projectId);
+        } finally {
+            lock.writeLock().unlock();
         }
-        logger.warn("Cycle detected in role hierarchy: {}", String.join(" -> ",
-                cyclePath.stream().map(RoleId::id).toList()));
+    }
+
+    /**
+     * Discards all cached role graphs.  This is used when it is not known which projects' definitions may have been
+     * changed elsewhere.
+     */
+    public void invalidateAllProjectRoleGraphs() {
+        lock.writeLock().lock();
+        try {
+            roleGraphs.invalidateAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the roles whose closures may differ between two role graphs.  These are the roles whose definitions
+     * changed, together with the roles that have a changed role in their closure in the new graph.  Roles that had a
+     * changed role in their closure in the previous graph are found through the role closures that are stored in
+     * role assignments.
+     */
+    private static Set<RoleId> getAffectedRoleIds(ProjectRoleGraph previous, ProjectRoleGraph current) {
+        var changedRoleIds = ProjectRoleGraph.getChangedRoleIds(previous.getRoleDefinitions(), current.getRoleDefinitions());
+        var result = new HashSet<>(changedRoleIds);
+        result.addAll(current.getRolesWithClosureContaining(changedRoleIds));
+        return result;
+    }
+
+    private ProjectRoleGraph loadProjectRoleGraph(ProjectId projectId) {
+        return toRoleGraph(repository.getProjectRoleDefinitions(projectId));
+    }
+
+    private static ProjectRoleGraph toRoleGraph(Optional<ProjectRoleDefinitionsRecord> record) {
+        return record.map(r -> ProjectRoleGraph.compile(r.roleDefinitions()))
+                     .orElse(BUILT_IN_ROLE_GRAPH);
     }
 
     private static List<RoleDefinition> getBuiltInProjectRoleDefinitions() {
@@ -1,14 +1,16 @@
 package edu.stanford.protege.webprotege.authorization;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
 import edu.stanford.protege.webprotege.common.ProjectId;
 import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.Nullable;
+import javax.annotation.Nonnull;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.Optional;
@@ -16,43 +18,108 @@ import java.util.Optional;
 @Component
 public class ProjectRoleDefinitionsRepository {
 
-    private static final String COLLECTION_NAME = "ProjectRoleDefinitions";
+    static final String COLLECTION_NAME = "ProjectRoleDefinitions";
 
     private static final String REVISIONS_COLLECTION_NAME = "ProjectRoleDefinitions_revisions";
 
+    private static final String REVISION = "revision";
+
+    private static final int MAX_SAVE_ATTEMPTS = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectRoleDefinitionsRepository.class);
+
     private final MongoTemplate mongoTemplate;
 
     private final ObjectMapper objectMapper;
 
-    public ProjectRoleDefinitionsRepository(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+    private final MongoOperationMetrics mongoOperationMetrics;
+
+    public ProjectRoleDefinitionsRepository(MongoTemplate mongoTemplate,
+                                            ObjectMapper objectMapper,
+                                            MongoOperationMetrics mongoOperationMetrics) {
         this.mongoTemplate = mongoTemplate;
         this.objectMapper = objectMapper;
+        this.mongoOperationMetrics = mongoOperationMetrics;
+    }
+
+    /**
+     * Saves the role definitions for a project.  Concurrent saves for the same project, possibly from different
+     * instances of this service, are ordered by the revision number of the stored record.  A save replaces the
+     * record only if the record still has the revision that the save read.  Otherwise, the save is retried against
+     * the new revision.
+     * @return The record that the save replaced, which is the record at the revision that the save matched, or empty
+     * if there was no record for the project.  Concurrent saves may have changed the record since the caller last
+     * read it, so this, rather than an earlier read, is what the saved record should be compared with.
+     * @throws IllegalStateException if the save could not be applied after repeated attempts because of
+     * concurrent saves for the same project.
+     */
+    @Nonnull
+    public Optional<ProjectRoleDefinitionsRecord> saveProjectRoleDefinitions(ProjectRoleDefinitionsRecord record) {
+        var projectId = record.projectId().value();
+        var collection = mongoTemplate.getCollection(COLLECTION_NAME);
+        var idQuery = new Document("_id", projectId);
+        for(int attempt = 0; attempt < MAX_SAVE_ATTEMPTS; attempt++) {
+            var current = mongoOperationMetrics.record(COLLECTION_NAME, "findRevision",
+                    () -> collection.find(idQuery).projection(new Document(REVISION, 1)).first());
+            var document = toDocument(record);
+            if(current == null) {
+                document.put(REVISION, 1);
+                try {
+                    mongoOperationMetrics.record(COLLECTION_NAME, "insert", () -> collection.insertOne(document));
+                    saveRevision(document);
+                    return Optional.empty();
+                } catch (MongoWriteException e) {
+                    if(e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                        throw e;
+                    }
+                    // Inserted concurrently.  Retry against the inserted revision.
+                }
+            }
+            else {
+                var currentRevision = getRevisionNumber(current);
+                var revisionFilter = current.containsKey(REVISION) ? currentRevision : new Document("$exists", false);
+                var conditionalQuery = new Document("_id", projectId).append(REVISION, revisionFilter);
+                document.put(REVISION, currentRevision + 1);
+                // The replaced document is returned by the same operation that matched the revision
+                var replaced = mongoOperationMetrics.record(COLLECTION_NAME, "replace",
+                        () -> collection.findOneAndReplace(conditionalQuery, document));
+                if(replaced != null) {
+                    saveRevision(document);
+                    return Optional.of(toRecord(replaced));
+                }
+                // Replaced or deleted concurrently.  Retry against the new revision.
+            }
+            logger.debug("Concurrent save of role definitions for project {}.  Retrying.", projectId);
+        }
+        throw new IllegalStateException("Could not save role definitions for project " + projectId
+                                                + " after " + MAX_SAVE_ATTEMPTS + " attempts because of concurrent saves");
     }
 
-    public synchronized void saveProjectRoleDefinitions(ProjectRoleDefinitionsRecord record) {
+    private Document toDocument(ProjectRoleDefinitionsRecord record) {
         var document = objectMapper.convertValue(record, Document.class);
         document.put("_id", record.projectId().value());
         document.remove("projectId");
-        var collection = mongoTemplate.getCollection(COLLECTION_NAME);
-        var query = new Document("_id", record.projectId().value());
-        collection.replaceOne(query, document, new ReplaceOptions().upsert(true));
+        return document;
+    }
+
+    private void saveRevision(Document document) {
         var revisionsCollection = mongoTemplate.getCollection(REVISIONS_COLLECTION_NAME);
-        document.put("projectId", record.projectId().value());
-        document.remove("_id");
+        var revision = new Document(document);
+        revision.put("projectId", revision.remove("_id"));
         var dateTime = Instant.now();
         var dateTimeStamp = DateTimeFormatter.ISO_INSTANT.format(dateTime);
-        document.put("revisionDateTime", dateTimeStamp);
-        revisionsCollection.insertOne(document);
-
+        revision.put("revisionDateTime", dateTimeStamp);
+        mongoOperationMetrics.record(REVISIONS_COLLECTION_NAME, "insert", () -> revisionsCollection.insertOne(revision));
     }
 
-    private static Integer getRevisionNumber(@Nullable Document document) {
-        if(document == null) {
-            return 1;
-        }
-        var revisionNumber = document.getInteger("revision");
+    /**
+     * Gets the revision number of a stored record.  Records that were saved before revision numbers were
+     * introduced have revision 0.
+     */
+    private static int getRevisionNumber(@Nonnull Document document) {
+        var revisionNumber = document.getInteger(REVISION);
         if(revisionNumber == null) {
-            return 1;
+            return 0;
         }
         else {
             return revisionNumber;
@@ -60,23 +127,34 @@ public class ProjectRoleDefinitionsRepository {
     }
 
 
-    public synchronized void clearProjectRoleDefinitions(ProjectId projectId) {
+    /**
+     * Clears the role definitions for a project
+     * @return The record that was deleted, or empty if there was no record for the project.
+     */
+    @Nonnull
+    public Optional<ProjectRoleDefinitionsRecord> clearProjectRoleDefinitions(ProjectId projectId) {
         var collection = mongoTemplate.getCollection(COLLECTION_NAME);
-        collection.deleteOne(new Document("_id", projectId.value()));
+        var deleted = mongoOperationMetrics.record(COLLECTION_NAME, "delete",
+                () -> collection.findOneAndDelete(new Document("_id", projectId.value())));
+        return Optional.ofNullable(deleted).map(this::toRecord);
     }
 
-    public synchronized Optional<ProjectRoleDefinitionsRecord> getProjectRoleDefinitions(ProjectId projectId) {
+    public Optional<ProjectRoleDefinitionsRecord> getProjectRoleDefinitions(ProjectId projectId) {
         var query = new Document("_id", projectId.value());
         var collection = mongoTemplate.getCollection(COLLECTION_NAME);
-        var found = collection.find(query).first();
+        var found = mongoOperationMetrics.record(COLLECTION_NAME, "find", () -> collection.find(query).first());
         if(found == null) {
             return Optional.empty();
         }
         else {
-            var record = objectMapper.convertValue(found, ProjectRoleDefinitionsRecord.class);
-            return Optional.of(record);
+            return Optional.of(toRecord(found));
         }
     }
 
+    private ProjectRoleDefinitionsRecord toRecord(Document document) {
+        document.remove(REVISION);
+        return objectMapper.convertValue(document, ProjectRoleDefinitionsRecord.class);
+    }
+
 
 }
@@ -0,0 +1,153 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * An immutable, compiled form of the role definitions that are in effect for a project.  The role closure of
+ * every role is computed when the graph is compiled, so looking up a closure is a single map lookup.  Cycles in the
+ * role hierarchy are tolerated.  They are logged once, when the graph is compiled.
+ */
+public final class ProjectRoleGraph {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectRoleGraph.class);
+
+    private final List<RoleDefinition> roleDefinitions;
+
+    private final Map<RoleId, Set<RoleDefinition>> roleClosures;
+
+    private ProjectRoleGraph(List<RoleDefinition> roleDefinitions, Map<RoleId, Set<RoleDefinition>> roleClosures) {
+        this.roleDefinitions = roleDefinitions;
+        this.roleClosures = roleClosures;
+    }
+
+    /**
+     * Compiles the specified role definitions into a role graph.
+     * @param roleDefinitions The role definitions.  Parent roles that are not defined are ignored.
+     */
+    @Nonnull
+    public static ProjectRoleGraph compile(@Nonnull Collection<RoleDefinition> roleDefinitions) {
+        var roleDefinitionsMap = new HashMap<RoleId, RoleDefinition>();
+        for(var roleDefinition : roleDefinitions) {
+            roleDefinitionsMap.put(roleDefinition.roleId(), roleDefinition);
+        }
+        var roleClosures = new HashMap<RoleId, Set<RoleDefinition>>();
+        for(var roleId : roleDefinitionsMap.keySet()) {
+            roleClosures.put(roleId, Set.copyOf(computeRoleClosure(roleId, roleDefinitionsMap)));
+        }
+        return new ProjectRoleGraph(List.copyOf(roleDefinitions), Map.copyOf(roleClosures));
+    }
+
+    /**
+     * Gets the role definitions that this graph was compiled from.
+     */
+    @Nonnull
+    public List<RoleDefinition> getRoleDefinitions() {
+        return roleDefinitions;
+    }
+
+    /**
+     * Gets the role closure of the specified role.  The closure includes the role itself and all of its
+     * ancestor roles.
+     * @return The closure.  This is empty if the role is not defined in this graph.
+     */
+    @Nonnull
+    public Set<RoleDefinition> getRoleClosure(@Nonnull RoleId roleId) {
+        return roleClosures.getOrDefault(roleId, Set.of());
+    }
+
+    /**
+     * Gets the ids of the roles in this graph whose role closure contains any of the specified roles.  These are
+     * the specified roles themselves, if they are defined, and all of their descendant roles.
+     */
+    @Nonnull
+    public Set<RoleId> getRolesWithClosureContaining(@Nonnull Collection<RoleId> roleIds) {
+        var result = new HashSet<RoleId>();
+        roleClosures.forEach((roleId, closure) -> {
+            for(var roleDefinition : closure) {
+                if(roleIds.contains(roleDefinition.roleId())) {
+                    result.add(roleId);
+                    break;
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets the ids of the roles whose definitions differ between two collections of role definitions.  Roles that
+     * are only in one of the collections have changed.  Labels and descriptions are ignored, because they do not
+     * affect closures.
+     */
+    @Nonnull
+    public static Set<RoleId> getChangedRoleIds(@Nonnull Collection<RoleDefinition> before,
+                                                @Nonnull Collection<RoleDefinition> after) {
+        var beforeById = new HashMap<RoleId, RoleDefinition>();
+        before.forEach(r -> beforeById.put(r.roleId(), r));
+        var afterById = new HashMap<RoleId, RoleDefinition>();
+        after.forEach(r -> afterById.put(r.roleId(), r));
+        var result = new HashSet<RoleId>();
+        var roleIds = new HashSet<>(beforeById.keySet());
+        roleIds.addAll(afterById.keySet());
+        for(var roleId : roleIds) {
+            var beforeDefinition = beforeById.get(roleId);
+            var afterDefinition = afterById.get(roleId);
+            if(beforeDefinition == null || afterDefinition == null
+                    || !beforeDefinition.roleType().equals(afterDefinition.roleType())
+                    || !Set.copyOf(beforeDefinition.parentRoles()).equals(Set.copyOf(afterDefinition.parentRoles()))
+                    || !Set.copyOf(beforeDefinition.roleCapabilities()).equals(Set.copyOf(afterDefinition.roleCapabilities()))) {
+                result.add(roleId);
+            }
+        }
+        return result;
+    }
+
+    private static Set<RoleDefinition> computeRoleClosure(RoleId roleId, Map<RoleId, RoleDefinition> roleDefinitionsMap) {
+        var result = new HashSet<RoleDefinition>();
+        var toProcess = new ArrayDeque<RoleId>();
+        var processing = new HashSet<RoleId>();
+        toProcess.add(roleId);
+
+        while (!toProcess.isEmpty()) {
+            var currentRoleId = toProcess.removeFirst();
+            if (!processing.add(currentRoleId)) {
+                // We've seen this role before while processing - we have a cycle.  This is allowed but it's probably
+                // a mistake.  Log the cycle.
+                logRoleHierarchyCycle(currentRoleId, toProcess, roleDefinitionsMap);
+            }
+            var currentRole = roleDefinitionsMap.get(currentRoleId);
+            if (currentRole != null && result.add(currentRole)) {
+                toProcess.addAll(currentRole.parentRoles());
+            }
+        }
+        return result;
+    }
+
+    private static void logRoleHierarchyCycle(RoleId currentRoleId, ArrayDeque<RoleId> toProcess, Map<RoleId, RoleDefinition> roleDefinitionsMap) {
+        var cyclePath = new ArrayList<RoleId>();
+        cyclePath.add(currentRoleId);
+        var current = currentRoleId;
+        // Best-effort reconstruction of the cycle for this log message only - it must
+        // never throw, since a crash here would turn a merely-logged, tolerated data
+        // anomaly into a hard failure of whatever capability check triggered it. A
+        // dangling parent reference (a role id with no entry in roleDefinitionsMap) or
+        // a role with no parents left to follow both just end the reconstruction early
+        // instead of crashing; the size-bounded guard is a backstop against any other
+        // unanticipated non-termination.
+        var guard = roleDefinitionsMap.size() + 1;
+        while (guard-- > 0 && toProcess.contains(current)) {
+            var role = roleDefinitionsMap.get(current);
+            var parent = role == null ? null : role.parentRoles().stream().findFirst().orElse(null);
+            if (parent == null) {
+                break;
+            }
+            current = parent;
+            cyclePath.add(current);
+        }
+        logger.warn("Cycle detected in role hierarchy: {}", String.join(" -> ",
+                cyclePath.stream().map(RoleId::id).toList()));
+    }
+}
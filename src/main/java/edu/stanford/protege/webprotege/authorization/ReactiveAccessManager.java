@@ -0,0 +1,69 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A non-blocking variant of the read operations of the {@link AccessManager}.  Nothing is read until the returned
+ * publishers are subscribed to, and no thread is blocked while MongoDb is queried, so command handlers can compose
+ * these operations into their responses rather than waiting for them on the consumer thread.
+ */
+public interface ReactiveAccessManager {
+
+    /**
+     * Gets the role ids that have been assigned to the specified subject for the specified resource.
+     * @see AccessManager#getAssignedRoles(Subject, Resource)
+     */
+    @Nonnull
+    Flux<RoleId> getAssignedRoles(@Nonnull Subject subject,
+                                  @Nonnull Resource resource);
+
+    /**
+     * Gets the capability closure for the specified subject and resource pair.
+     * @see AccessManager#getCapabilityClosure(Subject, Resource)
+     */
+    @Nonnull
+    Mono<Set<Capability>> getCapabilityClosure(@Nonnull Subject subject,
+                                               @Nonnull Resource resource);
+
+    /**
+     * Tests to see if the specified subject has permission to execute the specified capability on the specified resource.
+     * @see AccessManager#hasPermission(Subject, Resource, Capability, String)
+     */
+    @Nonnull
+    Mono<Boolean> hasPermission(@Nonnull Subject subject,
+                                @Nonnull Resource resource,
+                                @Nonnull Capability capability,
+                                @Nullable String jwt);
+
+    /**
+     * Tests several (subject, resource, capability) checks at once.  Checks are grouped by subject and resource,
+     * so that the role assignments for each group are retrieved once.
+     *
+     * @param checks The checks.
+     * @param jwt The Jason Web Token (JWT) from which super admin roles can be determined. This may be blank or null.
+     * @return A list containing, for each check in order, {@code true} if the subject has permission to execute
+     * the capability on the resource, otherwise {@code false}.
+     */
+    @Nonnull
+    Mono<List<Boolean>> hasPermissions(@Nonnull List<AuthorizationCheck> checks,
+                                       @Nullable String jwt);
+
+    @Nonnull
+    Flux<Subject> getSubjectsWithAccessToResource(@Nonnull Resource resource);
+
+    @Nonnull
+    Flux<Subject> getSubjectsWithAccessToResource(@Nonnull Resource resource, @Nonnull Capability capability);
+
+    @Nonnull
+    Flux<Resource> getResourcesAccessibleToSubject(@Nonnull Subject subject, @Nonnull Capability capability);
+
+    @Nonnull
+    Flux<RoleAssignment> getRoleAssignments(@Nonnull ProjectId projectId);
+}
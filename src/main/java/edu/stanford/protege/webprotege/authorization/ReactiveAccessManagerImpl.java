@@ -0,0 +1,333 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+import static edu.stanford.protege.webprotege.authorization.AccessManagerImpl.COLLECTION_NAME;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.CAPABILITY_CLOSURE;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.PROJECT_ID;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.USER_NAME;
+
+/**
+ * A {@link ReactiveAccessManager} that is backed by MongoDb through a {@link ReactiveMongoTemplate}.  It reads the
+ * same role assignments as the {@link AccessManagerImpl}, and shares its {@link CapabilityClosureCache} and
+ * {@link RoleAssignmentIndex}, so answers that can be served from memory are returned without a query.
+ * <p>
+ * Project locks are blocking, so they are not taken here.  Each role assignment is replaced atomically, so reads are
+ * consistent for each assignment.  A closure that is loaded from MongoDb is only cached if nothing was invalidated
+ * while it was being loaded, which stops a concurrent write from being overtaken by the put of a stale closure.
+ * <p>
+ * Single permission checks honour the {@link PermissionCheckMode} in the same way as the {@link AccessManagerImpl}.
+ * Batches of checks are always made against merged capability closures, because each closure answers every check
+ * in the batch for its subject and resource.
+ */
+@Component
+public class ReactiveAccessManagerImpl implements ReactiveAccessManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveAccessManagerImpl.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private final JwtRolesExtractor jwtRolesExtractor;
+
+    private final BuiltInRoleOracle builtInRoleOracle;
+
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    private final CapabilityDictionary capabilityDictionary;
+
+    private final RoleAssignmentIndex roleAssignmentIndex;
+
+    private final MongoOperationMetrics mongoOperationMetrics;
+
+    private final DecisionAuditLog decisionAuditLog;
+
+    private final PermissionCheckMode permissionCheckMode;
+
+    /**
+     * Coalesces concurrent loads of the same merged capability closure
+     */
+    private final SingleFlight<AccessManagerImpl.ClosureKey, CapabilityBitSet> closureLoads = new SingleFlight<>();
+
+    public ReactiveAccessManagerImpl(ObjectMapper objectMapper,
+                                     ReactiveMongoTemplate reactiveMongoTemplate,
+                                     JwtRolesExtractor jwtRolesExtractor,
+                                     BuiltInRoleOracle builtInRoleOracle,
+                                     CapabilityClosureCache capabilityClosureCache,
+                                     CapabilityDictionary capabilityDictionary,
+                                     RoleAssignmentIndex roleAssignmentIndex,
+                                     MongoOperationMetrics mongoOperationMetrics,
+                                     DecisionAuditLog decisionAuditLog,
+                                     @Value("${webprotege.authorization.permission-check-mode:closure}") PermissionCheckMode permissionCheckMode) {
+        this.objectMapper = objectMapper;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.jwtRolesExtractor = jwtRolesExtractor;
+        this.builtInRoleOracle = builtInRoleOracle;
+        this.capabilityClosureCache = capabilityClosureCache;
+        this.capabilityDictionary = capabilityDictionary;
+        this.roleAssignmentIndex = roleAssignmentIndex;
+        this.mongoOperationMetrics = mongoOperationMetrics;
+        this.decisionAuditLog = decisionAuditLog;
+        this.permissionCheckMode = permissionCheckMode;
+    }
+
+    @Nullable
+    private static String toUserName(@Nonnull Subject subject) {
+        return subject.getUserName().orElse(null);
+    }
+
+    @Nullable
+    private static String toProjectIdString(Resource resource) {
+        return resource.getProjectId().map(ProjectId::id).orElse(null);
+    }
+
+    @Nonnull
+    @Override
+    public Flux<RoleId> getAssignedRoles(@Nonnull Subject subject, @Nonnull Resource resource) {
+        var filter = new Document(USER_NAME, toUserName(subject))
+                .append(PROJECT_ID, toProjectIdString(resource));
+        return findRoleAssignments("getAssignedRoles", filter)
+                .flatMapIterable(RoleAssignment::getAssignedRoles)
+                .map(RoleId::new)
+                .distinct();
+    }
+
+    @Nonnull
+    @Override
+    public Mono<Set<Capability>> getCapabilityClosure(@Nonnull Subject subject, @Nonnull Resource resource) {
+        return getMergedCapabilityClosure(subject, resource).map(capabilityDictionary::toCapabilities);
+    }
+
+    /**
+     * Gets the union of the capability closures of the role assignments that apply to the specified subject and
+     * resource, including the assignment for any signed in user.  This is served from memory, without a query, if
+     * possible.  Otherwise, concurrent subscribers for the same subject and resource share one query, as long as
+     * nothing has been invalidated since it started.
+     */
+    private Mono<CapabilityBitSet> getMergedCapabilityClosure(@Nonnull Subject subject, @Nonnull Resource resource) {
+        var userName = toUserName(subject);
+        var projectId = toProjectIdString(resource);
+        if(roleAssignmentIndex.isReady()) {
+            return Mono.just(roleAssignmentIndex.getCapabilityClosure(userName, projectId, !subject.isGuest()));
+        }
+        var cached = capabilityClosureCache.getIfPresent(userName, projectId);
+        if(cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.defer(() -> {
+            // The generation must be read before the query is made
+            var generation = capabilityClosureCache.getGeneration();
+            var key = new AccessManagerImpl.ClosureKey(userName, projectId, subject.isGuest(), generation);
+            return closureLoads.executeAsync(key, () -> loadMergedCapabilityClosure(subject, userName, projectId, generation));
+        });
+    }
+
+    private Mono<CapabilityBitSet> loadMergedCapabilityClosure(@Nonnull Subject subject,
+                                                               @Nullable String userName,
+                                                               @Nullable String projectId,
+                                                               long generation) {
+        return findRoleAssignments("loadCapabilityClosure", withUserOrAnyUserAndProject(subject, userName, projectId))
+                .reduceWith(CapabilityBitSet::builder,
+                            (closure, ra) -> closure.addAll(capabilityDictionary.toBitSet(ra.getCapabilityClosure())))
+                .map(CapabilityBitSet.Builder::build)
+                .doOnNext(closure -> capabilityClosureCache.putIfUnchanged(userName, projectId, closure, generation));
+    }
+
+    /**
+     * Gets the filter for the role assignments of the specified project that apply to the specified subject,
+     * including the assignment for any signed in user if the subject is not a guest
+     */
+    private static Document withUserOrAnyUserAndProject(@Nonnull Subject subject,
+                                                        @Nullable String userName,
+                                                        @Nullable String projectId) {
+        var filter = new Document(PROJECT_ID, projectId);
+        if(!subject.isGuest()) {
+            filter.append(USER_NAME, new Document("$in", Arrays.asList(userName, null)));
+        }
+        else {
+            filter.append(USER_NAME, userName);
+        }
+        return filter;
+    }
+
+    @Nonnull
+    @Override
+    public Mono<Boolean> hasPermission(@Nonnull Subject subject,
+                                       @Nonnull Resource resource,
+                                       @Nonnull Capability capability,
+                                       @Nullable String jwt) {
+        return checkPermission(subject, resource, capability, jwt)
+                .doOnNext(authorized -> decisionAuditLog.record(subject, resource, capability, authorized));
+    }
+
+    private Mono<Boolean> checkPermission(@Nonnull Subject subject,
+                                          @Nonnull Resource resource,
+                                          @Nonnull Capability capability,
+                                          @Nullable String jwt) {
+        if(permissionCheckMode == PermissionCheckMode.QUERY
+                && !roleAssignmentIndex.isReady()
+                && capabilityClosureCache.getIfPresent(toUserName(subject), toProjectIdString(resource)) == null) {
+            return hasAssignedCapability(subject, resource, capability)
+                    .map(assigned -> assigned
+                            || builtInRoleOracle.getCapabilitiesAssociatedToRoles(jwtRolesExtractor.safeExtractRoleIdsWithoutVerification(jwt))
+                                                .contains(capability));
+        }
+        return getMergedCapabilityClosure(subject, resource).map(capabilityClosure -> {
+            // Look up the id after the closure has been loaded, since loading registers any capabilities that
+            // have not been seen before
+            var capabilityId = capabilityDictionary.findId(capability);
+            if(capabilityClosure.contains(capabilityId)) {
+                return true;
+            }
+            var roleIds = jwtRolesExtractor.safeExtractRoleIdsWithoutVerification(jwt);
+            return builtInRoleOracle.getCapabilityBitSetAssociatedToRoles(roleIds).contains(capabilityId);
+        });
+    }
+
+    /**
+     * Determines whether a role assignment that applies to the specified subject and resource has the specified
+     * capability in its capability closure.  The query projects just the _id and is limited to one document.  The
+     * raw documents are read so that the projected document is not decoded as a role assignment.
+     */
+    private Mono<Boolean> hasAssignedCapability(@Nonnull Subject subject,
+                                                @Nonnull Resource resource,
+                                                @Nonnull Capability capability) {
+        return Mono.defer(() -> {
+            var filter = withUserOrAnyUserAndProject(subject, toUserName(subject), toProjectIdString(resource));
+            filter.append(CAPABILITY_CLOSURE,
+                          new Document("$elemMatch", AccessManagerImpl.toCapabilityFilter(objectMapper, capability)));
+            return timed("findAssignedCapability", reactiveMongoTemplate.getCollection(COLLECTION_NAME)
+                    .flatMap(collection -> Mono.from(collection.find(filter)
+                                                               .projection(new Document("_id", 1))
+                                                               .limit(1)
+                                                               .first()))
+                    .hasElement());
+        });
+    }
+
+    @Nonnull
+    @Override
+    public Mono<List<Boolean>> hasPermissions(@Nonnull List<AuthorizationCheck> checks, @Nullable String jwt) {
+        logger.debug("Checking {} permissions", checks.size());
+        // Checks for the same subject and resource share one merged closure, which is loaded once.  The distinct
+        // closures are loaded concurrently.
+        var checksBySubjectAndResource = new LinkedHashMap<List<String>, AuthorizationCheck>();
+        for(var check : checks) {
+            checksBySubjectAndResource.putIfAbsent(toKey(check), check);
+        }
+        return Flux.fromIterable(checksBySubjectAndResource.entrySet())
+                   .flatMap(entry -> getMergedCapabilityClosure(entry.getValue().subject(), entry.getValue().resource())
+                           .map(closure -> Map.entry(entry.getKey(), closure)))
+                   .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                   .map(closuresBySubjectAndResource -> {
+                       var jwtCapabilityClosure = builtInRoleOracle.getCapabilityBitSetAssociatedToRoles(
+                               jwtRolesExtractor.safeExtractRoleIdsWithoutVerification(jwt));
+                       var result = new ArrayList<Boolean>(checks.size());
+                       for(var check : checks) {
+                           var capabilityClosure = closuresBySubjectAndResource.get(toKey(check));
+                           var capabilityId = capabilityDictionary.findId(check.capability());
+                           var authorized = capabilityClosure.contains(capabilityId) || jwtCapabilityClosure.contains(capabilityId);
+                           decisionAuditLog.record(check.subject(), check.resource(), check.capability(), authorized);
+                           result.add(authorized);
+                       }
+                       return result;
+                   });
+    }
+
+    private static List<String> toKey(AuthorizationCheck check) {
+        return Arrays.asList(toUserName(check.subject()), toProjectIdString(check.resource()));
+    }
+
+    @Nonnull
+    @Override
+    public Flux<Subject> getSubjectsWithAccessToResource(@Nonnull Resource resource) {
+        return getSubjectsWithAccessToResource(resource, Optional.empty());
+    }
+
+    @Nonnull
+    @Override
+    public Flux<Subject> getSubjectsWithAccessToResource(@Nonnull Resource resource, @Nonnull Capability capability) {
+        return getSubjectsWithAccessToResource(resource, Optional.of(capability));
+    }
+
+    private Flux<Subject> getSubjectsWithAccessToResource(Resource resource, Optional<Capability> capability) {
+        var projectId = toProjectIdString(resource);
+        if(roleAssignmentIndex.isReady()) {
+            // The index uses null for any signed in user, which cannot be emitted, so the subjects are mapped first
+            return Flux.defer(() -> Flux.fromStream(roleAssignmentIndex.getUserNames(projectId, capability).stream()
+                    .map(userName -> userName != null ? Subject.forUser(userName) : Subject.forAnySignedInUser())));
+        }
+        return findRoleAssignments("getSubjectsWithAccessToResource", new Document(PROJECT_ID, projectId))
+                .filter(ra -> capability.map(cap -> ra.getCapabilityClosure().contains(cap)).orElse(true))
+                .map(ra -> ra.getUserName().map(Subject::forUser).orElseGet(Subject::forAnySignedInUser));
+    }
+
+    @Nonnull
+    @Override
+    public Flux<Resource> getResourcesAccessibleToSubject(@Nonnull Subject subject, @Nonnull Capability capability) {
+        var userName = toUserName(subject);
+        if(roleAssignmentIndex.isReady()) {
+            return Flux.defer(() -> Flux.fromStream(roleAssignmentIndex.getProjectIds(userName, capability).stream()
+                    .map(ReactiveAccessManagerImpl::toResource)));
+        }
+        return findRoleAssignments("getResourcesAccessibleToSubject", new Document(USER_NAME, userName))
+                .filter(ra -> ra.getCapabilityClosure().contains(capability))
+                .map(ra -> toResource(ra.getProjectId().orElse(null)));
+    }
+
+    private static Resource toResource(@Nullable String projectId) {
+        return projectId != null ? new ProjectResource(new ProjectId(projectId)) : ApplicationResource.get();
+    }
+
+    /**
+     * Gets the number of subscribers whose merged capability closure was loaded by a query that another subscriber
+     * started
+     */
+    public long getSharedClosureLoadCount() {
+        return closureLoads.getSharedCount();
+    }
+
+    @Nonnull
+    @Override
+    public Flux<RoleAssignment> getRoleAssignments(@Nonnull ProjectId projectId) {
+        return findRoleAssignments("getRoleAssignments", new Document(PROJECT_ID, projectId.value()));
+    }
+
+    /**
+     * Finds the role assignments that match the specified filter.  Each subscription is timed as the specified
+     * operation, as the {@link AccessManagerImpl} times its queries, until the assignments have been read.
+     */
+    private Flux<RoleAssignment> findRoleAssignments(String operation, Document filter) {
+        return mongoOperationMetrics.record(COLLECTION_NAME,
+                                            operation,
+                                            getRoleAssignmentCollection().flatMapMany(collection -> collection.find(filter)));
+    }
+
+    private <T> Mono<T> timed(String operation, Mono<T> body) {
+        return mongoOperationMetrics.record(COLLECTION_NAME, operation, body);
+    }
+
+    /**
+     * Gets the role assignments collection with documents decoded by the {@link RoleAssignmentCodec}
+     */
+    private Mono<MongoCollection<RoleAssignment>> getRoleAssignmentCollection() {
+        return reactiveMongoTemplate.getCollection(COLLECTION_NAME)
+                .map(collection -> collection.withCodecRegistry(RoleAssignmentCodec.CODEC_REGISTRY)
+                                             .withDocumentClass(RoleAssignment.class));
+    }
+}
@@ -0,0 +1,55 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.stanford.protege.webprotege.common.ProjectId;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Instant;
+
+/**
+ * A background job that rebuilds the closures stored in role assignments.  Jobs are persisted so that their
+ * progress can be queried from any instance of this service, and so that they survive restarts.
+ * @param jobId The job id.
+ * @param projectId The project whose assignments are rebuilt, or null if all assignments are rebuilt.
+ * @param totalAssignments The number of assignments that were in scope when the job was submitted.
+ * @param processedAssignments The number of assignments examined so far.
+ * @param rewrittenAssignments The number of assignments whose closures had changed and were rewritten so far.
+ * @param assignmentsPerSecond The throughput of the job, measured over its current run.
+ * @param cancelRequested Whether cancellation of a running job has been requested.  The job stops at its next
+ *                        checkpoint.
+ * @param startedAt When the job was first started.  Null if the job has not started.
+ * @param finishedAt When the job finished.  Null if the job has not finished.
+ * @param errorMessage The reason that a failed job failed.
+ */
+public record RebuildJob(@JsonProperty("jobId") @Nonnull String jobId,
+                         @JsonProperty("projectId") @Nullable ProjectId projectId,
+                         @JsonProperty("status") @Nonnull RebuildJobStatus status,
+                         @JsonProperty("totalAssignments") long totalAssignments,
+                         @JsonProperty("processedAssignments") long processedAssignments,
+                         @JsonProperty("rewrittenAssignments") long rewrittenAssignments,
+                         @JsonProperty("assignmentsPerSecond") double assignmentsPerSecond,
+                         @JsonProperty("cancelRequested") boolean cancelRequested,
+                         @JsonProperty("submittedAt") @Nonnull Instant submittedAt,
+                         @JsonProperty("startedAt") @Nullable Instant startedAt,
+                         @JsonProperty("finishedAt") @Nullable Instant finishedAt,
+                         @JsonProperty("errorMessage") @Nullable String errorMessage) {
+
+    @JsonCreator
+    public static RebuildJob get(@JsonProperty("jobId") @Nonnull String jobId,
+                                 @JsonProperty("projectId") @Nullable ProjectId projectId,
+                                 @JsonProperty("status") @Nonnull RebuildJobStatus status,
+                                 @JsonProperty("totalAssignments") long totalAssignments,
+                                 @JsonProperty("processedAssignments") long processedAssignments,
+                                 @JsonProperty("rewrittenAssignments") long rewrittenAssignments,
+                                 @JsonProperty("assignmentsPerSecond") double assignmentsPerSecond,
+                                 @JsonProperty("cancelRequested") boolean cancelRequested,
+                                 @JsonProperty("submittedAt") @Nonnull Instant submittedAt,
+                                 @JsonProperty("startedAt") @Nullable Instant startedAt,
+                                 @JsonProperty("finishedAt") @Nullable Instant finishedAt,
+                                 @JsonProperty("errorMessage") @Nullable String errorMessage) {
+        return new RebuildJob(jobId, projectId, status, totalAssignments, processedAssignments, rewrittenAssignments,
+                              assignmentsPerSecond, cancelRequested, submittedAt, startedAt, finishedAt, errorMessage);
+    }
+}
@@ -0,0 +1,245 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores {@link RebuildJob}s.  Besides the job itself, each stored job holds the id of the worker that owns it, the
+ * time of the owner's last heartbeat, and the checkpoint of the job: the _id of the last role assignment that it
+ * processed.  A running job whose owner has not sent a heartbeat within the lease period may be claimed by another
+ * worker, which resumes it after the checkpoint.  A job that rebuilds all projects rebuilds them one project at a
+ * time, so its checkpoint is the id of the last project that it rebuilt.
+ */
+@Component
+public class RebuildJobRepository {
+
+    static final String COLLECTION_NAME = "RebuildJobs";
+
+    private static final String PROJECT_ID = "projectId";
+
+    private static final String STATUS = "status";
+
+    private static final String TOTAL_ASSIGNMENTS = "totalAssignments";
+
+    private static final String PROCESSED_ASSIGNMENTS = "processedAssignments";
+
+    private static final String REWRITTEN_ASSIGNMENTS = "rewrittenAssignments";
+
+    private static final String ASSIGNMENTS_PER_SECOND = "assignmentsPerSecond";
+
+    private static final String CANCEL_REQUESTED = "cancelRequested";
+
+    private static final String SUBMITTED_AT = "submittedAt";
+
+    private static final String STARTED_AT = "startedAt";
+
+    private static final String FINISHED_AT = "finishedAt";
+
+    private static final String ERROR_MESSAGE = "errorMessage";
+
+    private static final String OWNER = "owner";
+
+    private static final String HEARTBEAT_AT = "heartbeatAt";
+
+    private static final String LAST_PROCESSED_ID = "lastProcessedId";
+
+    private static final String LAST_PROCESSED_PROJECT_ID = "lastProcessedProjectId";
+
+    private final MongoTemplate mongoTemplate;
+
+    public RebuildJobRepository(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public void insertJob(@Nonnull RebuildJob job) {
+        var document = new Document("_id", job.jobId())
+                .append(PROJECT_ID, job.projectId() != null ? job.projectId().value() : null)
+                .append(STATUS, job.status().name())
+                .append(TOTAL_ASSIGNMENTS, job.totalAssignments())
+                .append(PROCESSED_ASSIGNMENTS, job.processedAssignments())
+                .append(REWRITTEN_ASSIGNMENTS, job.rewrittenAssignments())
+                .append(ASSIGNMENTS_PER_SECOND, job.assignmentsPerSecond())
+                .append(CANCEL_REQUESTED, job.cancelRequested())
+                .append(SUBMITTED_AT, Date.from(job.submittedAt()));
+        getCollection().insertOne(document);
+    }
+
+    @Nonnull
+    public Optional<RebuildJob> findJob(@Nonnull String jobId) {
+        return Optional.ofNullable(getCollection().find(new Document("_id", jobId)).first())
+                .map(RebuildJobRepository::toJob);
+    }
+
+    /**
+     * Claims the oldest job that is either queued, or running with an owner whose lease has expired.
+     * @param owner The id of the claiming worker.
+     * @param leaseExpiredBefore Running jobs whose last heartbeat is before this time have expired leases.
+     * @return The claimed job, with its checkpoint, or empty if there is no job to claim.
+     */
+    @Nonnull
+    public Optional<ClaimedRebuildJob> claimJob(@Nonnull String owner, @Nonnull Instant leaseExpiredBefore) {
+        var filter = new Document("$or", List.of(
+                new Document(STATUS, RebuildJobStatus.QUEUED.name()),
+                new Document(STATUS, RebuildJobStatus.RUNNING.name())
+                        .append(HEARTBEAT_AT, new Document("$lt", Date.from(leaseExpiredBefore)))));
+        var now = new Date();
+        var update = new Document("$set", new Document(STATUS, RebuildJobStatus.RUNNING.name())
+                .append(OWNER, owner)
+                .append(HEARTBEAT_AT, now))
+                // Sets the start time on the first claim only
+                .append("$min", new Document(STARTED_AT, now));
+        var options = new FindOneAndUpdateOptions()
+                .sort(new Document(SUBMITTED_AT, 1))
+                .returnDocument(ReturnDocument.AFTER);
+        return Optional.ofNullable(getCollection().findOneAndUpdate(filter, update, options))
+                .map(document -> new ClaimedRebuildJob(toJob(document),
+                                                       document.getObjectId(LAST_PROCESSED_ID),
+                                                       document.getString(LAST_PROCESSED_PROJECT_ID)));
+    }
+
+    /**
+     * Records the progress of a job that is owned by the specified worker and renews the owner's lease.
+     * @param lastProcessedId The _id of the last role assignment processed.  May be null for a job that does not
+     *                        process assignments in _id order, in which case the stored checkpoint is left unchanged.
+     * @return The updated job, or empty if the worker no longer owns the job.
+     */
+    @Nonnull
+    public Optional<RebuildJob> checkpoint(@Nonnull String jobId,
+                                           @Nonnull String owner,
+                                           @Nullable ObjectId lastProcessedId,
+                                           long processedAssignments,
+                                           long rewrittenAssignments,
+                                           double assignmentsPerSecond) {
+        var filter = new Document("_id", jobId)
+                .append(OWNER, owner)
+                .append(STATUS, RebuildJobStatus.RUNNING.name());
+        var set = new Document(HEARTBEAT_AT, new Date())
+                .append(ASSIGNMENTS_PER_SECOND, assignmentsPerSecond);
+        if(lastProcessedId != null) {
+            set.append(LAST_PROCESSED_ID, lastProcessedId);
+        }
+        var update = new Document("$set", set)
+                .append("$inc", new Document(PROCESSED_ASSIGNMENTS, processedAssignments)
+                        .append(REWRITTEN_ASSIGNMENTS, rewrittenAssignments));
+        var options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+        return Optional.ofNullable(getCollection().findOneAndUpdate(filter, update, options))
+                .map(RebuildJobRepository::toJob);
+    }
+
+    /**
+     * Records the progress of a job that rebuilds all projects, and that is owned by the specified worker, and renews
+     * the owner's lease.
+     * @param lastProcessedProjectId The checkpoint of the last project that the job rebuilt.  See
+     *                               {@link PermissionRebuildEngine.ProjectRebuild#checkpoint()}.
+     * @return The updated job, or empty if the worker no longer owns the job.
+     */
+    @Nonnull
+    public Optional<RebuildJob> checkpointProject(@Nonnull String jobId,
+                                                  @Nonnull String owner,
+                                                  @Nonnull String lastProcessedProjectId,
+                                                  long processedAssignments,
+                                                  long rewrittenAssignments,
+                                                  double assignmentsPerSecond) {
+        var filter = new Document("_id", jobId)
+                .append(OWNER, owner)
+                .append(STATUS, RebuildJobStatus.RUNNING.name());
+        var update = new Document("$set", new Document(LAST_PROCESSED_PROJECT_ID, lastProcessedProjectId)
+                .append(HEARTBEAT_AT, new Date())
+                .append(ASSIGNMENTS_PER_SECOND, assignmentsPerSecond))
+                .append("$inc", new Document(PROCESSED_ASSIGNMENTS, processedAssignments)
+                        .append(REWRITTEN_ASSIGNMENTS, rewrittenAssignments));
+        var options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+        return Optional.ofNullable(getCollection().findOneAndUpdate(filter, update, options))
+                .map(RebuildJobRepository::toJob);
+    }
+
+    /**
+     * Finishes a job that is owned by the specified worker.
+     * @param status The final status.
+     * @param errorMessage The reason for a failure.  May be null.
+     */
+    public void finishJob(@Nonnull String jobId,
+                          @Nonnull String owner,
+                          @Nonnull RebuildJobStatus status,
+                          @Nullable String errorMessage) {
+        var filter = new Document("_id", jobId)
+                .append(OWNER, owner)
+                .append(STATUS, RebuildJobStatus.RUNNING.name());
+        var update = new Document("$set", new Document(STATUS, status.name())
+                .append(FINISHED_AT, new Date())
+                .append(ERROR_MESSAGE, errorMessage));
+        getCollection().updateOne(filter, update);
+    }
+
+    /**
+     * Cancels a job.  A queued job is cancelled immediately.  A running job is flagged, and is cancelled by its
+     * owner at its next checkpoint.  Finished jobs are not changed.
+     * @return The job, or empty if there is no such job.
+     */
+    @Nonnull
+    public Optional<RebuildJob> cancelJob(@Nonnull String jobId) {
+        var collection = getCollection();
+        collection.updateOne(new Document("_id", jobId).append(STATUS, RebuildJobStatus.QUEUED.name()),
+                             new Document("$set", new Document(STATUS, RebuildJobStatus.CANCELLED.name())
+                                     .append(FINISHED_AT, new Date())));
+        collection.updateOne(new Document("_id", jobId).append(STATUS, RebuildJobStatus.RUNNING.name()),
+                             new Document("$set", new Document(CANCEL_REQUESTED, true)));
+        return findJob(jobId);
+    }
+
+    private MongoCollection<Document> getCollection() {
+        return mongoTemplate.getCollection(COLLECTION_NAME);
+    }
+
+    private static RebuildJob toJob(Document document) {
+        var projectId = document.getString(PROJECT_ID);
+        return RebuildJob.get(document.getString("_id"),
+                              projectId != null ? ProjectId.valueOf(projectId) : null,
+                              RebuildJobStatus.valueOf(document.getString(STATUS)),
+                              getLong(document, TOTAL_ASSIGNMENTS),
+                              getLong(document, PROCESSED_ASSIGNMENTS),
+                              getLong(document, REWRITTEN_ASSIGNMENTS),
+                              document.get(ASSIGNMENTS_PER_SECOND, 0.0),
+                              document.getBoolean(CANCEL_REQUESTED, false),
+                              toInstant(document.getDate(SUBMITTED_AT)),
+                              toInstant(document.getDate(STARTED_AT)),
+                              toInstant(document.getDate(FINISHED_AT)),
+                              document.getString(ERROR_MESSAGE));
+    }
+
+    private static long getLong(Document document, String key) {
+        var value = document.get(key, Number.class);
+        return value != null ? value.longValue() : 0;
+    }
+
+    @Nullable
+    private static Instant toInstant(@Nullable Date date) {
+        return date != null ? date.toInstant() : null;
+    }
+
+    /**
+     * A job that has been claimed by a worker, with the checkpoint to resume it from
+     * @param lastProcessedId The _id of the last role assignment processed by a previous owner, or null if the job
+     *                        has not processed any assignments.
+     * @param lastProcessedProjectId The checkpoint of the last project rebuilt by a previous owner of a job that
+     *                               rebuilds all projects, or null if the job has not rebuilt any projects.
+     */
+    public record ClaimedRebuildJob(@Nonnull RebuildJob job,
+                                    @Nullable ObjectId lastProcessedId,
+                                    @Nullable String lastProcessedProjectId) {
+
+    }
+}
@@ -0,0 +1,338 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.stanford.protege.webprotege.authorization.RebuildJobRepository.ClaimedRebuildJob;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link RebuildJob}s in the background.  Jobs are submitted to, and claimed from, the {@link RebuildJobRepository},
+ * so a job that is submitted to one instance of this service may be run by any instance.  Each instance runs one job
+ * at a time.  A job that rebuilds one project is run a batch at a time, and is checkpointed after each batch.  A job
+ * that rebuilds all projects is run in place by the workers of the {@link PermissionRebuildEngine}, project by
+ * project, and is checkpointed with the last project that has been rebuilt.  In the shadow {@link RebuildMode}, a job
+ * that rebuilds all projects is run by {@link PermissionRebuildEngine#rebuildAll()} instead, in one step.
+ * <p>
+ * If an instance stops while running a job then the job is resumed from its last checkpoint by the first instance
+ * that polls for jobs after the lease of the stopped instance has expired.  This includes the stopped instance itself,
+ * once it has restarted.
+ */
+@Component
+public class RebuildJobScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RebuildJobScheduler.class);
+
+    private final RebuildJobRepository repository;
+
+    private final PermissionRebuildEngine rebuildEngine;
+
+    private final PermissionsChangedEventCoalescer permissionsChangedEventCoalescer;
+
+    private final Duration lease;
+
+    private final Duration pollInterval;
+
+    private final int batchSize;
+
+    private final String workerId = UUID.randomUUID().toString();
+
+    private final ScheduledExecutorService executor;
+
+    public RebuildJobScheduler(RebuildJobRepository repository,
+                               PermissionRebuildEngine rebuildEngine,
+                               PermissionsChangedEventCoalescer permissionsChangedEventCoalescer,
+                               @Value("${webprotege.authorization.rebuild.jobs.lease:2m}") Duration lease,
+                               @Value("${webprotege.authorization.rebuild.jobs.poll-interval:10s}") Duration pollInterval,
+                               @Value("${webprotege.authorization.rebuild.batch-size:500}") int batchSize) {
+        this.repository = repository;
+        this.rebuildEngine = rebuildEngine;
+        this.permissionsChangedEventCoalescer = permissionsChangedEventCoalescer;
+        this.lease = lease;
+        this.pollInterval = pollInterval;
+        this.batchSize = Math.max(1, batchSize);
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                           .setNameFormat("permission-rebuild-jobs-%d")
+                                                                           .setDaemon(true)
+                                                                           .build());
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleWithFixedDelay(this::runAvailableJobs, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        // A job that is interrupted is left running in the repository and is resumed when its lease expires
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submits a job that rebuilds the role assignments of the specified project.  The job is run in the background.
+     * @param projectId The project, or null to rebuild the role assignments of all projects.
+     * @return The submitted job.
+     */
+    @Nonnull
+    public RebuildJob submit(@Nullable ProjectId projectId) {
+        var job = RebuildJob.get(UUID.randomUUID().toString(),
+                                 projectId,
+                                 RebuildJobStatus.QUEUED,
+                                 rebuildEngine.countAssignments(projectId),
+                                 0,
+                                 0,
+                                 0,
+                                 false,
+                                 Instant.now(),
+                                 null,
+                                 null,
+                                 null);
+        repository.insertJob(job);
+        logger.info("Submitted permissions rebuild job {} for {}", job.jobId(), projectId != null ? projectId : "all projects");
+        try {
+            executor.execute(this::runAvailableJobs);
+        } catch (RejectedExecutionException e) {
+            // Shutting down.  The job will be run by another instance.
+        }
+        return job;
+    }
+
+    @Nonnull
+    public Optional<RebuildJob> getJob(@Nonnull String jobId) {
+        return repository.findJob(jobId);
+    }
+
+    /**
+     * Cancels the specified job.  See {@link RebuildJobRepository#cancelJob(String)}.
+     */
+    @Nonnull
+    public Optional<RebuildJob> cancel(@Nonnull String jobId) {
+        logger.info("Cancelling permissions rebuild job {}", jobId);
+        return repository.cancelJob(jobId);
+    }
+
+    private void runAvailableJobs() {
+        try {
+            Optional<ClaimedRebuildJob> claimedJob;
+            while(!Thread.currentThread().isInterrupted()
+                    && (claimedJob = repository.claimJob(workerId, Instant.now().minus(lease))).isPresent()) {
+                runJob(claimedJob.get());
+            }
+        } catch (RuntimeException e) {
+            // Don't let a failure to reach the repository cancel the polling
+            logger.error("Error while polling for permissions rebuild jobs", e);
+        }
+    }
+
+    private void runJob(ClaimedRebuildJob claimedJob) {
+        var job = claimedJob.job();
+        var jobId = job.jobId();
+        var lastProcessedId = claimedJob.lastProcessedId();
+        if(lastProcessedId != null) {
+            logger.info("Resuming permissions rebuild job {} after {} processed assignments", jobId, job.processedAssignments());
+        }
+        else {
+            logger.info("Starting permissions rebuild job {}", jobId);
+        }
+        var runStartNanos = System.nanoTime();
+        var processedInRun = 0L;
+        try {
+            if(job.projectId() == null && !job.cancelRequested()) {
+                if(rebuildEngine.getRebuildMode() == RebuildMode.SHADOW) {
+                    runShadowRebuildJob(job);
+                }
+                else {
+                    runProjectByProjectRebuildJob(job, claimedJob.lastProcessedProjectId());
+                }
+                return;
+            }
+            while(!job.cancelRequested()) {
+                if(Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                var batch = rebuildEngine.rebuildBatch(job.projectId(), lastProcessedId, batchSize);
+                if(batch.isEmpty()) {
+                    repository.finishJob(jobId, workerId, RebuildJobStatus.COMPLETED, null);
+                    logger.info("Completed permissions rebuild job {}", jobId);
+                    return;
+                }
+                batch.changedProjects().forEach(permissionsChangedEventCoalescer::projectPermissionsChanged);
+                lastProcessedId = batch.lastProcessedId();
+                processedInRun += batch.rebuiltAssignments();
+                var elapsedSeconds = (System.nanoTime() - runStartNanos) / 1e9;
+                var assignmentsPerSecond = elapsedSeconds > 0 ? processedInRun / elapsedSeconds : 0;
+                var checkpointed = repository.checkpoint(jobId,
+                                                         workerId,
+                                                         lastProcessedId,
+                                                         batch.rebuiltAssignments(),
+                                                         batch.rewrittenAssignments(),
+                                                         assignmentsPerSecond);
+                if(checkpointed.isEmpty()) {
+                    logger.warn("Lost ownership of permissions rebuild job {}.  Stopping.", jobId);
+                    return;
+                }
+                job = checkpointed.get();
+            }
+            repository.finishJob(jobId, workerId, RebuildJobStatus.CANCELLED, null);
+            logger.info("Cancelled permissions rebuild job {}", jobId);
+        } catch (RuntimeException e) {
+            logger.error("Permissions rebuild job {} failed", jobId, e);
+            repository.finishJob(jobId, workerId, RebuildJobStatus.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a job that rebuilds all role assignments in place.  Projects are rebuilt in parallel by the
+     * {@link PermissionRebuildEngine}, and the job is checkpointed with the last project that has been rebuilt once
+     * at least a batch of assignments has been rebuilt since the previous checkpoint.
+     */
+    private void runProjectByProjectRebuildJob(RebuildJob job, @Nullable String lastProcessedProjectId) {
+        var jobId = job.jobId();
+        var runStartNanos = System.nanoTime();
+        var checkpointer = new ProjectCheckpointer(jobId, runStartNanos);
+        try {
+            rebuildEngine.rebuildProjectsInPlace(lastProcessedProjectId, checkpointer);
+        } catch (IllegalStateException e) {
+            // An interrupted job is left running and is resumed from its last checkpoint
+            if(Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            throw e;
+        }
+        if(checkpointer.lostOwnership) {
+            logger.warn("Lost ownership of permissions rebuild job {}.  Stopping.", jobId);
+            return;
+        }
+        if(checkpointer.cancelRequested) {
+            repository.finishJob(jobId, workerId, RebuildJobStatus.CANCELLED, null);
+            logger.info("Cancelled permissions rebuild job {}", jobId);
+            return;
+        }
+        if(Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        if(!checkpointer.checkpoint()) {
+            logger.warn("Lost ownership of permissions rebuild job {}.  Stopping.", jobId);
+            return;
+        }
+        repository.finishJob(jobId, workerId, RebuildJobStatus.COMPLETED, null);
+        logger.info("Completed permissions rebuild job {}", jobId);
+    }
+
+    /**
+     * Runs a job that rebuilds all role assignments in a shadow collection.  The shadow collection is swapped in all
+     * at once, so the job is not checkpointed and cannot be cancelled part way through.  A job that is resumed
+     * starts the rebuild again.
+     */
+    private void runShadowRebuildJob(RebuildJob job) {
+        rebuildEngine.rebuildAll();
+        rebuildEngine.getProgress().ifPresent(progress -> repository.checkpoint(job.jobId(),
+                                                                                workerId,
+                                                                                null,
+                                                                                progress.getRebuiltAssignments(),
+                                                                                progress.getRewrittenAssignments(),
+                                                                                progress.getAssignmentsPerSecond()));
+        repository.finishJob(job.jobId(), workerId, RebuildJobStatus.COMPLETED, null);
+        logger.info("Completed permissions rebuild job {} in a shadow collection", job.jobId());
+    }
+
+    /**
+     * Checkpoints a job that rebuilds all projects as projects are rebuilt, and dispatches the events for the projects
+     * that had rewritten assignments.  This is called on the job's thread.
+     */
+    private class ProjectCheckpointer implements PermissionRebuildEngine.ProjectRebuildListener {
+
+        private final String jobId;
+
+        private final long runStartNanos;
+
+        private long processedInRun = 0;
+
+        @Nullable
+        private String lastProcessedProjectId = null;
+
+        @Nullable
+        private String checkpointedProjectId = null;
+
+        private long uncheckpointedAssignments = 0;
+
+        private long uncheckpointedRewrittenAssignments = 0;
+
+        private boolean cancelRequested = false;
+
+        private boolean lostOwnership = false;
+
+        private ProjectCheckpointer(String jobId, long runStartNanos) {
+            this.jobId = jobId;
+            this.runStartNanos = runStartNanos;
+        }
+
+        @Override
+        public boolean projectRebuilt(@Nonnull PermissionRebuildEngine.ProjectRebuild projectRebuild) {
+            if(projectRebuild.rewrittenAssignments() > 0) {
+                if(projectRebuild.projectId() != null) {
+                    permissionsChangedEventCoalescer.projectPermissionsChanged(projectRebuild.projectId());
+                }
+                else {
+                    permissionsChangedEventCoalescer.applicationPermissionsChanged();
+                }
+            }
+            lastProcessedProjectId = projectRebuild.checkpoint();
+            processedInRun += projectRebuild.rebuiltAssignments();
+            uncheckpointedAssignments += projectRebuild.rebuiltAssignments();
+            uncheckpointedRewrittenAssignments += projectRebuild.rewrittenAssignments();
+            if(Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if(uncheckpointedAssignments < batchSize) {
+                return true;
+            }
+            if(!checkpoint()) {
+                lostOwnership = true;
+                return false;
+            }
+            return !cancelRequested;
+        }
+
+        /**
+         * Checkpoints the job, if any projects have been rebuilt since the last checkpoint
+         * @return false if the worker no longer owns the job
+         */
+        private boolean checkpoint() {
+            if(lastProcessedProjectId == null || lastProcessedProjectId.equals(checkpointedProjectId)) {
+                return true;
+            }
+            var elapsedSeconds = (System.nanoTime() - runStartNanos) / 1e9;
+            var assignmentsPerSecond = elapsedSeconds > 0 ? processedInRun / elapsedSeconds : 0;
+            var checkpointed = repository.checkpointProject(jobId,
+                                                            workerId,
+                                                            lastProcessedProjectId,
+                                                            uncheckpointedAssignments,
+                                                            uncheckpointedRewrittenAssignments,
+                                                            assignmentsPerSecond);
+            if(checkpointed.isEmpty()) {
+                return false;
+            }
+            checkpointedProjectId = lastProcessedProjectId;
+            uncheckpointedAssignments = 0;
+            uncheckpointedRewrittenAssignments = 0;
+            cancelRequested = checkpointed.get().cancelRequested();
+            return true;
+        }
+    }
+}
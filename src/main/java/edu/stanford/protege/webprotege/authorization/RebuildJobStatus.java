@@ -0,0 +1,28 @@
+package edu.stanford.protege.webprotege.authorization;
+
+/**
+ * The status of a {@link RebuildJob}
+ */
+public enum RebuildJobStatus {
+
+    /**
+     * The job has been submitted and is waiting for a worker
+     */
+    QUEUED,
+
+    /**
+     * The job is being run by a worker.  If the worker stops without finishing the job then the job is resumed,
+     * from its last checkpoint, by another worker.
+     */
+    RUNNING,
+
+    COMPLETED,
+
+    CANCELLED,
+
+    FAILED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == CANCELLED || this == FAILED;
+    }
+}
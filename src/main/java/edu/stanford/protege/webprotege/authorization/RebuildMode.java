@@ -0,0 +1,24 @@
+package edu.stanford.protege.webprotege.authorization;
+
+/**
+ * Determines how {@link PermissionRebuildEngine#rebuildAll()} rebuilds the role assignments of all projects.
+ */
+public enum RebuildMode {
+
+    /**
+     * Rewrite the role assignments of each project in place, under the write lock for the project.  Permission checks
+     * for a project wait while the project is being rebuilt.
+     */
+    IN_PLACE,
+
+    /**
+     * Write the rebuilt role assignments into a shadow collection, without holding any lock on the live role
+     * assignments, and then swap the shadow collection for the live collection by renaming it.  Permission checks
+     * are not blocked at any point.  Writes are only blocked while the swap is being made.
+     * <p>
+     * Writes are only blocked in this instance of the service, so writes that other instances make during the swap
+     * would be lost.  This mode is therefore only allowed in a single instance deployment, which must be confirmed with
+     * {@code webprotege.authorization.rebuild.single-instance}.
+     */
+    SHADOW
+}
@@ -1,6 +1,5 @@
 package edu.stanford.protege.webprotege.authorization;
 
-import edu.stanford.protege.webprotege.ipc.AuthorizedCommandHandler;
 import edu.stanford.protege.webprotege.ipc.CommandHandler;
 import edu.stanford.protege.webprotege.ipc.ExecutionContext;
 import edu.stanford.protege.webprotege.ipc.WebProtegeHandler;
@@ -11,10 +10,10 @@ import javax.annotation.Nonnull;
 @WebProtegeHandler
 public class RebuildProjectPermissionsHandler implements CommandHandler<RebuildProjectPermissionsRequest, RebuildProjectPermissionsResponse> {
 
-    private final AccessManager accessManager;
+    private final RebuildJobScheduler rebuildJobScheduler;
 
-    public RebuildProjectPermissionsHandler(AccessManager accessManager) {
-        this.accessManager = accessManager;
+    public RebuildProjectPermissionsHandler(RebuildJobScheduler rebuildJobScheduler) {
+        this.rebuildJobScheduler = rebuildJobScheduler;
     }
 
     @Nonnull
@@ -30,7 +29,7 @@ public class RebuildProjectPermissionsHandler implements CommandHandler<RebuildP
 
     @Override
     public Mono<RebuildProjectPermissionsResponse> handleRequest(RebuildProjectPermissionsRequest request, ExecutionContext executionContext) {
-        accessManager.rebuild(request.projectId());
-        return Mono.just(new RebuildProjectPermissionsResponse());
+        var job = rebuildJobScheduler.submit(request.projectId());
+        return Mono.just(new RebuildProjectPermissionsResponse(job.jobId()));
     }
 }
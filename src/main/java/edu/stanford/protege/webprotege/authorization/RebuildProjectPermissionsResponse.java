@@ -1,9 +1,14 @@
 package edu.stanford.protege.webprotege.authorization;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import edu.stanford.protege.webprotege.common.Response;
 
+/**
+ * @param jobId The id of the background job that rebuilds the permissions.  Its progress can be queried with a
+ *              {@link GetPermissionsRebuildStatusRequest}.
+ */
 @JsonTypeName(RebuildProjectPermissionsRequest.CHANNEL)
-public record RebuildProjectPermissionsResponse() implements Response {
+public record RebuildProjectPermissionsResponse(@JsonProperty("jobId") String jobId) implements Response {
 
 }
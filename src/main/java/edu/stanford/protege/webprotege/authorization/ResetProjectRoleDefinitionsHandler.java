@@ -15,8 +15,16 @@ public class ResetProjectRoleDefinitionsHandler implements AuthorizedCommandHand
 
     private final ProjectRoleDefinitionsManager roleDefinitionsManager;
 
-    public ResetProjectRoleDefinitionsHandler(ProjectRoleDefinitionsManager roleDefinitionsManager) {
+    private final AccessManager accessManager;
+
+    private final PermissionsChangedEventCoalescer permissionsChangedEventCoalescer;
+
+    public ResetProjectRoleDefinitionsHandler(ProjectRoleDefinitionsManager roleDefinitionsManager,
+                                              AccessManager accessManager,
+                                              PermissionsChangedEventCoalescer permissionsChangedEventCoalescer) {
         this.roleDefinitionsManager = roleDefinitionsManager;
+        this.accessManager = accessManager;
+        this.permissionsChangedEventCoalescer = permissionsChangedEventCoalescer;
     }
 
     @Nonnull
@@ -45,7 +53,13 @@ public class ResetProjectRoleDefinitionsHandler implements AuthorizedCommandHand
     @Override
     public Mono<ResetProjectRoleDefinitionsResponse> handleRequest(ResetProjectRoleDefinitionsRequest request, ExecutionContext executionContext) {
         var projectId = request.projectId();
-        roleDefinitionsManager.clearProjectRoleDefinitions(projectId);
+        try(var batch = permissionsChangedEventCoalescer.beginBatch()) {
+            var affectedRoleIds = roleDefinitionsManager.clearProjectRoleDefinitions(projectId);
+            accessManager.rebuild(projectId, affectedRoleIds);
+            // Other instances cache the project's role graph, so they are told about every change to the role
+            // definitions, including one that affects no assignments
+            permissionsChangedEventCoalescer.projectPermissionsChanged(projectId);
+        }
         var roleDefinitions = roleDefinitionsManager.getEffectiveProjectRoleDefinitions(projectId);
         return Mono.just(new ResetProjectRoleDefinitionsResponse(roleDefinitions));
     }
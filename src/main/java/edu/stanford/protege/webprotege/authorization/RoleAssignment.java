@@ -25,7 +25,11 @@ import java.util.Optional;
  */
 @Document(collection = "RoleAssignments")
 @CompoundIndexes({
-        @CompoundIndex(def = "{'userName':1, 'projectId':1}", unique = true)
+        @CompoundIndex(def = "{'userName':1, 'projectId':1}", unique = true),
+        @CompoundIndex(def = "{'projectId':1, 'userName':1, 'capabilityClosure.id':1}"),
+        @CompoundIndex(def = "{'projectId':1, 'roleClosure':1}"),
+        @CompoundIndex(def = "{'projectId':1, 'assignedRoles':1}"),
+        @CompoundIndex(def = "{'projectId':1, '_id':1}")
 })
 public class RoleAssignment {
 
@@ -37,8 +41,14 @@ public class RoleAssignment {
 
     public static final String ROLE_CLOSURE = "roleClosure";
 
+    public static final String ASSIGNED_ROLES = "assignedRoles";
+
+    /**
+     * The legacy name of the capability closure, which held an array of action names
+     */
+    public static final String ACTION_CLOSURE = "actionClosure";
+
     @Nullable
-    @SuppressWarnings("unused")
     private ObjectId id;
 
     @Nullable
@@ -62,6 +72,16 @@ public class RoleAssignment {
                           @Nonnull List<String> assignedRoles,
                           @Nonnull List<String> roleClosure,
                           @Nonnull List<Capability> capability) {
+        this(null, userName, projectId, assignedRoles, roleClosure, capability);
+    }
+
+    RoleAssignment(@Nullable ObjectId id,
+                   @Nullable String userName,
+                   @Nullable String projectId,
+                   @Nonnull List<String> assignedRoles,
+                   @Nonnull List<String> roleClosure,
+                   @Nonnull List<Capability> capability) {
+        this.id = id;
         this.userName = userName;
         this.projectId = projectId;
         this.assignedRoles = List.copyOf(Objects.requireNonNull(assignedRoles));
@@ -101,6 +121,14 @@ public class RoleAssignment {
     }
 
 
+    /**
+     * Gets the MongoDb id of this role assignment, if it was read by the {@link RoleAssignmentCodec}
+     */
+    @Nonnull
+    Optional<ObjectId> getObjectId() {
+        return Optional.ofNullable(id);
+    }
+
     @Nonnull
     public Optional<String> getProjectId() {
         return Optional.ofNullable(projectId);
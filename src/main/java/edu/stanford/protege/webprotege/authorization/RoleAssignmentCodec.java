@@ -0,0 +1,152 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static edu.stanford.protege.webprotege.authorization.CapabilityCodec.readNullableString;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.*;
+
+/**
+ * A MongoDb {@link Codec} for {@link RoleAssignment}s.  Role assignments are decoded straight from the BSON
+ * reader, without first being read into a {@link org.bson.Document} and then converted by Jackson.  The codec
+ * reads the same stored form as {@link RoleAssignment#fromJson}, including the legacy actionClosure field, and
+ * writes the form that Jackson writes.
+ */
+public class RoleAssignmentCodec implements Codec<RoleAssignment> {
+
+    /**
+     * A registry that contains this codec, backed by the default registry for filters and other values
+     */
+    public static final CodecRegistry CODEC_REGISTRY = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(new RoleAssignmentCodec()),
+            MongoClientSettings.getDefaultCodecRegistry());
+
+    private static final String OBJECT_ID = "_id";
+
+    private final CapabilityCodec capabilityCodec = new CapabilityCodec();
+
+    @Override
+    public RoleAssignment decode(BsonReader reader, DecoderContext decoderContext) {
+        ObjectId id = null;
+        String userName = null;
+        String projectId = null;
+        List<String> assignedRoles = null;
+        List<String> roleClosure = null;
+        List<String> actionClosure = null;
+        List<Capability> capabilityClosure = null;
+        reader.readStartDocument();
+        while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch(reader.readName()) {
+                case OBJECT_ID -> {
+                    if(reader.getCurrentBsonType() == BsonType.OBJECT_ID) {
+                        id = reader.readObjectId();
+                    }
+                    else {
+                        reader.skipValue();
+                    }
+                }
+                case USER_NAME -> userName = readNullableString(reader);
+                case PROJECT_ID -> projectId = readNullableString(reader);
+                case ASSIGNED_ROLES -> assignedRoles = readStrings(reader);
+                case ROLE_CLOSURE -> roleClosure = readStrings(reader);
+                case ACTION_CLOSURE -> actionClosure = readStrings(reader);
+                case CAPABILITY_CLOSURE -> capabilityClosure = readCapabilities(reader, decoderContext);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        if(actionClosure != null) {
+            capabilityClosure = actionClosure.stream().map(a -> (Capability) BasicCapability.valueOf(a)).toList();
+        }
+        return new RoleAssignment(id,
+                                  userName,
+                                  projectId,
+                                  Objects.requireNonNullElse(assignedRoles, List.of()),
+                                  Objects.requireNonNullElse(roleClosure, List.of()),
+                                  Objects.requireNonNullElse(capabilityClosure, List.of()));
+    }
+
+    @Nullable
+    private static List<String> readStrings(BsonReader reader) {
+        if(reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+        var result = new ArrayList<String>();
+        reader.readStartArray();
+        while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            result.add(reader.readString());
+        }
+        reader.readEndArray();
+        return result;
+    }
+
+    @Nullable
+    private List<Capability> readCapabilities(BsonReader reader, DecoderContext decoderContext) {
+        if(reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+        var result = new ArrayList<Capability>();
+        reader.readStartArray();
+        while(reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            result.add(capabilityCodec.decode(reader, decoderContext));
+        }
+        reader.readEndArray();
+        return result;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, RoleAssignment value, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        var id = value.getObjectId();
+        if(id.isPresent()) {
+            writer.writeObjectId(OBJECT_ID, id.get());
+        }
+        writeNullableString(writer, USER_NAME, value.getUserName().orElse(null));
+        writeNullableString(writer, PROJECT_ID, value.getProjectId().orElse(null));
+        writeStrings(writer, ASSIGNED_ROLES, value.getAssignedRoles());
+        writeStrings(writer, ROLE_CLOSURE, value.getRoleClosure());
+        writer.writeStartArray(CAPABILITY_CLOSURE);
+        for(var capability : value.getCapabilityClosure()) {
+            encoderContext.encodeWithChildContext(capabilityCodec, writer, capability);
+        }
+        writer.writeEndArray();
+        writer.writeEndDocument();
+    }
+
+    private static void writeNullableString(BsonWriter writer, String name, @Nullable String value) {
+        if(value == null) {
+            writer.writeNull(name);
+        }
+        else {
+            writer.writeString(name, value);
+        }
+    }
+
+    private static void writeStrings(BsonWriter writer, String name, List<String> values) {
+        writer.writeStartArray(name);
+        for(var value : values) {
+            writer.writeString(value);
+        }
+        writer.writeEndArray();
+    }
+
+    @Override
+    public Class<RoleAssignment> getEncoderClass() {
+        return RoleAssignment.class;
+    }
+}
@@ -0,0 +1,418 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+
+import static edu.stanford.protege.webprotege.authorization.AccessManagerImpl.COLLECTION_NAME;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.PROJECT_ID;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.USER_NAME;
+
+/**
+ * Holds the capability closures of all role assignments in memory, for the {@link RoleAssignmentStorageMode#MEMORY}
+ * storage mode.  Closures are indexed by user name and then by project id, for permission checks and for the
+ * resources accessible to a user.  A reverse index, by project id and then by user name, serves the subjects with
+ * access to a project.
+ * <p>
+ * The index is loaded from a snapshot of the role assignments collection at startup.  The collection is split into
+ * _id ranges that are loaded in parallel.  After that, the index follows the invalidations of the
+ * {@link CapabilityClosureCache}, which are made by every write in this instance and, through the change stream, by
+ * writes in other instances.  An invalidated user and project, or project, is reloaded from MongoDb.  Invalidating
+ * everything, for example when a shadow rebuild is swapped in, reloads the whole index in the background.  Until that
+ * reload completes, the previous index keeps answering, with reloads of individual entries applied to both.
+ * <p>
+ * Without the change stream, writes made by other instances would never reach the index, so the memory storage mode
+ * requires {@code webprotege.authorization.change-streams.enabled} to be true.
+ * <p>
+ * Readers do not lock.  Reloads of the same project are serialized, so that an older read of MongoDb cannot overwrite
+ * a newer one.
+ */
+@Component
+public class RoleAssignmentIndex implements CapabilityClosureCache.InvalidationListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleAssignmentIndex.class);
+
+    /**
+     * Stands in for a null user name (any signed in user) or a null project id (the application)
+     */
+    private static final String NONE = "";
+
+    private static final int RELOAD_LOCK_STRIPES = 64;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final CapabilityDictionary capabilityDictionary;
+
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    private final boolean enabled;
+
+    private final int loadWorkers;
+
+    private final Striped<Lock> reloadLocks = Striped.lock(RELOAD_LOCK_STRIPES);
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                                                                                     .setNameFormat("role-assignment-index-loader-%d")
+                                                                                     .setDaemon(true)
+                                                                                     .build());
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    private volatile boolean ready = false;
+
+    /**
+     * The reloads that have been applied while a full load is in progress, and that must be applied again to the new
+     * snapshot before it replaces the current one.  Null when no full load is in progress.  Guarded by this.
+     */
+    @Nullable
+    private Set<ReloadKey> reloadsDuringLoad = null;
+
+    /**
+     * Whether another full load was requested while a full load was in progress.  Guarded by this.
+     */
+    private boolean loadRequested = false;
+
+    public RoleAssignmentIndex(MongoTemplate mongoTemplate,
+                               CapabilityDictionary capabilityDictionary,
+                               CapabilityClosureCache capabilityClosureCache,
+                               @Value("${webprotege.authorization.storage-mode:mongo}") RoleAssignmentStorageMode storageMode,
+                               @Value("${webprotege.authorization.memory-index.load-workers:0}") int loadWorkers,
+                               @Value("${webprotege.authorization.change-streams.enabled:false}") boolean changeStreamsEnabled) {
+        if(storageMode == RoleAssignmentStorageMode.MEMORY && !changeStreamsEnabled) {
+            throw new IllegalStateException("The memory storage mode only learns of role assignments that are written by " +
+                                                    "other instances from the change stream.  It requires " +
+                                                    "webprotege.authorization.change-streams.enabled=true");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.capabilityDictionary = capabilityDictionary;
+        this.capabilityClosureCache = capabilityClosureCache;
+        this.enabled = storageMode == RoleAssignmentStorageMode.MEMORY;
+        this.loadWorkers = loadWorkers > 0 ? loadWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    @PostConstruct
+    public void start() {
+        if(!enabled) {
+            return;
+        }
+        capabilityClosureCache.addInvalidationListener(this);
+        requestFullLoad();
+    }
+
+    @PreDestroy
+    public void stop() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * Determines whether the index has been loaded and can answer queries
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Gets the number of role assignments in the index
+     */
+    public long size() {
+        return snapshot.byUser.values().stream().mapToLong(Map::size).sum();
+    }
+
+    /**
+     * Gets the union of the capability closures of the assignments for the specified user name and project id.
+     * @param userName The user name.  May be null, to denote any signed in user.
+     * @param projectId The project id.  May be null, to denote the application.
+     * @param includeAnySignedInUser Whether to include the assignment for any signed in user.
+     */
+    @Nonnull
+    public CapabilityBitSet getCapabilityClosure(@Nullable String userName,
+                                                 @Nullable String projectId,
+                                                 boolean includeAnySignedInUser) {
+        var current = snapshot;
+        var closure = getCapabilityClosure(current, userName, projectId);
+        if(includeAnySignedInUser && userName != null) {
+            closure = closure.union(getCapabilityClosure(current, null, projectId));
+        }
+        return closure;
+    }
+
+    private static CapabilityBitSet getCapabilityClosure(Snapshot snapshot, @Nullable String userName, @Nullable String projectId) {
+        var byProject = snapshot.byUser.get(toKey(userName));
+        if(byProject == null) {
+            return CapabilityBitSet.empty();
+        }
+        var assignment = byProject.get(toKey(projectId));
+        return assignment != null ? assignment.capabilityClosure() : CapabilityBitSet.empty();
+    }
+
+    /**
+     * Gets the user names that have an assignment for the specified project whose capability closure contains the
+     * specified capability.
+     * @param projectId The project id.  May be null, to denote the application.
+     * @param capability The capability, or empty to get the user names of all assignments for the project.
+     * @return The user names.  A null user name denotes any signed in user.
+     */
+    @Nonnull
+    public List<String> getUserNames(@Nullable String projectId, @Nonnull Optional<Capability> capability) {
+        var byUser = snapshot.byProject.get(toKey(projectId));
+        if(byUser == null) {
+            return List.of();
+        }
+        var capabilityId = capability.map(capabilityDictionary::findId).orElse(-1);
+        var result = new ArrayList<String>();
+        byUser.values().forEach(assignment -> {
+            if(capability.isEmpty() || assignment.capabilityClosure().contains(capabilityId)) {
+                result.add(assignment.userName());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets the project ids that the specified user has an assignment for whose capability closure contains the
+     * specified capability.
+     * @param userName The user name.  May be null, to denote any signed in user.
+     * @return The project ids.  A null project id denotes the application.
+     */
+    @Nonnull
+    public List<String> getProjectIds(@Nullable String userName, @Nonnull Capability capability) {
+        var byProject = snapshot.byUser.get(toKey(userName));
+        if(byProject == null) {
+            return List.of();
+        }
+        var capabilityId = capabilityDictionary.findId(capability);
+        var result = new ArrayList<String>();
+        byProject.values().forEach(assignment -> {
+            if(assignment.capabilityClosure().contains(capabilityId)) {
+                result.add(assignment.projectId());
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void entryInvalidated(@Nonnull String userName, @Nullable String projectId) {
+        reload(new ReloadKey(userName, projectId, false));
+    }
+
+    @Override
+    public void projectInvalidated(@Nullable String projectId) {
+        reload(new ReloadKey(null, projectId, true));
+    }
+
+    @Override
+    public void allInvalidated() {
+        requestFullLoad();
+    }
+
+    private void reload(ReloadKey key) {
+        var lock = reloadLocks.get(toKey(key.projectId()));
+        lock.lock();
+        try {
+            var assignments = load(key);
+            synchronized (this) {
+                apply(snapshot, key, assignments);
+                if(reloadsDuringLoad != null) {
+                    reloadsDuringLoad.add(key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<RoleAssignment> load(ReloadKey key) {
+        var filter = new Document(PROJECT_ID, key.projectId());
+        if(!key.wholeProject()) {
+            filter.append(USER_NAME, key.userName());
+        }
+        return getRoleAssignmentCollection().find(filter).into(new ArrayList<>());
+    }
+
+    /**
+     * Replaces the assignments identified by the key with the reloaded assignments.  Reloaded assignments overwrite
+     * the assignments that they replace, so that readers never see a reloaded assignment missing.
+     */
+    private void apply(Snapshot target, ReloadKey key, List<RoleAssignment> assignments) {
+        var projectKey = toKey(key.projectId());
+        var reloaded = new HashMap<String, IndexedAssignment>();
+        assignments.forEach(assignment -> reloaded.put(toKey(assignment.getUserName().orElse(null)),
+                                                       toIndexedAssignment(assignment)));
+        var replacedUserKeys = key.wholeProject()
+                ? Set.copyOf(target.byProject.getOrDefault(projectKey, Map.of()).keySet())
+                : Set.of(toKey(key.userName()));
+        for(var userKey : replacedUserKeys) {
+            if(!reloaded.containsKey(userKey)) {
+                target.remove(userKey, projectKey);
+            }
+        }
+        reloaded.values().forEach(target::put);
+    }
+
+    private synchronized void requestFullLoad() {
+        if(reloadsDuringLoad != null) {
+            loadRequested = true;
+            return;
+        }
+        reloadsDuringLoad = new HashSet<>();
+        try {
+            loader.execute(this::fullLoad);
+        } catch (RejectedExecutionException e) {
+            reloadsDuringLoad = null;
+        }
+    }
+
+    private void fullLoad() {
+        while(true) {
+            Snapshot loaded;
+            try {
+                loaded = loadSnapshot();
+            } catch (RuntimeException e) {
+                logger.error("Could not load the role assignment index.  Permission checks will query MongoDb.", e);
+                synchronized (this) {
+                    ready = false;
+                    reloadsDuringLoad = null;
+                    loadRequested = false;
+                }
+                return;
+            }
+            synchronized (this) {
+                var reloads = Objects.requireNonNull(reloadsDuringLoad);
+                for(var key : reloads) {
+                    apply(loaded, key, load(key));
+                }
+                snapshot = loaded;
+                ready = true;
+                if(!loadRequested) {
+                    reloadsDuringLoad = null;
+                    return;
+                }
+                loadRequested = false;
+                reloadsDuringLoad = new HashSet<>();
+            }
+        }
+    }
+
+    /**
+     * Loads all role assignments.  The collection is split into _id ranges of roughly equal size, one per worker,
+     * which are loaded in parallel.
+     */
+    private Snapshot loadSnapshot() {
+        var startNanos = System.nanoTime();
+        var loaded = new Snapshot();
+        var buckets = mongoTemplate.getCollection(COLLECTION_NAME)
+                .aggregate(List.of(Aggregates.bucketAuto("$_id", loadWorkers)))
+                .into(new ArrayList<>());
+        var executor = Executors.newFixedThreadPool(Math.max(1, buckets.size()), new ThreadFactoryBuilder()
+                .setNameFormat("role-assignment-index-load-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            var futures = new ArrayList<Future<?>>(buckets.size());
+            for(int i = 0; i < buckets.size(); i++) {
+                var range = buckets.get(i).get("_id", Document.class);
+                // The upper bound of each bucket is the lower bound of the next, except for the last bucket
+                var upperBound = i < buckets.size() - 1 ? "$lt" : "$lte";
+                var filter = new Document("_id", new Document("$gte", range.get("min")).append(upperBound, range.get("max")));
+                futures.add(executor.submit(() -> {
+                    for(var assignment : getRoleAssignmentCollection().find(filter)) {
+                        loaded.put(toIndexedAssignment(assignment));
+                    }
+                }));
+            }
+            for(var future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the role assignment index", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not load the role assignment index", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Loaded {} role assignments into the role assignment index in {} ms using {} workers",
+                    loaded.byUser.values().stream().mapToLong(Map::size).sum(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                    buckets.size());
+        return loaded;
+    }
+
+    private IndexedAssignment toIndexedAssignment(RoleAssignment assignment) {
+        return new IndexedAssignment(assignment.getUserName().orElse(null),
+                                     assignment.getProjectId().orElse(null),
+                                     capabilityDictionary.toBitSet(assignment.getCapabilityClosure()));
+    }
+
+    private MongoCollection<RoleAssignment> getRoleAssignmentCollection() {
+        return mongoTemplate.getCollection(COLLECTION_NAME)
+                .withCodecRegistry(RoleAssignmentCodec.CODEC_REGISTRY)
+                .withDocumentClass(RoleAssignment.class);
+    }
+
+    private static String toKey(@Nullable String value) {
+        return value != null ? value : NONE;
+    }
+
+    /**
+     * The capability closure of one role assignment
+     */
+    private record IndexedAssignment(@Nullable String userName,
+                                     @Nullable String projectId,
+                                     @Nonnull CapabilityBitSet capabilityClosure) {
+
+    }
+
+    /**
+     * Identifies what to reload: the assignment of a user for a project, or all assignments for a project
+     */
+    private record ReloadKey(@Nullable String userName, @Nullable String projectId, boolean wholeProject) {
+
+    }
+
+    private static final class Snapshot {
+
+        /**
+         * User name to project id to assignment
+         */
+        private final Map<String, Map<String, IndexedAssignment>> byUser = new ConcurrentHashMap<>();
+
+        /**
+         * Project id to user name to assignment
+         */
+        private final Map<String, Map<String, IndexedAssignment>> byProject = new ConcurrentHashMap<>();
+
+        private void put(IndexedAssignment assignment) {
+            var userKey = toKey(assignment.userName());
+            var projectKey = toKey(assignment.projectId());
+            byUser.computeIfAbsent(userKey, k -> new ConcurrentHashMap<>()).put(projectKey, assignment);
+            byProject.computeIfAbsent(projectKey, k -> new ConcurrentHashMap<>()).put(userKey, assignment);
+        }
+
+        private void remove(String userKey, String projectKey) {
+            byUser.computeIfPresent(userKey, (k, projects) -> {
+                projects.remove(projectKey);
+                return projects.isEmpty() ? null : projects;
+            });
+            byProject.computeIfPresent(projectKey, (k, users) -> {
+                users.remove(userKey);
+                return users.isEmpty() ? null : users;
+            });
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.google.common.util.concurrent.Striped;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The locks that guard reads and writes of {@link RoleAssignment}s.  Role assignments are locked per project, so
+ * that a long write to one project, such as a rebuild, does not block permission checks for other projects.
+ * Projects are mapped onto a fixed number of striped read/write locks.  Application level assignments, which
+ * have a null project id, have a lock of their own.
+ * <p>
+ * The full rebuild lock is only taken by a rebuild of all projects.  It prevents two full rebuilds from running at
+ * the same time.  A full rebuild still takes the lock for each project as it rebuilds that project.
+ * <p>
+ * Every write lock is taken through a writer gate.  Locking out writers closes the gate, which excludes writers to
+ * all projects while leaving readers unaffected.  This is used to swap a rebuilt copy of the role assignments for the
+ * live role assignments.
+ * <p>
+ * The time that threads spend waiting for locks is recorded for each {@link LockMode}.  A lock that is free is taken
+ * without reading the clock, so only contended acquisitions add to the wait time.
+ * <p>
+ * Locks are acquired with try-with-resources:
+ * <pre>
+ *     try(var ignored = locks.lockForRead(projectId)) {
+ *         ...
+ *     }
+ * </pre>
+ */
+@Component
+public class RoleAssignmentLocks {
+
+    private static final int PROJECT_LOCK_STRIPES = 256;
+
+    private final Striped<ReadWriteLock> projectLocks = Striped.readWriteLock(PROJECT_LOCK_STRIPES);
+
+    private final ReadWriteLock applicationLock = new ReentrantReadWriteLock();
+
+    private final Lock fullRebuildLock = new ReentrantLock();
+
+    private final ReadWriteLock writerGate = new ReentrantReadWriteLock();
+
+    private final Map<LockMode, WaitStats> waitStats = new EnumMap<>(LockMode.class);
+
+    public RoleAssignmentLocks() {
+        for(var mode : LockMode.values()) {
+            waitStats.put(mode, new WaitStats());
+        }
+    }
+
+    /**
+     * Acquires the read lock for the role assignments of the specified project.
+     * @param projectId The project id.  May be null, to denote application level assignments.
+     */
+    @Nonnull
+    public HeldLock lockForRead(@Nullable String projectId) {
+        return acquire(getLock(projectId).readLock(), LockMode.READ);
+    }
+
+    /**
+     * Acquires the write lock for the role assignments of the specified project.
+     * @param projectId The project id.  May be null, to denote application level assignments.
+     */
+    @Nonnull
+    public HeldLock lockForWrite(@Nullable String projectId) {
+        var stats = waitStats.get(LockMode.WRITE);
+        var gate = writerGate.readLock();
+        stats.lock(gate);
+        try {
+            var lock = getLock(projectId).writeLock();
+            stats.lock(lock);
+            stats.acquired();
+            return () -> {
+                lock.unlock();
+                gate.unlock();
+            };
+        } catch (RuntimeException | Error e) {
+            gate.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Acquires the lock that excludes writers to all projects, and to application level assignments.  Readers are not
+     * excluded.  This waits for writers that hold write locks to release them.  The calling thread must not hold, or
+     * take, any write lock while it holds this lock.
+     */
+    @Nonnull
+    public HeldLock lockOutWriters() {
+        return acquire(writerGate.writeLock(), LockMode.WRITERS_LOCKED_OUT);
+    }
+
+    /**
+     * Acquires the lock that is held for the duration of a rebuild of all projects.
+     */
+    @Nonnull
+    public HeldLock lockForFullRebuild() {
+        return acquire(fullRebuildLock, LockMode.FULL_REBUILD);
+    }
+
+    private ReadWriteLock getLock(@Nullable String projectId) {
+        if(projectId == null) {
+            return applicationLock;
+        }
+        return projectLocks.get(projectId);
+    }
+
+    private HeldLock acquire(Lock lock, LockMode mode) {
+        var stats = waitStats.get(mode);
+        stats.lock(lock);
+        stats.acquired();
+        return lock::unlock;
+    }
+
+    /**
+     * Gets the statistics for the time spent waiting for locks of the specified mode
+     */
+    @Nonnull
+    public WaitStats getWaitStats(@Nonnull LockMode mode) {
+        return waitStats.get(mode);
+    }
+
+    /**
+     * The ways in which role assignments are locked
+     */
+    public enum LockMode {
+
+        READ,
+
+        WRITE,
+
+        WRITERS_LOCKED_OUT,
+
+        FULL_REBUILD
+    }
+
+    /**
+     * Records the time spent waiting for locks of one mode.  Taking a write lock counts as one acquisition, although
+     * it may wait both at the writer gate and for the project lock.
+     */
+    public static class WaitStats {
+
+        private final LongAdder acquisitionCount = new LongAdder();
+
+        private final LongAdder contendedCount = new LongAdder();
+
+        private final LongAdder waitNanos = new LongAdder();
+
+        private final AtomicInteger waitingCount = new AtomicInteger();
+
+        private void lock(Lock lock) {
+            if(!tryLockWithoutBarging(lock)) {
+                contendedCount.increment();
+                waitingCount.incrementAndGet();
+                var start = System.nanoTime();
+                try {
+                    lock.lock();
+                } finally {
+                    waitNanos.add(System.nanoTime() - start);
+                    waitingCount.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Unlike {@link Lock#tryLock()}, a timed try lock does not take a read lock ahead of a queued writer, so
+         * writers, and locking out writers, are not starved by the fast path.
+         */
+        private static boolean tryLockWithoutBarging(Lock lock) {
+            try {
+                return lock.tryLock(0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void acquired() {
+            acquisitionCount.increment();
+        }
+
+        /**
+         * Gets the number of locks that have been acquired
+         */
+        public long getAcquisitionCount() {
+            return acquisitionCount.sum();
+        }
+
+        /**
+         * Gets the number of locks that could not be acquired without waiting
+         */
+        public long getContendedCount() {
+            return contendedCount.sum();
+        }
+
+        /**
+         * Gets the total time spent waiting for locks
+         */
+        public double getWaitTime(@Nonnull TimeUnit unit) {
+            return (double) waitNanos.sum() / unit.toNanos(1);
+        }
+
+        /**
+         * Gets the number of threads that are currently waiting for a lock
+         */
+        public int getWaitingCount() {
+            return waitingCount.get();
+        }
+    }
+
+    /**
+     * A lock that has been acquired.  Closing it releases the lock.
+     */
+    public interface HeldLock extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
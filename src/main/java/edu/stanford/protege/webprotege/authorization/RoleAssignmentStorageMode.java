@@ -0,0 +1,19 @@
+package edu.stanford.protege.webprotege.authorization;
+
+/**
+ * Determines where {@link AccessManagerImpl} reads role assignments from when it answers permission checks and
+ * access queries.  MongoDb is the source of truth in both modes.
+ */
+public enum RoleAssignmentStorageMode {
+
+    /**
+     * Query MongoDb, with merged capability closures cached in the {@link CapabilityClosureCache}
+     */
+    MONGO,
+
+    /**
+     * Answer from a {@link RoleAssignmentIndex} that holds all role assignments in memory.  MongoDb is queried until
+     * the index has been loaded.  Requires the change stream, which reports writes made by other instances.
+     */
+    MEMORY
+}
@@ -3,6 +3,8 @@ package edu.stanford.protege.webprotege.authorization;
 import edu.stanford.protege.webprotege.ipc.CommandHandler;
 import edu.stanford.protege.webprotege.ipc.ExecutionContext;
 import edu.stanford.protege.webprotege.ipc.WebProtegeHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
 
 import javax.annotation.Nonnull;
@@ -15,6 +17,8 @@ import javax.annotation.Nonnull;
 @WebProtegeHandler
 public class SetAssignedRolesHandler implements CommandHandler<SetAssignedRolesRequest, SetAssignedRolesResponse> {
 
+    private static final Logger logger = LoggerFactory.getLogger(SetAssignedRolesHandler.class);
+
     private final AccessManager accessManager;
 
     public SetAssignedRolesHandler(AccessManager accessManager) {
@@ -34,9 +38,13 @@ public class SetAssignedRolesHandler implements CommandHandler<SetAssignedRolesR
 
     @Override
     public Mono<SetAssignedRolesResponse> handleRequest(SetAssignedRolesRequest request, ExecutionContext executionContext) {
-        accessManager.setAssignedRoles(request.subject(),
-                                       request.resource(),
-                                       request.roles());
+        var changed = accessManager.setAssignedRoles(request.subject(),
+                                                     request.resource(),
+                                                     request.roles());
+        // Unchanged roles are logged by the access manager
+        if(changed) {
+            logger.debug("Set assigned roles for {} on {} to {}", request.subject(), request.resource(), request.roles());
+        }
         return Mono.just(new SetAssignedRolesResponse());
     }
 }
@@ -14,9 +14,14 @@ public class SetProjectRoleDefinitionsHandler implements AuthorizedCommandHandle
 
     private final AccessManager accessManager;
 
-    public SetProjectRoleDefinitionsHandler(AccessManager accessManager, ProjectRoleDefinitionsManager roleDefinitionsManager) {
+    private final PermissionsChangedEventCoalescer permissionsChangedEventCoalescer;
+
+    public SetProjectRoleDefinitionsHandler(AccessManager accessManager,
+                                            ProjectRoleDefinitionsManager roleDefinitionsManager,
+                                            PermissionsChangedEventCoalescer permissionsChangedEventCoalescer) {
         this.accessManager = accessManager;
         this.roleDefinitionsManager = roleDefinitionsManager;
+        this.permissionsChangedEventCoalescer = permissionsChangedEventCoalescer;
     }
 
     private final ProjectRoleDefinitionsManager roleDefinitionsManager;
@@ -46,9 +51,15 @@ public class SetProjectRoleDefinitionsHandler implements AuthorizedCommandHandle
 
     @Override
     public Mono<SetProjectRoleDefinitionsResponse> handleRequest(SetProjectRoleDefinitionsRequest request, ExecutionContext executionContext) {
-        roleDefinitionsManager.setProjectRoleDefinitions(request.projectId(),
-                request.roleDefinitions());
-        accessManager.rebuild(request.projectId());
+        // The rebuild's event is dispatched as soon as the whole change is complete
+        try(var batch = permissionsChangedEventCoalescer.beginBatch()) {
+            var affectedRoleIds = roleDefinitionsManager.setProjectRoleDefinitions(request.projectId(),
+                    request.roleDefinitions());
+            accessManager.rebuild(request.projectId(), affectedRoleIds);
+            // Other instances cache the project's role graph, so they are told about every change to the role
+            // definitions, including one that affects no assignments
+            permissionsChangedEventCoalescer.projectPermissionsChanged(request.projectId());
+        }
         return Mono.just(SetProjectRoleDefinitionsResponse.get(request.roleDefinitions()));
     }
 }
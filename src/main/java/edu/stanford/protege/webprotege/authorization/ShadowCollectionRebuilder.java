@@ -0,0 +1,300 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.*;
+import edu.stanford.protege.webprotege.authorization.AssignmentClosureCalculator.AssignmentClosure;
+import edu.stanford.protege.webprotege.authorization.PermissionRebuildEngine.RebuildProgress;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static edu.stanford.protege.webprotege.authorization.AccessManagerImpl.COLLECTION_NAME;
+import static edu.stanford.protege.webprotege.authorization.RoleAssignment.*;
+
+/**
+ * Rebuilds all role assignments into a shadow collection and then swaps the shadow collection for the live
+ * collection.
+ * <p>
+ * The rebuild runs in four steps.  First, the live collection is copied into the shadow collection, with recomputed
+ * closures, in bulk and without taking any lock.  Second, the indexes of the live collection are built on the shadow
+ * collection.  Third, writes that were made to the live collection while it was being copied are reconciled.  A write
+ * that adds, removes or reassigns an assignment is detected by comparing the live and shadow collections in _id
+ * order.  A write that rebuilds the closures of a project, because its role definitions changed, is reported to
+ * {@link #projectRebuilt(String)} and causes the project to be recomputed.  Finally, writers are locked out, the
+ * remaining writes are reconciled, the document counts are verified, and the shadow collection is renamed over the
+ * live collection.  Renaming is atomic, so readers see either the old or the new role assignments.  Readers are never
+ * blocked.
+ * <p>
+ * Writers are locked out with {@link RoleAssignmentLocks}, which only excludes writers in this instance of the
+ * service.  Role assignments that are changed by other instances during the final step would be lost from the rebuilt
+ * collection, so {@link PermissionRebuildEngine} only uses this rebuilder in a single instance deployment.
+ */
+@Component
+public class ShadowCollectionRebuilder {
+
+    static final String SHADOW_COLLECTION_NAME = COLLECTION_NAME + "_rebuild";
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowCollectionRebuilder.class);
+
+    private static final Document IDENTITY_PROJECTION = new Document(USER_NAME, 1)
+            .append(PROJECT_ID, 1)
+            .append(ASSIGNED_ROLES, 1);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final AssignmentClosureCalculator assignmentClosureCalculator;
+
+    private final RoleAssignmentLocks locks;
+
+    private final CapabilityClosureCache capabilityClosureCache;
+
+    private final int batchSize;
+
+    /**
+     * The projects that have been rebuilt in the live collection while the shadow collection is being built.  Null
+     * when no shadow rebuild is running.
+     */
+    private volatile Set<String> rebuiltProjects = null;
+
+    public ShadowCollectionRebuilder(MongoTemplate mongoTemplate,
+                                     ObjectMapper objectMapper,
+                                     AssignmentClosureCalculator assignmentClosureCalculator,
+                                     RoleAssignmentLocks locks,
+                                     CapabilityClosureCache capabilityClosureCache,
+                                     @Value("${webprotege.authorization.rebuild.batch-size:500}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.assignmentClosureCalculator = assignmentClosureCalculator;
+        this.locks = locks;
+        this.capabilityClosureCache = capabilityClosureCache;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Records that the closures of some role assignments in the specified project have been rebuilt in the live
+     * collection.  If a shadow rebuild is running then the project is recomputed before the swap.
+     * @param projectId The project id.  May be null, to denote application level assignments.
+     */
+    public void projectRebuilt(@Nullable String projectId) {
+        var projects = rebuiltProjects;
+        if(projects != null) {
+            projects.add(toKey(projectId));
+        }
+    }
+
+    /**
+     * Rebuilds all role assignments and swaps them for the live role assignments.  The caller must hold the full
+     * rebuild lock.
+     * @throws IllegalStateException if the rebuilt role assignments could not be verified.  The live role assignments
+     * are left unchanged.
+     */
+    void rebuild(@Nonnull RebuildProgress progress) {
+        var live = getLiveCollection();
+        var shadow = mongoTemplate.getCollection(SHADOW_COLLECTION_NAME);
+        shadow.drop();
+        rebuiltProjects = ConcurrentHashMap.newKeySet();
+        try {
+            var closures = new HashMap<ClosureKey, AssignmentClosure>();
+            copy(shadow, closures, progress);
+            copyIndexes(live, shadow);
+            var reconciled = reconcile(live, shadow, closures);
+            logger.info("Reconciled {} role assignments that were changed while the shadow collection was built", reconciled);
+            try(var ignored = locks.lockOutWriters()) {
+                reconciled = reconcile(live, shadow, closures);
+                var liveCount = live.countDocuments();
+                var shadowCount = shadow.countDocuments();
+                if(liveCount != shadowCount) {
+                    throw new IllegalStateException("The shadow collection has " + shadowCount
+                                                            + " role assignments but the live collection has " + liveCount);
+                }
+                var liveNamespace = new MongoNamespace(mongoTemplate.getDb().getName(), COLLECTION_NAME);
+                shadow.renameCollection(liveNamespace, new RenameCollectionOptions().dropTarget(true));
+                capabilityClosureCache.invalidateAll();
+                logger.info("Swapped in the shadow collection with {} role assignments after reconciling {} more", shadowCount, reconciled);
+            }
+        } catch (RuntimeException e) {
+            shadow.drop();
+            throw e;
+        } finally {
+            rebuiltProjects = null;
+        }
+    }
+
+    private void copy(MongoCollection<Document> shadow,
+                      Map<ClosureKey, AssignmentClosure> closures,
+                      RebuildProgress progress) {
+        var roleAssignments = mongoTemplate.getCollection(COLLECTION_NAME)
+                .withCodecRegistry(RoleAssignmentCodec.CODEC_REGISTRY)
+                .withDocumentClass(RoleAssignment.class);
+        var documents = new ArrayList<Document>(batchSize);
+        var rewritten = 0L;
+        for(var roleAssignment : roleAssignments.find()) {
+            var closure = getClosure(roleAssignment.getProjectId().orElse(null), roleAssignment.getAssignedRoles(), closures);
+            if(!closure.roleClosure().equals(roleAssignment.getRoleClosure())
+                    || !closure.capabilityClosure().equals(roleAssignment.getCapabilityClosure())) {
+                rewritten++;
+            }
+            documents.add(toDocument(roleAssignment.getObjectId().orElseThrow(),
+                                     roleAssignment.getUserName().orElse(null),
+                                     roleAssignment.getProjectId().orElse(null),
+                                     roleAssignment.getAssignedRoles(),
+                                     closure));
+            if(documents.size() >= batchSize) {
+                progress.assignmentsRebuilt(documents.size(), rewritten);
+                shadow.insertMany(documents, new InsertManyOptions().ordered(false));
+                documents.clear();
+                rewritten = 0;
+            }
+        }
+        if(!documents.isEmpty()) {
+            progress.assignmentsRebuilt(documents.size(), rewritten);
+            shadow.insertMany(documents, new InsertManyOptions().ordered(false));
+        }
+    }
+
+    private static void copyIndexes(MongoCollection<Document> live, MongoCollection<Document> shadow) {
+        for(var index : live.listIndexes()) {
+            var name = index.getString("name");
+            if("_id_".equals(name)) {
+                continue;
+            }
+            var options = new IndexOptions()
+                    .name(name)
+                    .unique(index.getBoolean("unique", false))
+                    .sparse(index.getBoolean("sparse", false));
+            shadow.createIndex(index.get("key", Document.class), options);
+        }
+    }
+
+    /**
+     * Brings the shadow collection up to date with writes that have been made to the live collection since it was
+     * copied.
+     * @return The number of role assignments that were written to, or deleted from, the shadow collection.
+     */
+    private long reconcile(MongoCollection<Document> live,
+                           MongoCollection<Document> shadow,
+                           Map<ClosureKey, AssignmentClosure> closures) {
+        var projects = new HashSet<String>();
+        for(var iterator = rebuiltProjects.iterator(); iterator.hasNext(); ) {
+            projects.add(iterator.next());
+            iterator.remove();
+        }
+        closures.keySet().removeIf(key -> projects.contains(key.projectId()));
+        var deletes = new ArrayList<WriteModel<Document>>();
+        var replacements = new ArrayList<WriteModel<Document>>();
+        var sort = new Document("_id", 1);
+        try(var liveCursor = live.find().projection(IDENTITY_PROJECTION).sort(sort).iterator();
+            var shadowCursor = shadow.find().projection(IDENTITY_PROJECTION).sort(sort).iterator()) {
+            var liveDocument = next(liveCursor);
+            var shadowDocument = next(shadowCursor);
+            while(liveDocument != null || shadowDocument != null) {
+                var comparison = liveDocument == null ? 1 : shadowDocument == null ? -1
+                        : liveDocument.getObjectId("_id").compareTo(shadowDocument.getObjectId("_id"));
+                if(comparison > 0) {
+                    deletes.add(new DeleteOneModel<>(new Document("_id", shadowDocument.get("_id"))));
+                    shadowDocument = next(shadowCursor);
+                }
+                else {
+                    var projectId = toKey(liveDocument.getString(PROJECT_ID));
+                    if(comparison < 0 || projects.contains(projectId) || !isSameAssignment(liveDocument, shadowDocument)) {
+                        var id = liveDocument.getObjectId("_id");
+                        var document = toDocument(liveDocument, closures);
+                        replacements.add(new ReplaceOneModel<>(new Document("_id", id), document, new ReplaceOptions().upsert(true)));
+                    }
+                    if(comparison == 0) {
+                        shadowDocument = next(shadowCursor);
+                    }
+                    liveDocument = next(liveCursor);
+                }
+            }
+        }
+        // Deletes go first so that an assignment that was deleted and re-added under a new _id does not collide with
+        // itself on the unique index
+        write(shadow, deletes);
+        write(shadow, replacements);
+        return deletes.size() + replacements.size();
+    }
+
+    private void write(MongoCollection<Document> collection, List<WriteModel<Document>> writes) {
+        for(int from = 0; from < writes.size(); from += batchSize) {
+            var to = Math.min(writes.size(), from + batchSize);
+            collection.bulkWrite(writes.subList(from, to), new BulkWriteOptions().ordered(false));
+        }
+    }
+
+    @Nullable
+    private static Document next(MongoCursor<Document> cursor) {
+        return cursor.hasNext() ? cursor.next() : null;
+    }
+
+    private static boolean isSameAssignment(Document liveDocument, Document shadowDocument) {
+        return Objects.equals(liveDocument.get(USER_NAME), shadowDocument.get(USER_NAME))
+                && Objects.equals(liveDocument.get(PROJECT_ID), shadowDocument.get(PROJECT_ID))
+                && Objects.equals(liveDocument.get(ASSIGNED_ROLES), shadowDocument.get(ASSIGNED_ROLES));
+    }
+
+    private Document toDocument(Document liveDocument, Map<ClosureKey, AssignmentClosure> closures) {
+        var projectId = liveDocument.getString(PROJECT_ID);
+        var assignedRoles = liveDocument.getList(ASSIGNED_ROLES, String.class, List.of());
+        return toDocument(liveDocument.getObjectId("_id"),
+                          liveDocument.getString(USER_NAME),
+                          projectId,
+                          assignedRoles,
+                          getClosure(projectId, assignedRoles, closures));
+    }
+
+    private Document toDocument(ObjectId id,
+                                @Nullable String userName,
+                                @Nullable String projectId,
+                                List<String> assignedRoles,
+                                AssignmentClosure closure) {
+        var roleAssignment = new RoleAssignment(userName,
+                                                projectId,
+                                                assignedRoles,
+                                                closure.roleClosure(),
+                                                closure.capabilityClosure());
+        var document = objectMapper.convertValue(roleAssignment, Document.class);
+        document.put("_id", id);
+        return document;
+    }
+
+    private AssignmentClosure getClosure(@Nullable String projectId,
+                                         List<String> assignedRoles,
+                                         Map<ClosureKey, AssignmentClosure> closures) {
+        var roleIds = assignedRoles.stream().map(RoleId::new).collect(Collectors.toUnmodifiableSet());
+        return closures.computeIfAbsent(new ClosureKey(toKey(projectId), roleIds),
+                                        key -> assignmentClosureCalculator.getAssignmentClosure(projectId != null ? ProjectId.valueOf(projectId) : null,
+                                                                                                key.roleIds()));
+    }
+
+    private MongoCollection<Document> getLiveCollection() {
+        return mongoTemplate.getCollection(COLLECTION_NAME);
+    }
+
+    /**
+     * Application level assignments are keyed by the empty string, because concurrent sets do not hold nulls
+     */
+    private static String toKey(@Nullable String projectId) {
+        return projectId != null ? projectId : "";
+    }
+
+    private record ClosureKey(String projectId, Set<RoleId> roleIds) {
+
+    }
+}
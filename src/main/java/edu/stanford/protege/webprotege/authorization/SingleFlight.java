@@ -0,0 +1,107 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key.  The first caller for a key runs the load, and callers that arrive while
+ * it is in flight wait for, and share, its result or its failure.  Once the load has completed the key is forgotten,
+ * so the next caller runs a new load.
+ * <p>
+ * A shared result is only as fresh as the moment its load started.  Callers that must not be served a result that
+ * was loaded before a change should include something that changes with it, such as the generation stamp of the
+ * {@link CapabilityClosureCache}, in the key.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder sharedCount = new LongAdder();
+
+    /**
+     * Loads the value for the specified key on the calling thread, or waits for the load that is already in flight.
+     * @param key The key.
+     * @param loader Loads the value.  This is only called if no load is in flight for the key.
+     * @return The loaded value.
+     */
+    public V execute(@Nonnull K key, @Nonnull Supplier<V> loader) {
+        var flight = new CompletableFuture<V>();
+        var existing = inFlight.putIfAbsent(key, flight);
+        if(existing != null) {
+            sharedCount.increment();
+            return join(existing);
+        }
+        try {
+            var value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if(e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the value for the specified key when the returned publisher is subscribed to, or shares the load that is
+     * already in flight.  The load runs to completion even if the subscriber that started it cancels, since other
+     * subscribers may be waiting for it.
+     * @param key The key.
+     * @param loader Supplies a publisher that loads the value.  This is only called if no load is in flight for the key.
+     * @return A publisher of the loaded value.
+     */
+    @Nonnull
+    public Mono<V> executeAsync(@Nonnull K key, @Nonnull Supplier<Mono<V>> loader) {
+        return Mono.defer(() -> {
+            var flight = new CompletableFuture<V>();
+            var existing = inFlight.putIfAbsent(key, flight);
+            if(existing != null) {
+                sharedCount.increment();
+                return Mono.fromFuture(existing, true);
+            }
+            flight.whenComplete((value, error) -> inFlight.remove(key, flight));
+            try {
+                loader.get().subscribe(flight::complete, flight::completeExceptionally, () -> flight.complete(null));
+            } catch (RuntimeException e) {
+                flight.completeExceptionally(e);
+            }
+            return Mono.fromFuture(flight, true);
+        });
+    }
+
+    /**
+     * Gets the number of callers that have been served by a load that another caller started
+     */
+    public long getSharedCount() {
+        return sharedCount.sum();
+    }
+
+    /**
+     * Gets the number of loads that are in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,163 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.ipc.CommandHandler;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs each incoming command on its own virtual thread, when {@code webprotege.authorization.virtual-threads.enabled}
+ * is set.  Handlers that block, on MongoDb or on a project lock, then block a virtual thread rather than one of the
+ * small number of message listener threads, so the number of commands in progress is no longer capped by the size of
+ * the listener thread pool.  It is capped instead by {@code virtual-threads.max-concurrent-commands}, so that a burst
+ * of commands cannot open an unbounded number of MongoDb operations on this node.  Commands beyond the cap wait, on
+ * their virtual threads, for a command to complete.
+ * <p>
+ * Every {@link CommandHandler} bean is proxied so that its {@code handleRequest} is called on a virtual thread, and
+ * a permit is held until the response publisher terminates.  The listener thread returns as soon as the command has
+ * been handed over.  The logging context of the listener thread, which holds the correlation id, is copied to the
+ * virtual thread.
+ * <p>
+ * Virtual threads require Java 21.  The service is built for Java 17, so the executor is created reflectively, and
+ * enabling this mode on an older runtime fails at startup.
+ */
+@Component
+public class VirtualThreadCommandHandlerPostProcessor implements BeanPostProcessor, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadCommandHandlerPostProcessor.class);
+
+    private static final String HANDLE_REQUEST_METHOD_NAME = "handleRequest";
+
+    private final boolean enabled;
+
+    private final int maxConcurrentCommands;
+
+    private final Semaphore permits;
+
+    @Nullable
+    private final ExecutorService executor;
+
+    @Nullable
+    private final Scheduler scheduler;
+
+    public VirtualThreadCommandHandlerPostProcessor(@Value("${webprotege.authorization.virtual-threads.enabled:false}") boolean enabled,
+                                                    @Value("${webprotege.authorization.virtual-threads.max-concurrent-commands:1000}") int maxConcurrentCommands) {
+        this(enabled, maxConcurrentCommands, enabled ? newVirtualThreadPerTaskExecutor() : null);
+    }
+
+    /**
+     * Constructs a post processor that runs commands on the specified executor, rather than on virtual threads
+     */
+    VirtualThreadCommandHandlerPostProcessor(boolean enabled,
+                                             int maxConcurrentCommands,
+                                             @Nullable ExecutorService executor) {
+        if(maxConcurrentCommands < 1) {
+            throw new IllegalArgumentException("max-concurrent-commands must be at least 1: " + maxConcurrentCommands);
+        }
+        this.enabled = enabled;
+        this.maxConcurrentCommands = maxConcurrentCommands;
+        this.permits = new Semaphore(maxConcurrentCommands);
+        this.executor = executor;
+        this.scheduler = executor != null ? Schedulers.fromExecutorService(executor, "command-handler") : null;
+        if(enabled) {
+            logger.info("Running commands on virtual threads, with at most {} concurrent commands", maxConcurrentCommands);
+        }
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@Nonnull Object bean, @Nonnull String beanName) {
+        if(!enabled || !(bean instanceof CommandHandler<?, ?>)) {
+            return bean;
+        }
+        if(scheduler == null) {
+            throw new IllegalStateException("No executor for commands");
+        }
+        logger.debug("Running commands for {} on virtual threads", beanName);
+        return CommandHandlerProxies.addAdvice(bean, new HandleRequestInterceptor(scheduler), false);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            var method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Running commands on virtual threads requires Java 21 or later.  " +
+                                                    "Running on Java " + Runtime.version().feature(), e);
+        }
+    }
+
+    /**
+     * Gets the number of commands that are currently in progress on virtual threads
+     */
+    public int getConcurrentCommandCount() {
+        return maxConcurrentCommands - permits.availablePermits();
+    }
+
+    @Override
+    public void destroy() {
+        if(scheduler != null) {
+            scheduler.dispose();
+        }
+        if(executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private class HandleRequestInterceptor implements MethodInterceptor {
+
+        private final Scheduler scheduler;
+
+        private HandleRequestInterceptor(Scheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Nullable
+        @Override
+        public Object invoke(@Nonnull MethodInvocation invocation) throws Throwable {
+            if(!invocation.getMethod().getName().equals(HANDLE_REQUEST_METHOD_NAME)) {
+                return invocation.proceed();
+            }
+            var loggingContext = MDC.getCopyOfContextMap();
+            // The permit is the resource of the subscription that acquires it, so it is released when that
+            // subscription terminates or is cancelled, including a cancel that arrives just after it is acquired
+            return Mono.using(() -> {
+                                  permits.acquire();
+                                  return permits;
+                              },
+                              acquired -> Mono.defer(() -> handleRequest(invocation, loggingContext)),
+                              Semaphore::release)
+                       .subscribeOn(scheduler);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Mono<Object> handleRequest(MethodInvocation invocation,
+                                           @Nullable Map<String, String> loggingContext) {
+            if(loggingContext != null) {
+                MDC.setContextMap(loggingContext);
+            }
+            try {
+                return (Mono<Object>) invocation.proceed();
+            } catch (Throwable t) {
+                return Mono.error(t);
+            } finally {
+                MDC.clear();
+            }
+        }
+    }
+}
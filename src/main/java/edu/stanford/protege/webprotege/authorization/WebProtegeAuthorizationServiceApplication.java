@@ -16,8 +16,8 @@ public class WebProtegeAuthorizationServiceApplication implements CommandLineRun
 	}
 
 	@Bean
-	public BuiltInRoleOracleImpl getRoleOracle() {
-		return BuiltInRoleOracleImpl.get();
+	public BuiltInRoleOracleImpl getRoleOracle(CapabilityDictionary capabilityDictionary) {
+		return BuiltInRoleOracleImpl.get(capabilityDictionary);
 	}
 
 	@Override
@@ -1,6 +1,8 @@
 package edu.stanford.protege.webprotege.authorization;
 
 import com.mongodb.client.MongoCollection;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.common.UserId;
 import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -41,6 +43,9 @@ class AccessManagerImpl_IT {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private PermissionRebuildEngine rebuildEngine;
+
     private Subject subject;
 
     private ApplicationResource resource;
@@ -99,6 +104,20 @@ class AccessManagerImpl_IT {
         assertThat(countDocuments(), is(1L));
     }
 
+    @Test
+    public void shouldReportUnchangedAssignedRoles() {
+        var changed = manager.setAssignedRoles(subject, resource, assignedRoles);
+        assertThat(changed, is(false));
+    }
+
+    @Test
+    public void shouldReportChangedAssignedRoles() {
+        var changed = manager.setAssignedRoles(subject, resource, Set.of(BuiltInRole.CAN_EDIT.getRoleId()));
+        assertThat(changed, is(true));
+        assertThat(countDocuments(), is(1L));
+        assertThat((List<String>) getCollection().find(userQuery).first().get(ASSIGNED_ROLES_FIELD), hasItems("CanEdit"));
+    }
+
     private long countDocuments() {
         return getCollection().countDocuments();
     }
@@ -128,6 +147,71 @@ class AccessManagerImpl_IT {
         assertThat((List<Document>) rebuiltDocument.get("capabilityClosure"), hasItems(expected));
     }
 
+    @Test
+    public void shouldReplaceProjectRoleAssignmentsWithDifferences() {
+        var projectId = ProjectId.generate();
+        var projectResource = ProjectResource.forProject(projectId);
+        manager.setAssignedRoles(Subject.forUser("Unchanged"), projectResource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        manager.setAssignedRoles(Subject.forUser("Changed"), projectResource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        manager.setAssignedRoles(Subject.forUser("Removed"), projectResource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        var unchangedQuery = new Document(USER_NAME_FIELD, "Unchanged").append("projectId", projectId.value());
+        var unchangedId = getCollection().find(unchangedQuery).first().get("_id");
+
+        manager.setProjectRoleAssignments(projectId, new ProjectRoleAssignments(List.of(
+                new UserRoleAssignment(UserId.valueOf("Unchanged"), BuiltInRole.CAN_VIEW.getRoleId()),
+                new UserRoleAssignment(UserId.valueOf("Changed"), BuiltInRole.CAN_EDIT.getRoleId()),
+                new UserRoleAssignment(UserId.valueOf("Added"), BuiltInRole.CAN_EDIT.getRoleId()),
+                new UserRoleAssignment(UserId.valueOf("Added"), BuiltInRole.CAN_COMMENT.getRoleId())
+        )));
+
+        var projectQuery = new Document("projectId", projectId.value());
+        assertThat(getCollection().countDocuments(projectQuery), is(3L));
+        assertThat(getCollection().find(unchangedQuery).first().get("_id"), is(unchangedId));
+        var changed = getCollection().find(new Document(USER_NAME_FIELD, "Changed").append("projectId", projectId.value())).first();
+        assertThat((List<String>) changed.get(ASSIGNED_ROLES_FIELD), is(List.of("CanEdit")));
+        assertThat((List<String>) changed.get(ROLE_CLOSURE_FIELD), hasItems("CanEdit", "CanView"));
+        var added = getCollection().find(new Document(USER_NAME_FIELD, "Added").append("projectId", projectId.value())).first();
+        assertThat((List<String>) added.get(ASSIGNED_ROLES_FIELD), hasItems("CanEdit", "CanComment"));
+        assertThat(getCollection().countDocuments(new Document(USER_NAME_FIELD, "Removed")), is(0L));
+        assertThat(manager.getAssignedRoles(Subject.forUser("Changed"), projectResource),
+                   hasItems(BuiltInRole.CAN_EDIT.getRoleId()));
+    }
+
+    @Test
+    public void shouldRebuildAllProjects() {
+        var projectIds = List.of(ProjectId.generate(), ProjectId.generate(), ProjectId.generate());
+        for(var projectId : projectIds) {
+            manager.setAssignedRoles(Subject.forUser("A"), ProjectResource.forProject(projectId), Set.of(BuiltInRole.CAN_EDIT.getRoleId()));
+            manager.setAssignedRoles(Subject.forUser("B"), ProjectResource.forProject(projectId), Set.of(BuiltInRole.CAN_EDIT.getRoleId()));
+        }
+        getCollection().updateMany(new Document(), new Document("$set", new Document("roleClosure", emptyList())));
+
+        manager.rebuild();
+
+        for(var projectId : projectIds) {
+            getCollection().find(new Document("projectId", projectId.value()))
+                           .forEach(doc -> assertThat((List<String>) doc.get(ROLE_CLOSURE_FIELD), hasItems("CanEdit", "CanView")));
+        }
+        var progress = rebuildEngine.getProgress().orElseThrow();
+        assertThat(progress.isFinished(), is(true));
+        assertThat(progress.getRewrittenAssignments(), is(7L));
+    }
+
+    @Test
+    public void shouldRebuildOnlyAssignmentsAffectedByChangedRoles() {
+        var projectId = ProjectId.generate();
+        manager.setAssignedRoles(Subject.forUser("A"), ProjectResource.forProject(projectId), Set.of(BuiltInRole.CAN_EDIT.getRoleId()));
+        manager.setAssignedRoles(Subject.forUser("B"), ProjectResource.forProject(projectId), Set.of(BuiltInRole.CAN_MANAGE.getRoleId()));
+        getCollection().updateMany(new Document(), new Document("$set", new Document("capabilityClosure", emptyList())));
+        var rewrittenBefore = rebuildEngine.getTotalRewrittenAssignments();
+
+        manager.rebuild(projectId, Set.of(BuiltInRole.CAN_MANAGE.getRoleId()));
+
+        assertThat(rebuildEngine.getTotalRewrittenAssignments() - rewrittenBefore, is(1L));
+        var userA = getCollection().find(new Document("projectId", projectId.value()).append("userName", "A")).first();
+        assertThat((List<?>) userA.get("capabilityClosure"), is(emptyList()));
+    }
+
     @AfterEach
     public void tearDown() {
         getCollection().drop();
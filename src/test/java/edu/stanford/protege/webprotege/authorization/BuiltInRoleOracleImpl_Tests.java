@@ -4,6 +4,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -33,4 +35,34 @@ public class BuiltInRoleOracleImpl_Tests {
         var actions = roleOracle.getCapabilitiesAssociatedToRoles(Collections.singleton(BuiltInRole.PROJECT_CREATOR.getRoleId()));
         assertThat(actions.contains(BuiltInCapability.CREATE_EMPTY_PROJECT.getCapability()));
     }
+
+    @Test
+    void shouldGetCapabilitiesOfAncestorRoles() {
+        var capabilities = roleOracle.getCapabilitiesAssociatedToRoles(Set.of(BuiltInRole.PROJECT_EDITOR.getRoleId()));
+        assertThat(capabilities).contains(BuiltInCapability.VIEW_PROJECT.getCapability());
+    }
+
+    @Test
+    void shouldGetSameCapabilitiesRegardlessOfRoleOrder() {
+        var editorThenCreator = roleOracle.getCapabilitiesAssociatedToRoles(List.of(BuiltInRole.PROJECT_EDITOR.getRoleId(),
+                                                                                    BuiltInRole.PROJECT_CREATOR.getRoleId()));
+        var creatorThenEditor = roleOracle.getCapabilitiesAssociatedToRoles(List.of(BuiltInRole.PROJECT_CREATOR.getRoleId(),
+                                                                                    BuiltInRole.PROJECT_EDITOR.getRoleId()));
+        assertThat(editorThenCreator).containsExactlyInAnyOrderElementsOf(creatorThenEditor);
+    }
+
+    @Test
+    void shouldGetCapabilityBitSetConsistentWithCapabilities() {
+        var dictionary = new CapabilityDictionary();
+        var oracle = BuiltInRoleOracleImpl.get(dictionary);
+        var roleIds = Set.of(BuiltInRole.PROJECT_EDITOR.getRoleId(), RoleId.valueOf("UnknownRole"));
+        var bitSet = oracle.getCapabilityBitSetAssociatedToRoles(roleIds);
+        assertThat(dictionary.toCapabilities(bitSet)).containsExactlyInAnyOrderElementsOf(oracle.getCapabilitiesAssociatedToRoles(roleIds));
+        assertThat(bitSet.contains(dictionary.findId(BuiltInCapability.VIEW_PROJECT.getCapability()))).isTrue();
+    }
+
+    @Test
+    void shouldGetEmptyCapabilitiesForNoRoles() {
+        assertThat(roleOracle.getCapabilityBitSetAssociatedToRoles(Set.of()).isEmpty()).isTrue();
+    }
 }
@@ -0,0 +1,54 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookup of the capabilities of the built-in roles in a token.  This is done for the JWT of every
+ * permission check whose capability is not in the subject's assigned closure.  The "capabilities" path returns the
+ * capabilities as a collection, and the "capabilityBitSet" path returns them as a {@link CapabilityBitSet}, which is
+ * what the permission checks use.  The "one" role set is a single role, and the "several" role set is typical of an
+ * administrator's token.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test -DskipTests -Dbenchmark=BuiltInRoleOracle}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuiltInRoleOracle_Benchmark {
+
+    @Param({"one", "several"})
+    public String roles;
+
+    private final BuiltInRoleOracle roleOracle = BuiltInRoleOracleImpl.get();
+
+    private List<RoleId> roleIds;
+
+    @Setup
+    public void setUp() {
+        roleIds = switch (roles) {
+            case "one" -> List.of(BuiltInRole.PROJECT_EDITOR.getRoleId());
+            case "several" -> List.of(BuiltInRole.SYSTEM_ADMIN.getRoleId(),
+                                      BuiltInRole.PROJECT_CREATOR.getRoleId(),
+                                      BuiltInRole.PROJECT_UPLOADER.getRoleId(),
+                                      BuiltInRole.CAN_MANAGE.getRoleId());
+            default -> throw new IllegalArgumentException("Unknown role set: " + roles);
+        };
+    }
+
+    @Benchmark
+    public Collection<Capability> capabilities() {
+        return roleOracle.getCapabilitiesAssociatedToRoles(roleIds);
+    }
+
+    @Benchmark
+    public CapabilityBitSet capabilityBitSet() {
+        return roleOracle.getCapabilityBitSetAssociatedToRoles(roleIds);
+    }
+}
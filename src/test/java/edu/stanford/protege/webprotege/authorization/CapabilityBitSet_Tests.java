@@ -0,0 +1,75 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CapabilityBitSet_Tests {
+
+    private CapabilityDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new CapabilityDictionary();
+    }
+
+    @Test
+    void shouldRegisterBuiltInCapabilitiesUpFront() {
+        assertThat(dictionary.size()).isEqualTo(BuiltInCapability.values().length);
+        assertThat(dictionary.findId(BuiltInCapability.VIEW_PROJECT.getCapability())).isNotNegative();
+    }
+
+    @Test
+    void shouldNotFindUnregisteredCapability() {
+        assertThat(dictionary.findId(BasicCapability.valueOf("CustomCapability"))).isEqualTo(-1);
+    }
+
+    @Test
+    void shouldRegisterCustomCapabilityOnce() {
+        var custom = BasicCapability.valueOf("CustomCapability");
+        var id = dictionary.getId(custom);
+        assertThat(dictionary.getId(custom)).isEqualTo(id);
+        assertThat(dictionary.getCapability(id)).isEqualTo(custom);
+    }
+
+    @Test
+    void shouldContainMembers() {
+        var viewProject = BuiltInCapability.VIEW_PROJECT.getCapability();
+        var bitSet = dictionary.toBitSet(List.of(viewProject));
+        assertThat(bitSet.contains(dictionary.findId(viewProject))).isTrue();
+        assertThat(bitSet.contains(dictionary.findId(BuiltInCapability.CREATE_CLASS.getCapability()))).isFalse();
+        assertThat(bitSet.contains(-1)).isFalse();
+    }
+
+    @Test
+    void shouldRoundTripCapabilities() {
+        var capabilities = Set.<Capability>of(BuiltInCapability.VIEW_PROJECT.getCapability(),
+                                              BasicCapability.valueOf("CustomCapability"));
+        var bitSet = dictionary.toBitSet(capabilities);
+        assertThat(bitSet.size()).isEqualTo(2);
+        assertThat(dictionary.toCapabilities(bitSet)).containsExactlyInAnyOrderElementsOf(capabilities);
+    }
+
+    @Test
+    void shouldComputeUnion() {
+        var first = dictionary.toBitSet(List.of(BuiltInCapability.VIEW_PROJECT.getCapability()));
+        var second = dictionary.toBitSet(List.of(BasicCapability.valueOf("CustomCapability")));
+        var union = first.union(second);
+        assertThat(dictionary.toCapabilities(union)).containsExactlyInAnyOrder(BuiltInCapability.VIEW_PROJECT.getCapability(),
+                                                                               BasicCapability.valueOf("CustomCapability"));
+    }
+
+    @Test
+    void shouldTrimTrailingEmptyWords() {
+        var empty = CapabilityBitSet.builder().build();
+        assertThat(empty).isEqualTo(CapabilityBitSet.empty());
+        assertThat(empty.isEmpty()).isTrue();
+        var bitSet = CapabilityBitSet.builder().add(200).build();
+        assertThat(bitSet).isEqualTo(CapabilityBitSet.builder().add(200).addAll(CapabilityBitSet.empty()).build());
+        assertThat(bitSet.stream().toArray()).containsExactly(200);
+    }
+}
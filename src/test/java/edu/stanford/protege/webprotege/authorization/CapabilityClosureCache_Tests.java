@@ -0,0 +1,91 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CapabilityClosureCache_Tests {
+
+    private static final String PROJECT_A = "11111111-1111-1111-1111-111111111111";
+
+    private static final String PROJECT_B = "22222222-2222-2222-2222-222222222222";
+
+    private final CapabilityBitSet closure = new CapabilityDictionary().toBitSet(Set.of(BuiltInCapability.VIEW_PROJECT.getCapability()));
+
+    private CapabilityClosureCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CapabilityClosureCache(100, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void shouldReturnNullForMissingEntry() {
+        assertThat(cache.getIfPresent("alice", PROJECT_A)).isNull();
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnCachedClosure() {
+        cache.put("alice", PROJECT_A, closure);
+        assertThat(cache.getIfPresent("alice", PROJECT_A)).isEqualTo(closure);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExpireEntryAfterWrite() throws InterruptedException {
+        var expiringCache = new CapabilityClosureCache(100, Duration.ofMillis(1));
+        expiringCache.put("alice", PROJECT_A, closure);
+        Thread.sleep(10);
+        assertThat(expiringCache.getIfPresent("alice", PROJECT_A)).isNull();
+    }
+
+    @Test
+    void shouldInvalidateSingleUser() {
+        cache.put("alice", PROJECT_A, closure);
+        cache.put("bob", PROJECT_A, closure);
+        cache.invalidate("alice", PROJECT_A);
+        assertThat(cache.getIfPresent("alice", PROJECT_A)).isNull();
+        assertThat(cache.getIfPresent("bob", PROJECT_A)).isEqualTo(closure);
+    }
+
+    @Test
+    void shouldInvalidateWholeProjectWhenAnySignedInUserChanges() {
+        cache.put("alice", PROJECT_A, closure);
+        cache.put("bob", PROJECT_A, closure);
+        cache.put("alice", PROJECT_B, closure);
+        cache.invalidate(null, PROJECT_A);
+        assertThat(cache.getIfPresent("alice", PROJECT_A)).isNull();
+        assertThat(cache.getIfPresent("bob", PROJECT_A)).isNull();
+        assertThat(cache.getIfPresent("alice", PROJECT_B)).isEqualTo(closure);
+    }
+
+    @Test
+    void shouldInvalidateProject() {
+        cache.put("alice", PROJECT_A, closure);
+        cache.put(null, null, closure);
+        cache.invalidateProject(ProjectId.valueOf(PROJECT_A));
+        assertThat(cache.getIfPresent("alice", PROJECT_A)).isNull();
+        assertThat(cache.getIfPresent(null, null)).isEqualTo(closure);
+    }
+
+    @Test
+    void shouldPutClosureIfNothingWasInvalidatedWhileItWasLoaded() {
+        var generation = cache.getGeneration();
+        cache.putIfUnchanged("alice", PROJECT_A, closure, generation);
+        assertThat(cache.getIfPresent("alice", PROJECT_A)).isEqualTo(closure);
+    }
+
+    @Test
+    void shouldDiscardClosureIfSomethingWasInvalidatedWhileItWasLoaded() {
+        var generation = cache.getGeneration();
+        cache.invalidate("bob", PROJECT_B);
+        cache.putIfUnchanged("alice", PROJECT_A, closure, generation);
+        assertThat(cache.getIfPresent("alice", PROJECT_A)).isNull();
+    }
+}
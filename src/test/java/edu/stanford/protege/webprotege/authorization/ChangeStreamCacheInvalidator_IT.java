@@ -0,0 +1,150 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The MongoDb test container runs as a single node replica set, so it supports change streams
+ */
+@SpringBootTest(properties = "webprotege.rabbitmq.commands-subscribe=false")
+@ExtendWith(MongoTestExtension.class)
+class ChangeStreamCacheInvalidator_IT {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<ChangeStreamCacheInvalidator> invalidators = new ArrayList<>();
+
+    private CapabilityClosureCache cache;
+
+    private ProjectRoleDefinitionsRepository repository;
+
+    private ProjectRoleDefinitionsManager manager;
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final CapabilityBitSet closure = CapabilityBitSet.builder().add(1).build();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME).drop();
+        mongoTemplate.getCollection(ProjectRoleDefinitionsRepository.COLLECTION_NAME).drop();
+        mongoTemplate.getCollection(ChangeStreamCacheInvalidator.RESUME_TOKENS_COLLECTION_NAME).drop();
+        cache = new CapabilityClosureCache(1000, Duration.ofMinutes(10));
+        repository = new ProjectRoleDefinitionsRepository(mongoTemplate, objectMapper, new MongoOperationMetrics(new SimpleMeterRegistry()));
+        manager = new ProjectRoleDefinitionsManager(repository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        invalidators.forEach(ChangeStreamCacheInvalidator::stop);
+    }
+
+    @Test
+    void shouldEvictCachedClosureWhenAssignmentIsWrittenByAnotherNode() throws Exception {
+        var invalidator = startInvalidator("node-1");
+        awaitTrue(this::hasStoredResumeToken);
+        cache.put("A", projectId.value(), closure);
+        cache.put("B", projectId.value(), closure);
+
+        insertRoleAssignment("A");
+
+        awaitTrue(() -> cache.getIfPresent("A", projectId.value()) == null);
+        assertThat(cache.getIfPresent("B", projectId.value())).isEqualTo(closure);
+        assertThat(invalidator.getChangeCount()).isPositive();
+    }
+
+    @Test
+    void shouldEvictRoleGraphWhenDefinitionsAreWrittenByAnotherNode() throws Exception {
+        startInvalidator("node-1");
+        awaitTrue(this::hasStoredResumeToken);
+        assertThat(manager.getProjectRoleGraph(projectId)).isSameAs(manager.getProjectRoleGraph(null));
+        var role = RoleDefinition.get(RoleId.valueOf("X"), RoleType.PROJECT_ROLE, Set.of(), Set.of(), "X", "");
+
+        repository.saveProjectRoleDefinitions(ProjectRoleDefinitionsRecord.get(projectId, List.of(role)));
+
+        awaitTrue(() -> manager.getProjectRoleGraph(projectId).getRoleDefinitions().contains(role));
+    }
+
+    @Test
+    void shouldResumeFromStoredResumeTokenAfterRestart() throws Exception {
+        var first = startInvalidator("node-1");
+        awaitTrue(this::hasStoredResumeToken);
+        first.stop();
+        cache.put("A", projectId.value(), closure);
+
+        insertRoleAssignment("A");
+        // The change happened while the node was down
+        assertThat(cache.getIfPresent("A", projectId.value())).isEqualTo(closure);
+
+        var restarted = startInvalidator("node-1");
+        awaitTrue(() -> cache.getIfPresent("A", projectId.value()) == null);
+        assertThat(restarted.getFlushCount()).isZero();
+    }
+
+    @Test
+    void shouldFlushAllCachesWhenStoredResumeTokenCannotBeUsed() throws Exception {
+        mongoTemplate.getCollection(ChangeStreamCacheInvalidator.RESUME_TOKENS_COLLECTION_NAME)
+                     .insertOne(new Document("_id", "node-1").append("token", new Document("_data", "00")));
+        cache.put("A", projectId.value(), closure);
+
+        var invalidator = startInvalidator("node-1");
+
+        awaitTrue(() -> invalidator.getFlushCount() > 0);
+        assertThat(cache.getIfPresent("A", projectId.value())).isNull();
+    }
+
+    private ChangeStreamCacheInvalidator startInvalidator(String nodeId) {
+        var invalidator = new ChangeStreamCacheInvalidator(mongoTemplate, cache, manager, true, true, nodeId);
+        invalidators.add(invalidator);
+        invalidator.start();
+        return invalidator;
+    }
+
+    private void insertRoleAssignment(String userName) {
+        mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME)
+                     .insertOne(new Document("userName", userName)
+                                        .append("projectId", projectId.value())
+                                        .append("assignedRoles", List.of("CanView")));
+    }
+
+    /**
+     * A stored resume token shows that the change stream has been opened
+     */
+    private boolean hasStoredResumeToken() {
+        var document = mongoTemplate.getCollection(ChangeStreamCacheInvalidator.RESUME_TOKENS_COLLECTION_NAME)
+                                    .find(new Document("_id", "node-1"))
+                                    .first();
+        return document != null && document.get("token") != null;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while(!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("Condition not met within %s", TIMEOUT).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that invalidations from the change stream, which do not take the project's lock, are not overtaken by
+ * the put of a closure that was loaded before the change
+ */
+class ChangeStreamCacheInvalidator_Tests {
+
+    private static final String USER_NAME = "JohnSmith";
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final CountDownLatch queried = new CountDownLatch(1);
+
+    private final CountDownLatch invalidated = new CountDownLatch(1);
+
+    private CapabilityClosureCache cache;
+
+    private AccessManagerImpl accessManager;
+
+    private ChangeStreamCacheInvalidator invalidator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        var mongoTemplate = mock(MongoTemplate.class);
+        MongoCollection<Document> documents = mock(MongoCollection.class);
+        MongoCollection<RoleAssignment> roleAssignments = mock(MongoCollection.class);
+        FindIterable<RoleAssignment> found = mock(FindIterable.class);
+        when(mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME)).thenReturn(documents);
+        when(documents.withCodecRegistry(any())).thenReturn(documents);
+        when(documents.withDocumentClass(RoleAssignment.class)).thenReturn(roleAssignments);
+        // The query blocks until the assignment has been changed by another instance
+        when(roleAssignments.find(any(Bson.class))).thenAnswer(invocation -> {
+            queried.countDown();
+            assertThat(invalidated.await(5, TimeUnit.SECONDS)).isTrue();
+            return found;
+        });
+        var staleAssignment = new RoleAssignment(USER_NAME,
+                                                 projectId.id(),
+                                                 List.of(BuiltInRole.PROJECT_VIEWER.getRoleId().id()),
+                                                 List.of(BuiltInRole.PROJECT_VIEWER.getRoleId().id()),
+                                                 List.of(BuiltInCapability.VIEW_PROJECT.getCapability()));
+        when(found.spliterator()).thenAnswer(invocation -> List.of(staleAssignment).spliterator());
+
+        cache = new CapabilityClosureCache(1000, Duration.ofMinutes(10));
+        accessManager = new AccessManagerImpl(new ObjectMapper(),
+                                              mongoTemplate,
+                                              mock(PermissionsChangedEventCoalescer.class),
+                                              new JwtRolesExtractor(),
+                                              BuiltInRoleOracleImpl.get(),
+                                              cache,
+                                              new CapabilityDictionary(),
+                                              new RoleAssignmentLocks(),
+                                              mock(AssignmentClosureCalculator.class),
+                                              mock(PermissionRebuildEngine.class),
+                                              mock(RoleAssignmentIndex.class),
+                                              new MongoOperationMetrics(new SimpleMeterRegistry()),
+                                              mock(DecisionAuditLog.class),
+                                              PermissionCheckMode.CLOSURE);
+        invalidator = new ChangeStreamCacheInvalidator(mongoTemplate,
+                                                       cache,
+                                                       mock(ProjectRoleDefinitionsManager.class),
+                                                       true,
+                                                       true,
+                                                       "node-1");
+    }
+
+    @Test
+    void shouldNotCacheClosureLoadedBeforeChangeFromAnotherInstance() throws Exception {
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var load = executor.submit(() -> accessManager.getCapabilityClosure(Subject.forUser(USER_NAME),
+                                                                                 ProjectResource.forProject(projectId)));
+            assertThat(queried.await(5, TimeUnit.SECONDS)).isTrue();
+            // The change stream thread does not hold the project's lock
+            invalidator.handleChange(replaceOf(USER_NAME, projectId));
+            invalidated.countDown();
+
+            assertThat(load.get(5, TimeUnit.SECONDS)).contains(BuiltInCapability.VIEW_PROJECT.getCapability());
+            assertThat(cache.getIfPresent(USER_NAME, projectId.id())).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldCacheClosureLoadedWithoutConcurrentChange() throws Exception {
+        invalidated.countDown();
+        accessManager.getCapabilityClosure(Subject.forUser(USER_NAME), ProjectResource.forProject(projectId));
+        assertThat(cache.getIfPresent(USER_NAME, projectId.id())).isNotNull();
+    }
+
+    private static ChangeStreamDocument<Document> replaceOf(String userName, ProjectId projectId) {
+        var namespace = new BsonDocument("db", new BsonString("webprotege"))
+                .append("coll", new BsonString(AccessManagerImpl.COLLECTION_NAME));
+        var fullDocument = new Document(RoleAssignment.USER_NAME, userName)
+                .append(RoleAssignment.PROJECT_ID, projectId.id());
+        return new ChangeStreamDocument<>("replace",
+                                          null,
+                                          namespace,
+                                          null,
+                                          fullDocument,
+                                          null,
+                                          new BsonDocument("_id", new BsonString("1")),
+                                          null,
+                                          null,
+                                          null,
+                                          null,
+                                          null,
+                                          null,
+                                          null);
+    }
+}
@@ -0,0 +1,95 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the in-memory part of a permission check, after the role assignments have been read.  The subject has
+ * the assignment of a project editor, and the assignment of any signed in user as a project viewer, which are the
+ * two assignments that a check for a signed in user reads.  The "merge" path unions the capability closures of the
+ * assignments and tests the capability, as {@link AccessManagerImpl#hasPermission} does when it loads a closure.  The
+ * "cached" path tests an already merged closure, as it does when the closure is cached.  Both paths fall back to the
+ * built-in roles of the token when the capability is not assigned.
+ * <p>
+ * The "assigned" capability is in the merged closure, and the "tokenRole" capability is only granted by a role in the
+ * token.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test -DskipTests -Dbenchmark=ClosureMerge}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClosureMerge_Benchmark {
+
+    @Param({"assigned", "tokenRole"})
+    public String capability;
+
+    private final CapabilityDictionary capabilityDictionary = new CapabilityDictionary();
+
+    private final BuiltInRoleOracle builtInRoleOracle = BuiltInRoleOracleImpl.get();
+
+    private final Set<RoleId> tokenRoleIds = Set.of(BuiltInRole.PROJECT_CREATOR.getRoleId());
+
+    private List<RoleAssignment> roleAssignments;
+
+    private CapabilityBitSet mergedClosure;
+
+    private Capability checkedCapability;
+
+    @Setup
+    public void setUp() {
+        var projectId = "2f8bd662-512b-4224-a1ac-67e5bd142094";
+        roleAssignments = List.of(getRoleAssignment("JohnSmith", projectId, BuiltInRole.PROJECT_EDITOR),
+                                  getRoleAssignment(null, projectId, BuiltInRole.PROJECT_VIEWER));
+        mergedClosure = mergeClosures();
+        checkedCapability = switch (capability) {
+            case "assigned" -> BuiltInCapability.VIEW_PROJECT.getCapability();
+            case "tokenRole" -> BuiltInCapability.CREATE_EMPTY_PROJECT.getCapability();
+            default -> throw new IllegalArgumentException("Unknown capability: " + capability);
+        };
+    }
+
+    private RoleAssignment getRoleAssignment(String userName, String projectId, BuiltInRole role) {
+        var roleClosure = builtInRoleOracle.getRoleClosure(role.getRoleId());
+        return new RoleAssignment(userName,
+                                  projectId,
+                                  List.of(role.getRoleId().id()),
+                                  roleClosure.stream().map(r -> r.roleId().id()).toList(),
+                                  roleClosure.stream()
+                                             .flatMap(r -> r.roleCapabilities().stream())
+                                             .distinct()
+                                             .toList());
+    }
+
+    private CapabilityBitSet mergeClosures() {
+        var builder = CapabilityBitSet.builder();
+        for(var roleAssignment : roleAssignments) {
+            builder.addAll(capabilityDictionary.toBitSet(roleAssignment.getCapabilityClosure()));
+        }
+        return builder.build();
+    }
+
+    private boolean check(CapabilityBitSet capabilityClosure) {
+        var capabilityId = capabilityDictionary.findId(checkedCapability);
+        if(capabilityClosure.contains(capabilityId)) {
+            return true;
+        }
+        return builtInRoleOracle.getCapabilityBitSetAssociatedToRoles(tokenRoleIds).contains(capabilityId);
+    }
+
+    @Benchmark
+    public boolean merge() {
+        return check(mergeClosures());
+    }
+
+    @Benchmark
+    public boolean cached() {
+        return check(mergedClosure);
+    }
+}
@@ -0,0 +1,133 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.ipc.CommandHandler;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CommandHandlerMetricsPostProcessor_Tests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CommandHandlerMetricsPostProcessor postProcessor = new CommandHandlerMetricsPostProcessor(
+            new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry)).getBeanProvider(MeterRegistry.class));
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final GetAuthorizationStatusRequest request = new GetAuthorizationStatusRequest(
+            ProjectResource.forProject(ProjectId.generate()),
+            Subject.forUser("JohnSmith"),
+            BuiltInCapability.VIEW_PROJECT.getCapability());
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldNotProxyOtherBeans() {
+        var bean = new Object();
+        assertThat(postProcessor.postProcessAfterInitialization(bean, "bean")).isSameAs(bean);
+    }
+
+    @Test
+    void shouldNotProxyHandlersWithoutMeterRegistry() {
+        var postProcessor = new CommandHandlerMetricsPostProcessor(new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        var handler = new Handler(Mono.empty());
+        assertThat(postProcessor.postProcessAfterInitialization(handler, "handler")).isSameAs(handler);
+    }
+
+    @Test
+    void shouldTimeSuccessfulCommandsByChannel() {
+        var handler = proxy(new Handler(Mono.just(authorized())));
+        handler.handleRequest(request, new ExecutionContext()).block(Duration.ofSeconds(5));
+        handler.handleRequest(request, new ExecutionContext()).block(Duration.ofSeconds(5));
+
+        var timer = meterRegistry.get(CommandHandlerMetricsPostProcessor.TIMER_NAME)
+                                 .tag("channel", GetAuthorizationStatusRequest.CHANNEL)
+                                 .tag("outcome", "success")
+                                 .timer();
+        assertThat(timer.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldTimeFailedCommandsWithException() {
+        var handler = proxy(new Handler(Mono.error(new IllegalStateException("Failed"))));
+        assertThatThrownBy(() -> handler.handleRequest(request, new ExecutionContext()).block(Duration.ofSeconds(5)))
+                .isInstanceOf(IllegalStateException.class);
+
+        var timer = meterRegistry.get(CommandHandlerMetricsPostProcessor.TIMER_NAME)
+                                 .tag("outcome", "error")
+                                 .tag("exception", "IllegalStateException")
+                                 .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotTimeCommandUntilSubscribed() {
+        var handler = proxy(new Handler(Mono.just(authorized())));
+        handler.handleRequest(request, new ExecutionContext());
+        assertThat(meterRegistry.find(CommandHandlerMetricsPostProcessor.TIMER_NAME).timer()).isNull();
+    }
+
+    @Test
+    void shouldAddAdviceToExistingProxy() {
+        var virtualThreads = new VirtualThreadCommandHandlerPostProcessor(true, 10, executor);
+        var proxied = virtualThreads.postProcessAfterInitialization(new Handler(Mono.just(authorized())), "handler");
+        var handler = (Handler) postProcessor.postProcessAfterInitialization(proxied, "handler");
+
+        assertThat(handler).isSameAs(proxied);
+        assertThat(((Advised) handler).getAdvisors()).hasSize(2);
+        assertThat(handler.handleRequest(request, new ExecutionContext()).block(Duration.ofSeconds(5))).isNotNull();
+        assertThat(meterRegistry.get(CommandHandlerMetricsPostProcessor.TIMER_NAME).timer().count()).isEqualTo(1);
+        virtualThreads.destroy();
+    }
+
+    private Handler proxy(Handler handler) {
+        return (Handler) postProcessor.postProcessAfterInitialization(handler, "handler");
+    }
+
+    private GetAuthorizationStatusResponse authorized() {
+        return new GetAuthorizationStatusResponse(request.resource(), request.subject(), AuthorizationStatus.AUTHORIZED);
+    }
+
+    static class Handler implements CommandHandler<GetAuthorizationStatusRequest, GetAuthorizationStatusResponse> {
+
+        private final Mono<GetAuthorizationStatusResponse> response;
+
+        Handler(Mono<GetAuthorizationStatusResponse> response) {
+            this.response = response;
+        }
+
+        @Nonnull
+        @Override
+        public String getChannelName() {
+            return GetAuthorizationStatusRequest.CHANNEL;
+        }
+
+        @Override
+        public Class<GetAuthorizationStatusRequest> getRequestClass() {
+            return GetAuthorizationStatusRequest.class;
+        }
+
+        @Override
+        public Mono<GetAuthorizationStatusResponse> handleRequest(GetAuthorizationStatusRequest request, ExecutionContext executionContext) {
+            return response;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.ipc.CommandHandler;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A load test of command handling with 1000 checks in flight.  Every benchmark thread is a client with one check in
+ * flight.  Checks are dispatched by a fixed pool of listener threads, sized like the message listener container, to
+ * a handler that blocks on MongoDb for a fixed latency.  With the "platform" model the handler runs on the listener
+ * thread, as it does by default.  With the "virtual" model the handler is proxied by the
+ * {@link VirtualThreadCommandHandlerPostProcessor}, so it runs on a virtual thread.
+ * <p>
+ * The throughput score is checks per second, and the sample time score includes the p0.99 latency of a check.
+ * The virtual model requires a Java 21 runtime.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test -DskipTests -Dbenchmark=CommandThreads}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xss256k")
+@Threads(1000)
+public class CommandThreads_Benchmark {
+
+    /**
+     * The maximum concurrency of the message listener container in webprotege-ipc
+     */
+    private static final int LISTENER_THREADS = 20;
+
+    @State(Scope.Benchmark)
+    public static class Node {
+
+        @Param({"platform", "virtual"})
+        public String model;
+
+        @Param({"5"})
+        public int mongoLatencyMillis;
+
+        @Param({"1000"})
+        public int maxConcurrentCommands;
+
+        private ExecutorService listenerThreads;
+
+        private VirtualThreadCommandHandlerPostProcessor postProcessor;
+
+        private CommandHandler<GetAuthorizationStatusRequest, GetAuthorizationStatusResponse> handler;
+
+        @Setup
+        @SuppressWarnings("unchecked")
+        public void setUp() {
+            listenerThreads = Executors.newFixedThreadPool(LISTENER_THREADS);
+            postProcessor = new VirtualThreadCommandHandlerPostProcessor(model.equals("virtual"), maxConcurrentCommands);
+            handler = (CommandHandler<GetAuthorizationStatusRequest, GetAuthorizationStatusResponse>)
+                    postProcessor.postProcessAfterInitialization(new BlockingHandler(mongoLatencyMillis), "handler");
+        }
+
+        @TearDown
+        public void tearDown() {
+            listenerThreads.shutdownNow();
+            postProcessor.destroy();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private final GetAuthorizationStatusRequest request = new GetAuthorizationStatusRequest(
+                ProjectResource.forProject(ProjectId.generate()),
+                Subject.forUser("JohnSmith"),
+                BuiltInCapability.VIEW_PROJECT.getCapability());
+
+        private final ExecutionContext executionContext = new ExecutionContext();
+    }
+
+    /**
+     * Dispatches a check on a listener thread, which returns as soon as the handler has returned its response
+     * publisher, and waits for the response
+     */
+    @Benchmark
+    public GetAuthorizationStatusResponse check(Node node, Client client) throws Exception {
+        var response = new CompletableFuture<GetAuthorizationStatusResponse>();
+        node.listenerThreads.execute(() -> node.handler.handleRequest(client.request, client.executionContext)
+                                                       .subscribe(response::complete, response::completeExceptionally));
+        return response.get();
+    }
+
+    /**
+     * A handler that blocks its thread for the MongoDb latency, as the handlers that use the {@link AccessManager} do
+     */
+    public static class BlockingHandler implements CommandHandler<GetAuthorizationStatusRequest, GetAuthorizationStatusResponse> {
+
+        private final int mongoLatencyMillis;
+
+        public BlockingHandler(int mongoLatencyMillis) {
+            this.mongoLatencyMillis = mongoLatencyMillis;
+        }
+
+        @Nonnull
+        @Override
+        public String getChannelName() {
+            return GetAuthorizationStatusRequest.CHANNEL;
+        }
+
+        @Override
+        public Class<GetAuthorizationStatusRequest> getRequestClass() {
+            return GetAuthorizationStatusRequest.class;
+        }
+
+        @Override
+        public Mono<GetAuthorizationStatusResponse> handleRequest(GetAuthorizationStatusRequest request, ExecutionContext executionContext) {
+            try {
+                Thread.sleep(mongoLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Mono.error(e);
+            }
+            return Mono.just(new GetAuthorizationStatusResponse(request.resource(), request.subject(), AuthorizationStatus.AUTHORIZED));
+        }
+    }
+}
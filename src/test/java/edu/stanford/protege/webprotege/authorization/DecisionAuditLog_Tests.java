@@ -0,0 +1,151 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DecisionAuditLog_Tests {
+
+    private final List<Document> written = new CopyOnWriteArrayList<>();
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final Subject subject = Subject.forUser("JohnSmith");
+
+    private final Resource resource = ProjectResource.forProject(projectId);
+
+    private final Capability capability = BuiltInCapability.VIEW_PROJECT.getCapability();
+
+    private DecisionAuditLog auditLog;
+
+    @AfterEach
+    void tearDown() {
+        if(auditLog != null) {
+            auditLog.stop();
+        }
+    }
+
+    @Test
+    void shouldAlwaysRecordDenials() {
+        auditLog = newAuditLog(0, 16);
+        for(int i = 0; i < 10; i++) {
+            auditLog.record(subject, resource, capability, false);
+        }
+        assertThat(auditLog.getRecordedCount()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldNotRecordGrantsWithZeroSampleRate() {
+        auditLog = newAuditLog(0, 16);
+        auditLog.record(subject, resource, capability, true);
+        assertThat(auditLog.getRecordedCount()).isZero();
+    }
+
+    @Test
+    void shouldRecordAllGrantsWithSampleRateOfOne() {
+        auditLog = newAuditLog(1, 16);
+        for(int i = 0; i < 10; i++) {
+            auditLog.record(subject, resource, capability, true);
+        }
+        assertThat(auditLog.getRecordedCount()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldSampleGrants() {
+        auditLog = newAuditLog(0.1, 16_384);
+        for(int i = 0; i < 10_000; i++) {
+            auditLog.record(subject, resource, capability, true);
+        }
+        assertThat(auditLog.getRecordedCount()).isBetween(700L, 1300L);
+    }
+
+    @Test
+    void shouldDropDecisionsWhenBufferIsFull() {
+        auditLog = newAuditLog(1, 4);
+        for(int i = 0; i < 6; i++) {
+            auditLog.record(subject, resource, capability, false);
+        }
+        assertThat(auditLog.getRecordedCount()).isEqualTo(4);
+        assertThat(auditLog.getDroppedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldWriteDecisionsInBatches() throws Exception {
+        auditLog = newAuditLog(1, 1024);
+        for(int i = 0; i < 25; i++) {
+            auditLog.record(subject, resource, capability, i % 2 == 0);
+        }
+        auditLog.start();
+        awaitWrittenCount(25);
+
+        assertThat(batchSizes).allMatch(size -> size <= 10);
+        var document = written.get(0);
+        assertThat(document.getString("userName")).isEqualTo("JohnSmith");
+        assertThat(document.getString("projectId")).isEqualTo(projectId.id());
+        assertThat(document.getString("capability")).isEqualTo(capability.id());
+        assertThat(document.getBoolean("authorized")).isTrue();
+        assertThat(document.getDate("timestamp")).isNotNull();
+    }
+
+    @Test
+    void shouldWriteBufferedDecisionsWhenStopped() {
+        auditLog = new DecisionAuditLog(true, 1, 1024, 10, Duration.ofMinutes(1), written::addAll);
+        auditLog.start();
+        auditLog.record(subject, resource, capability, false);
+        auditLog.stop();
+        assertThat(written).hasSize(1);
+    }
+
+    @Test
+    void shouldCountFailedWrites() throws Exception {
+        auditLog = new DecisionAuditLog(true, 1, 1024, 10, Duration.ofMillis(10), documents -> {
+            throw new IllegalStateException("Failed");
+        });
+        auditLog.start();
+        auditLog.record(subject, resource, capability, false);
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(auditLog.getFailedCount() < 1) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+        assertThat(auditLog.getWrittenCount()).isZero();
+    }
+
+    @Test
+    void shouldNotRecordWhenDisabled() {
+        auditLog = new DecisionAuditLog(false, 1, 16, 10, Duration.ofMillis(10), written::addAll);
+        auditLog.record(subject, resource, capability, false);
+        assertThat(auditLog.getRecordedCount()).isZero();
+    }
+
+    @Test
+    void shouldRejectSampleRateOutOfRange() {
+        assertThatThrownBy(() -> newAuditLog(1.5, 16)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private DecisionAuditLog newAuditLog(double grantSampleRate, int bufferSize) {
+        return new DecisionAuditLog(true, grantSampleRate, bufferSize, 10, Duration.ofMillis(10), documents -> {
+            batchSizes.add(documents.size());
+            written.addAll(documents);
+        });
+    }
+
+    private void awaitWrittenCount(long count) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(auditLog.getWrittenCount() < count) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
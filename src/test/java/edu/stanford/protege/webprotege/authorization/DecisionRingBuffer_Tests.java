@@ -0,0 +1,83 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DecisionRingBuffer_Tests {
+
+    @Test
+    void shouldRoundCapacityUpToPowerOfTwo() {
+        assertThat(new DecisionRingBuffer<String>(1).capacity()).isEqualTo(1);
+        assertThat(new DecisionRingBuffer<String>(5).capacity()).isEqualTo(8);
+        assertThat(new DecisionRingBuffer<String>(8).capacity()).isEqualTo(8);
+    }
+
+    @Test
+    void shouldRejectCapacityLessThanOne() {
+        assertThatThrownBy(() -> new DecisionRingBuffer<String>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldDrainInOrder() {
+        var buffer = new DecisionRingBuffer<String>(4);
+        buffer.offer("a");
+        buffer.offer("b");
+        buffer.offer("c");
+        var drained = new ArrayList<String>();
+        assertThat(buffer.drain(drained::add, 10)).isEqualTo(3);
+        assertThat(drained).containsExactly("a", "b", "c");
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void shouldRejectWhenFullAndAcceptOnceDrained() {
+        var buffer = new DecisionRingBuffer<String>(2);
+        assertThat(buffer.offer("a")).isTrue();
+        assertThat(buffer.offer("b")).isTrue();
+        assertThat(buffer.offer("c")).isFalse();
+        var drained = new ArrayList<String>();
+        buffer.drain(drained::add, 1);
+        assertThat(buffer.offer("c")).isTrue();
+        buffer.drain(drained::add, 10);
+        assertThat(drained).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void shouldNotLoseElementsFromConcurrentProducers() throws Exception {
+        var buffer = new DecisionRingBuffer<Integer>(64);
+        var producers = 4;
+        var perProducer = 10_000;
+        var executor = Executors.newFixedThreadPool(producers);
+        var done = new CountDownLatch(producers);
+        for(int p = 0; p < producers; p++) {
+            var base = p * perProducer;
+            executor.execute(() -> {
+                for(int i = 0; i < perProducer; i++) {
+                    // Yields rather than spins, so that the consumer is not starved on a machine with few processors
+                    while(!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        var drained = new HashSet<Integer>();
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(drained.size() < producers * perProducer) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            buffer.drain(drained::add, 100);
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.shutdownNow();
+        assertThat(drained).hasSize(producers * perProducer);
+        assertThat(buffer.size()).isZero();
+    }
+}
@@ -0,0 +1,60 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.common.UserId;
+import edu.stanford.protege.webprotege.common.WebProtegeCommonConfiguration;
+import edu.stanford.protege.webprotege.ipc.CommandExecutor;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import edu.stanford.protege.webprotege.ipc.WebProtegeIpcApplication;
+import edu.stanford.protege.webprotege.ipc.impl.CommandExecutorImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import({WebProtegeCommonConfiguration.class, WebProtegeIpcApplication.class})
+@ExtendWith({KeycloakTestExtension.class, MongoTestExtension.class, RabbitMqTestExtension.class})
+public class GetAuthorizationStatusesHandler_Tests {
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        CommandExecutor<GetAuthorizationStatusesRequest, GetAuthorizationStatusesResponse> executor() {
+            return new CommandExecutorImpl<>(GetAuthorizationStatusesResponse.class);
+        }
+    }
+
+    @Autowired
+    AccessManager accessManager;
+
+    @Autowired
+    CommandExecutor<GetAuthorizationStatusesRequest, GetAuthorizationStatusesResponse> commandExecutor;
+
+    @Test
+    void shouldReturnDecisionsInRequestOrder() throws InterruptedException, ExecutionException {
+        var subject = Subject.forUser(UserId.valueOf("Fred Smith"));
+        var resource = new ProjectResource(ProjectId.generate());
+        accessManager.setAssignedRoles(subject, resource, List.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        var checks = List.of(
+                new AuthorizationCheck(resource, subject, BuiltInCapability.CREATE_CLASS.getCapability()),
+                new AuthorizationCheck(resource, subject, BuiltInCapability.VIEW_PROJECT.getCapability())
+        );
+        var response = commandExecutor.execute(new GetAuthorizationStatusesRequest(checks), new ExecutionContext()).get();
+        assertThat(response.decisions())
+                .extracting(AuthorizationDecision::authorizationStatus)
+                .containsExactly(AuthorizationStatus.UNAUTHORIZED, AuthorizationStatus.AUTHORIZED);
+        assertThat(response.decisions())
+                .extracting(AuthorizationDecision::capability)
+                .containsExactly(BuiltInCapability.CREATE_CLASS.getCapability(), BuiltInCapability.VIEW_PROJECT.getCapability());
+    }
+}
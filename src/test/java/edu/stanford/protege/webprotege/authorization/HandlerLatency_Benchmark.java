@@ -0,0 +1,322 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Measures the throughput of permission checks when a fixed number of consumer threads dispatches requests and every
+ * check has to wait for MongoDb.  Both access managers are the real ones, in the query permission check mode, so
+ * each check is one find against a MongoDb container.  The MongoDb latency is injected by a proxy that delays every
+ * response from MongoDb, so the drivers see it as network latency.
+ * <p>
+ * The "blocking" benchmark checks with the {@link AccessManagerImpl} on the consumer thread and then wraps the result
+ * with {@code Mono.just}, which is what the handlers used to do.  The "nonBlocking" benchmark dispatches to the
+ * {@link GetAuthorizationStatusHandler}, backed by the {@link ReactiveAccessManagerImpl}, which releases the consumer
+ * thread as soon as the query has been sent.
+ * <p>
+ * Each operation dispatches a batch of requests across the consumer threads and waits for every response, so the
+ * score is batches per second.  With blocking checks, a batch takes about (requests / threads) x latency.
+ * <p>
+ * Docker is required.  Run with {@code mvn -Pbenchmarks test -DskipTests -Dbenchmark=HandlerLatency}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandlerLatency_Benchmark {
+
+    private static final String DATABASE_NAME = "webprotege";
+
+    @Param({"1", "5"})
+    public int mongoLatencyMillis;
+
+    @Param({"8"})
+    public int consumerThreads;
+
+    @Param({"64"})
+    public int requests;
+
+    private MongoDBContainer mongoDBContainer;
+
+    private LatencyProxy latencyProxy;
+
+    private MongoClient mongoClient;
+
+    private com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient;
+
+    private ExecutorService consumers;
+
+    private AccessManagerImpl blockingAccessManager;
+
+    private GetAuthorizationStatusHandler nonBlockingHandler;
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final GetAuthorizationStatusRequest request = new GetAuthorizationStatusRequest(
+            ProjectResource.forProject(projectId),
+            Subject.forUser("JohnSmith"),
+            BuiltInCapability.VIEW_PROJECT.getCapability());
+
+    private final ExecutionContext executionContext = new ExecutionContext();
+
+    @Setup
+    public void setUp() throws IOException {
+        mongoDBContainer = new MongoDBContainer(DockerImageName.parse("mongo"));
+        mongoDBContainer.start();
+        latencyProxy = new LatencyProxy(mongoDBContainer.getHost(),
+                                        mongoDBContainer.getMappedPort(27017),
+                                        Duration.ofMillis(mongoLatencyMillis));
+        var connectionString = "mongodb://127.0.0.1:" + latencyProxy.getPort() + "/?directConnection=true";
+        mongoClient = MongoClients.create(connectionString);
+        reactiveMongoClient = com.mongodb.reactivestreams.client.MongoClients.create(connectionString);
+        var mongoTemplate = new MongoTemplate(mongoClient, DATABASE_NAME);
+        var reactiveMongoTemplate = new ReactiveMongoTemplate(reactiveMongoClient, DATABASE_NAME);
+
+        var viewer = BuiltInRole.PROJECT_VIEWER.getRoleId().id();
+        mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME)
+                     .withCodecRegistry(RoleAssignmentCodec.CODEC_REGISTRY)
+                     .withDocumentClass(RoleAssignment.class)
+                     .insertOne(new RoleAssignment("JohnSmith",
+                                                   projectId.id(),
+                                                   List.of(viewer),
+                                                   List.of(viewer),
+                                                   List.of(BuiltInCapability.VIEW_PROJECT.getCapability())));
+
+        var objectMapper = new ObjectMapper();
+        var jwtRolesExtractor = new JwtRolesExtractor();
+        var capabilityDictionary = new CapabilityDictionary();
+        var capabilityClosureCache = new CapabilityClosureCache(1000, Duration.ofMinutes(10));
+        var roleAssignmentIndex = new RoleAssignmentIndex(mongoTemplate,
+                                                          capabilityDictionary,
+                                                          capabilityClosureCache,
+                                                          RoleAssignmentStorageMode.MONGO,
+                                                          0,
+                                                          false);
+        var mongoOperationMetrics = new MongoOperationMetrics(new SimpleMeterRegistry());
+        var decisionAuditLog = new DecisionAuditLog(false, 0, 16, 1, Duration.ofSeconds(1), decisions -> {});
+        // Permission checks do not publish events, calculate closures or rebuild permissions
+        blockingAccessManager = new AccessManagerImpl(objectMapper,
+                                                      mongoTemplate,
+                                                      null,
+                                                      jwtRolesExtractor,
+                                                      BuiltInRoleOracleImpl.get(),
+                                                      capabilityClosureCache,
+                                                      capabilityDictionary,
+                                                      new RoleAssignmentLocks(),
+                                                      null,
+                                                      null,
+                                                      roleAssignmentIndex,
+                                                      mongoOperationMetrics,
+                                                      decisionAuditLog,
+                                                      PermissionCheckMode.QUERY);
+        var reactiveAccessManager = new ReactiveAccessManagerImpl(objectMapper,
+                                                                  reactiveMongoTemplate,
+                                                                  jwtRolesExtractor,
+                                                                  BuiltInRoleOracleImpl.get(),
+                                                                  capabilityClosureCache,
+                                                                  capabilityDictionary,
+                                                                  roleAssignmentIndex,
+                                                                  mongoOperationMetrics,
+                                                                  decisionAuditLog,
+                                                                  PermissionCheckMode.QUERY);
+        nonBlockingHandler = new GetAuthorizationStatusHandler(reactiveAccessManager, null, null);
+        consumers = Executors.newFixedThreadPool(consumerThreads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        consumers.shutdownNow();
+        mongoClient.close();
+        reactiveMongoClient.close();
+        latencyProxy.close();
+        mongoDBContainer.stop();
+    }
+
+    @Benchmark
+    public List<GetAuthorizationStatusResponse> blocking() throws Exception {
+        return dispatch(() -> {
+            var authorized = blockingAccessManager.hasPermission(request.subject(),
+                                                                 request.resource(),
+                                                                 request.capability(),
+                                                                 executionContext.jwt());
+            return Mono.just(new GetAuthorizationStatusResponse(request.resource(),
+                                                                request.subject(),
+                                                                authorized ? AuthorizationStatus.AUTHORIZED : AuthorizationStatus.UNAUTHORIZED));
+        });
+    }
+
+    @Benchmark
+    public List<GetAuthorizationStatusResponse> nonBlocking() throws Exception {
+        return dispatch(() -> nonBlockingHandler.handleRequest(request, executionContext));
+    }
+
+    /**
+     * Dispatches the batch of requests on the consumer threads, which return as soon as the handler has returned its
+     * response publisher, as the message listener does, and then waits for all of the responses.
+     */
+    private List<GetAuthorizationStatusResponse> dispatch(Supplier<Mono<GetAuthorizationStatusResponse>> handler) throws Exception {
+        var responses = new ArrayList<CompletableFuture<GetAuthorizationStatusResponse>>(requests);
+        for(int i = 0; i < requests; i++) {
+            var response = new CompletableFuture<GetAuthorizationStatusResponse>();
+            responses.add(response);
+            consumers.execute(() -> handler.get().subscribe(response::complete, response::completeExceptionally));
+        }
+        var result = new ArrayList<GetAuthorizationStatusResponse>(requests);
+        for(var response : responses) {
+            result.add(response.get());
+        }
+        return result;
+    }
+
+    /**
+     * A TCP proxy that delays each chunk of bytes from MongoDb by a fixed latency.  Chunks are written in order by a
+     * thread for each connection, so responses on different connections are delayed concurrently, as they would be
+     * by the network.
+     */
+    private static class LatencyProxy implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+
+        private final String targetHost;
+
+        private final int targetPort;
+
+        private final long latencyNanos;
+
+        private final ExecutorService threads = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "latency-proxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final Queue<Socket> sockets = new ConcurrentLinkedQueue<>();
+
+        private LatencyProxy(String targetHost, int targetPort, Duration latency) throws IOException {
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.targetHost = targetHost;
+            this.targetPort = targetPort;
+            this.latencyNanos = latency.toNanos();
+            threads.execute(this::accept);
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while(!serverSocket.isClosed()) {
+                try {
+                    var client = serverSocket.accept();
+                    var server = new Socket(targetHost, targetPort);
+                    client.setTcpNoDelay(true);
+                    server.setTcpNoDelay(true);
+                    sockets.add(client);
+                    sockets.add(server);
+                    threads.execute(() -> forward(client, server, 0));
+                    threads.execute(() -> forward(server, client, latencyNanos));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Copies bytes from one socket to the other.  Delayed chunks are read on this thread and written, when they
+         * fall due, on another.  An empty chunk marks the end of the stream.
+         */
+        private void forward(Socket from, Socket to, long delayNanos) {
+            var chunks = new LinkedBlockingQueue<DelayedChunk>();
+            if(delayNanos > 0) {
+                threads.execute(() -> writeWhenDue(chunks, to));
+            }
+            try {
+                InputStream in = from.getInputStream();
+                OutputStream out = to.getOutputStream();
+                var buffer = new byte[16 * 1024];
+                int read;
+                while((read = in.read(buffer)) != -1) {
+                    if(delayNanos > 0) {
+                        chunks.add(new DelayedChunk(System.nanoTime() + delayNanos, Arrays.copyOf(buffer, read)));
+                    }
+                    else {
+                        out.write(buffer, 0, read);
+                    }
+                }
+            } catch (IOException e) {
+                // The connection was closed
+            } finally {
+                chunks.add(new DelayedChunk(0, new byte[0]));
+                if(delayNanos == 0) {
+                    closeQuietly(to);
+                }
+            }
+        }
+
+        private void writeWhenDue(BlockingQueue<DelayedChunk> chunks, Socket to) {
+            try {
+                var out = to.getOutputStream();
+                while(true) {
+                    var chunk = chunks.take();
+                    if(chunk.bytes().length == 0) {
+                        break;
+                    }
+                    long remaining;
+                    while((remaining = chunk.dueNanos() - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(remaining);
+                    }
+                    out.write(chunk.bytes());
+                }
+            } catch (IOException | InterruptedException e) {
+                // The connection was closed
+            } finally {
+                closeQuietly(to);
+            }
+        }
+
+        private static void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            sockets.forEach(LatencyProxy::closeQuietly);
+            threads.shutdownNow();
+        }
+
+        private record DelayedChunk(long dueNanos, byte[] bytes) {
+
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.keycloak.common.VerificationException;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the extraction of the roles from a JWT, which is done for every permission check that carries a token.
+ * The "parse" path decodes the token each time with {@link JwtRolesExtractor#extractRolesWithoutVerification}.
+ * The "cached" path is {@link JwtRolesExtractor#safeExtractRoleIdsWithoutVerification}, which serves a token that
+ * has been seen before from its cache.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test -DskipTests -Dbenchmark=JwtRolesExtraction}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtRolesExtraction_Benchmark {
+
+    @Param({"1", "8"})
+    public int roles;
+
+    private final JwtRolesExtractor extractor = new JwtRolesExtractor();
+
+    private String jwt;
+
+    @Setup
+    public void setUp() {
+        var roleNames = IntStream.range(0, roles)
+                                 .mapToObj(i -> "\"Role" + i + "\"")
+                                 .collect(Collectors.joining(","));
+        var expiresAt = Instant.now().plus(1, ChronoUnit.HOURS).getEpochSecond();
+        var encoder = Base64.getUrlEncoder().withoutPadding();
+        var header = "{\"alg\":\"none\",\"typ\":\"JWT\"}";
+        var payload = "{\"exp\":" + expiresAt + ",\"preferred_username\":\"JohnSmith\"," +
+                "\"resource_access\":{\"webprotege\":{\"roles\":[" + roleNames + "]}}}";
+        jwt = encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString("signature".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public Set<String> parse() throws VerificationException {
+        return extractor.extractRolesWithoutVerification(jwt);
+    }
+
+    @Benchmark
+    public Set<RoleId> cached() {
+        return extractor.safeExtractRoleIdsWithoutVerification(jwt);
+    }
+}
@@ -7,11 +7,17 @@ import org.keycloak.common.VerificationException;
 import org.keycloak.representations.AccessToken;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -94,14 +100,16 @@ class JwtRolesExtractor_Tests {
     void safeExtractRolesWithoutVerification_whenExtractionThrowsRuntimeException_returnsEmptySetInsteadOfPropagating() throws VerificationException {
         var jwt = "some-jwt";
 
-        var extractor = spy(new JwtRolesExtractor());
-        doThrow(new NullPointerException("simulated unanticipated NPE"))
-                .when(extractor)
-                .extractRolesWithoutVerification(jwt);
+        try(var tokenVerifierStatic = mockStatic(TokenVerifier.class)) {
+            tokenVerifierStatic.when(() -> TokenVerifier.create(jwt, AccessToken.class))
+                    .thenThrow(new NullPointerException("simulated unanticipated NPE"));
 
-        var roles = extractor.safeExtractRolesWithoutVerification(jwt);
+            var extractor = new JwtRolesExtractor();
 
-        assertEquals(Collections.emptySet(), roles);
+            var roles = extractor.safeExtractRolesWithoutVerification(jwt);
+
+            assertEquals(Collections.emptySet(), roles);
+        }
     }
 
     @Test
@@ -145,26 +153,115 @@ class JwtRolesExtractor_Tests {
         var jwt = "some-jwt";
 
         var expectedRoles = Set.of("roleA" , "roleB" );
+        var webProtegeAccess = mock(AccessToken.Access.class);
+        when(webProtegeAccess.getRoles()).thenReturn(expectedRoles);
 
-        var extractor = spy(new JwtRolesExtractor());
-        doReturn(expectedRoles).when(extractor).extractRolesWithoutVerification(jwt);
+        var token = mock(AccessToken.class);
+        when(token.getResourceAccess()).thenReturn(Map.of("webprotege" , webProtegeAccess));
 
-        var roles = extractor.safeExtractRolesWithoutVerification(jwt);
+        var verifier = mock(TokenVerifier.class);
+        when(verifier.getToken()).thenReturn(token);
 
-        assertEquals(expectedRoles, roles);
+        try(var tokenVerifierStatic = mockStatic(TokenVerifier.class)) {
+            tokenVerifierStatic.when(() -> TokenVerifier.create(jwt, AccessToken.class))
+                    .thenReturn(verifier);
+
+            var extractor = new JwtRolesExtractor();
+
+            var roles = extractor.safeExtractRolesWithoutVerification(jwt);
+
+            assertEquals(expectedRoles, roles);
+        }
     }
 
     @Test
     void safeExtractRolesWithoutVerification_whenExtractionThrowsVerificationException_returnsEmptySet() throws VerificationException {
         var jwt = "bad-jwt";
 
-        var extractor = spy(new JwtRolesExtractor());
-        doThrow(new VerificationException("Bad token" ))
-                .when(extractor)
-                .extractRolesWithoutVerification(jwt);
+        var verifier = mock(TokenVerifier.class);
+        when(verifier.getToken()).thenThrow(new VerificationException("Bad token" ));
 
-        var roles = extractor.safeExtractRolesWithoutVerification(jwt);
+        try(var tokenVerifierStatic = mockStatic(TokenVerifier.class)) {
+            tokenVerifierStatic.when(() -> TokenVerifier.create(jwt, AccessToken.class))
+                    .thenReturn(verifier);
 
-        assertEquals(Collections.emptySet(), roles);
+            var extractor = new JwtRolesExtractor();
+
+            var roles = extractor.safeExtractRolesWithoutVerification(jwt);
+
+            assertEquals(Collections.emptySet(), roles);
+        }
+    }
+
+    @Test
+    void safeExtractRolesWithoutVerification_sameUnexpiredJwt_isParsedOnce() throws VerificationException {
+        var now = Instant.parse("2024-01-01T00:00:00Z");
+        var jwt = unsignedJwt(now.plusSeconds(300));
+        var extractor = new JwtRolesExtractor(Clock.fixed(now, ZoneOffset.UTC));
+
+        try(var tokenVerifierStatic = mockStatic(TokenVerifier.class, CALLS_REAL_METHODS)) {
+            var first = extractor.safeExtractRolesWithoutVerification(jwt);
+            var second = extractor.safeExtractRolesWithoutVerification(jwt);
+
+            assertEquals(Set.of("SystemAdmin"), first);
+            assertEquals(first, second);
+            tokenVerifierStatic.verify(() -> TokenVerifier.create(eq(jwt), any()), times(1));
+        }
+        assertEquals(1, extractor.getCacheHitCount());
+        assertEquals(1, extractor.getCacheMissCount());
+    }
+
+    @Test
+    void safeExtractRolesWithoutVerification_expiredJwt_isNotMemoized() throws VerificationException {
+        var now = Instant.parse("2024-01-01T00:00:00Z");
+        var jwt = unsignedJwt(now.minusSeconds(1));
+        var extractor = new JwtRolesExtractor(Clock.fixed(now, ZoneOffset.UTC));
+
+        try(var tokenVerifierStatic = mockStatic(TokenVerifier.class, CALLS_REAL_METHODS)) {
+            extractor.safeExtractRolesWithoutVerification(jwt);
+            extractor.safeExtractRolesWithoutVerification(jwt);
+
+            tokenVerifierStatic.verify(() -> TokenVerifier.create(eq(jwt), any()), times(2));
+        }
+        assertEquals(0, extractor.getCacheHitCount());
+        assertEquals(2, extractor.getCacheMissCount());
+    }
+
+    @Test
+    void safeExtractRoleIdsWithoutVerification_memoizedJwt_countsCacheHit() {
+        var now = Instant.parse("2024-01-01T00:00:00Z");
+        var jwt = unsignedJwt(now.plusSeconds(300));
+        var extractor = new JwtRolesExtractor(Clock.fixed(now, ZoneOffset.UTC));
+
+        var first = extractor.safeExtractRoleIdsWithoutVerification(jwt);
+        var second = extractor.safeExtractRoleIdsWithoutVerification(jwt);
+
+        assertEquals(Set.of(new RoleId("SystemAdmin")), first);
+        assertSame(first, second);
+        assertEquals(1, extractor.getCacheHitCount());
+        assertEquals(1, extractor.getCacheMissCount());
+    }
+
+    @Test
+    void safeExtractRolesWithoutVerification_cacheMiss_parsesTokenOnce() {
+        var now = Instant.parse("2024-01-01T00:00:00Z");
+        var jwt = unsignedJwt(now.plusSeconds(300));
+        var extractor = new JwtRolesExtractor(Clock.fixed(now, ZoneOffset.UTC));
+
+        try(var tokenVerifierStatic = mockStatic(TokenVerifier.class, CALLS_REAL_METHODS)) {
+            var roles = extractor.safeExtractRolesWithoutVerification(jwt);
+
+            assertEquals(Set.of("SystemAdmin"), roles);
+            tokenVerifierStatic.verify(() -> TokenVerifier.create(eq(jwt), any()), times(1));
+        }
+    }
+
+    private static String unsignedJwt(Instant expiresAt) {
+        var encoder = Base64.getUrlEncoder().withoutPadding();
+        var header = "{\"alg\":\"none\",\"typ\":\"JWT\"}";
+        var payload = "{\"exp\":" + expiresAt.getEpochSecond() + ",\"resource_access\":{\"webprotege\":{\"roles\":[\"SystemAdmin\"]}}}";
+        return encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString("signature".getBytes(StandardCharsets.UTF_8));
     }
 }
@@ -0,0 +1,59 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MongoOperationMetrics_Tests {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MongoOperationMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new MongoOperationMetrics(meterRegistry);
+    }
+
+    @Test
+    void shouldTimeEachSubscriptionToFlux() {
+        var timed = metrics.record("roleAssignments", "find", Flux.just(1, 2, 3));
+
+        assertThat(timed.collectList().block()).containsExactly(1, 2, 3);
+        assertThat(timed.collectList().block()).containsExactly(1, 2, 3);
+
+        var timer = meterRegistry.get(MongoOperationMetrics.TIMER_NAME).tag("outcome", "success").timer();
+        assertThat(timer.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldNotTimeUntilSubscribed() {
+        metrics.record("roleAssignments", "find", Mono.just(1));
+
+        assertThat(meterRegistry.find(MongoOperationMetrics.TIMER_NAME).timer()).isNull();
+    }
+
+    @Test
+    void shouldRecordErrorOutcome() {
+        var timed = metrics.record("roleAssignments", "find", Mono.error(new IllegalStateException()));
+
+        assertThatThrownBy(timed::block).isInstanceOf(IllegalStateException.class);
+        assertThat(meterRegistry.get(MongoOperationMetrics.TIMER_NAME).tag("outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldRecordCancelledOutcome() {
+        var timed = metrics.record("roleAssignments", "find", Flux.just(1, 2, 3));
+
+        assertThat(timed.next().block()).isEqualTo(1);
+        assertThat(meterRegistry.get(MongoOperationMetrics.TIMER_NAME).tag("outcome", "cancelled").timer().count())
+                .isEqualTo(1);
+    }
+}
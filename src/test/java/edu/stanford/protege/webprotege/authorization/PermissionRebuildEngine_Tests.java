@@ -0,0 +1,113 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.mongodb.client.DistinctIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PermissionRebuildEngine_Tests {
+
+    private static final String PROJECT_A = "11111111-1111-1111-1111-111111111111";
+
+    private static final String PROJECT_B = "22222222-2222-2222-2222-222222222222";
+
+    @Test
+    void shouldRefuseShadowModeUnlessSingleInstance() {
+        assertThatThrownBy(() -> newEngine(RebuildMode.SHADOW, false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("webprotege.authorization.rebuild.single-instance");
+    }
+
+    @Test
+    void shouldAllowShadowModeInSingleInstance() {
+        assertThatCode(() -> newEngine(RebuildMode.SHADOW, true)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void shouldAllowInPlaceModeInMultipleInstances() {
+        assertThatCode(() -> newEngine(RebuildMode.IN_PLACE, false)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void shouldReportProjectsInProjectIdOrderAfterApplicationLevelAssignments() {
+        var engine = newEngineWithProjects(PROJECT_B, PROJECT_A);
+        var checkpoints = new ArrayList<String>();
+        engine.rebuildProjectsInPlace(null, rebuilt -> checkpoints.add(rebuilt.checkpoint()));
+        assertThat(checkpoints).containsExactly(PermissionRebuildEngine.APPLICATION_CHECKPOINT, PROJECT_A, PROJECT_B);
+    }
+
+    @Test
+    void shouldResumeAfterCheckpoint() {
+        var engine = newEngineWithProjects(PROJECT_B, PROJECT_A);
+        var checkpoints = new ArrayList<String>();
+        engine.rebuildProjectsInPlace(PROJECT_A, rebuilt -> checkpoints.add(rebuilt.checkpoint()));
+        assertThat(checkpoints).containsExactly(PROJECT_B);
+    }
+
+    @Test
+    void shouldStopWhenListenerReturnsFalse() {
+        var engine = newEngineWithProjects(PROJECT_B, PROJECT_A);
+        var checkpoints = new ArrayList<String>();
+        engine.rebuildProjectsInPlace(null, rebuilt -> {
+            checkpoints.add(rebuilt.checkpoint());
+            return false;
+        });
+        assertThat(checkpoints).containsExactly(PermissionRebuildEngine.APPLICATION_CHECKPOINT);
+    }
+
+    /**
+     * Creates an engine, with two workers, over a collection that holds no assignments for the specified projects
+     */
+    @SuppressWarnings("unchecked")
+    private static PermissionRebuildEngine newEngineWithProjects(String... projectIds) {
+        var mongoTemplate = mock(MongoTemplate.class);
+        MongoCollection<Document> documents = mock(MongoCollection.class);
+        MongoCollection<RoleAssignment> roleAssignments = mock(MongoCollection.class);
+        DistinctIterable<BsonValue> distinct = mock(DistinctIterable.class);
+        FindIterable<RoleAssignment> found = mock(FindIterable.class);
+        MongoCursor<RoleAssignment> cursor = mock(MongoCursor.class);
+        when(mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME)).thenReturn(documents);
+        when(documents.distinct(RoleAssignment.PROJECT_ID, BsonValue.class)).thenReturn(distinct);
+        doAnswer(invocation -> {
+            Consumer<BsonValue> consumer = invocation.getArgument(0);
+            consumer.accept(BsonNull.VALUE);
+            for(var projectId : projectIds) {
+                consumer.accept(new BsonString(projectId));
+            }
+            return null;
+        }).when(distinct).forEach(any());
+        when(documents.withCodecRegistry(any())).thenReturn(documents);
+        when(documents.withDocumentClass(RoleAssignment.class)).thenReturn(roleAssignments);
+        when(roleAssignments.find(any(Bson.class))).thenReturn(found);
+        when(found.iterator()).thenReturn(cursor);
+        return new PermissionRebuildEngine(mongoTemplate, null, null, new RoleAssignmentLocks(),
+                                           new CapabilityClosureCache(100, Duration.ofMinutes(10)),
+                                           mock(ShadowCollectionRebuilder.class),
+                                           RebuildMode.IN_PLACE, false, 2, 500);
+    }
+
+    private static PermissionRebuildEngine newEngine(RebuildMode rebuildMode, boolean singleInstance) {
+        return new PermissionRebuildEngine(null, null, null, new RoleAssignmentLocks(), null, null,
+                                           rebuildMode, singleInstance, 1, 500);
+    }
+}
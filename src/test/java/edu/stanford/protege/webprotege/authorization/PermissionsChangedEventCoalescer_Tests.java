@@ -0,0 +1,115 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.ipc.EventDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class PermissionsChangedEventCoalescer_Tests {
+
+    private EventDispatcher eventDispatcher;
+
+    private PermissionsChangedEventCoalescer coalescer;
+
+    private final ProjectId projectA = ProjectId.generate();
+
+    private final ProjectId projectB = ProjectId.generate();
+
+    @BeforeEach
+    void setUp() {
+        eventDispatcher = mock(EventDispatcher.class);
+        coalescer = new PermissionsChangedEventCoalescer(eventDispatcher, Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.flush();
+    }
+
+    @Test
+    void shouldMergeChangesToTheSameProjectWithinTheWindow() {
+        coalescer.projectPermissionsChanged(projectA);
+        coalescer.projectPermissionsChanged(projectA);
+        coalescer.projectPermissionsChanged(projectA);
+
+        verify(eventDispatcher, timeout(2000).times(1)).dispatchEvent(any());
+        assertThat(dispatchedProjectIds()).containsExactly(projectA);
+        assertThat(coalescer.getMergedEventCount()).isEqualTo(2);
+        assertThat(coalescer.getSentEventCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotMergeChangesToDifferentProjects() {
+        coalescer.projectPermissionsChanged(projectA);
+        coalescer.projectPermissionsChanged(projectB);
+
+        verify(eventDispatcher, timeout(2000).times(2)).dispatchEvent(any());
+        assertThat(dispatchedProjectIds()).containsExactlyInAnyOrder(projectA, projectB);
+        assertThat(coalescer.getMergedEventCount()).isZero();
+    }
+
+    @Test
+    void shouldDispatchBatchedChangesWhenOutermostBatchCloses() {
+        try(var outer = coalescer.beginBatch()) {
+            try(var inner = coalescer.beginBatch()) {
+                coalescer.projectPermissionsChanged(projectA);
+                coalescer.projectPermissionsChanged(projectA);
+            }
+            coalescer.projectPermissionsChanged(projectB);
+            verifyNoInteractions(eventDispatcher);
+        }
+        verify(eventDispatcher, times(2)).dispatchEvent(any());
+        assertThat(dispatchedProjectIds()).containsExactly(projectA, projectB);
+        assertThat(coalescer.getMergedEventCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldMergePendingChangeIntoBatch() {
+        coalescer.projectPermissionsChanged(projectA);
+        try(var batch = coalescer.beginBatch()) {
+            coalescer.projectPermissionsChanged(projectA);
+        }
+        verify(eventDispatcher, times(1)).dispatchEvent(any());
+        verify(eventDispatcher, after(300).times(1)).dispatchEvent(any());
+        assertThat(coalescer.getMergedEventCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDispatchImmediatelyWithZeroWindow() {
+        var immediate = new PermissionsChangedEventCoalescer(eventDispatcher, Duration.ZERO);
+        immediate.projectPermissionsChanged(projectA);
+        immediate.projectPermissionsChanged(projectA);
+        verify(eventDispatcher, times(2)).dispatchEvent(any());
+        immediate.flush();
+    }
+
+    @Test
+    void shouldDispatchPendingChangesOnFlush() {
+        var longWindow = new PermissionsChangedEventCoalescer(eventDispatcher, Duration.ofHours(1));
+        longWindow.projectPermissionsChanged(projectA);
+        longWindow.flush();
+        verify(eventDispatcher, times(1)).dispatchEvent(any());
+    }
+
+    @Test
+    void shouldDispatchApplicationChangeImmediately() {
+        coalescer.applicationPermissionsChanged();
+        verify(eventDispatcher).dispatchEvent(any(ApplicationPermissionsChangedEvent.class));
+        assertThat(coalescer.getSentEventCount()).isEqualTo(1);
+    }
+
+    private List<ProjectId> dispatchedProjectIds() {
+        var captor = ArgumentCaptor.forClass(PermissionsChangedEvent.class);
+        verify(eventDispatcher, atLeastOnce()).dispatchEvent(captor.capture());
+        return captor.getAllValues().stream().map(PermissionsChangedEvent::projectId).toList();
+    }
+}
@@ -0,0 +1,117 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.stanford.protege.webprotege.common.EventId;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.ipc.EventDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs a second instance of the service's event listening alongside the application context, which is the first
+ * instance, and checks that a single event evicts the caches of both
+ */
+@SpringBootTest
+@ExtendWith({MongoTestExtension.class, RabbitMqTestExtension.class, KeycloakTestExtension.class})
+class PermissionsChangedEventsConfiguration_IT {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private EventDispatcher eventDispatcher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CapabilityClosureCache cache;
+
+    @Autowired
+    private PermissionsChangedEventsConfiguration configuration;
+
+    private final CapabilityClosureCache otherCache = new CapabilityClosureCache(1000, Duration.ofMinutes(10));
+
+    private final ProjectRoleDefinitionsManager otherManager = mock(ProjectRoleDefinitionsManager.class);
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final CapabilityBitSet closure = CapabilityBitSet.builder().add(1).build();
+
+    private PermissionsChangedEventsConfiguration otherConfiguration;
+
+    private CachingConnectionFactory otherConnectionFactory;
+
+    private SimpleMessageListenerContainer otherContainer;
+
+    @BeforeEach
+    void setUp() {
+        otherConfiguration = new PermissionsChangedEventsConfiguration("other-instance");
+        otherConnectionFactory = new CachingConnectionFactory(System.getProperty("spring.rabbitmq.host"),
+                                                              Integer.parseInt(System.getProperty("spring.rabbitmq.port")));
+        var admin = new RabbitAdmin(otherConnectionFactory);
+        otherConfiguration.permissionsChangedEventsDeclarables()
+                          .getDeclarables()
+                          .forEach(declarable -> {
+                              if(declarable instanceof Queue queue) {
+                                  admin.declareQueue(queue);
+                              }
+                              else if(declarable instanceof Binding binding) {
+                                  admin.declareBinding(binding);
+                              }
+                          });
+        otherContainer = otherConfiguration.permissionsChangedEventsListenerContainer(otherConnectionFactory,
+                                                                                      objectMapper,
+                                                                                      otherCache,
+                                                                                      otherManager);
+        otherContainer.afterPropertiesSet();
+        otherContainer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        otherContainer.stop();
+        otherConnectionFactory.destroy();
+    }
+
+    @Test
+    void shouldGiveEachInstanceItsOwnQueue() {
+        assertThat(configuration.getQueueName()).startsWith(PermissionsChangedEventsConfiguration.QUEUE_NAME_PREFIX)
+                                                .isNotEqualTo(otherConfiguration.getQueueName());
+    }
+
+    @Test
+    void shouldEvictCachesOfBothInstances() throws Exception {
+        cache.put("A", projectId.value(), closure);
+        otherCache.put("A", projectId.value(), closure);
+
+        eventDispatcher.dispatchEvent(new PermissionsChangedEvent(EventId.generate(), projectId));
+
+        awaitTrue(() -> cache.getIfPresent("A", projectId.value()) == null);
+        awaitTrue(() -> otherCache.getIfPresent("A", projectId.value()) == null);
+        verify(otherManager).invalidateProjectRoleGraph(projectId);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while(!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("Condition not met within %s", TIMEOUT).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
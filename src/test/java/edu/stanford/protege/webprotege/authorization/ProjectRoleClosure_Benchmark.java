@@ -0,0 +1,101 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the computation of a project role closure, which is done for every role assignment that is written or
+ * rebuilt.  The "builtIn" hierarchy is the built-in project roles, and the closure is of the Manage role.  The "deep"
+ * hierarchy is a custom hierarchy with two roles at each level, each of which has both roles of the level above as
+ * parents, and the closure is of a role at the bottom.
+ * <p>
+ * The "cachedGraph" path is the {@link ProjectRoleDefinitionsManager}, with the project's compiled role graph
+ * cached.  The "compiledGraph" path compiles the role definitions first, which is the cost of a graph cache miss.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test -DskipTests -Dbenchmark=ProjectRoleClosure}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProjectRoleClosure_Benchmark {
+
+    @Param({"builtIn", "deep"})
+    public String hierarchy;
+
+    @Param({"32"})
+    public int depth;
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private List<RoleDefinition> roleDefinitions;
+
+    private RoleId roleId;
+
+    private ProjectRoleDefinitionsManager manager;
+
+    @Setup
+    public void setUp() {
+        Optional<ProjectRoleDefinitionsRecord> record;
+        if(hierarchy.equals("builtIn")) {
+            roleDefinitions = Arrays.stream(BuiltInRole.values())
+                                    .filter(BuiltInRole::isProjectRole)
+                                    .map(BuiltInRole::toRoleDefinition)
+                                    .toList();
+            roleId = BuiltInRole.CAN_MANAGE.getRoleId();
+            record = Optional.empty();
+        }
+        else {
+            roleDefinitions = getDeepHierarchy(depth);
+            roleId = RoleId.valueOf("A" + (depth - 1));
+            record = Optional.of(ProjectRoleDefinitionsRecord.get(projectId, roleDefinitions));
+        }
+        manager = new ProjectRoleDefinitionsManager(new ProjectRoleDefinitionsRepository(null, null, null) {
+            @Override
+            public Optional<ProjectRoleDefinitionsRecord> getProjectRoleDefinitions(ProjectId projectId) {
+                return record;
+            }
+        });
+    }
+
+    private static List<RoleDefinition> getDeepHierarchy(int depth) {
+        var roleDefinitions = new ArrayList<RoleDefinition>();
+        for(int level = 0; level < depth; level++) {
+            var parents = level == 0 ? Set.<RoleId>of() : Set.of(RoleId.valueOf("A" + (level - 1)),
+                                                                  RoleId.valueOf("B" + (level - 1)));
+            for(var name : List.of("A" + level, "B" + level)) {
+                var capabilities = IntStream.range(0, 3)
+                                            .mapToObj(i -> (Capability) BasicCapability.valueOf(name + "Capability" + i))
+                                            .collect(Collectors.toSet());
+                roleDefinitions.add(RoleDefinition.get(RoleId.valueOf(name),
+                                                       RoleType.PROJECT_ROLE,
+                                                       parents,
+                                                       capabilities,
+                                                       name,
+                                                       ""));
+            }
+        }
+        return roleDefinitions;
+    }
+
+    @Benchmark
+    public Set<RoleDefinition> cachedGraph() {
+        return manager.getProjectRoleClosure(projectId, roleId);
+    }
+
+    @Benchmark
+    public Set<RoleDefinition> compiledGraph() {
+        return ProjectRoleGraph.compile(roleDefinitions).getRoleClosure(roleId);
+    }
+}
@@ -15,6 +15,11 @@ import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -71,4 +76,137 @@ public class ProjectRoleDefinitionsManager_TestCase {
         // logging reconstruction needed fixing.
         assertEquals(Set.of(start, a, b, d, c), closure);
     }
+
+    @Test
+    public void shouldLoadProjectRoleDefinitionsOnceForRepeatedClosureLookups() {
+        var a = role("A", "B");
+        var b = role("B");
+        var projectId = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        when(repository.getProjectRoleDefinitions(projectId))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(a, b))));
+        var manager = new ProjectRoleDefinitionsManager(repository);
+
+        assertEquals(Set.of(a, b), manager.getProjectRoleClosure(projectId, RoleId.valueOf("A")));
+        assertEquals(Set.of(b), manager.getProjectRoleClosure(projectId, RoleId.valueOf("B")));
+        assertEquals(Set.of(), manager.getProjectRoleClosure(projectId, RoleId.valueOf("Undefined")));
+
+        verify(repository, times(1)).getProjectRoleDefinitions(projectId);
+    }
+
+    @Test
+    public void shouldShareBuiltInRoleGraphBetweenProjectsWithoutCustomDefinitions() {
+        var projectA = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        var projectB = ProjectId.valueOf("22222222-2222-2222-2222-222222222222");
+        when(repository.getProjectRoleDefinitions(projectA)).thenReturn(Optional.empty());
+        when(repository.getProjectRoleDefinitions(projectB)).thenReturn(Optional.empty());
+        var manager = new ProjectRoleDefinitionsManager(repository);
+
+        assertSame(manager.getProjectRoleGraph(null), manager.getProjectRoleGraph(projectA));
+        assertSame(manager.getProjectRoleGraph(null), manager.getProjectRoleGraph(projectB));
+    }
+
+    @Test
+    public void shouldReloadRoleGraphAfterProjectRoleDefinitionsAreSet() {
+        var projectId = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        when(repository.getProjectRoleDefinitions(projectId)).thenReturn(Optional.empty());
+        var manager = new ProjectRoleDefinitionsManager(repository);
+        assertEquals(Set.of(), manager.getProjectRoleClosure(projectId, RoleId.valueOf("A")));
+
+        var a = role("A");
+        manager.setProjectRoleDefinitions(projectId, Set.of(a));
+        when(repository.getProjectRoleDefinitions(projectId))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(a))));
+
+        assertEquals(Set.of(a), manager.getProjectRoleClosure(projectId, RoleId.valueOf("A")));
+    }
+
+    @Test
+    public void shouldReloadRoleGraphAfterProjectRoleDefinitionsAreCleared() {
+        var a = role("A");
+        var projectId = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        when(repository.getProjectRoleDefinitions(projectId))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(a))));
+        var manager = new ProjectRoleDefinitionsManager(repository);
+        assertEquals(Set.of(a), manager.getProjectRoleClosure(projectId, RoleId.valueOf("A")));
+
+        manager.clearProjectRoleDefinitions(projectId);
+        when(repository.getProjectRoleDefinitions(projectId)).thenReturn(Optional.empty());
+
+        assertSame(manager.getProjectRoleGraph(null), manager.getProjectRoleGraph(projectId));
+    }
+
+    @Test
+    public void shouldReturnChangedRolesAndTheirDescendantsWhenProjectRoleDefinitionsAreSet() {
+        var a = role("A", "B");
+        var b = role("B");
+        var c = role("C");
+        var projectId = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        when(repository.saveProjectRoleDefinitions(any()))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(a, b, c))));
+        var manager = new ProjectRoleDefinitionsManager(repository);
+
+        var changedB = RoleDefinition.get(RoleId.valueOf("B"),
+                                          RoleType.PROJECT_ROLE,
+                                          Set.of(),
+                                          Set.of(new BasicCapability("NewCapability")),
+                                          "B",
+                                          "B");
+        var affectedRoleIds = manager.setProjectRoleDefinitions(projectId, Set.of(a, changedB, c));
+
+        assertEquals(Set.of(RoleId.valueOf("A"), RoleId.valueOf("B")), affectedRoleIds);
+    }
+
+    @Test
+    public void shouldNotReturnRolesWhoseLabelsAloneChanged() {
+        var a = role("A");
+        var projectId = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        when(repository.saveProjectRoleDefinitions(any()))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(a))));
+        var manager = new ProjectRoleDefinitionsManager(repository);
+
+        var relabelledA = RoleDefinition.get(RoleId.valueOf("A"), RoleType.PROJECT_ROLE, Set.of(), Set.of(), "Relabelled", "");
+
+        assertEquals(Set.of(), manager.setProjectRoleDefinitions(projectId, Set.of(relabelledA)));
+    }
+
+    @Test
+    public void shouldReturnAddedAndRemovedRolesWhenProjectRoleDefinitionsAreSet() {
+        var a = role("A", "B");
+        var c = role("C");
+        var projectId = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        when(repository.saveProjectRoleDefinitions(any()))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(a, c))));
+        var manager = new ProjectRoleDefinitionsManager(repository);
+
+        // B was a dangling parent of A, so defining it changes the closure of A
+        var affectedRoleIds = manager.setProjectRoleDefinitions(projectId, Set.of(a, role("B")));
+
+        assertEquals(Set.of(RoleId.valueOf("A"), RoleId.valueOf("B"), RoleId.valueOf("C")), affectedRoleIds);
+    }
+
+    @Test
+    public void shouldCompareWithRecordReplacedBySaveRatherThanRecordLastRead() {
+        var a = role("A");
+        var projectId = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        when(repository.getProjectRoleDefinitions(projectId))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(a))));
+        var manager = new ProjectRoleDefinitionsManager(repository);
+        assertEquals(Set.of(a), manager.getProjectRoleClosure(projectId, RoleId.valueOf("A")));
+        // Another instance added B after the definitions were read here
+        when(repository.saveProjectRoleDefinitions(any()))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(a, role("B")))));
+
+        assertEquals(Set.of(RoleId.valueOf("B")), manager.setProjectRoleDefinitions(projectId, Set.of(a)));
+    }
+
+    @Test
+    public void shouldCompareWithRecordDeletedByClear() {
+        var projectId = ProjectId.valueOf("11111111-1111-1111-1111-111111111111");
+        when(repository.getProjectRoleDefinitions(projectId)).thenReturn(Optional.empty());
+        when(repository.clearProjectRoleDefinitions(projectId))
+                .thenReturn(Optional.of(ProjectRoleDefinitionsRecord.get(projectId, Set.of(role("A")))));
+        var manager = new ProjectRoleDefinitionsManager(repository);
+
+        assertTrue(manager.clearProjectRoleDefinitions(projectId).contains(RoleId.valueOf("A")));
+    }
 }
@@ -2,6 +2,7 @@ package edu.stanford.protege.webprotege.authorization;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.stanford.protege.webprotege.common.ProjectId;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,8 +14,13 @@ import org.testcontainers.shaded.com.fasterxml.jackson.databind.util.ISO8601Date
 
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -35,7 +41,7 @@ class ProjectRoleDefinitionsRepository_IT {
     @BeforeEach
     void setUp() {
         mongoTemplate.getCollection("ProjectRoleDefinitions").drop();
-        repository = new ProjectRoleDefinitionsRepository(mongoTemplate, objectMapper);
+        repository = new ProjectRoleDefinitionsRepository(mongoTemplate, objectMapper, new MongoOperationMetrics(new SimpleMeterRegistry()));
         roleDefinitions = List.of(
             new RoleDefinition(RoleId.valueOf("ProjectEditor"), RoleType.PROJECT_ROLE, Set.of(RoleId.valueOf("ProjectViewer")), Set.of(), "Testing label","Testing role")
         );
@@ -106,6 +112,18 @@ class ProjectRoleDefinitionsRepository_IT {
         assertThat(retrieved).contains(ProjectRoleDefinitionsRecord.get(projectId, updatedDefinitions));
     }
 
+    @Test
+    void shouldReturnReplacedAndDeletedRecords() {
+        var projectId = ProjectId.valueOf("12345678-1234-5678-1234-567812345678");
+        var initial = ProjectRoleDefinitionsRecord.get(projectId, roleDefinitions);
+        var updated = ProjectRoleDefinitionsRecord.get(projectId, List.of());
+
+        assertThat(repository.saveProjectRoleDefinitions(initial)).isEmpty();
+        assertThat(repository.saveProjectRoleDefinitions(updated)).contains(initial);
+        assertThat(repository.clearProjectRoleDefinitions(projectId)).contains(updated);
+        assertThat(repository.clearProjectRoleDefinitions(projectId)).isEmpty();
+    }
+
     @Test
     void shouldNotSaveDuplicates() {
         var projectId = ProjectId.valueOf("12345678-1234-5678-1234-567812345678");
@@ -119,4 +137,60 @@ class ProjectRoleDefinitionsRepository_IT {
 
         assertThat(count).isEqualTo(1);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldIncrementRevisionOnEachSave() {
+        var projectId = ProjectId.valueOf("12345678-1234-5678-1234-567812345678");
+
+        repository.saveProjectRoleDefinitions(ProjectRoleDefinitionsRecord.get(projectId, roleDefinitions));
+        repository.saveProjectRoleDefinitions(ProjectRoleDefinitionsRecord.get(projectId, roleDefinitions));
+
+        var stored = mongoTemplate.getCollection("ProjectRoleDefinitions").find(new Document("_id", projectId.value())).first();
+        assertThat(stored).isNotNull();
+        assertThat(stored.getInteger("revision")).isEqualTo(2);
+    }
+
+    @Test
+    void shouldUpdateLegacyRecordWithoutRevision() {
+        var projectId = ProjectId.valueOf("12345678-1234-5678-1234-567812345678");
+        var legacy = objectMapper.convertValue(ProjectRoleDefinitionsRecord.get(projectId, List.of()), Document.class);
+        mongoTemplate.getCollection("ProjectRoleDefinitions").insertOne(legacy);
+
+        repository.saveProjectRoleDefinitions(ProjectRoleDefinitionsRecord.get(projectId, roleDefinitions));
+
+        assertThat(repository.getProjectRoleDefinitions(projectId)).contains(ProjectRoleDefinitionsRecord.get(projectId, roleDefinitions));
+        var stored = mongoTemplate.getCollection("ProjectRoleDefinitions").find(new Document("_id", projectId.value())).first();
+        assertThat(stored.getInteger("revision")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldApplyEveryConcurrentSave() throws Exception {
+        var projectId = ProjectId.valueOf("12345678-1234-5678-1234-567812345678");
+        mongoTemplate.getCollection("ProjectRoleDefinitions_revisions").deleteMany(new Document("projectId", projectId.value()));
+        var saves = 8;
+        var executor = Executors.newFixedThreadPool(saves);
+        try {
+            var start = new CountDownLatch(1);
+            var futures = new ArrayList<Future<?>>();
+            for(int i = 0; i < saves; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    repository.saveProjectRoleDefinitions(ProjectRoleDefinitionsRecord.get(projectId, roleDefinitions));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for(var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        var stored = mongoTemplate.getCollection("ProjectRoleDefinitions").find(new Document("_id", projectId.value())).first();
+        assertThat(stored.getInteger("revision")).isEqualTo(saves);
+        var revisions = mongoTemplate.getCollection("ProjectRoleDefinitions_revisions")
+                                     .countDocuments(new Document("projectId", projectId.value()));
+        assertThat(revisions).isEqualTo(saves);
+    }
+}
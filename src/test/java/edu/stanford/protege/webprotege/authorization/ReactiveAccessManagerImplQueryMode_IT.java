@@ -0,0 +1,63 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "webprotege.authorization.permission-check-mode=query")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@ExtendWith({MongoTestExtension.class, RabbitMqTestExtension.class, KeycloakTestExtension.class})
+class ReactiveAccessManagerImplQueryMode_IT {
+
+    @Autowired
+    private AccessManager accessManager;
+
+    @Autowired
+    private ReactiveAccessManagerImpl reactiveAccessManager;
+
+    @Autowired
+    private CapabilityClosureCache capabilityClosureCache;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final ProjectResource resource = ProjectResource.forProject(projectId);
+
+    private final Capability viewProject = BuiltInCapability.VIEW_PROJECT.getCapability();
+
+    private final Capability createClass = BuiltInCapability.CREATE_CLASS.getCapability();
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME).drop();
+    }
+
+    @Test
+    void shouldAnswerChecksWithoutCachingClosure() {
+        accessManager.setAssignedRoles(Subject.forUser("A"), resource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        capabilityClosureCache.invalidateAll();
+
+        assertThat(reactiveAccessManager.hasPermission(Subject.forUser("A"), resource, viewProject, null).block()).isTrue();
+        assertThat(reactiveAccessManager.hasPermission(Subject.forUser("A"), resource, createClass, null).block()).isFalse();
+        assertThat(capabilityClosureCache.getIfPresent("A", projectId.id())).isNull();
+    }
+
+    @Test
+    void shouldIncludeAssignmentForAnySignedInUser() {
+        accessManager.setAssignedRoles(Subject.forAnySignedInUser(), resource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+
+        assertThat(reactiveAccessManager.hasPermission(Subject.forUser("B"), resource, viewProject, null).block()).isTrue();
+        assertThat(reactiveAccessManager.hasPermission(Subject.forGuestUser(), resource, viewProject, null).block()).isFalse();
+    }
+}
@@ -0,0 +1,93 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@ExtendWith({MongoTestExtension.class, RabbitMqTestExtension.class, KeycloakTestExtension.class})
+class ReactiveAccessManagerImpl_IT {
+
+    @Autowired
+    private AccessManager accessManager;
+
+    @Autowired
+    private ReactiveAccessManagerImpl reactiveAccessManager;
+
+    @Autowired
+    private CapabilityClosureCache capabilityClosureCache;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final ProjectResource resource = ProjectResource.forProject(projectId);
+
+    private final Capability viewProject = BuiltInCapability.VIEW_PROJECT.getCapability();
+
+    private final Capability createClass = BuiltInCapability.CREATE_CLASS.getCapability();
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME).drop();
+    }
+
+    @Test
+    void shouldAgreeWithBlockingAccessManager() {
+        accessManager.setAssignedRoles(Subject.forUser("A"), resource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+
+        assertThat(reactiveAccessManager.hasPermission(Subject.forUser("A"), resource, viewProject, null).block()).isTrue();
+        assertThat(reactiveAccessManager.hasPermission(Subject.forUser("A"), resource, createClass, null).block()).isFalse();
+        assertThat(reactiveAccessManager.getCapabilityClosure(Subject.forUser("A"), resource).block())
+                .isEqualTo(accessManager.getCapabilityClosure(Subject.forUser("A"), resource));
+        assertThat(reactiveAccessManager.getAssignedRoles(Subject.forUser("A"), resource).collectList().block())
+                .containsExactly(BuiltInRole.CAN_VIEW.getRoleId());
+        assertThat(reactiveAccessManager.getSubjectsWithAccessToResource(resource, viewProject).collectList().block())
+                .containsExactly(Subject.forUser("A"));
+        assertThat(reactiveAccessManager.getResourcesAccessibleToSubject(Subject.forUser("A"), viewProject).collectList().block())
+                .containsExactly(resource);
+        assertThat(reactiveAccessManager.getRoleAssignments(projectId).collectList().block())
+                .hasSize(1);
+    }
+
+    @Test
+    void shouldIncludeAssignmentForAnySignedInUser() {
+        accessManager.setAssignedRoles(Subject.forAnySignedInUser(), resource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+
+        assertThat(reactiveAccessManager.hasPermission(Subject.forUser("B"), resource, viewProject, null).block()).isTrue();
+        assertThat(reactiveAccessManager.getSubjectsWithAccessToResource(resource).collectList().block())
+                .containsExactly(Subject.forAnySignedInUser());
+    }
+
+    @Test
+    void shouldReturnDecisionsInCheckOrder() {
+        accessManager.setAssignedRoles(Subject.forUser("A"), resource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        var checks = List.of(new AuthorizationCheck(resource, Subject.forUser("A"), createClass),
+                             new AuthorizationCheck(resource, Subject.forUser("B"), viewProject),
+                             new AuthorizationCheck(resource, Subject.forUser("A"), viewProject));
+
+        assertThat(reactiveAccessManager.hasPermissions(checks, null).block()).containsExactly(false, false, true);
+    }
+
+    @Test
+    void shouldSeeWritesThatFollowCachedReads() {
+        assertThat(reactiveAccessManager.hasPermission(Subject.forUser("A"), resource, viewProject, null).block()).isFalse();
+        assertThat(capabilityClosureCache.getIfPresent("A", projectId.id())).isNotNull();
+
+        accessManager.setAssignedRoles(Subject.forUser("A"), resource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+
+        assertThat(reactiveAccessManager.hasPermission(Subject.forUser("A"), resource, viewProject, null).block()).isTrue();
+    }
+}
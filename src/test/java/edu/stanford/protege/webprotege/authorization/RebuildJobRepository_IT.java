@@ -0,0 +1,90 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"webprotege.rabbitmq.commands-subscribe=false",
+        "webprotege.authorization.rebuild.jobs.poll-interval=1h"})
+@ExtendWith(MongoTestExtension.class)
+class RebuildJobRepository_IT {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private RebuildJobRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getCollection(RebuildJobRepository.COLLECTION_NAME).drop();
+        repository = new RebuildJobRepository(mongoTemplate);
+    }
+
+    @Test
+    void shouldClaimQueuedJobAndRecordCheckpoints() {
+        var projectId = ProjectId.generate();
+        repository.insertJob(queuedJob("job-1", projectId));
+
+        var claimed = repository.claimJob("worker-1", Instant.now().minus(Duration.ofMinutes(2))).orElseThrow();
+        assertThat(claimed.job().status()).isEqualTo(RebuildJobStatus.RUNNING);
+        assertThat(claimed.job().startedAt()).isNotNull();
+        assertThat(claimed.lastProcessedId()).isNull();
+
+        var lastProcessedId = new ObjectId();
+        var checkpointed = repository.checkpoint("job-1", "worker-1", lastProcessedId, 5, 2, 100.0).orElseThrow();
+        assertThat(checkpointed.processedAssignments()).isEqualTo(5);
+        assertThat(checkpointed.rewrittenAssignments()).isEqualTo(2);
+        assertThat(checkpointed.projectId()).isEqualTo(projectId);
+
+        repository.finishJob("job-1", "worker-1", RebuildJobStatus.COMPLETED, null);
+        var finished = repository.findJob("job-1").orElseThrow();
+        assertThat(finished.status()).isEqualTo(RebuildJobStatus.COMPLETED);
+        assertThat(finished.finishedAt()).isNotNull();
+    }
+
+    @Test
+    void shouldResumeRunningJobFromCheckpointAfterLeaseExpires() {
+        repository.insertJob(queuedJob("job-1", null));
+        repository.claimJob("worker-1", Instant.now().minus(Duration.ofMinutes(2)));
+        var lastProcessedId = new ObjectId();
+        repository.checkpoint("job-1", "worker-1", lastProcessedId, 5, 0, 100.0);
+
+        // The lease of worker-1 has not expired
+        assertThat(repository.claimJob("worker-2", Instant.now().minus(Duration.ofMinutes(2)))).isEmpty();
+
+        var resumed = repository.claimJob("worker-2", Instant.now().plusSeconds(1)).orElseThrow();
+        assertThat(resumed.lastProcessedId()).isEqualTo(lastProcessedId);
+        assertThat(resumed.job().processedAssignments()).isEqualTo(5);
+        // worker-1 no longer owns the job
+        assertThat(repository.checkpoint("job-1", "worker-1", new ObjectId(), 1, 0, 0)).isEmpty();
+    }
+
+    @Test
+    void shouldCancelQueuedJobImmediatelyAndFlagRunningJob() {
+        repository.insertJob(queuedJob("queued", null));
+        assertThat(repository.cancelJob("queued").orElseThrow().status()).isEqualTo(RebuildJobStatus.CANCELLED);
+
+        repository.insertJob(queuedJob("running", null));
+        repository.claimJob("worker-1", Instant.now().minus(Duration.ofMinutes(2)));
+        var cancelled = repository.cancelJob("running").orElseThrow();
+        assertThat(cancelled.status()).isEqualTo(RebuildJobStatus.RUNNING);
+        assertThat(cancelled.cancelRequested()).isTrue();
+
+        assertThat(repository.cancelJob("unknown")).isEmpty();
+    }
+
+    private static RebuildJob queuedJob(String jobId, ProjectId projectId) {
+        return RebuildJob.get(jobId, projectId, RebuildJobStatus.QUEUED, 10, 0, 0, 0, false,
+                              Instant.now(), null, null, null);
+    }
+}
@@ -0,0 +1,170 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.authorization.PermissionRebuildEngine.ProjectRebuild;
+import edu.stanford.protege.webprotege.authorization.PermissionRebuildEngine.ProjectRebuildListener;
+import edu.stanford.protege.webprotege.authorization.PermissionRebuildEngine.RebuildBatch;
+import edu.stanford.protege.webprotege.authorization.RebuildJobRepository.ClaimedRebuildJob;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RebuildJobScheduler_Tests {
+
+    private RebuildJobRepository repository;
+
+    private PermissionRebuildEngine rebuildEngine;
+
+    private PermissionsChangedEventCoalescer coalescer;
+
+    private RebuildJobScheduler scheduler;
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RebuildJobRepository.class);
+        rebuildEngine = mock(PermissionRebuildEngine.class);
+        coalescer = mock(PermissionsChangedEventCoalescer.class);
+        scheduler = new RebuildJobScheduler(repository, rebuildEngine, coalescer, Duration.ofMinutes(2), Duration.ofSeconds(10), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    void shouldRunSubmittedJobInBatchesUntilComplete() {
+        var job = job(false);
+        var firstId = new ObjectId();
+        var secondId = new ObjectId();
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, null, null)), Optional.empty());
+        when(rebuildEngine.rebuildBatch(projectId, null, 2)).thenReturn(new RebuildBatch(firstId, 2, 1, Set.of(projectId)));
+        when(rebuildEngine.rebuildBatch(projectId, firstId, 2)).thenReturn(new RebuildBatch(secondId, 1, 0, Set.of()));
+        when(rebuildEngine.rebuildBatch(projectId, secondId, 2)).thenReturn(new RebuildBatch(secondId, 0, 0, Set.of()));
+        when(repository.checkpoint(eq(job.jobId()), anyString(), any(), anyLong(), anyLong(), anyDouble())).thenReturn(Optional.of(job));
+
+        var submitted = scheduler.submit(projectId);
+
+        assertThat(submitted.status()).isEqualTo(RebuildJobStatus.QUEUED);
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.COMPLETED), isNull());
+        verify(repository).checkpoint(eq(job.jobId()), anyString(), eq(firstId), eq(2L), eq(1L), anyDouble());
+        verify(repository).checkpoint(eq(job.jobId()), anyString(), eq(secondId), eq(1L), eq(0L), anyDouble());
+        verify(coalescer).projectPermissionsChanged(projectId);
+    }
+
+    @Test
+    void shouldResumeClaimedJobFromCheckpoint() {
+        var job = job(false);
+        var checkpointId = new ObjectId();
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, checkpointId, null)), Optional.empty());
+        when(rebuildEngine.rebuildBatch(projectId, checkpointId, 2)).thenReturn(new RebuildBatch(checkpointId, 0, 0, Set.of()));
+
+        scheduler.submit(projectId);
+
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.COMPLETED), isNull());
+        verify(rebuildEngine, never()).rebuildBatch(projectId, null, 2);
+    }
+
+    @Test
+    void shouldStopAtCheckpointWhenCancellationIsRequested() {
+        var job = job(false);
+        var firstId = new ObjectId();
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, null, null)), Optional.empty());
+        when(rebuildEngine.rebuildBatch(projectId, null, 2)).thenReturn(new RebuildBatch(firstId, 2, 0, Set.of()));
+        when(repository.checkpoint(eq(job.jobId()), anyString(), any(), anyLong(), anyLong(), anyDouble())).thenReturn(Optional.of(job(true)));
+
+        scheduler.submit(projectId);
+
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.CANCELLED), isNull());
+        verify(rebuildEngine, never()).rebuildBatch(projectId, firstId, 2);
+    }
+
+    @Test
+    void shouldMarkJobAsFailedWhenABatchFails() {
+        var job = job(false);
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, null, null)), Optional.empty());
+        when(rebuildEngine.rebuildBatch(projectId, null, 2)).thenThrow(new IllegalStateException("Boom"));
+
+        scheduler.submit(projectId);
+
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.FAILED), eq("Boom"));
+    }
+
+    @Test
+    void shouldRebuildAllProjectsProjectByProjectAndCheckpointAfterEachBatchOfAssignments() {
+        var job = allProjectsJob(false);
+        when(rebuildEngine.getRebuildMode()).thenReturn(RebuildMode.IN_PLACE);
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, null, null)), Optional.empty());
+        doAnswer(invocation -> {
+            ProjectRebuildListener listener = invocation.getArgument(1);
+            var application = new ProjectRebuild(null, PermissionRebuildEngine.APPLICATION_CHECKPOINT, 1, 1);
+            return listener.projectRebuilt(application)
+                    && listener.projectRebuilt(new ProjectRebuild(projectId, projectId.value(), 2, 1));
+        }).when(rebuildEngine).rebuildProjectsInPlace(isNull(), any());
+        when(repository.checkpointProject(eq(job.jobId()), anyString(), anyString(), anyLong(), anyLong(), anyDouble())).thenReturn(Optional.of(job));
+
+        scheduler.submit(null);
+
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.COMPLETED), isNull());
+        // The application level assignments alone are less than a batch
+        verify(repository, times(1)).checkpointProject(eq(job.jobId()), anyString(), anyString(), anyLong(), anyLong(), anyDouble());
+        verify(repository).checkpointProject(eq(job.jobId()), anyString(), eq(projectId.value()), eq(3L), eq(2L), anyDouble());
+        verify(coalescer).applicationPermissionsChanged();
+        verify(coalescer).projectPermissionsChanged(projectId);
+        verify(rebuildEngine, never()).rebuildBatch(any(), any(), anyInt());
+    }
+
+    @Test
+    void shouldResumeAllProjectsJobAfterLastCheckpointedProject() {
+        var job = allProjectsJob(false);
+        when(rebuildEngine.getRebuildMode()).thenReturn(RebuildMode.IN_PLACE);
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, null, projectId.value())), Optional.empty());
+
+        scheduler.submit(null);
+
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.COMPLETED), isNull());
+        verify(rebuildEngine).rebuildProjectsInPlace(eq(projectId.value()), any());
+    }
+
+    @Test
+    void shouldStopAllProjectsJobAtCheckpointWhenCancellationIsRequested() {
+        var job = allProjectsJob(false);
+        when(rebuildEngine.getRebuildMode()).thenReturn(RebuildMode.IN_PLACE);
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, null, null)), Optional.empty());
+        var continued = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            ProjectRebuildListener listener = invocation.getArgument(1);
+            continued.set(listener.projectRebuilt(new ProjectRebuild(projectId, projectId.value(), 2, 0)));
+            return null;
+        }).when(rebuildEngine).rebuildProjectsInPlace(isNull(), any());
+        when(repository.checkpointProject(eq(job.jobId()), anyString(), anyString(), anyLong(), anyLong(), anyDouble())).thenReturn(Optional.of(allProjectsJob(true)));
+
+        scheduler.submit(null);
+
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.CANCELLED), isNull());
+        assertThat(continued).isFalse();
+    }
+
+    private RebuildJob allProjectsJob(boolean cancelRequested) {
+        return RebuildJob.get("job-2", null, RebuildJobStatus.RUNNING, 3, 0, 0, 0, cancelRequested,
+                              Instant.now(), Instant.now(), null, null);
+    }
+
+    private RebuildJob job(boolean cancelRequested) {
+        return RebuildJob.get("job-1", projectId, RebuildJobStatus.RUNNING, 3, 0, 0, 0, cancelRequested,
+                              Instant.now(), Instant.now(), null, null);
+    }
+}
@@ -0,0 +1,89 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.authorization.PermissionRebuildEngine.RebuildBatch;
+import edu.stanford.protege.webprotege.authorization.RebuildJobRepository.ClaimedRebuildJob;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.common.UserId;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that the rebuild command runs full rebuilds in the configured rebuild mode
+ */
+public class RebuildProjectPermissionsHandler_Tests {
+
+    private RebuildJobRepository repository;
+
+    private PermissionRebuildEngine rebuildEngine;
+
+    private RebuildJobScheduler scheduler;
+
+    private RebuildProjectPermissionsHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RebuildJobRepository.class);
+        rebuildEngine = mock(PermissionRebuildEngine.class);
+        scheduler = new RebuildJobScheduler(repository,
+                                            rebuildEngine,
+                                            mock(PermissionsChangedEventCoalescer.class),
+                                            Duration.ofMinutes(2),
+                                            Duration.ofSeconds(10),
+                                            2);
+        handler = new RebuildProjectPermissionsHandler(scheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    void shouldRebuildAllProjectsInShadowCollectionInShadowMode() {
+        when(rebuildEngine.getRebuildMode()).thenReturn(RebuildMode.SHADOW);
+        var job = job(null);
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, null, null)), Optional.empty());
+
+        var response = handler.handleRequest(RebuildProjectPermissionsRequest.get(null), executionContext()).block();
+
+        assertThat(response).isNotNull();
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.COMPLETED), isNull());
+        verify(rebuildEngine).rebuildAll();
+        verify(rebuildEngine, never()).rebuildBatch(any(), any(), anyInt());
+    }
+
+    @Test
+    void shouldRebuildSingleProjectInBatchesInShadowMode() {
+        when(rebuildEngine.getRebuildMode()).thenReturn(RebuildMode.SHADOW);
+        var projectId = ProjectId.generate();
+        var job = job(projectId);
+        when(repository.claimJob(anyString(), any())).thenReturn(Optional.of(new ClaimedRebuildJob(job, null, null)), Optional.empty());
+        when(rebuildEngine.rebuildBatch(projectId, null, 2)).thenReturn(new RebuildBatch(null, 0, 0, Set.of()));
+
+        handler.handleRequest(RebuildProjectPermissionsRequest.get(projectId), executionContext()).block();
+
+        verify(repository, timeout(2000)).finishJob(eq(job.jobId()), anyString(), eq(RebuildJobStatus.COMPLETED), isNull());
+        verify(rebuildEngine, never()).rebuildAll();
+    }
+
+    private static RebuildJob job(@Nullable ProjectId projectId) {
+        return RebuildJob.get("job-1", projectId, RebuildJobStatus.RUNNING, 0, 0, 0, 0, false,
+                              Instant.now(), Instant.now(), null, null);
+    }
+
+    private static ExecutionContext executionContext() {
+        return new ExecutionContext(UserId.valueOf("admin"), "", "");
+    }
+}
@@ -0,0 +1,136 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoleAssignmentCodec_Tests {
+
+    private RoleAssignmentCodec codec;
+
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        codec = new RoleAssignmentCodec();
+        objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Test
+    void shouldDecodeRoleAssignment() {
+        var document = Document.parse("""
+                {
+                    "_id" : { "$oid" : "65a7b1e2f1d2c3b4a5968778" },
+                    "userName" : "JohnSmith",
+                    "projectId" : "2f8bd662-512b-4224-a1ac-67e5bd142094",
+                    "assignedRoles" : ["CanEdit"],
+                    "roleClosure" : ["CanEdit", "CanView"],
+                    "capabilityClosure" : [
+                        { "@type" : "BasicCapability", "id" : "CreateClass" },
+                        { "@type" : "BasicCapability", "id" : "ViewProject" }
+                    ]
+                }
+                """);
+        var decoded = decode(document);
+        assertThat(decoded.getObjectId()).contains(new ObjectId("65a7b1e2f1d2c3b4a5968778"));
+        assertThat(decoded.getUserName()).contains("JohnSmith");
+        assertThat(decoded.getProjectId()).contains("2f8bd662-512b-4224-a1ac-67e5bd142094");
+        assertThat(decoded.getAssignedRoles()).containsExactly("CanEdit");
+        assertThat(decoded.getRoleClosure()).containsExactly("CanEdit", "CanView");
+        assertThat(decoded.getCapabilityClosure()).containsExactly(BasicCapability.valueOf("CreateClass"),
+                                                                   BasicCapability.valueOf("ViewProject"));
+        assertThat(decoded).isEqualTo(objectMapper.convertValue(document, RoleAssignment.class));
+    }
+
+    @Test
+    void shouldDecodeNullUserNameAndProjectId() {
+        var document = Document.parse("""
+                {
+                    "userName" : null,
+                    "projectId" : null,
+                    "assignedRoles" : ["SystemAdmin"],
+                    "roleClosure" : ["SystemAdmin"],
+                    "capabilityClosure" : []
+                }
+                """);
+        var decoded = decode(document);
+        assertThat(decoded.getUserName()).isEmpty();
+        assertThat(decoded.getProjectId()).isEmpty();
+        assertThat(decoded.getObjectId()).isEmpty();
+    }
+
+    @Test
+    void shouldDecodeLegacyActionClosure() {
+        var document = Document.parse("""
+                {
+                    "userName" : "JohnSmith",
+                    "projectId" : "2f8bd662-512b-4224-a1ac-67e5bd142094",
+                    "assignedRoles" : ["CanEdit"],
+                    "roleClosure" : ["CanEdit"],
+                    "actionClosure" : ["CreateClass", "DeleteClass"]
+                }
+                """);
+        var decoded = decode(document);
+        assertThat(decoded.getCapabilityClosure()).containsExactly(BasicCapability.valueOf("CreateClass"),
+                                                                   BasicCapability.valueOf("DeleteClass"));
+        assertThat(decoded).isEqualTo(objectMapper.convertValue(document, RoleAssignment.class));
+    }
+
+    @Test
+    void shouldDecodeParameterizedCapability() {
+        var document = Document.parse("""
+                {
+                    "userName" : "JohnSmith",
+                    "projectId" : "2f8bd662-512b-4224-a1ac-67e5bd142094",
+                    "assignedRoles" : [],
+                    "roleClosure" : [],
+                    "capabilityClosure" : [
+                        { "@type" : "FormEditingCapability", "id" : "EditForm", "formId" : "TheFormId" }
+                    ]
+                }
+                """);
+        var decoded = decode(document);
+        assertThat(decoded.getCapabilityClosure())
+                .containsExactly(new GenericParameterizedCapability("FormEditingCapability", "EditForm",
+                                                                    Map.of("formId", "TheFormId")));
+        assertThat(decoded).isEqualTo(objectMapper.convertValue(document, RoleAssignment.class));
+    }
+
+    @Test
+    void shouldRoundTripRoleAssignment() {
+        var roleAssignment = new RoleAssignment(new ObjectId(),
+                                                "JohnSmith",
+                                                "2f8bd662-512b-4224-a1ac-67e5bd142094",
+                                                List.of("CanEdit"),
+                                                List.of("CanEdit", "CanView"),
+                                                List.of(BasicCapability.valueOf("CreateClass"),
+                                                        new GenericParameterizedCapability("FormEditingCapability",
+                                                                                           "EditForm",
+                                                                                           Map.of("formId", "TheFormId"))));
+        var encoded = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(encoded), roleAssignment, EncoderContext.builder().build());
+        assertThat(encoded.getArray("capabilityClosure").get(0).asDocument().getString("@type").getValue())
+                .isEqualTo("BasicCapability");
+        var decoded = codec.decode(new BsonDocumentReader(encoded), DecoderContext.builder().build());
+        assertThat(decoded).isEqualTo(roleAssignment);
+        assertThat(decoded.getObjectId()).isEqualTo(roleAssignment.getObjectId());
+    }
+
+    private RoleAssignment decode(Document document) {
+        var bsonDocument = document.toBsonDocument(Document.class, RoleAssignmentCodec.CODEC_REGISTRY);
+        return codec.decode(new BsonDocumentReader(bsonDocument), DecoderContext.builder().build());
+    }
+}
@@ -0,0 +1,99 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-document cost of decoding a stored role assignment.  The "before" path reads the BSON into a
+ * {@link org.bson.Document} and converts it with Jackson, which is what every read path used to do.  The "after"
+ * path decodes the BSON directly with the {@link RoleAssignmentCodec}.  The document holds the closure of the
+ * built-in ProjectManager role, which is a typical large assignment.
+ * <p>
+ * The encoding benchmarks measure the opposite direction.  Writes convert a role assignment to a
+ * {@link org.bson.Document} with Jackson, and the codec writes it as BSON directly.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test -DskipTests -Dbenchmark=RoleAssignmentDecoding}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoleAssignmentDecoding_Benchmark {
+
+    private final DecoderContext decoderContext = DecoderContext.builder().build();
+
+    private final DocumentCodec documentCodec = new DocumentCodec();
+
+    private final RoleAssignmentCodec roleAssignmentCodec = new RoleAssignmentCodec();
+
+    // Registers the Optional support that the application's ObjectMapper has, which encoding needs
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new Jdk8Module())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final EncoderContext encoderContext = EncoderContext.builder().build();
+
+    private RoleAssignment roleAssignment;
+
+    private RawBsonDocument storedRoleAssignment;
+
+    @Setup
+    public void setUp() {
+        var roleOracle = BuiltInRoleOracleImpl.get();
+        var roleClosure = roleOracle.getRoleClosure(BuiltInRole.PROJECT_MANAGER.getRoleId());
+        roleAssignment = new RoleAssignment(new ObjectId(),
+                                            "JohnSmith",
+                                            "2f8bd662-512b-4224-a1ac-67e5bd142094",
+                                            List.of(BuiltInRole.PROJECT_MANAGER.getRoleId().id()),
+                                            roleClosure.stream().map(r -> r.roleId().id()).toList(),
+                                            roleClosure.stream()
+                                                       .flatMap(r -> r.roleCapabilities().stream())
+                                                       .distinct()
+                                                       .toList());
+        var document = new BsonDocument();
+        roleAssignmentCodec.encode(new BsonDocumentWriter(document), roleAssignment, encoderContext);
+        storedRoleAssignment = new RawBsonDocument(document, new BsonDocumentCodec());
+    }
+
+    @Benchmark
+    public RoleAssignment documentAndObjectMapper() {
+        var reader = new BsonBinaryReader(storedRoleAssignment.getByteBuffer().asNIO());
+        var document = documentCodec.decode(reader, decoderContext);
+        return objectMapper.convertValue(document, RoleAssignment.class);
+    }
+
+    @Benchmark
+    public RoleAssignment roleAssignmentCodec() {
+        var reader = new BsonBinaryReader(storedRoleAssignment.getByteBuffer().asNIO());
+        return roleAssignmentCodec.decode(reader, decoderContext);
+    }
+
+    @Benchmark
+    public Document objectMapperEncoding() {
+        return objectMapper.convertValue(roleAssignment, Document.class);
+    }
+
+    @Benchmark
+    public BsonDocument roleAssignmentCodecEncoding() {
+        var document = new BsonDocument();
+        roleAssignmentCodec.encode(new BsonDocumentWriter(document), roleAssignment, encoderContext);
+        return document;
+    }
+}
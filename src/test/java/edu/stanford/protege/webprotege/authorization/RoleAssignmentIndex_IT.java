@@ -0,0 +1,120 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"webprotege.authorization.storage-mode=memory",
+        "webprotege.authorization.change-streams.enabled=true"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@ExtendWith({MongoTestExtension.class, RabbitMqTestExtension.class, KeycloakTestExtension.class})
+class RoleAssignmentIndex_IT {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private AccessManagerImpl manager;
+
+    @Autowired
+    private RoleAssignmentIndex index;
+
+    @Autowired
+    private CapabilityClosureCache capabilityClosureCache;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final Capability viewChanges = BuiltInCapability.VIEW_CHANGES.getCapability();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        awaitReady();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME).drop();
+    }
+
+    @Test
+    void shouldAnswerChecksFromTheIndexWithoutQueryingMongo() {
+        manager.setAssignedRoles(Subject.forUser("A"), ProjectResource.forProject(projectId), Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        // A change that bypasses the access manager is not seen
+        mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME)
+                     .updateMany(new Document(), new Document("$set", new Document("capabilityClosure", emptyList())));
+
+        assertThat(manager.hasPermission(Subject.forUser("A"), ProjectResource.forProject(projectId), viewChanges, null)).isTrue();
+        assertThat(manager.getSubjectsWithAccessToResource(ProjectResource.forProject(projectId), viewChanges))
+                .containsExactly(Subject.forUser("A"));
+        assertThat(manager.getResourcesAccessibleToSubject(Subject.forUser("A"), viewChanges))
+                .containsExactly(ProjectResource.forProject(projectId));
+    }
+
+    @Test
+    void shouldApplyIncrementalUpdates() {
+        var resource = ProjectResource.forProject(projectId);
+        manager.setAssignedRoles(Subject.forUser("A"), resource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        assertThat(manager.hasPermission(Subject.forUser("A"), resource, viewChanges, null)).isTrue();
+
+        manager.setAssignedRoles(Subject.forUser("A"), resource, Set.of());
+
+        assertThat(manager.hasPermission(Subject.forUser("A"), resource, viewChanges, null)).isFalse();
+        assertThat(manager.getSubjectsWithAccessToResource(resource)).isEmpty();
+    }
+
+    @Test
+    void shouldIncludeAssignmentForAnySignedInUser() {
+        var resource = ProjectResource.forProject(projectId);
+        manager.setAssignedRoles(Subject.forAnySignedInUser(), resource, Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+
+        assertThat(manager.getCapabilityClosure(Subject.forUser("B"), resource)).contains(viewChanges);
+    }
+
+    @Test
+    void shouldReloadEverythingWhenEverythingIsInvalidated() throws Exception {
+        manager.setAssignedRoles(Subject.forUser("A"), ProjectResource.forProject(projectId), Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME)
+                     .insertMany(List.of(assignmentDocument("B"), assignmentDocument("C")));
+
+        capabilityClosureCache.invalidateAll();
+
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while(index.size() < 3) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+        assertThat(index.isReady()).isTrue();
+    }
+
+    private Document assignmentDocument(String userName) {
+        return new Document(RoleAssignment.USER_NAME, userName)
+                .append(RoleAssignment.PROJECT_ID, projectId.value())
+                .append(RoleAssignment.ASSIGNED_ROLES, emptyList())
+                .append(RoleAssignment.ROLE_CLOSURE, emptyList())
+                .append(RoleAssignment.CAPABILITY_CLOSURE, emptyList());
+    }
+
+    private void awaitReady() throws InterruptedException {
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while(!index.isReady()) {
+            assertThat(System.nanoTime()).as("Index not loaded within %s", TIMEOUT).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
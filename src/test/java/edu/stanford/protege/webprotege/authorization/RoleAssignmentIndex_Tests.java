@@ -0,0 +1,30 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RoleAssignmentIndex_Tests {
+
+    @Test
+    void shouldRefuseMemoryModeWithoutChangeStreams() {
+        assertThatThrownBy(() -> newIndex(RoleAssignmentStorageMode.MEMORY, false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("webprotege.authorization.change-streams.enabled");
+    }
+
+    @Test
+    void shouldAllowMemoryModeWithChangeStreams() {
+        assertThatCode(() -> newIndex(RoleAssignmentStorageMode.MEMORY, true)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void shouldAllowMongoModeWithoutChangeStreams() {
+        assertThatCode(() -> newIndex(RoleAssignmentStorageMode.MONGO, false)).doesNotThrowAnyException();
+    }
+
+    private static RoleAssignmentIndex newIndex(RoleAssignmentStorageMode storageMode, boolean changeStreamsEnabled) {
+        return new RoleAssignmentIndex(null, null, null, storageMode, 1, changeStreamsEnabled);
+    }
+}
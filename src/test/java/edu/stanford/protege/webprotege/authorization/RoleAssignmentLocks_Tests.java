@@ -0,0 +1,148 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RoleAssignmentLocks_Tests {
+
+    private RoleAssignmentLocks locks;
+
+    @BeforeEach
+    void setUp() {
+        locks = new RoleAssignmentLocks();
+    }
+
+    @Test
+    void shouldNotBlockReadOfOtherProjectWhileProjectIsWriteLocked() throws Exception {
+        try(var ignored = locks.lockForWrite("ProjectA")) {
+            var read = readInOtherThread(findProjectOnOtherStripe("ProjectA"));
+            assertThat(read.get(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    void shouldNotBlockApplicationReadWhileProjectIsWriteLocked() throws Exception {
+        try(var ignored = locks.lockForWrite("ProjectA")) {
+            var read = readInOtherThread(null);
+            assertThat(read.get(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    void shouldBlockReadOfProjectWhileProjectIsWriteLocked() throws Exception {
+        CompletableFuture<Boolean> read;
+        try(var ignored = locks.lockForWrite("ProjectA")) {
+            read = readInOtherThread("ProjectA");
+            assertThatThrownBy(() -> read.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        }
+        assertThat(read.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void shouldNotBlockReadsWhileFullRebuildLockIsHeld() throws Exception {
+        try(var ignored = locks.lockForFullRebuild()) {
+            var read = readInOtherThread("ProjectA");
+            assertThat(read.get(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    void shouldAllowReadLockToBeTakenWhileHoldingWriteLock() {
+        try(var ignored = locks.lockForWrite("ProjectA");
+            var ignoredRead = locks.lockForRead("ProjectA")) {
+            assertThat(ignoredRead).isNotNull();
+        }
+    }
+
+    @Test
+    void shouldBlockWritersButNotReadersWhileWritersAreLockedOut() throws Exception {
+        CompletableFuture<Boolean> write;
+        try(var ignored = locks.lockOutWriters()) {
+            assertThat(readInOtherThread("ProjectA").get(5, TimeUnit.SECONDS)).isTrue();
+            write = writeInOtherThread("ProjectA");
+            assertThatThrownBy(() -> write.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        }
+        assertThat(write.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void shouldRecordWaitForContendedLock() throws Exception {
+        CompletableFuture<Boolean> read;
+        try(var ignored = locks.lockForWrite("ProjectA")) {
+            read = readInOtherThread("ProjectA");
+            awaitWaitingCount(RoleAssignmentLocks.LockMode.READ, 1);
+            Thread.sleep(50);
+        }
+        assertThat(read.get(5, TimeUnit.SECONDS)).isTrue();
+        var readStats = locks.getWaitStats(RoleAssignmentLocks.LockMode.READ);
+        assertThat(readStats.getAcquisitionCount()).isEqualTo(1);
+        assertThat(readStats.getContendedCount()).isEqualTo(1);
+        assertThat(readStats.getWaitTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+        assertThat(readStats.getWaitingCount()).isZero();
+    }
+
+    @Test
+    void shouldNotRecordWaitForFreeLock() {
+        try(var ignored = locks.lockForWrite("ProjectA")) {
+            assertThat(ignored).isNotNull();
+        }
+        var writeStats = locks.getWaitStats(RoleAssignmentLocks.LockMode.WRITE);
+        assertThat(writeStats.getAcquisitionCount()).isEqualTo(1);
+        assertThat(writeStats.getContendedCount()).isZero();
+        assertThat(writeStats.getWaitTime(TimeUnit.NANOSECONDS)).isZero();
+    }
+
+    private void awaitWaitingCount(RoleAssignmentLocks.LockMode mode, int count) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(locks.getWaitStats(mode).getWaitingCount() < count) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private CompletableFuture<Boolean> writeInOtherThread(String projectId) {
+        return CompletableFuture.supplyAsync(() -> {
+            try(var ignored = locks.lockForWrite(projectId)) {
+                return true;
+            }
+        });
+    }
+
+    private CompletableFuture<Boolean> readInOtherThread(String projectId) {
+        return CompletableFuture.supplyAsync(() -> {
+            try(var ignored = locks.lockForRead(projectId)) {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Projects share striped locks, so find a project whose lock is free while the specified project's lock is held
+     */
+    private String findProjectOnOtherStripe(String projectId) throws Exception {
+        for(int i = 0; ; i++) {
+            var candidate = "Project" + i;
+            if(candidate.equals(projectId)) {
+                continue;
+            }
+            var acquired = CompletableFuture.supplyAsync(() -> {
+                try(var ignored = locks.lockForRead(candidate)) {
+                    return true;
+                }
+            });
+            try {
+                acquired.get(50, TimeUnit.MILLISECONDS);
+                return candidate;
+            } catch (TimeoutException e) {
+                // Same stripe.  The blocked read completes when the write lock is released.
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.ipc.EventDispatcher;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SetProjectRoleDefinitionsHandler_Tests {
+
+    private final ProjectId projectId = ProjectId.generate();
+
+    private final EventDispatcher eventDispatcher = mock(EventDispatcher.class);
+
+    private final AccessManager accessManager = mock(AccessManager.class);
+
+    private SetProjectRoleDefinitionsHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        var repository = mock(ProjectRoleDefinitionsRepository.class);
+        when(repository.getProjectRoleDefinitions(any())).thenReturn(Optional.empty());
+        handler = new SetProjectRoleDefinitionsHandler(accessManager,
+                                                       new ProjectRoleDefinitionsManager(repository),
+                                                       new PermissionsChangedEventCoalescer(eventDispatcher, Duration.ZERO));
+    }
+
+    @Test
+    void shouldDispatchPermissionsChangedEventWhenOnlyLabelsChange() {
+        var roleDefinitions = Arrays.stream(BuiltInRole.values())
+                                    .filter(BuiltInRole::isProjectRole)
+                                    .map(BuiltInRole::toRoleDefinition)
+                                    .map(r -> RoleDefinition.get(r.roleId(),
+                                                                 r.roleType(),
+                                                                 r.parentRoles(),
+                                                                 r.roleCapabilities(),
+                                                                 r.label() + " (renamed)",
+                                                                 r.description()))
+                                    .toList();
+
+        handler.handleRequest(SetProjectRoleDefinitionsRequest.get(projectId, roleDefinitions), new ExecutionContext()).block();
+
+        // No assignments are affected, so nothing is rebuilt, but other instances must drop their role graph
+        verify(accessManager).rebuild(projectId, Set.of());
+        var event = ArgumentCaptor.forClass(PermissionsChangedEvent.class);
+        verify(eventDispatcher, times(1)).dispatchEvent(event.capture());
+        assertThat(event.getValue().projectId()).isEqualTo(projectId);
+    }
+}
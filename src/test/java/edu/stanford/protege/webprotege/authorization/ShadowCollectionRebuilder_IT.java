@@ -0,0 +1,73 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import edu.stanford.protege.webprotege.common.ProjectId;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"webprotege.authorization.rebuild.mode=shadow",
+        "webprotege.authorization.rebuild.single-instance=true"})
+@ExtendWith({MongoTestExtension.class, RabbitMqTestExtension.class, KeycloakTestExtension.class})
+class ShadowCollectionRebuilder_IT {
+
+    @Autowired
+    private AccessManagerImpl manager;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PermissionRebuildEngine rebuildEngine;
+
+    @BeforeEach
+    void setUp() {
+        getCollection().drop();
+        getCollection().createIndex(new Document("userName", 1).append("projectId", 1), new IndexOptions().unique(true));
+    }
+
+    @Test
+    void shouldRebuildIntoShadowCollectionAndSwapItIn() {
+        var projectIds = List.of(ProjectId.generate(), ProjectId.generate());
+        for(var projectId : projectIds) {
+            manager.setAssignedRoles(Subject.forUser("A"), ProjectResource.forProject(projectId), Set.of(BuiltInRole.CAN_EDIT.getRoleId()));
+            manager.setAssignedRoles(Subject.forUser("B"), ProjectResource.forProject(projectId), Set.of(BuiltInRole.CAN_VIEW.getRoleId()));
+        }
+        var ids = getCollection().find().map(document -> document.getObjectId("_id")).into(new ArrayList<>());
+        getCollection().updateMany(new Document(), new Document("$set", new Document("roleClosure", emptyList())));
+
+        manager.rebuild();
+
+        assertThat(getCollection().countDocuments()).isEqualTo(4);
+        assertThat(getCollection().find().map(document -> document.getObjectId("_id")).into(new ArrayList<>()))
+                .containsExactlyInAnyOrderElementsOf(ids);
+        getCollection().find(new Document("userName", "A"))
+                       .forEach(document -> assertThat(document.getList("roleClosure", String.class)).contains("CanEdit", "CanView"));
+        var indexNames = getCollection().listIndexes().map(index -> index.getString("name")).into(new ArrayList<>());
+        assertThat(indexNames).contains("userName_1_projectId_1");
+        assertThat(mongoTemplate.collectionExists(ShadowCollectionRebuilder.SHADOW_COLLECTION_NAME)).isFalse();
+        assertThat(rebuildEngine.getProgress().orElseThrow().getRewrittenAssignments()).isEqualTo(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        getCollection().drop();
+    }
+
+    private MongoCollection<Document> getCollection() {
+        return mongoTemplate.getCollection(AccessManagerImpl.COLLECTION_NAME);
+    }
+}
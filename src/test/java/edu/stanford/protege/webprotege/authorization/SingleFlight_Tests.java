@@ -0,0 +1,150 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlight_Tests {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldShareLoadWithConcurrentCallers() throws Exception {
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            loading.countDown();
+            await(release);
+            return "value-" + loads.incrementAndGet();
+        }));
+        loading.await();
+        var followers = new ArrayList<Future<String>>();
+        for(int i = 0; i < 3; i++) {
+            followers.add(executor.submit(() -> singleFlight.execute("key", () -> "value-" + loads.incrementAndGet())));
+        }
+        awaitSharedCount(3);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("value-1");
+        for(var follower : followers) {
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("value-1");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(singleFlight.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void shouldLoadAgainAfterLoadHasCompleted() {
+        assertThat(singleFlight.execute("key", () -> "value-" + loads.incrementAndGet())).isEqualTo("value-1");
+        assertThat(singleFlight.execute("key", () -> "value-" + loads.incrementAndGet())).isEqualTo("value-2");
+        assertThat(singleFlight.getSharedCount()).isZero();
+    }
+
+    @Test
+    void shouldNotShareLoadsOfDifferentKeys() throws Exception {
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var leader = executor.submit(() -> singleFlight.execute("a", () -> {
+            loading.countDown();
+            await(release);
+            return "a";
+        }));
+        loading.await();
+        assertThat(singleFlight.execute("b", () -> "b")).isEqualTo("b");
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("a");
+        assertThat(singleFlight.getSharedCount()).isZero();
+    }
+
+    @Test
+    void shouldShareFailureWithConcurrentCallers() throws Exception {
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            loading.countDown();
+            await(release);
+            throw new IllegalStateException("Failed");
+        }));
+        loading.await();
+        var follower = executor.submit(() -> singleFlight.execute("key", () -> "value"));
+        awaitSharedCount(1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.execute("key", () -> "value")).isEqualTo("value");
+    }
+
+    @Test
+    void shouldShareAsyncLoadWithConcurrentSubscribers() {
+        var sink = Sinks.<String>one();
+        var first = singleFlight.executeAsync("key", () -> {
+            loads.incrementAndGet();
+            return sink.asMono();
+        }).toFuture();
+        var second = singleFlight.executeAsync("key", () -> {
+            loads.incrementAndGet();
+            return Mono.just("other");
+        }).toFuture();
+        sink.tryEmitValue("value");
+
+        assertThat(first.join()).isEqualTo("value");
+        assertThat(second.join()).isEqualTo("value");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(singleFlight.getSharedCount()).isEqualTo(1);
+        assertThat(singleFlight.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void shouldCompleteAsyncLoadForOthersWhenItsStarterCancels() {
+        var sink = Sinks.<String>one();
+        var first = singleFlight.executeAsync("key", sink::asMono).subscribe();
+        var second = singleFlight.executeAsync("key", () -> Mono.just("other")).toFuture();
+        first.dispose();
+        sink.tryEmitValue("value");
+
+        assertThat(second.join()).isEqualTo("value");
+    }
+
+    @Test
+    void shouldNotStartAsyncLoadUntilSubscribed() {
+        var mono = singleFlight.executeAsync("key", () -> Mono.fromCallable(loads::incrementAndGet).map(String::valueOf));
+        assertThat(loads.get()).isZero();
+        assertThat(mono.block(Duration.ofSeconds(5))).isEqualTo("1");
+    }
+
+    private void awaitSharedCount(long count) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(singleFlight.getSharedCount() < count) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
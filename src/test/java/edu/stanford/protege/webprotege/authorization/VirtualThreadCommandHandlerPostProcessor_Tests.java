@@ -0,0 +1,165 @@
+package edu.stanford.protege.webprotege.authorization;
+
+import edu.stanford.protege.webprotege.common.ProjectId;
+import edu.stanford.protege.webprotege.ipc.CommandHandler;
+import edu.stanford.protege.webprotege.ipc.ExecutionContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadCommandHandlerPostProcessor_Tests {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final GetAuthorizationStatusRequest request = new GetAuthorizationStatusRequest(
+            ProjectResource.forProject(ProjectId.generate()),
+            Subject.forUser("JohnSmith"),
+            BuiltInCapability.VIEW_PROJECT.getCapability());
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldNotProxyHandlersWhenDisabled() {
+        var postProcessor = new VirtualThreadCommandHandlerPostProcessor(false, 10, null);
+        var handler = new BlockingHandler(new CountDownLatch(0));
+        assertThat(postProcessor.postProcessAfterInitialization(handler, "handler")).isSameAs(handler);
+    }
+
+    @Test
+    void shouldKeepHandlerTypeAndChannel() {
+        var postProcessor = new VirtualThreadCommandHandlerPostProcessor(true, 10, executor);
+        var proxy = postProcessor.postProcessAfterInitialization(new BlockingHandler(new CountDownLatch(0)), "handler");
+        assertThat(proxy).isInstanceOf(BlockingHandler.class);
+        assertThat(((BlockingHandler) proxy).getChannelName()).isEqualTo(GetAuthorizationStatusRequest.CHANNEL);
+    }
+
+    @Test
+    void shouldHandleRequestOnExecutorWithLoggingContext() {
+        var postProcessor = new VirtualThreadCommandHandlerPostProcessor(true, 10, executor);
+        var target = new BlockingHandler(new CountDownLatch(0));
+        var handler = (BlockingHandler) postProcessor.postProcessAfterInitialization(target, "handler");
+        MDC.put("correlationId", "the-correlation-id");
+        try {
+            var response = handler.handleRequest(request, new ExecutionContext()).block(Duration.ofSeconds(5));
+            assertThat(response).isNotNull();
+        } finally {
+            MDC.clear();
+        }
+        assertThat(target.handlingThread.get()).isNotSameAs(Thread.currentThread());
+        assertThat(target.correlationId.get()).isEqualTo("the-correlation-id");
+    }
+
+    @Test
+    void shouldReturnToCallerWithoutWaitingForHandler() {
+        var postProcessor = new VirtualThreadCommandHandlerPostProcessor(true, 10, executor);
+        var release = new CountDownLatch(1);
+        var handler = (BlockingHandler) postProcessor.postProcessAfterInitialization(new BlockingHandler(release), "handler");
+        var response = new CompletableFuture<GetAuthorizationStatusResponse>();
+        handler.handleRequest(request, new ExecutionContext()).subscribe(response::complete, response::completeExceptionally);
+        assertThat(response).isNotDone();
+        release.countDown();
+        assertThat(response.join().authorizationStatus()).isEqualTo(AuthorizationStatus.AUTHORIZED);
+    }
+
+    @Test
+    void shouldLimitConcurrentCommands() throws Exception {
+        var postProcessor = new VirtualThreadCommandHandlerPostProcessor(true, 2, executor);
+        var release = new CountDownLatch(1);
+        var target = new BlockingHandler(release);
+        var handler = (BlockingHandler) postProcessor.postProcessAfterInitialization(target, "handler");
+        var responses = new ArrayList<CompletableFuture<GetAuthorizationStatusResponse>>();
+        for(int i = 0; i < 5; i++) {
+            var response = new CompletableFuture<GetAuthorizationStatusResponse>();
+            handler.handleRequest(request, new ExecutionContext()).subscribe(response::complete, response::completeExceptionally);
+            responses.add(response);
+        }
+        Thread.sleep(200);
+        assertThat(target.maxConcurrent.get()).isEqualTo(2);
+        assertThat(postProcessor.getConcurrentCommandCount()).isEqualTo(2);
+        release.countDown();
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertThat(target.maxConcurrent.get()).isEqualTo(2);
+        assertThat(postProcessor.getConcurrentCommandCount()).isZero();
+    }
+
+    @Test
+    void shouldReleasePermitsOfCancelledCommands() throws Exception {
+        var postProcessor = new VirtualThreadCommandHandlerPostProcessor(true, 1000, executor);
+        var handler = (BlockingHandler) postProcessor.postProcessAfterInitialization(new BlockingHandler(new CountDownLatch(0)), "handler");
+        // Cancels race with the taking of permits on the executor
+        for(int i = 0; i < 20_000; i++) {
+            handler.handleRequest(request, new ExecutionContext()).subscribe().dispose();
+        }
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(postProcessor.getConcurrentCommandCount() > 0) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void shouldFailToEnableWithoutVirtualThreads() {
+        assumeTrue(Runtime.version().feature() < 21);
+        assertThatThrownBy(() -> new VirtualThreadCommandHandlerPostProcessor(true, 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    static class BlockingHandler implements CommandHandler<GetAuthorizationStatusRequest, GetAuthorizationStatusResponse> {
+
+        private final CountDownLatch release;
+
+        private final AtomicReference<Thread> handlingThread = new AtomicReference<>();
+
+        private final AtomicReference<String> correlationId = new AtomicReference<>();
+
+        private final AtomicInteger concurrent = new AtomicInteger();
+
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        BlockingHandler(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Nonnull
+        @Override
+        public String getChannelName() {
+            return GetAuthorizationStatusRequest.CHANNEL;
+        }
+
+        @Override
+        public Class<GetAuthorizationStatusRequest> getRequestClass() {
+            return GetAuthorizationStatusRequest.class;
+        }
+
+        @Override
+        public Mono<GetAuthorizationStatusResponse> handleRequest(GetAuthorizationStatusRequest request, ExecutionContext executionContext) {
+            handlingThread.set(Thread.currentThread());
+            correlationId.set(MDC.get("correlationId"));
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Mono.error(e);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            return Mono.just(new GetAuthorizationStatusResponse(request.resource(), request.subject(), AuthorizationStatus.AUTHORIZED));
+        }
+    }
+}